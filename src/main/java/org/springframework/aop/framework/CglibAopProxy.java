@@ -38,6 +38,7 @@ import org.springframework.aop.TargetSource;
 import org.springframework.aop.support.AopUtils;
 import org.springframework.cglib.core.CodeGenerationException;
 import org.springframework.cglib.core.SpringNamingPolicy;
+import org.springframework.cglib.proxy.CachingGeneratorStrategy;
 import org.springframework.cglib.proxy.Callback;
 import org.springframework.cglib.proxy.CallbackFilter;
 import org.springframework.cglib.proxy.Dispatcher;
@@ -236,9 +237,9 @@ class CglibAopProxy implements AopProxy, Serializable {
 				}
 			}
 			enhancer.setSuperclass(proxySuperClass);
-			enhancer.setInterfaces(AopProxyUtils.completeProxiedInterfaces(this.advised));
+			Class<?>[] proxyInterfaces = AopProxyUtils.completeProxiedInterfaces(this.advised);
+			enhancer.setInterfaces(proxyInterfaces);
 			enhancer.setNamingPolicy(SpringNamingPolicy.INSTANCE);
-			enhancer.setStrategy(new UndeclaredThrowableStrategy(UndeclaredThrowableException.class));
 
 			// 设置拦截器
 			Callback[] callbacks = getCallbacks(rootClass);
@@ -247,9 +248,14 @@ class CglibAopProxy implements AopProxy, Serializable {
 				types[x] = callbacks[x].getClass();
 			}
 			// fixedInterceptorMap only populated at this point, after getCallbacks call above
-			enhancer.setCallbackFilter(new ProxyCallbackFilter(
-					this.advised.getConfigurationOnlyCopy(), this.fixedInterceptorMap, this.fixedInterceptorOffset));
+			ProxyCallbackFilter callbackFilter = new ProxyCallbackFilter(
+					this.advised.getConfigurationOnlyCopy(), this.fixedInterceptorMap, this.fixedInterceptorOffset);
+			enhancer.setCallbackFilter(callbackFilter);
 			enhancer.setCallbackTypes(types);
+			enhancer.setStrategy(CachingGeneratorStrategy.wrapIfNecessary(
+					new UndeclaredThrowableStrategy(UndeclaredThrowableException.class), proxySuperClass,
+					proxyInterfaces, callbackFilter, types, SpringNamingPolicy.INSTANCE,
+					true, isInterceptDuringConstruction()));
 
 			// Generate the proxy class and create a proxy instance.
 			return createProxyClassAndInstance(enhancer, callbacks);
@@ -281,6 +287,16 @@ class CglibAopProxy implements AopProxy, Serializable {
 				enhancer.create());
 	}
 
+	/**
+	 * Return whether the proxy class generated for {@link #createProxyClassAndInstance}
+	 * intercepts method calls from within its constructor. Part of the cache key
+	 * when the shared CGLIB bytecode cache is enabled.
+	 * @see org.springframework.cglib.core.ClassBytecodeCache
+	 */
+	protected boolean isInterceptDuringConstruction() {
+		return false;
+	}
+
 	/**
 	 * Creates the CGLIB {@link Enhancer}. Subclasses may wish to override this to return a custom
 	 * {@link Enhancer} implementation.
@@ -83,6 +83,7 @@ public class DefaultAdvisorChainFactory implements AdvisorChainFactory, Serializ
 					// 检查当前Advisor的切入点是否可以匹配当前方法
 					MethodMatcher mm = pointcutAdvisor.getPointcut().getMethodMatcher();
 					if (MethodMatchers.matches(mm, method, actualClass, hasIntroductions)) {
+						prepareInterceptors(interceptors, method, targetClass);
 						if (mm.isRuntime()) {
 							// Creating a new object instance in the getInterceptors() method
 							// isn't a problem as we normally cache created chains.
@@ -112,6 +113,18 @@ public class DefaultAdvisorChainFactory implements AdvisorChainFactory, Serializ
 		return interceptorList;
 	}
 
+	/**
+	 * Replace {@link PreparableMethodInterceptor PreparableMethodInterceptors}
+	 * in the given array with their variants prepared for the given method.
+	 */
+	private static void prepareInterceptors(MethodInterceptor[] interceptors, Method method, Class<?> targetClass) {
+		for (int i = 0; i < interceptors.length; i++) {
+			if (interceptors[i] instanceof PreparableMethodInterceptor) {
+				interceptors[i] = ((PreparableMethodInterceptor) interceptors[i]).prepareFor(method, targetClass);
+			}
+		}
+	}
+
 	/**
 	 * Determine whether the Advisors contain matching introductions.
 	 */
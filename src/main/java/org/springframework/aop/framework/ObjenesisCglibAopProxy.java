@@ -49,6 +49,12 @@ class ObjenesisCglibAopProxy extends CglibAopProxy {
 	}
 
 
+	@Override
+	protected boolean isInterceptDuringConstruction() {
+		// The Enhancer's default, since createProxyClassAndInstance below does not change it
+		return true;
+	}
+
 	@Override
 	@SuppressWarnings("unchecked")
 	protected Object createProxyClassAndInstance(Enhancer enhancer, Callback[] callbacks) {
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2002-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.aop.framework;
+
+import java.lang.reflect.Method;
+
+import org.aopalliance.intercept.MethodInterceptor;
+
+/**
+ * Extension of the AOP Alliance {@link MethodInterceptor} interface for
+ * interceptors that can precompute method-specific state once, when the
+ * advice chain for a particular method is built, instead of on every call.
+ *
+ * <p>{@link DefaultAdvisorChainFactory} puts the interceptor returned from
+ * {@link #prepareFor} into the chain; since chains are cached per method
+ * by {@link AdvisedSupport}, that interceptor is then reused for all
+ * invocations of the method through the same proxy.
+ *
+ * @since 4.3
+ * @see DefaultAdvisorChainFactory#getInterceptorsAndDynamicInterceptionAdvice
+ */
+public interface PreparableMethodInterceptor extends MethodInterceptor {
+
+	/**
+	 * Return the interceptor to use for the given method.
+	 * @param method the proxied method
+	 * @param targetClass the target class (may be {@code null} for a proxy
+	 * without target object)
+	 * @return a method-specific interceptor, or this interceptor itself
+	 * if no preparation is possible for the given method
+	 */
+	MethodInterceptor prepareFor(Method method, Class<?> targetClass);
+
+}
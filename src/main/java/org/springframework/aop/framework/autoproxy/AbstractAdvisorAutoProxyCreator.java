@@ -49,6 +49,8 @@ public abstract class AbstractAdvisorAutoProxyCreator extends AbstractAutoProxyC
 
 	private BeanFactoryAdvisorRetrievalHelper advisorRetrievalHelper;
 
+	private volatile EligibleAdvisorsIndex eligibleAdvisorsIndex;
+
 
 	@Override
 	public void setBeanFactory(BeanFactory beanFactory) {
@@ -111,6 +113,9 @@ public abstract class AbstractAdvisorAutoProxyCreator extends AbstractAutoProxyC
 	 * @param beanClass the target's bean class
 	 * @param beanName the target's bean name
 	 * @return the List of applicable Advisors
+	 * <p>Matching results are indexed per bean class, with Advisors that depend on
+	 * the bean name being re-evaluated for each bean; the outcome is the same as
+	 * for {@link AopUtils#findAdvisorsThatCanApply}.
 	 * @see ProxyCreationContext#getCurrentProxiedBeanName()
 	 * 寻找匹配的增强器
 	 */
@@ -121,7 +126,16 @@ public abstract class AbstractAdvisorAutoProxyCreator extends AbstractAutoProxyC
 		ProxyCreationContext.setCurrentProxiedBeanName(beanName);
 		try {
 			// 过滤已经得到的 advisors
-			return AopUtils.findAdvisorsThatCanApply(candidateAdvisors, beanClass);
+			if (candidateAdvisors.isEmpty()) {
+				return candidateAdvisors;
+			}
+			EligibleAdvisorsIndex index = this.eligibleAdvisorsIndex;
+			if (index == null || !index.isIndexFor(candidateAdvisors)) {
+				// Candidate Advisors changed: e.g. new Advisor beans or prototype aspects
+				index = new EligibleAdvisorsIndex(candidateAdvisors);
+				this.eligibleAdvisorsIndex = index;
+			}
+			return index.findAdvisorsThatCanApply(beanClass);
 		}
 		finally {
 			ProxyCreationContext.setCurrentProxiedBeanName(null);
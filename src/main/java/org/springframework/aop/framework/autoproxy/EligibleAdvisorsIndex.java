@@ -0,0 +1,206 @@
+/*
+ * Copyright 2002-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.aop.framework.autoproxy;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.aop.Advisor;
+import org.springframework.aop.IntroductionAdvisor;
+import org.springframework.aop.Pointcut;
+import org.springframework.aop.PointcutAdvisor;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.aop.support.annotation.AnnotationMethodMatcher;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Pre-computed matching index over a fixed list of candidate Advisors,
+ * used by {@link AbstractAdvisorAutoProxyCreator} to avoid evaluating
+ * every Advisor against every method of every bean.
+ *
+ * <p>Two levels of optimization are applied, both preserving the semantics
+ * of {@link AopUtils#findAdvisorsThatCanApply}:
+ * <ul>
+ * <li>Advisors whose pointcut requires a specific method annotation
+ * (via {@link AnnotationMethodMatcher}) are grouped by annotation type and
+ * skipped without method iteration if no method of the target class or its
+ * interfaces carries that annotation.
+ * <li>Matching results are cached per target class, so that beans of the same
+ * class (e.g. prototypes or multiple bean definitions for one class) share
+ * the outcome. Advisors whose matching obtained the bean name through
+ * {@link ProxyCreationContext#getCurrentProxiedBeanName()}, e.g. AspectJ
+ * pointcuts with a {@code bean()} designator, directly or through a named
+ * pointcut, are re-evaluated per bean. If this applies to an introduction,
+ * nothing is cached for the class, since introductions affect the matching
+ * of all other Advisors.
+ * </ul>
+ *
+ * @since 4.3
+ * @see AbstractAdvisorAutoProxyCreator#findAdvisorsThatCanApply
+ */
+class EligibleAdvisorsIndex {
+
+	private final Advisor[] candidateAdvisors;
+
+	private final Class<?>[] requiredMethodAnnotations;
+
+	private final Set<Class<?>> indexedAnnotationTypes = new HashSet<Class<?>>();
+
+	private final Map<Class<?>, Boolean[]> matchCache = new ConcurrentHashMap<Class<?>, Boolean[]>(256);
+
+
+	public EligibleAdvisorsIndex(List<Advisor> candidateAdvisors) {
+		this.candidateAdvisors = candidateAdvisors.toArray(new Advisor[candidateAdvisors.size()]);
+		this.requiredMethodAnnotations = new Class<?>[this.candidateAdvisors.length];
+		for (int i = 0; i < this.candidateAdvisors.length; i++) {
+			Advisor advisor = this.candidateAdvisors[i];
+			if (advisor instanceof PointcutAdvisor && !(advisor instanceof IntroductionAdvisor)) {
+				Pointcut pointcut = ((PointcutAdvisor) advisor).getPointcut();
+				if (pointcut.getMethodMatcher() instanceof AnnotationMethodMatcher) {
+					this.requiredMethodAnnotations[i] =
+							((AnnotationMethodMatcher) pointcut.getMethodMatcher()).getAnnotationType();
+					this.indexedAnnotationTypes.add(this.requiredMethodAnnotations[i]);
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Determine whether this index has been built for the given candidate Advisors,
+	 * comparing the Advisor instances by identity.
+	 */
+	public boolean isIndexFor(List<Advisor> candidateAdvisors) {
+		if (candidateAdvisors.size() != this.candidateAdvisors.length) {
+			return false;
+		}
+		int i = 0;
+		for (Advisor candidate : candidateAdvisors) {
+			if (candidate != this.candidateAdvisors[i++]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Determine the sublist of the indexed Advisors that is applicable
+	 * to the given class, in the order of {@link AopUtils#findAdvisorsThatCanApply}.
+	 * <p>Expects the current bean name to be exposed through {@link ProxyCreationContext}.
+	 * @param clazz the target class
+	 * @return the List of applicable Advisors
+	 */
+	public List<Advisor> findAdvisorsThatCanApply(Class<?> clazz) {
+		Boolean[] matches = this.matchCache.get(clazz);
+		if (matches == null) {
+			matches = computeClassLevelMatches(clazz);
+			this.matchCache.put(clazz, matches);
+		}
+
+		List<Advisor> eligibleAdvisors = new LinkedList<Advisor>();
+		for (int i = 0; i < this.candidateAdvisors.length; i++) {
+			Advisor candidate = this.candidateAdvisors[i];
+			if (candidate instanceof IntroductionAdvisor &&
+					(matches[i] != null ? matches[i] : AopUtils.canApply(candidate, clazz))) {
+				eligibleAdvisors.add(candidate);
+			}
+		}
+		boolean hasIntroductions = !eligibleAdvisors.isEmpty();
+		for (int i = 0; i < this.candidateAdvisors.length; i++) {
+			Advisor candidate = this.candidateAdvisors[i];
+			if (candidate instanceof IntroductionAdvisor) {
+				// already processed
+				continue;
+			}
+			if (matches[i] != null ? matches[i] : AopUtils.canApply(candidate, clazz, hasIntroductions)) {
+				eligibleAdvisors.add(candidate);
+			}
+		}
+		return eligibleAdvisors;
+	}
+
+	/**
+	 * Evaluate all Advisors against the given class, leaving {@code null} entries
+	 * for the ones whose matching depended on the current bean name.
+	 */
+	private Boolean[] computeClassLevelMatches(Class<?> clazz) {
+		Boolean[] matches = new Boolean[this.candidateAdvisors.length];
+		boolean hasIntroductions = false;
+		for (int i = 0; i < this.candidateAdvisors.length; i++) {
+			if (this.candidateAdvisors[i] instanceof IntroductionAdvisor) {
+				ProxyCreationContext.resetCurrentProxiedBeanNameAccessed();
+				boolean match = AopUtils.canApply(this.candidateAdvisors[i], clazz);
+				if (ProxyCreationContext.isCurrentProxiedBeanNameAccessed()) {
+					// Introductions vary per bean: evaluate everything per bean
+					ProxyCreationContext.resetCurrentProxiedBeanNameAccessed();
+					return new Boolean[this.candidateAdvisors.length];
+				}
+				matches[i] = match;
+				hasIntroductions |= match;
+			}
+		}
+		Set<Class<?>> methodAnnotationTypes = null;
+		for (int i = 0; i < this.candidateAdvisors.length; i++) {
+			if (this.candidateAdvisors[i] instanceof IntroductionAdvisor) {
+				continue;
+			}
+			if (this.requiredMethodAnnotations[i] != null) {
+				if (methodAnnotationTypes == null) {
+					methodAnnotationTypes = findIndexedMethodAnnotationTypes(clazz);
+				}
+				if (!methodAnnotationTypes.contains(this.requiredMethodAnnotations[i])) {
+					matches[i] = Boolean.FALSE;
+					continue;
+				}
+			}
+			ProxyCreationContext.resetCurrentProxiedBeanNameAccessed();
+			boolean match = AopUtils.canApply(this.candidateAdvisors[i], clazz, hasIntroductions);
+			matches[i] = (ProxyCreationContext.isCurrentProxiedBeanNameAccessed() ? null : match);
+		}
+		ProxyCreationContext.resetCurrentProxiedBeanNameAccessed();
+		return matches;
+	}
+
+	/**
+	 * Collect the indexed annotation types present on the methods that
+	 * {@link AopUtils#canApply} iterates over: the public methods of the
+	 * target class and of all its interfaces.
+	 */
+	private Set<Class<?>> findIndexedMethodAnnotationTypes(Class<?> clazz) {
+		Set<Class<?>> classes = new LinkedHashSet<Class<?>>(ClassUtils.getAllInterfacesForClassAsSet(clazz));
+		classes.add(clazz);
+		Set<Class<?>> annotationTypes = new HashSet<Class<?>>();
+		for (Class<?> candidate : classes) {
+			for (Method method : candidate.getMethods()) {
+				for (Annotation annotation : method.getAnnotations()) {
+					if (this.indexedAnnotationTypes.contains(annotation.annotationType())) {
+						annotationTypes.add(annotation.annotationType());
+					}
+				}
+			}
+		}
+		return annotationTypes;
+	}
+
+}
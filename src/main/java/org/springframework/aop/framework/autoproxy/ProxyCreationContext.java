@@ -32,13 +32,21 @@ public class ProxyCreationContext {
 	private static final ThreadLocal<String> currentProxiedBeanName =
 			new NamedThreadLocal<String>("Name of currently proxied bean");
 
+	/** ThreadLocal flagging access to the current proxied bean name since the last reset */
+	private static final ThreadLocal<Boolean> currentProxiedBeanNameAccessed =
+			new NamedThreadLocal<Boolean>("Access to name of currently proxied bean");
+
 
 	/**
 	 * Return the name of the currently proxied bean instance.
 	 * @return the name of the bean, or {@code null} if none available
 	 */
 	public static String getCurrentProxiedBeanName() {
-		return currentProxiedBeanName.get();
+		String beanName = currentProxiedBeanName.get();
+		if (beanName != null) {
+			currentProxiedBeanNameAccessed.set(Boolean.TRUE);
+		}
+		return beanName;
 	}
 
 	/**
@@ -54,4 +62,23 @@ public class ProxyCreationContext {
 		}
 	}
 
+	/**
+	 * Reset the tracking of access to the current proxied bean name.
+	 * @see #isCurrentProxiedBeanNameAccessed()
+	 * @since 4.3
+	 */
+	static void resetCurrentProxiedBeanNameAccessed() {
+		currentProxiedBeanNameAccessed.remove();
+	}
+
+	/**
+	 * Return whether the current proxied bean name has been obtained through
+	 * {@link #getCurrentProxiedBeanName()} since the last reset, i.e. whether
+	 * Advisor matching in the meantime may have depended on the bean name.
+	 * @since 4.3
+	 */
+	static boolean isCurrentProxiedBeanNameAccessed() {
+		return (currentProxiedBeanNameAccessed.get() != null);
+	}
+
 }
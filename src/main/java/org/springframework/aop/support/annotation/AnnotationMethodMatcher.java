@@ -47,6 +47,14 @@ public class AnnotationMethodMatcher extends StaticMethodMatcher {
 	}
 
 
+	/**
+	 * Return the annotation type that this matcher looks for.
+	 * @since 4.3
+	 */
+	public Class<? extends Annotation> getAnnotationType() {
+		return this.annotationType;
+	}
+
 	@Override
 	public boolean matches(Method method, Class<?> targetClass) {
 		if (method.isAnnotationPresent(this.annotationType)) {
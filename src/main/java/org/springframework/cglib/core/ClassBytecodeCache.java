@@ -0,0 +1,240 @@
+/*
+ * Copyright 2002-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cglib.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.core.SpringProperties;
+import org.springframework.util.Assert;
+import org.springframework.util.FileCopyUtils;
+
+/**
+ * On-disk store for generated CGLIB class bytecode, shared by all
+ * {@link AbstractClassGenerator} users in the JVM and reusable across JVM restarts.
+ *
+ * <p>CGLIB itself only caches generated classes per {@code ClassLoader}, so every
+ * new application context (e.g. in a test suite or a multi-tenant deployment)
+ * pays the full ASM generation cost again. With this cache in place, the bytecode
+ * of a previously generated class is read back from disk and merely defined.
+ *
+ * <p>The cache is opt-in: it is only active if the {@code "spring.cglib.cacheDir"}
+ * property is set, either as a JVM system property or in a {@code spring.properties}
+ * file. Entries are keyed by an opaque digest computed by the caller, typically
+ * covering superclass, interfaces, callback types and naming policy; see
+ * {@link org.springframework.cglib.proxy.CachingGeneratorStrategy}.
+ *
+ * <p>Also tracks generation statistics: cache hits and misses, time spent in
+ * bytecode generation and the amount of bytecode generated, along with the
+ * current Metaspace (or PermGen) usage of the JVM.
+ *
+ * @since 4.3
+ * @see #getSharedInstance()
+ */
+public class ClassBytecodeCache {
+
+	/**
+	 * System property that specifies the directory for the shared bytecode cache.
+	 * The cache is disabled unless this property is set.
+	 */
+	public static final String CACHE_DIR_PROPERTY_NAME = "spring.cglib.cacheDir";
+
+	private static final String CLASS_FILE_SUFFIX = ".class";
+
+	private static final Log logger = LogFactory.getLog(ClassBytecodeCache.class);
+
+	private static volatile ClassBytecodeCache sharedInstance;
+
+	private static volatile boolean sharedInstanceResolved;
+
+
+	private final File directory;
+
+	private final AtomicLong hitCount = new AtomicLong();
+
+	private final AtomicLong missCount = new AtomicLong();
+
+	private final AtomicLong generationTime = new AtomicLong();
+
+	private final AtomicLong generatedBytes = new AtomicLong();
+
+
+	/**
+	 * Create a new {@code ClassBytecodeCache} for the given directory,
+	 * creating the directory if necessary.
+	 * @param directory the directory to store class files in
+	 */
+	public ClassBytecodeCache(File directory) {
+		Assert.notNull(directory, "Directory must not be null");
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IllegalArgumentException("Cannot create CGLIB cache directory [" + directory + "]");
+		}
+		this.directory = directory;
+	}
+
+
+	/**
+	 * Return the cache directory.
+	 */
+	public File getDirectory() {
+		return this.directory;
+	}
+
+	/**
+	 * Load the bytecode stored for the given key, if any.
+	 * @param key the cache key (a digest string that is safe to use as a file name)
+	 * @return the stored bytecode, or {@code null} if none found
+	 */
+	public byte[] load(String key) {
+		File file = getFile(key);
+		if (file.isFile()) {
+			try {
+				byte[] bytecode = FileCopyUtils.copyToByteArray(file);
+				this.hitCount.incrementAndGet();
+				return bytecode;
+			}
+			catch (IOException ex) {
+				if (logger.isDebugEnabled()) {
+					logger.debug("Could not read cached CGLIB class from [" + file + "]", ex);
+				}
+			}
+		}
+		this.missCount.incrementAndGet();
+		return null;
+	}
+
+	/**
+	 * Store the given bytecode for the given key. The file is written under a
+	 * temporary name first, so that concurrent readers never see partial content.
+	 * @param key the cache key
+	 * @param bytecode the generated bytecode
+	 */
+	public void store(String key, byte[] bytecode) {
+		File file = getFile(key);
+		File tempFile = new File(this.directory, key + "." + Thread.currentThread().getId() + ".tmp");
+		try {
+			FileCopyUtils.copy(bytecode, tempFile);
+			if (!tempFile.renameTo(file)) {
+				// Target may already exist on platforms without atomic replacement
+				tempFile.delete();
+			}
+		}
+		catch (IOException ex) {
+			tempFile.delete();
+			if (logger.isDebugEnabled()) {
+				logger.debug("Could not write CGLIB class to cache file [" + file + "]", ex);
+			}
+		}
+	}
+
+	/**
+	 * Record a bytecode generation step that did not come from this cache.
+	 * @param nanos the time spent in generation, in nanoseconds
+	 * @param bytecode the generated bytecode
+	 */
+	public void recordGeneration(long nanos, byte[] bytecode) {
+		this.generationTime.addAndGet(nanos);
+		this.generatedBytes.addAndGet(bytecode.length);
+	}
+
+	private File getFile(String key) {
+		return new File(this.directory, key + CLASS_FILE_SUFFIX);
+	}
+
+
+	/**
+	 * Return the number of classes that have been served from this cache.
+	 */
+	public long getHitCount() {
+		return this.hitCount.get();
+	}
+
+	/**
+	 * Return the number of lookups that did not find a cached class.
+	 */
+	public long getMissCount() {
+		return this.missCount.get();
+	}
+
+	/**
+	 * Return the total time spent generating bytecode on cache misses, in milliseconds.
+	 */
+	public long getGenerationTimeMillis() {
+		return this.generationTime.get() / 1000000;
+	}
+
+	/**
+	 * Return the total size of the bytecode generated on cache misses, in bytes.
+	 */
+	public long getGeneratedBytes() {
+		return this.generatedBytes.get();
+	}
+
+	/**
+	 * Return the current usage of the JVM's class metadata memory pool
+	 * (Metaspace on Java 8+, PermGen before), or -1 if not available.
+	 */
+	public long getMetaspaceUsed() {
+		for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+			String name = pool.getName();
+			if (name.contains("Metaspace") || name.contains("Perm Gen")) {
+				return pool.getUsage().getUsed();
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public String toString() {
+		return "ClassBytecodeCache [" + this.directory + "]: hits=" + getHitCount() +
+				", misses=" + getMissCount() + ", generationTime=" + getGenerationTimeMillis() +
+				"ms, generatedBytes=" + getGeneratedBytes() + ", metaspaceUsed=" + getMetaspaceUsed();
+	}
+
+
+	/**
+	 * Return the shared cache instance as configured through the
+	 * {@link #CACHE_DIR_PROPERTY_NAME "spring.cglib.cacheDir"} property.
+	 * @return the shared cache, or {@code null} if not enabled
+	 */
+	public static ClassBytecodeCache getSharedInstance() {
+		if (!sharedInstanceResolved) {
+			synchronized (ClassBytecodeCache.class) {
+				if (!sharedInstanceResolved) {
+					String dir = SpringProperties.getProperty(CACHE_DIR_PROPERTY_NAME);
+					if (dir != null && dir.length() > 0) {
+						try {
+							sharedInstance = new ClassBytecodeCache(new File(dir));
+						}
+						catch (IllegalArgumentException ex) {
+							logger.warn("CGLIB class cache disabled: " + ex.getMessage());
+						}
+					}
+					sharedInstanceResolved = true;
+				}
+			}
+		}
+		return sharedInstance;
+	}
+
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright 2002-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.cglib.proxy;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.asm.ClassReader;
+import org.springframework.cglib.core.AbstractClassGenerator;
+import org.springframework.cglib.core.ClassBytecodeCache;
+import org.springframework.cglib.core.ClassGenerator;
+import org.springframework.cglib.core.ClassNameReader;
+import org.springframework.cglib.core.GeneratorStrategy;
+import org.springframework.cglib.core.NamingPolicy;
+import org.springframework.core.SpringVersion;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.DigestUtils;
+
+/**
+ * {@link GeneratorStrategy} decorator that serves {@link Enhancer} generated
+ * classes from a {@link ClassBytecodeCache}, falling back to the target strategy
+ * (and populating the cache) on a miss.
+ *
+ * <p>The cache key is derived from everything that determines the generated
+ * bytecode: the superclass with its constructors, the interfaces, the callback
+ * types, the callback index that the {@link CallbackFilter} chooses per method,
+ * the naming policy, the target strategy and the factory/construction flags, as
+ * well as the Spring version that the bundled CGLIB generator comes with.
+ * Since method signatures are part of the key, a changed superclass or interface
+ * leads to a new key rather than to stale bytecode.
+ *
+ * @since 4.3
+ * @see #wrapIfNecessary
+ */
+public class CachingGeneratorStrategy implements GeneratorStrategy {
+
+	private static final String KEY_VERSION = "2";
+
+
+	private final GeneratorStrategy targetStrategy;
+
+	private final ClassBytecodeCache cache;
+
+	private final CacheKeySource cacheKeySource;
+
+	private volatile String cacheKey;
+
+
+	/**
+	 * Create a new {@code CachingGeneratorStrategy}.
+	 * @param targetStrategy the strategy to generate bytecode with on a cache miss
+	 * @param cache the bytecode cache to use
+	 * @param cacheKey the cache key for the class to be generated
+	 * @see #buildCacheKey
+	 */
+	public CachingGeneratorStrategy(GeneratorStrategy targetStrategy, ClassBytecodeCache cache, String cacheKey) {
+		this.targetStrategy = targetStrategy;
+		this.cache = cache;
+		this.cacheKeySource = null;
+		this.cacheKey = cacheKey;
+	}
+
+	private CachingGeneratorStrategy(GeneratorStrategy targetStrategy, ClassBytecodeCache cache,
+			CacheKeySource cacheKeySource) {
+
+		this.targetStrategy = targetStrategy;
+		this.cache = cache;
+		this.cacheKeySource = cacheKeySource;
+	}
+
+
+	@Override
+	public byte[] generate(ClassGenerator cg) throws Exception {
+		String cacheKey = getCacheKey();
+		byte[] bytecode = this.cache.load(cacheKey);
+		if (bytecode != null && !isAlreadyDefined(bytecode, cg)) {
+			return bytecode;
+		}
+		long start = System.nanoTime();
+		byte[] generated = this.targetStrategy.generate(cg);
+		this.cache.recordGeneration(System.nanoTime() - start, generated);
+		if (bytecode == null) {
+			// Do not overwrite an entry whose class name merely clashes in this ClassLoader
+			this.cache.store(cacheKey, generated);
+		}
+		return generated;
+	}
+
+	/**
+	 * Return the cache key, building it on first access: CGLIB only asks for
+	 * bytecode on a miss in its in-memory class cache, so the key is not
+	 * computed for classes that have already been generated in this JVM.
+	 */
+	private String getCacheKey() {
+		String cacheKey = this.cacheKey;
+		if (cacheKey == null) {
+			cacheKey = this.cacheKeySource.buildCacheKey();
+			this.cacheKey = cacheKey;
+		}
+		return cacheKey;
+	}
+
+	/**
+	 * Cached class names stem from a previous run and are therefore not registered
+	 * with CGLIB's naming policy: make sure we do not define a class twice.
+	 */
+	private boolean isAlreadyDefined(byte[] bytecode, ClassGenerator cg) {
+		if (!(cg instanceof AbstractClassGenerator)) {
+			return false;
+		}
+		String className = ClassNameReader.getClassName(new ClassReader(bytecode));
+		return ClassUtils.isPresent(className, ((AbstractClassGenerator) cg).getClassLoader());
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (this == other) {
+			return true;
+		}
+		if (!(other instanceof CachingGeneratorStrategy)) {
+			return false;
+		}
+		CachingGeneratorStrategy otherStrategy = (CachingGeneratorStrategy) other;
+		return (this.targetStrategy.equals(otherStrategy.targetStrategy) &&
+				getCacheKey().equals(otherStrategy.getCacheKey()));
+	}
+
+	@Override
+	public int hashCode() {
+		return this.targetStrategy.hashCode() * 29 + getCacheKey().hashCode();
+	}
+
+
+	/**
+	 * Build a cache key that is stable across JVM restarts for the given
+	 * {@link Enhancer} configuration.
+	 * @param superclass the superclass to extend
+	 * @param interfaces the interfaces to implement (may be {@code null})
+	 * @param filter the callback filter (may be {@code null} for a single callback)
+	 * @param callbackTypes the callback types
+	 * @param namingPolicy the naming policy
+	 * @param targetStrategy the strategy generating the bytecode
+	 * @param useFactory whether the generated class implements {@link Factory}
+	 * @param interceptDuringConstruction whether methods called from the
+	 * constructor are intercepted
+	 * @return the cache key, in hex digest form
+	 */
+	public static String buildCacheKey(Class<?> superclass, Class<?>[] interfaces, CallbackFilter filter,
+			Class<?>[] callbackTypes, NamingPolicy namingPolicy, GeneratorStrategy targetStrategy,
+			boolean useFactory, boolean interceptDuringConstruction) {
+
+		StringBuilder sb = new StringBuilder(KEY_VERSION);
+		// Bytecode generated by a different CGLIB version may not be compatible
+		sb.append('|').append(SpringVersion.getVersion());
+		sb.append('|').append(superclass.getName());
+		for (Constructor<?> ctor : superclass.getDeclaredConstructors()) {
+			sb.append('|').append(ctor);
+		}
+		if (interfaces != null) {
+			for (Class<?> ifc : interfaces) {
+				sb.append('|').append(ifc.getName());
+			}
+		}
+		for (Class<?> callbackType : callbackTypes) {
+			sb.append('|').append(callbackType.getName());
+		}
+		sb.append('|').append(namingPolicy.getClass().getName());
+		sb.append('|').append(targetStrategy.getClass().getName());
+		sb.append('|').append(useFactory).append('|').append(interceptDuringConstruction);
+
+		List<Method> methods = new ArrayList<Method>();
+		Enhancer.getMethods(superclass, interfaces, methods);
+		List<String> entries = new ArrayList<String>(methods.size());
+		for (Method method : methods) {
+			entries.add(method + "=" + (filter != null ? filter.accept(method) : 0));
+		}
+		// Declared method order is not guaranteed to be stable across JVM runs
+		Collections.sort(entries);
+		for (String entry : entries) {
+			sb.append('|').append(entry);
+		}
+		return DigestUtils.md5DigestAsHex(sb.toString().getBytes());
+	}
+
+	/**
+	 * Wrap the given strategy with a {@code CachingGeneratorStrategy} if the
+	 * {@link ClassBytecodeCache#getSharedInstance() shared bytecode cache} is enabled.
+	 * @return the caching strategy, or the given target strategy as-is if the
+	 * shared cache is not enabled
+	 * @see #buildCacheKey
+	 */
+	public static GeneratorStrategy wrapIfNecessary(GeneratorStrategy targetStrategy, Class<?> superclass,
+			Class<?>[] interfaces, CallbackFilter filter, Class<?>[] callbackTypes, NamingPolicy namingPolicy,
+			boolean useFactory, boolean interceptDuringConstruction) {
+
+		ClassBytecodeCache cache = ClassBytecodeCache.getSharedInstance();
+		if (cache == null) {
+			return targetStrategy;
+		}
+		return new CachingGeneratorStrategy(targetStrategy, cache, new CacheKeySource(superclass, interfaces,
+				filter, callbackTypes, namingPolicy, targetStrategy, useFactory, interceptDuringConstruction));
+	}
+
+
+	/**
+	 * The {@link Enhancer} configuration to {@link #buildCacheKey build a cache key} from.
+	 */
+	private static class CacheKeySource {
+
+		private final Class<?> superclass;
+
+		private final Class<?>[] interfaces;
+
+		private final CallbackFilter filter;
+
+		private final Class<?>[] callbackTypes;
+
+		private final NamingPolicy namingPolicy;
+
+		private final GeneratorStrategy targetStrategy;
+
+		private final boolean useFactory;
+
+		private final boolean interceptDuringConstruction;
+
+		public CacheKeySource(Class<?> superclass, Class<?>[] interfaces, CallbackFilter filter,
+				Class<?>[] callbackTypes, NamingPolicy namingPolicy, GeneratorStrategy targetStrategy,
+				boolean useFactory, boolean interceptDuringConstruction) {
+
+			this.superclass = superclass;
+			this.interfaces = interfaces;
+			this.filter = filter;
+			this.callbackTypes = callbackTypes;
+			this.namingPolicy = namingPolicy;
+			this.targetStrategy = targetStrategy;
+			this.useFactory = useFactory;
+			this.interceptDuringConstruction = interceptDuringConstruction;
+		}
+
+		public String buildCacheKey() {
+			return CachingGeneratorStrategy.buildCacheKey(this.superclass, this.interfaces, this.filter,
+					this.callbackTypes, this.namingPolicy, this.targetStrategy, this.useFactory,
+					this.interceptDuringConstruction);
+		}
+	}
+
+}
@@ -36,6 +36,7 @@ import org.springframework.cglib.core.ClassGenerator;
 import org.springframework.cglib.core.Constants;
 import org.springframework.cglib.core.DefaultGeneratorStrategy;
 import org.springframework.cglib.core.SpringNamingPolicy;
+import org.springframework.cglib.proxy.CachingGeneratorStrategy;
 import org.springframework.cglib.proxy.Callback;
 import org.springframework.cglib.proxy.CallbackFilter;
 import org.springframework.cglib.proxy.Enhancer;
@@ -123,9 +124,11 @@ class ConfigurationClassEnhancer {
 		enhancer.setInterfaces(new Class<?>[] {EnhancedConfiguration.class});
 		enhancer.setUseFactory(false);
 		enhancer.setNamingPolicy(SpringNamingPolicy.INSTANCE);
-		enhancer.setStrategy(GENERATOR_STRATEGY);
 		enhancer.setCallbackFilter(CALLBACK_FILTER);
 		enhancer.setCallbackTypes(CALLBACK_FILTER.getCallbackTypes());
+		enhancer.setStrategy(CachingGeneratorStrategy.wrapIfNecessary(GENERATOR_STRATEGY, superclass,
+				new Class<?>[] {EnhancedConfiguration.class}, CALLBACK_FILTER, CALLBACK_FILTER.getCallbackTypes(),
+				SpringNamingPolicy.INSTANCE, false, true));
 		return enhancer;
 	}
 
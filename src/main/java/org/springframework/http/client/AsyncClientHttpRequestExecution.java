@@ -0,0 +1,48 @@
+/*
+ * Copyright 2002-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client;
+
+import java.io.IOException;
+
+import org.springframework.http.HttpRequest;
+import org.springframework.util.concurrent.ListenableFuture;
+
+/**
+ * Represents the context of a client-side asynchronous HTTP request execution.
+ *
+ * <p>Used to invoke the next interceptor in the interceptor chain, or - if the
+ * calling interceptor is last - execute the request itself.
+ *
+ * <p>An execution may be invoked several times, e.g. for retrying or hedging
+ * a request, each invocation passing the request through the remaining chain.
+ *
+ * @since 4.3
+ * @see AsyncClientHttpRequestInterceptor
+ */
+public interface AsyncClientHttpRequestExecution {
+
+	/**
+	 * Resume the request execution by invoking the next interceptor in the chain
+	 * or executing the request to the remote service.
+	 * @param request the request, containing method, URI, and headers
+	 * @param body the body of the request to execute
+	 * @return a future for the response
+	 * @throws IOException in case of I/O errors
+	 */
+	ListenableFuture<ClientHttpResponse> executeAsync(HttpRequest request, byte[] body) throws IOException;
+
+}
@@ -26,6 +26,9 @@ import org.springframework.http.HttpRequest;
  * <p>Used to invoke the next interceptor in the interceptor chain, or - if the calling interceptor is last - execute
  * the request itself.
  *
+ * <p>An execution may be invoked several times, e.g. for retrying or hedging a request,
+ * each invocation passing the request through the remaining chain.
+ *
  * @author Arjen Poutsma
  * @see ClientHttpRequestInterceptor
  * @since 3.1
@@ -0,0 +1,396 @@
+/*
+ * Copyright 2002-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Pool of persistent HTTP/1.1 connections, keyed by scheme, host and port.
+ * Used by {@link PooledClientHttpRequestFactory}.
+ *
+ * <p>A connection is leased to one request at a time and returned to the pool
+ * once the response has been fully consumed; requests are never pipelined.
+ * If the maximum number of connections for a host is in use, further requests
+ * wait for a connection to be released.
+ *
+ * @since 4.3
+ */
+final class HttpConnectionPool {
+
+	private static final Log logger = LogFactory.getLog(HttpConnectionPool.class);
+
+	/** SSLParameters.setEndpointIdentificationAlgorithm on Java 7+, or null on Java 6 */
+	private static final Method setEndpointIdentificationAlgorithmMethod = ClassUtils.getMethodIfAvailable(
+			SSLParameters.class, "setEndpointIdentificationAlgorithm", String.class);
+
+	private static volatile boolean endpointIdentificationWarned;
+
+
+	private final Map<String, HostPool> hostPools = new HashMap<String, HostPool>();
+
+	private volatile int maxConnectionsPerHost = 10;
+
+	private volatile int connectTimeout = -1;
+
+	private volatile int readTimeout = -1;
+
+	private volatile int connectionRequestTimeout = -1;
+
+	private volatile long keepAliveTimeout = 30000;
+
+	private volatile SSLSocketFactory sslSocketFactory;
+
+	private boolean closed;
+
+
+	public void setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+		this.maxConnectionsPerHost = maxConnectionsPerHost;
+	}
+
+	public void setConnectTimeout(int connectTimeout) {
+		this.connectTimeout = connectTimeout;
+	}
+
+	public void setReadTimeout(int readTimeout) {
+		this.readTimeout = readTimeout;
+	}
+
+	public void setConnectionRequestTimeout(int connectionRequestTimeout) {
+		this.connectionRequestTimeout = connectionRequestTimeout;
+	}
+
+	public void setKeepAliveTimeout(long keepAliveTimeout) {
+		this.keepAliveTimeout = keepAliveTimeout;
+	}
+
+	public void setSslSocketFactory(SSLSocketFactory sslSocketFactory) {
+		this.sslSocketFactory = sslSocketFactory;
+	}
+
+
+	/**
+	 * Lease a connection to the host of the given URI, reusing an idle one
+	 * if available, or opening a new one if the limit permits.
+	 * @throws IOException if no connection could be obtained
+	 */
+	public Connection lease(URI uri) throws IOException {
+		String scheme = uri.getScheme();
+		boolean secure = "https".equalsIgnoreCase(scheme);
+		if (!secure && !"http".equalsIgnoreCase(scheme)) {
+			throw new IOException("Unsupported URI scheme: " + uri);
+		}
+		if (uri.getHost() == null) {
+			throw new IOException("No host in URI: " + uri);
+		}
+		int port = (uri.getPort() != -1 ? uri.getPort() : (secure ? 443 : 80));
+		String routeKey = scheme.toLowerCase() + "://" + uri.getHost().toLowerCase() + ":" + port;
+
+		HostPool hostPool;
+		synchronized (this.hostPools) {
+			if (this.closed) {
+				throw new IOException("Connection pool has been closed");
+			}
+			hostPool = this.hostPools.get(routeKey);
+			if (hostPool == null) {
+				hostPool = new HostPool();
+				this.hostPools.put(routeKey, hostPool);
+			}
+		}
+
+		Connection connection = hostPool.acquire(routeKey);
+		if (connection != null) {
+			return connection;
+		}
+		try {
+			return openConnection(routeKey, uri.getHost(), port, secure);
+		}
+		catch (IOException ex) {
+			hostPool.cancelLease();
+			throw ex;
+		}
+		catch (RuntimeException ex) {
+			hostPool.cancelLease();
+			throw ex;
+		}
+	}
+
+	private Connection openConnection(String routeKey, String host, int port, boolean secure) throws IOException {
+		Socket socket = new Socket();
+		try {
+			socket.setTcpNoDelay(true);
+			socket.connect(new InetSocketAddress(host, port), Math.max(this.connectTimeout, 0));
+			if (secure) {
+				SSLSocketFactory factory = this.sslSocketFactory;
+				if (factory == null) {
+					factory = (SSLSocketFactory) SSLSocketFactory.getDefault();
+				}
+				SSLSocket sslSocket = (SSLSocket) factory.createSocket(socket, host, port, true);
+				enableEndpointIdentification(sslSocket);
+				socket = sslSocket;
+			}
+			socket.setSoTimeout(Math.max(this.readTimeout, 0));
+		}
+		catch (IOException ex) {
+			closeQuietly(socket);
+			throw ex;
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("Opened connection to " + routeKey);
+		}
+		return new Connection(routeKey, socket);
+	}
+
+	/**
+	 * Let the SSL handshake verify the host name against the server certificate,
+	 * which requires Java 7 or higher.
+	 */
+	private void enableEndpointIdentification(SSLSocket sslSocket) {
+		if (setEndpointIdentificationAlgorithmMethod == null) {
+			if (!endpointIdentificationWarned) {
+				endpointIdentificationWarned = true;
+				logger.warn("HTTPS host name verification requires Java 7 or higher - " +
+						"consider specifying an SSLSocketFactory that performs it");
+			}
+			return;
+		}
+		SSLParameters sslParameters = sslSocket.getSSLParameters();
+		ReflectionUtils.invokeMethod(setEndpointIdentificationAlgorithmMethod, sslParameters, "HTTPS");
+		sslSocket.setSSLParameters(sslParameters);
+	}
+
+	/**
+	 * Return a leased connection to the pool.
+	 * @param connection the connection
+	 * @param reusable whether the connection may serve another request;
+	 * if {@code false}, it will be closed
+	 */
+	public void release(Connection connection, boolean reusable) {
+		HostPool hostPool;
+		synchronized (this.hostPools) {
+			hostPool = this.hostPools.get(connection.routeKey);
+			if (this.closed) {
+				reusable = false;
+			}
+		}
+		if (!reusable) {
+			connection.close();
+		}
+		if (hostPool != null) {
+			hostPool.release(reusable ? connection : null);
+		}
+	}
+
+	/**
+	 * Close all idle connections and refuse further leases. Connections that
+	 * are currently leased will be closed once released.
+	 */
+	public void close() {
+		List<HostPool> pools;
+		synchronized (this.hostPools) {
+			this.closed = true;
+			pools = new ArrayList<HostPool>(this.hostPools.values());
+		}
+		for (HostPool pool : pools) {
+			pool.closeIdle();
+		}
+	}
+
+	private static void closeQuietly(Socket socket) {
+		try {
+			socket.close();
+		}
+		catch (IOException ex) {
+			// ignore
+		}
+	}
+
+
+	/**
+	 * The connections to a single host.
+	 */
+	private class HostPool {
+
+		private final LinkedList<Connection> idle = new LinkedList<Connection>();
+
+		private int leased;
+
+		/**
+		 * Return an idle connection, or {@code null} if the caller may open a new
+		 * one (which is then counted as leased), waiting if the limit is reached.
+		 */
+		public Connection acquire(String routeKey) throws IOException {
+			Connection connection = acquireLease(routeKey);
+			// Check for a stale connection outside of the lock, since it blocks briefly
+			if (connection != null && connection.isStale()) {
+				connection.close();
+				// Keep the lease for a new connection
+				return null;
+			}
+			return connection;
+		}
+
+		private synchronized Connection acquireLease(String routeKey) throws IOException {
+			long timeout = connectionRequestTimeout;
+			long deadline = (timeout > 0 ? System.currentTimeMillis() + timeout : 0);
+			while (true) {
+				Connection connection;
+				while ((connection = this.idle.pollLast()) != null) {
+					if (System.currentTimeMillis() - connection.lastUsed < keepAliveTimeout) {
+						this.leased++;
+						return connection;
+					}
+					connection.close();
+				}
+				if (this.leased < maxConnectionsPerHost) {
+					this.leased++;
+					return null;
+				}
+				if (timeout == 0) {
+					throw new IOException("No connection to " + routeKey + " available");
+				}
+				long wait = (deadline > 0 ? deadline - System.currentTimeMillis() : 0);
+				if (deadline > 0 && wait <= 0) {
+					throw new IOException("Timeout waiting for connection to " + routeKey +
+							" (max " + maxConnectionsPerHost + " connections in use)");
+				}
+				try {
+					wait(wait);
+				}
+				catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					throw new IOException("Interrupted while waiting for connection to " + routeKey);
+				}
+			}
+		}
+
+		public synchronized void cancelLease() {
+			this.leased--;
+			notify();
+		}
+
+		public synchronized void release(Connection connection) {
+			this.leased--;
+			if (connection != null) {
+				connection.lastUsed = System.currentTimeMillis();
+				this.idle.addLast(connection);
+			}
+			notify();
+		}
+
+		public synchronized void closeIdle() {
+			for (Iterator<Connection> it = this.idle.iterator(); it.hasNext();) {
+				it.next().close();
+				it.remove();
+			}
+			notifyAll();
+		}
+	}
+
+
+	/**
+	 * A single persistent connection.
+	 */
+	static final class Connection {
+
+		private final String routeKey;
+
+		private final Socket socket;
+
+		private final InputStream inputStream;
+
+		private final OutputStream outputStream;
+
+		private long lastUsed;
+
+		Connection(String routeKey, Socket socket) throws IOException {
+			this.routeKey = routeKey;
+			this.socket = socket;
+			this.inputStream = new BufferedInputStream(socket.getInputStream(), 8192);
+			this.outputStream = new BufferedOutputStream(socket.getOutputStream(), 8192);
+		}
+
+		public InputStream getInputStream() {
+			return this.inputStream;
+		}
+
+		public OutputStream getOutputStream() {
+			return this.outputStream;
+		}
+
+		/**
+		 * Check whether the server has closed this idle connection,
+		 * or sent unexpected data on it.
+		 */
+		boolean isStale() {
+			if (this.socket.isClosed() || this.socket.isInputShutdown()) {
+				return true;
+			}
+			try {
+				int soTimeout = this.socket.getSoTimeout();
+				this.socket.setSoTimeout(1);
+				try {
+					// End of stream as well as unsolicited data rule out reuse
+					this.inputStream.read();
+					return true;
+				}
+				catch (SocketTimeoutException ex) {
+					return false;
+				}
+				finally {
+					this.socket.setSoTimeout(soTimeout);
+				}
+			}
+			catch (IOException ex) {
+				return true;
+			}
+		}
+
+		void close() {
+			closeQuietly(this.socket);
+		}
+
+		@Override
+		public String toString() {
+			return "Connection to " + this.routeKey + " [" + this.socket.getLocalSocketAddress() + "]";
+		}
+	}
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2002-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.List;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.util.StreamUtils;
+import org.springframework.util.concurrent.ListenableFuture;
+
+/**
+ * {@link AsyncClientHttpRequest} that passes the request through the registered
+ * {@link AsyncClientHttpRequestInterceptor}s before executing it.
+ *
+ * @since 4.3
+ * @see InterceptingAsyncClientHttpRequestFactory
+ */
+class InterceptingAsyncClientHttpRequest extends AbstractBufferingAsyncClientHttpRequest {
+
+	private final AsyncClientHttpRequestFactory requestFactory;
+
+	private final List<AsyncClientHttpRequestInterceptor> interceptors;
+
+	private final URI uri;
+
+	private final HttpMethod method;
+
+
+	public InterceptingAsyncClientHttpRequest(AsyncClientHttpRequestFactory requestFactory,
+			List<AsyncClientHttpRequestInterceptor> interceptors, URI uri, HttpMethod method) {
+
+		this.requestFactory = requestFactory;
+		this.interceptors = interceptors;
+		this.uri = uri;
+		this.method = method;
+	}
+
+
+	@Override
+	public HttpMethod getMethod() {
+		return this.method;
+	}
+
+	@Override
+	public URI getURI() {
+		return this.uri;
+	}
+
+	@Override
+	protected ListenableFuture<ClientHttpResponse> executeInternal(HttpHeaders headers, byte[] body)
+			throws IOException {
+
+		return new AsyncRequestExecution(0).executeAsync(this, body);
+	}
+
+
+	/**
+	 * Execution of the interceptor chain from a given position on. Each
+	 * interceptor receives its own successor, so that an execution can be
+	 * invoked repeatedly and concurrently.
+	 */
+	private class AsyncRequestExecution implements AsyncClientHttpRequestExecution {
+
+		private final int index;
+
+		public AsyncRequestExecution(int index) {
+			this.index = index;
+		}
+
+		@Override
+		public ListenableFuture<ClientHttpResponse> executeAsync(HttpRequest request, byte[] body)
+				throws IOException {
+
+			if (this.index < interceptors.size()) {
+				AsyncClientHttpRequestInterceptor interceptor = interceptors.get(this.index);
+				return interceptor.intercept(request, body, new AsyncRequestExecution(this.index + 1));
+			}
+			else {
+				AsyncClientHttpRequest delegate = requestFactory.createAsyncRequest(request.getURI(), request.getMethod());
+				delegate.getHeaders().putAll(request.getHeaders());
+				if (body.length > 0) {
+					StreamUtils.copy(body, delegate.getBody());
+				}
+				return delegate.executeAsync();
+			}
+		}
+	}
+
+}
@@ -18,7 +18,6 @@ package org.springframework.http.client;
 
 import java.io.IOException;
 import java.net.URI;
-import java.util.Iterator;
 import java.util.List;
 
 import org.springframework.http.HttpHeaders;
@@ -64,24 +63,29 @@ class InterceptingClientHttpRequest extends AbstractBufferingClientHttpRequest {
 
 	@Override
 	protected final ClientHttpResponse executeInternal(HttpHeaders headers, byte[] bufferedOutput) throws IOException {
-		RequestExecution requestExecution = new RequestExecution();
+		RequestExecution requestExecution = new RequestExecution(0);
 
 		return requestExecution.execute(this, bufferedOutput);
 	}
 
+	/**
+	 * Execution of the interceptor chain from a given position on. Each
+	 * interceptor receives its own successor, so that an execution can be
+	 * invoked repeatedly and concurrently, e.g. for retries or hedged requests.
+	 */
 	private class RequestExecution implements ClientHttpRequestExecution {
 
-		private final Iterator<ClientHttpRequestInterceptor> iterator;
+		private final int index;
 
-		private RequestExecution() {
-			this.iterator = interceptors.iterator();
+		private RequestExecution(int index) {
+			this.index = index;
 		}
 
 		@Override
 		public ClientHttpResponse execute(HttpRequest request, byte[] body) throws IOException {
-			if (iterator.hasNext()) {
-				ClientHttpRequestInterceptor nextInterceptor = iterator.next();
-				return nextInterceptor.intercept(request, body, this);
+			if (this.index < interceptors.size()) {
+				ClientHttpRequestInterceptor nextInterceptor = interceptors.get(this.index);
+				return nextInterceptor.intercept(request, body, new RequestExecution(this.index + 1));
 			}
 			else {
 				ClientHttpRequest delegate = requestFactory.createRequest(request.getURI(), request.getMethod());
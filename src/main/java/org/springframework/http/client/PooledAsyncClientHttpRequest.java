@@ -0,0 +1,91 @@
+/*
+ * Copyright 2002-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.concurrent.Callable;
+
+import org.springframework.core.task.AsyncListenableTaskExecutor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.StreamingHttpOutputMessage;
+import org.springframework.util.concurrent.ListenableFuture;
+
+/**
+ * {@link AsyncClientHttpRequest} implementation that executes a buffered
+ * {@link PooledClientHttpRequest} on a task executor.
+ * Created via the {@link PooledClientHttpRequestFactory}.
+ *
+ * @since 4.3
+ * @see PooledClientHttpRequestFactory#createAsyncRequest(URI, HttpMethod)
+ */
+final class PooledAsyncClientHttpRequest extends AbstractBufferingAsyncClientHttpRequest {
+
+	private final HttpConnectionPool connectionPool;
+
+	private final URI uri;
+
+	private final HttpMethod method;
+
+	private final AsyncListenableTaskExecutor taskExecutor;
+
+
+	PooledAsyncClientHttpRequest(HttpConnectionPool connectionPool, URI uri, HttpMethod method,
+			AsyncListenableTaskExecutor taskExecutor) {
+
+		this.connectionPool = connectionPool;
+		this.uri = uri;
+		this.method = method;
+		this.taskExecutor = taskExecutor;
+	}
+
+
+	@Override
+	public HttpMethod getMethod() {
+		return this.method;
+	}
+
+	@Override
+	public URI getURI() {
+		return this.uri;
+	}
+
+	@Override
+	protected ListenableFuture<ClientHttpResponse> executeInternal(
+			final HttpHeaders headers, final byte[] bufferedOutput) throws IOException {
+
+		return this.taskExecutor.submitListenable(new Callable<ClientHttpResponse>() {
+			@Override
+			public ClientHttpResponse call() throws Exception {
+				PooledClientHttpRequest request = new PooledClientHttpRequest(connectionPool, uri, method, 0);
+				request.getHeaders().putAll(headers);
+				if (bufferedOutput.length > 0) {
+					request.setBody(new StreamingHttpOutputMessage.Body() {
+						@Override
+						public void writeTo(OutputStream outputStream) throws IOException {
+							outputStream.write(bufferedOutput);
+						}
+					});
+				}
+				return request.execute();
+			}
+		});
+	}
+
+}
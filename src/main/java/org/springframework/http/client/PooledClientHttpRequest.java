@@ -0,0 +1,258 @@
+/*
+ * Copyright 2002-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.StreamingHttpOutputMessage;
+import org.springframework.util.StreamUtils;
+import org.springframework.util.StringUtils;
+
+/**
+ * {@link ClientHttpRequest} implementation that writes HTTP/1.1 requests
+ * directly to a connection leased from an {@link HttpConnectionPool}.
+ * Created via the {@link PooledClientHttpRequestFactory}.
+ *
+ * <p>The connection is only leased on {@link #execute()}: a body set through
+ * {@link #setBody} is streamed to the connection at that point, whereas content
+ * written to {@link #getBody()} is buffered until then. A request abandoned
+ * before execution, e.g. due to a failure to write its body, therefore
+ * does not hold on to a connection.
+ *
+ * @since 4.3
+ * @see PooledClientHttpRequestFactory#createRequest(URI, HttpMethod)
+ */
+final class PooledClientHttpRequest extends AbstractClientHttpRequest implements StreamingHttpOutputMessage {
+
+	private static final Charset HEADER_CHARSET = Charset.forName("ISO-8859-1");
+
+	private static final byte[] CRLF = {'\r', '\n'};
+
+
+	private final HttpConnectionPool connectionPool;
+
+	private final URI uri;
+
+	private final HttpMethod method;
+
+	private final int chunkSize;
+
+	private HttpConnectionPool.Connection connection;
+
+	private Body body;
+
+	private ByteArrayOutputStream bufferedBody;
+
+
+	PooledClientHttpRequest(HttpConnectionPool connectionPool, URI uri, HttpMethod method, int chunkSize) {
+		this.connectionPool = connectionPool;
+		this.uri = uri;
+		this.method = method;
+		this.chunkSize = chunkSize;
+	}
+
+
+	@Override
+	public HttpMethod getMethod() {
+		return this.method;
+	}
+
+	@Override
+	public URI getURI() {
+		return this.uri;
+	}
+
+	@Override
+	public void setBody(Body body) {
+		assertNotExecuted();
+		this.body = body;
+	}
+
+	@Override
+	protected OutputStream getBodyInternal(HttpHeaders headers) throws IOException {
+		if (this.bufferedBody == null) {
+			this.bufferedBody = new ByteArrayOutputStream(1024);
+		}
+		return this.bufferedBody;
+	}
+
+	@Override
+	protected ClientHttpResponse executeInternal(HttpHeaders headers) throws IOException {
+		if (this.bufferedBody != null) {
+			if (headers.getContentLength() < 0) {
+				headers.setContentLength(this.bufferedBody.size());
+			}
+		}
+		else if (this.body == null && headers.getContentLength() < 0 && (HttpMethod.POST == this.method ||
+				HttpMethod.PUT == this.method || HttpMethod.PATCH == this.method)) {
+			headers.setContentLength(0);
+		}
+		boolean chunked = (this.body != null && headers.getContentLength() < 0);
+
+		this.connection = this.connectionPool.lease(this.uri);
+		try {
+			writeRequestHead(headers, chunked);
+			OutputStream out = this.connection.getOutputStream();
+			if (this.bufferedBody != null) {
+				this.bufferedBody.writeTo(out);
+			}
+			else if (this.body != null) {
+				if (chunked) {
+					ChunkedOutputStream chunkedOut = new ChunkedOutputStream(out, this.chunkSize);
+					this.body.writeTo(StreamUtils.nonClosing(chunkedOut));
+					chunkedOut.finish();
+				}
+				else {
+					this.body.writeTo(StreamUtils.nonClosing(out));
+				}
+			}
+			out.flush();
+			return new PooledClientHttpResponse(this.connectionPool, this.connection, this.method);
+		}
+		catch (IOException ex) {
+			releaseConnection();
+			throw ex;
+		}
+		catch (RuntimeException ex) {
+			releaseConnection();
+			throw ex;
+		}
+	}
+
+	private void writeRequestHead(HttpHeaders headers, boolean chunked) throws IOException {
+		StringBuilder head = new StringBuilder(256);
+		head.append(this.method.name()).append(' ');
+		String path = this.uri.getRawPath();
+		head.append(StringUtils.hasLength(path) ? path : "/");
+		if (this.uri.getRawQuery() != null) {
+			head.append('?').append(this.uri.getRawQuery());
+		}
+		head.append(" HTTP/1.1\r\n");
+		if (!headers.containsKey("Host")) {
+			head.append("Host: ").append(this.uri.getHost());
+			if (this.uri.getPort() != -1) {
+				head.append(':').append(this.uri.getPort());
+			}
+			head.append("\r\n");
+		}
+		for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+			String name = entry.getKey();
+			checkHeaderText(name, name);
+			for (String value : entry.getValue()) {
+				checkHeaderText(name, value);
+				head.append(name).append(": ").append(value).append("\r\n");
+			}
+		}
+		if (chunked) {
+			head.append("Transfer-Encoding: chunked\r\n");
+		}
+		head.append("\r\n");
+		this.connection.getOutputStream().write(head.toString().getBytes(HEADER_CHARSET));
+	}
+
+	/**
+	 * Reject line breaks in header names and values, which would allow
+	 * additional headers or requests to be injected.
+	 */
+	private static void checkHeaderText(String name, String text) throws IOException {
+		if (text != null && (text.indexOf('\r') != -1 || text.indexOf('\n') != -1)) {
+			throw new IOException("Invalid line break in HTTP header '" + name.trim() + "'");
+		}
+	}
+
+	private void releaseConnection() {
+		if (this.connection != null) {
+			this.connectionPool.release(this.connection, false);
+			this.connection = null;
+		}
+	}
+
+
+	/**
+	 * OutputStream that writes its content in chunked transfer encoding,
+	 * buffering up to the given chunk size.
+	 */
+	private static class ChunkedOutputStream extends FilterOutputStream {
+
+		private final byte[] buffer;
+
+		private int count;
+
+		public ChunkedOutputStream(OutputStream out, int chunkSize) {
+			super(out);
+			this.buffer = new byte[chunkSize > 0 ? chunkSize : 4096];
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			if (this.count == this.buffer.length) {
+				flushChunk();
+			}
+			this.buffer[this.count++] = (byte) b;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			while (len > 0) {
+				if (this.count == this.buffer.length) {
+					flushChunk();
+				}
+				int n = Math.min(len, this.buffer.length - this.count);
+				System.arraycopy(b, off, this.buffer, this.count, n);
+				this.count += n;
+				off += n;
+				len -= n;
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			flushChunk();
+			this.out.flush();
+		}
+
+		private void flushChunk() throws IOException {
+			if (this.count > 0) {
+				this.out.write(Integer.toHexString(this.count).getBytes(HEADER_CHARSET));
+				this.out.write(CRLF);
+				this.out.write(this.buffer, 0, this.count);
+				this.out.write(CRLF);
+				this.count = 0;
+			}
+		}
+
+		/**
+		 * Write any buffered content followed by the last chunk.
+		 */
+		public void finish() throws IOException {
+			flushChunk();
+			this.out.write('0');
+			this.out.write(CRLF);
+			this.out.write(CRLF);
+		}
+	}
+
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2002-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client;
+
+import java.io.IOException;
+import java.net.URI;
+import javax.net.ssl.SSLSocketFactory;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.task.AsyncListenableTaskExecutor;
+import org.springframework.http.HttpMethod;
+import org.springframework.util.Assert;
+
+/**
+ * {@link ClientHttpRequestFactory} implementation that speaks HTTP/1.1 over
+ * plain JDK sockets, keeping connections alive in a per-host pool, without
+ * depending on any HTTP client library.
+ *
+ * <p>Request bodies set through
+ * {@link org.springframework.http.StreamingHttpOutputMessage#setBody}, as done
+ * by the {@code HttpMessageConverter}s of {@code RestTemplate}, are streamed
+ * straight to the connection: with a fixed length if the {@code Content-Length}
+ * header has been set, in chunked transfer encoding otherwise. Content written
+ * to {@code getBody()} is buffered until the request gets executed.
+ * Response bodies are read straight from the connection, which is returned
+ * to the pool once the response is closed, provided that its body has been
+ * read completely or only a few kilobytes of it remain to be skipped.
+ *
+ * <p>Requests are never pipelined: a connection serves one request at a time,
+ * and requests beyond {@link #setMaxConnectionsPerHost "maxConnectionsPerHost"}
+ * wait for a connection to be released. Proxies are not supported; use
+ * {@link SimpleClientHttpRequestFactory} or one of the HTTP client library
+ * based factories for those.
+ *
+ * <p>This factory should be {@linkplain #destroy() destroyed} when no longer
+ * needed, in order to close the pooled connections.
+ *
+ * @since 4.3
+ * @see SimpleClientHttpRequestFactory
+ */
+public class PooledClientHttpRequestFactory
+		implements ClientHttpRequestFactory, AsyncClientHttpRequestFactory, DisposableBean {
+
+	private static final int DEFAULT_CHUNK_SIZE = 4096;
+
+
+	private final HttpConnectionPool connectionPool = new HttpConnectionPool();
+
+	private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+	private AsyncListenableTaskExecutor taskExecutor;
+
+
+	/**
+	 * Set the maximum number of connections to keep open per host
+	 * (scheme, host name and port). Default is 10.
+	 */
+	public void setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+		Assert.isTrue(maxConnectionsPerHost > 0, "'maxConnectionsPerHost' must be positive");
+		this.connectionPool.setMaxConnectionsPerHost(maxConnectionsPerHost);
+	}
+
+	/**
+	 * Set the connect timeout (in milliseconds).
+	 * A timeout value of 0 or less specifies an infinite timeout.
+	 * <p>Default is an infinite timeout.
+	 */
+	public void setConnectTimeout(int connectTimeout) {
+		this.connectionPool.setConnectTimeout(connectTimeout);
+	}
+
+	/**
+	 * Set the socket read timeout (in milliseconds).
+	 * A timeout value of 0 or less specifies an infinite timeout.
+	 * <p>Default is an infinite timeout.
+	 */
+	public void setReadTimeout(int readTimeout) {
+		this.connectionPool.setReadTimeout(readTimeout);
+	}
+
+	/**
+	 * Set the time to wait for a connection (in milliseconds) when all
+	 * connections to a host are in use. A value of 0 fails immediately,
+	 * a negative value waits indefinitely.
+	 * <p>Default is to wait indefinitely.
+	 */
+	public void setConnectionRequestTimeout(int connectionRequestTimeout) {
+		this.connectionPool.setConnectionRequestTimeout(connectionRequestTimeout);
+	}
+
+	/**
+	 * Set the time (in milliseconds) for which an idle connection is kept
+	 * for reuse. Default is 30 seconds.
+	 */
+	public void setKeepAliveTimeout(long keepAliveTimeout) {
+		this.connectionPool.setKeepAliveTimeout(keepAliveTimeout);
+	}
+
+	/**
+	 * Set the factory for sockets to "https" URIs.
+	 * <p>Default is the JVM's default {@link SSLSocketFactory}.
+	 */
+	public void setSslSocketFactory(SSLSocketFactory sslSocketFactory) {
+		this.connectionPool.setSslSocketFactory(sslSocketFactory);
+	}
+
+	/**
+	 * Set the number of bytes to buffer for each chunk when the
+	 * {@link org.springframework.http.HttpHeaders#getContentLength() Content-Length}
+	 * of a request body is not known in advance. Default is 4096.
+	 */
+	public void setChunkSize(int chunkSize) {
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Set the task executor for this request factory. Setting this property is required
+	 * for {@linkplain #createAsyncRequest(URI, HttpMethod) creating asynchronous requests}.
+	 * @param taskExecutor the task executor
+	 */
+	public void setTaskExecutor(AsyncListenableTaskExecutor taskExecutor) {
+		this.taskExecutor = taskExecutor;
+	}
+
+
+	@Override
+	public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+		return new PooledClientHttpRequest(this.connectionPool, uri, httpMethod, this.chunkSize);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>Setting the {@link #setTaskExecutor(AsyncListenableTaskExecutor) taskExecutor} property
+	 * is required before calling this method.
+	 */
+	@Override
+	public AsyncClientHttpRequest createAsyncRequest(URI uri, HttpMethod httpMethod) throws IOException {
+		Assert.state(this.taskExecutor != null, "Asynchronous execution requires an AsyncTaskExecutor to be set");
+		return new PooledAsyncClientHttpRequest(this.connectionPool, uri, httpMethod, this.taskExecutor);
+	}
+
+
+	/**
+	 * Close all pooled connections. Connections in use by ongoing requests
+	 * are closed once their responses have been closed.
+	 */
+	@Override
+	public void destroy() {
+		this.connectionPool.close();
+	}
+
+}
@@ -0,0 +1,358 @@
+/*
+ * Copyright 2002-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+
+/**
+ * {@link ClientHttpResponse} implementation that reads an HTTP/1.1 response
+ * from a pooled connection. The connection is returned to the pool on
+ * {@link #close()} if the response body has been consumed completely and
+ * the connection may be kept alive; otherwise it is closed.
+ *
+ * @since 4.3
+ */
+final class PooledClientHttpResponse extends AbstractClientHttpResponse {
+
+	private static final int MAX_LINE_LENGTH = 8192;
+
+	private static final int MAX_HEADER_COUNT = 256;
+
+	/** Maximum number of unread body bytes to skip on close in order to reuse the connection */
+	private static final int MAX_DRAIN_SIZE = 8192;
+
+
+	private final HttpConnectionPool connectionPool;
+
+	private HttpConnectionPool.Connection connection;
+
+	private final int statusCode;
+
+	private final String statusText;
+
+	private final HttpHeaders headers = new HttpHeaders();
+
+	private final BodyInputStream body;
+
+	private final boolean keepAlive;
+
+
+	PooledClientHttpResponse(HttpConnectionPool connectionPool, HttpConnectionPool.Connection connection,
+			HttpMethod method) throws IOException {
+
+		this.connectionPool = connectionPool;
+		this.connection = connection;
+		InputStream in = connection.getInputStream();
+
+		String statusLine;
+		int status;
+		do {
+			// Skip interim responses such as "100 Continue"
+			this.headers.clear();
+			statusLine = readLine(in);
+			if (!statusLine.startsWith("HTTP/") || statusLine.length() < 12) {
+				throw new IOException("Invalid HTTP status line: " + statusLine);
+			}
+			try {
+				status = Integer.parseInt(statusLine.substring(9, 12));
+			}
+			catch (NumberFormatException ex) {
+				throw new IOException("Invalid HTTP status line: " + statusLine);
+			}
+			readHeaders(in);
+		}
+		while (status >= 100 && status < 200 && status != 101);
+
+		this.statusCode = status;
+		this.statusText = (statusLine.length() > 13 ? statusLine.substring(13) : "");
+
+		String connectionHeader = this.headers.getFirst("Connection");
+		boolean http10 = statusLine.startsWith("HTTP/1.0");
+		boolean keepAlive = (http10 ? "keep-alive".equalsIgnoreCase(connectionHeader) :
+				!"close".equalsIgnoreCase(connectionHeader));
+
+		String transferEncoding = this.headers.getFirst("Transfer-Encoding");
+		if (HttpMethod.HEAD == method || status == 204 || status == 304) {
+			this.body = new FixedLengthInputStream(in, 0);
+		}
+		else if (transferEncoding != null && transferEncoding.toLowerCase().contains("chunked")) {
+			this.body = new ChunkedInputStream(in);
+		}
+		else if (this.headers.getContentLength() >= 0) {
+			this.body = new FixedLengthInputStream(in, this.headers.getContentLength());
+		}
+		else {
+			this.body = new FixedLengthInputStream(in, -1);
+			keepAlive = false;
+		}
+		this.keepAlive = keepAlive;
+	}
+
+	private void readHeaders(InputStream in) throws IOException {
+		String line;
+		int count = 0;
+		while ((line = readLine(in)).length() > 0) {
+			if (++count > MAX_HEADER_COUNT) {
+				throw new IOException("Too many HTTP response headers");
+			}
+			int colon = line.indexOf(':');
+			if (colon > 0) {
+				this.headers.add(line.substring(0, colon).trim(), line.substring(colon + 1).trim());
+			}
+		}
+	}
+
+	static String readLine(InputStream in) throws IOException {
+		ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+		int b;
+		while ((b = in.read()) != '\n') {
+			if (b == -1) {
+				throw new EOFException("Unexpected end of HTTP response");
+			}
+			if (b != '\r') {
+				if (line.size() >= MAX_LINE_LENGTH) {
+					throw new IOException("HTTP response line too long");
+				}
+				line.write(b);
+			}
+		}
+		return line.toString("ISO-8859-1");
+	}
+
+
+	@Override
+	public int getRawStatusCode() {
+		return this.statusCode;
+	}
+
+	@Override
+	public String getStatusText() {
+		return this.statusText;
+	}
+
+	@Override
+	public HttpHeaders getHeaders() {
+		return this.headers;
+	}
+
+	@Override
+	public InputStream getBody() {
+		return this.body;
+	}
+
+	@Override
+	public void close() {
+		if (this.connection != null) {
+			this.connectionPool.release(this.connection, this.keepAlive && this.body.drain(MAX_DRAIN_SIZE));
+			this.connection = null;
+		}
+	}
+
+
+	/**
+	 * Base class for response body streams that know when they have been consumed.
+	 */
+	private static abstract class BodyInputStream extends InputStream {
+
+		protected final InputStream in;
+
+		protected boolean finished;
+
+		protected boolean failed;
+
+		protected BodyInputStream(InputStream in) {
+			this.in = in;
+		}
+
+		public boolean isFinished() {
+			return (this.finished && !this.failed);
+		}
+
+		/**
+		 * Skip the rest of the body, unless more than the given number of bytes
+		 * are known to remain or turn out to remain.
+		 * @return whether the body has been read completely
+		 */
+		public boolean drain(long maxBytes) {
+			if (this.failed) {
+				return false;
+			}
+			if (this.finished || !isDrainable(maxBytes)) {
+				return isFinished();
+			}
+			byte[] buffer = new byte[1024];
+			long drained = 0;
+			try {
+				int read;
+				while (drained <= maxBytes && (read = read(buffer, 0, buffer.length)) != -1) {
+					drained += read;
+				}
+			}
+			catch (IOException ex) {
+				return false;
+			}
+			return isFinished();
+		}
+
+		protected boolean isDrainable(long maxBytes) {
+			return true;
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			return (read(b, 0, 1) == -1 ? -1 : b[0] & 0xff);
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (this.finished) {
+				return -1;
+			}
+			try {
+				return readInternal(b, off, len);
+			}
+			catch (IOException ex) {
+				this.failed = true;
+				throw ex;
+			}
+		}
+
+		protected abstract int readInternal(byte[] b, int off, int len) throws IOException;
+
+		@Override
+		public void close() {
+			// Closing the response releases the connection
+		}
+	}
+
+
+	/**
+	 * Body with a known content length, or delimited by connection close if -1.
+	 */
+	private static class FixedLengthInputStream extends BodyInputStream {
+
+		private long remaining;
+
+		public FixedLengthInputStream(InputStream in, long contentLength) {
+			super(in);
+			this.remaining = contentLength;
+			this.finished = (contentLength == 0);
+		}
+
+		@Override
+		protected boolean isDrainable(long maxBytes) {
+			return (this.remaining >= 0 && this.remaining <= maxBytes);
+		}
+
+		@Override
+		public int available() throws IOException {
+			return (this.remaining < 0 ? this.in.available() : (int) Math.min(this.in.available(), this.remaining));
+		}
+
+		@Override
+		protected int readInternal(byte[] b, int off, int len) throws IOException {
+			if (this.remaining >= 0) {
+				len = (int) Math.min(len, this.remaining);
+			}
+			int read = this.in.read(b, off, len);
+			if (read == -1) {
+				this.finished = true;
+				if (this.remaining > 0) {
+					throw new EOFException("Unexpected end of HTTP response body: " + this.remaining + " bytes missing");
+				}
+				return -1;
+			}
+			if (this.remaining > 0) {
+				this.remaining -= read;
+				this.finished = (this.remaining == 0);
+			}
+			return read;
+		}
+	}
+
+
+	/**
+	 * Body in chunked transfer encoding.
+	 */
+	private static class ChunkedInputStream extends BodyInputStream {
+
+		private long chunkRemaining;
+
+		public ChunkedInputStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		protected int readInternal(byte[] b, int off, int len) throws IOException {
+			if (this.chunkRemaining == 0) {
+				if (!nextChunk()) {
+					return -1;
+				}
+			}
+			int read = this.in.read(b, off, (int) Math.min(len, this.chunkRemaining));
+			if (read == -1) {
+				throw new EOFException("Unexpected end of chunked HTTP response body");
+			}
+			this.chunkRemaining -= read;
+			if (this.chunkRemaining == 0) {
+				// CRLF after chunk data
+				readLine(this.in);
+			}
+			return read;
+		}
+
+		private boolean nextChunk() throws IOException {
+			String line = readLine(this.in);
+			int extension = line.indexOf(';');
+			if (extension != -1) {
+				line = line.substring(0, extension);
+			}
+			String size = line.trim();
+			long chunkSize;
+			try {
+				chunkSize = Long.parseLong(size, 16);
+			}
+			catch (NumberFormatException ex) {
+				throw new IOException("Invalid chunk size: " + line);
+			}
+			// Long.parseLong accepts a sign, which a chunk size must not have
+			if (chunkSize < 0 || size.charAt(0) == '-' || size.charAt(0) == '+') {
+				throw new IOException("Invalid chunk size: " + line);
+			}
+			this.chunkRemaining = chunkSize;
+			if (this.chunkRemaining == 0) {
+				// Skip trailers
+				String trailer;
+				do {
+					trailer = readLine(this.in);
+				}
+				while (trailer.length() > 0);
+				this.finished = true;
+				return false;
+			}
+			return true;
+		}
+	}
+
+}
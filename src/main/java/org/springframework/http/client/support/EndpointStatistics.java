@@ -0,0 +1,225 @@
+/*
+ * Copyright 2002-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client.support;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Request statistics for a single endpoint of a
+ * {@link LoadBalancingClientHttpRequestInterceptor}: outstanding requests,
+ * an exponentially weighted moving average (EWMA) of the response latency,
+ * a latency histogram, and the recent failure rate.
+ *
+ * <p>Latency is measured until the response status and headers have been
+ * received. The histogram uses buckets of doubling size, starting at one
+ * microsecond, so percentiles are accurate within a factor of two.
+ *
+ * @since 4.3
+ * @see LoadBalancingClientHttpRequestInterceptor#getStatistics()
+ */
+public final class EndpointStatistics {
+
+	private static final int BUCKET_COUNT = 40;
+
+	private static final double EWMA_WEIGHT = 0.3;
+
+	/** Factor by which an endpoint's score grows at a failure rate of 100% */
+	private static final double FAILURE_PENALTY = 10;
+
+
+	private final URI endpoint;
+
+	private final AtomicInteger outstandingRequests = new AtomicInteger();
+
+	private final AtomicLong failureCount = new AtomicLong();
+
+	private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+	private final AtomicLongArray histogram = new AtomicLongArray(BUCKET_COUNT);
+
+	private final AtomicLong sampleCount = new AtomicLong();
+
+	private volatile double averageLatency;
+
+	private volatile double failureRate;
+
+	private volatile long ejectedUntil;
+
+
+	EndpointStatistics(URI endpoint) {
+		this.endpoint = endpoint;
+		this.ejectedUntil = System.nanoTime();
+	}
+
+
+	/**
+	 * Return the base URI of the endpoint.
+	 */
+	public URI getEndpoint() {
+		return this.endpoint;
+	}
+
+	/**
+	 * Return the number of requests currently awaiting a response.
+	 */
+	public int getOutstandingRequests() {
+		return this.outstandingRequests.get();
+	}
+
+	/**
+	 * Return the number of successful requests recorded in the histogram.
+	 */
+	public long getSampleCount() {
+		return this.sampleCount.get();
+	}
+
+	/**
+	 * Return the number of failed requests, i.e. requests that ended
+	 * with an I/O error or a 5xx response status.
+	 */
+	public long getFailureCount() {
+		return this.failureCount.get();
+	}
+
+	/**
+	 * Return the exponentially weighted moving average of the failure rate,
+	 * between 0 and 1.
+	 */
+	public double getRecentFailureRate() {
+		return this.failureRate;
+	}
+
+	/**
+	 * Return whether the endpoint is currently excluded from selection
+	 * after consecutive failures.
+	 * @see LoadBalancingClientHttpRequestInterceptor#setEjectionThreshold
+	 */
+	public boolean isEjected() {
+		return (System.nanoTime() - this.ejectedUntil < 0);
+	}
+
+	/**
+	 * Return the exponentially weighted moving average of the latency, in milliseconds,
+	 * or 0 if no request has completed yet.
+	 */
+	public double getAverageLatency() {
+		return this.averageLatency / 1000000;
+	}
+
+	/**
+	 * Return the given percentile of the recorded latencies, in milliseconds.
+	 * @param percentile the percentile, between 0 and 100
+	 * @return the upper bound of the histogram bucket containing the
+	 * percentile, or -1 if no request has completed yet
+	 */
+	public double getLatencyPercentile(double percentile) {
+		long nanos = getLatencyPercentileNanos(percentile);
+		return (nanos >= 0 ? nanos / 1000000d : -1);
+	}
+
+	long getLatencyPercentileNanos(double percentile) {
+		long total = 0;
+		long[] counts = new long[BUCKET_COUNT];
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			counts[i] = this.histogram.get(i);
+			total += counts[i];
+		}
+		if (total == 0) {
+			return -1;
+		}
+		long rank = (long) Math.ceil(Math.min(Math.max(percentile, 0), 100) / 100 * total);
+		long cumulative = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			cumulative += counts[i];
+			if (cumulative >= rank && counts[i] > 0) {
+				return TimeUnit.MICROSECONDS.toNanos(1L << i);
+			}
+		}
+		return TimeUnit.MICROSECONDS.toNanos(1L << (BUCKET_COUNT - 1));
+	}
+
+	/**
+	 * Score for load balancing by outstanding requests, scaled up by the
+	 * recent failure rate.
+	 */
+	double getOutstandingRequestsScore() {
+		return (this.outstandingRequests.get() + 1) * getFailurePenalty();
+	}
+
+	/**
+	 * Score for load balancing by latency: the latency average scaled by
+	 * the number of outstanding requests, so that a fast but busy endpoint
+	 * loses against an idle one, and by the recent failure rate, so that
+	 * an endpoint that fails fast does not win either.
+	 */
+	double getLoadScore() {
+		return this.averageLatency * (this.outstandingRequests.get() + 1) * getFailurePenalty();
+	}
+
+	private double getFailurePenalty() {
+		return 1 + FAILURE_PENALTY * this.failureRate;
+	}
+
+	int getConsecutiveFailures() {
+		return this.consecutiveFailures.get();
+	}
+
+	void eject(long durationNanos) {
+		this.ejectedUntil = System.nanoTime() + durationNanos;
+	}
+
+	void requestStarted() {
+		this.outstandingRequests.incrementAndGet();
+	}
+
+	void requestCancelled() {
+		this.outstandingRequests.decrementAndGet();
+	}
+
+	void requestCompleted(long latencyNanos, boolean success) {
+		this.outstandingRequests.decrementAndGet();
+		synchronized (this) {
+			this.failureRate += EWMA_WEIGHT * ((success ? 0 : 1) - this.failureRate);
+		}
+		if (!success) {
+			this.failureCount.incrementAndGet();
+			this.consecutiveFailures.incrementAndGet();
+			return;
+		}
+		this.consecutiveFailures.set(0);
+		long micros = Math.max(TimeUnit.NANOSECONDS.toMicros(latencyNanos), 1);
+		int bucket = Math.min(64 - Long.numberOfLeadingZeros(micros - 1), BUCKET_COUNT - 1);
+		this.histogram.incrementAndGet(bucket);
+		this.sampleCount.incrementAndGet();
+		synchronized (this) {
+			double average = this.averageLatency;
+			this.averageLatency = (average == 0 ? latencyNanos : average + EWMA_WEIGHT * (latencyNanos - average));
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "EndpointStatistics [" + this.endpoint + "]: outstanding=" + getOutstandingRequests() +
+				", samples=" + getSampleCount() + ", failures=" + getFailureCount() +
+				", averageLatency=" + getAverageLatency() + "ms" + (isEjected() ? ", ejected" : "");
+	}
+
+}
@@ -0,0 +1,607 @@
+/*
+ * Copyright 2002-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client.support;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.AsyncClientHttpRequestExecution;
+import org.springframework.http.client.AsyncClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.Assert;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.ListenableFutureCallback;
+import org.springframework.util.concurrent.ListenableFutureTask;
+import org.springframework.util.concurrent.SettableListenableFuture;
+
+/**
+ * Client-side load balancing interceptor for
+ * {@link org.springframework.web.client.RestTemplate} and
+ * {@link org.springframework.web.client.AsyncRestTemplate}.
+ *
+ * <p>Each request is sent to one of a fixed list of base URIs: the scheme and
+ * authority of the request URI are replaced with those of the selected endpoint,
+ * and the endpoint's path, if any, is prepended to the request path. The endpoint
+ * is selected according to the configured {@link SelectionStrategy}, based on the
+ * {@link EndpointStatistics} recorded for each endpoint.
+ *
+ * <p>Optionally, idempotent requests can be <i>hedged</i>: if no response has been
+ * received after the {@link #setHedgingPercentile configured percentile} of the
+ * selected endpoint's latency, the same request is sent to the next best endpoint,
+ * and whichever response arrives first is returned. Hedging requires a
+ * {@link #setHedgingExecutor hedging executor}. With {@code AsyncRestTemplate},
+ * the losing request is cancelled through {@link ListenableFuture#cancel}; with
+ * {@code RestTemplate}, both requests run on the hedging executor and the losing
+ * response is closed once it arrives.
+ *
+ * <p>An endpoint that fails {@link #setEjectionThreshold a number of requests in a
+ * row}, with an I/O error or a 5xx response status, is excluded from selection
+ * for a while, as long as any other endpoint is available. Beyond that, the
+ * scores of both selection strategies are penalized by the recent failure rate
+ * of an endpoint, so that an endpoint that fails fast does not attract requests
+ * for its short response times.
+ *
+ * <p>Note that the interceptor selects among endpoints but does not retry:
+ * a failed request propagates its exception, unless it was hedged and the
+ * other request succeeds.
+ *
+ * @since 4.3
+ * @see org.springframework.web.client.RestTemplate#setInterceptors
+ * @see org.springframework.web.client.AsyncRestTemplate#setInterceptors
+ */
+public class LoadBalancingClientHttpRequestInterceptor
+		implements ClientHttpRequestInterceptor, AsyncClientHttpRequestInterceptor {
+
+	/**
+	 * Default minimum number of latency samples before a request is hedged.
+	 */
+	public static final int DEFAULT_HEDGING_MIN_SAMPLES = 100;
+
+	/**
+	 * Default number of consecutive failures after which an endpoint is ejected.
+	 */
+	public static final int DEFAULT_EJECTION_THRESHOLD = 3;
+
+	/**
+	 * Default time in milliseconds for which an endpoint is ejected at first.
+	 */
+	public static final long DEFAULT_EJECTION_TIME = 1000;
+
+	/** Maximum number of doublings of the ejection time for further failures */
+	private static final int MAX_EJECTION_BACKOFF = 5;
+
+	private static final Set<HttpMethod> IDEMPOTENT_METHODS = EnumSet.of(HttpMethod.GET, HttpMethod.HEAD,
+			HttpMethod.OPTIONS, HttpMethod.PUT, HttpMethod.DELETE, HttpMethod.TRACE);
+
+
+	private final EndpointStatistics[] endpoints;
+
+	private final AtomicInteger selectionCounter = new AtomicInteger();
+
+	private SelectionStrategy selectionStrategy = SelectionStrategy.LEAST_OUTSTANDING_REQUESTS;
+
+	private double hedgingPercentile = 0;
+
+	private int hedgingMinSamples = DEFAULT_HEDGING_MIN_SAMPLES;
+
+	private ScheduledExecutorService hedgingExecutor;
+
+	private int ejectionThreshold = DEFAULT_EJECTION_THRESHOLD;
+
+	private long ejectionTime = DEFAULT_EJECTION_TIME;
+
+
+	/**
+	 * Create a new interceptor for the given endpoints.
+	 * @param endpoints the base URIs to distribute requests across, each with a scheme
+	 * and authority, e.g. {@code "http://host1:8080"} or {@code "https://host2/api"}
+	 */
+	public LoadBalancingClientHttpRequestInterceptor(List<URI> endpoints) {
+		Assert.notEmpty(endpoints, "At least one endpoint is required");
+		this.endpoints = new EndpointStatistics[endpoints.size()];
+		for (int i = 0; i < this.endpoints.length; i++) {
+			URI endpoint = endpoints.get(i);
+			Assert.isTrue(endpoint.getScheme() != null && endpoint.getRawAuthority() != null,
+					"Endpoint URI must have a scheme and authority: " + endpoint);
+			this.endpoints[i] = new EndpointStatistics(endpoint);
+		}
+	}
+
+
+	/**
+	 * Set the strategy for selecting the endpoint for a request.
+	 * <p>Default is {@link SelectionStrategy#LEAST_OUTSTANDING_REQUESTS}.
+	 */
+	public void setSelectionStrategy(SelectionStrategy selectionStrategy) {
+		Assert.notNull(selectionStrategy, "SelectionStrategy must not be null");
+		this.selectionStrategy = selectionStrategy;
+	}
+
+	/**
+	 * Return the strategy for selecting the endpoint for a request.
+	 */
+	public SelectionStrategy getSelectionStrategy() {
+		return this.selectionStrategy;
+	}
+
+	/**
+	 * Set the latency percentile of the selected endpoint after which an
+	 * idempotent request is hedged, e.g. {@code 95}.
+	 * <p>Default is 0, i.e. no hedging. Requires a {@link #setHedgingExecutor
+	 * hedging executor} to be set.
+	 */
+	public void setHedgingPercentile(double hedgingPercentile) {
+		Assert.isTrue(hedgingPercentile >= 0 && hedgingPercentile < 100, "Percentile must be in [0, 100)");
+		this.hedgingPercentile = hedgingPercentile;
+	}
+
+	/**
+	 * Return the latency percentile after which an idempotent request is hedged.
+	 */
+	public double getHedgingPercentile() {
+		return this.hedgingPercentile;
+	}
+
+	/**
+	 * Set the minimum number of latency samples that the selected endpoint must
+	 * have recorded before its requests are hedged, so that the hedging delay
+	 * is not based on a handful of measurements.
+	 * <p>Default is {@value #DEFAULT_HEDGING_MIN_SAMPLES}.
+	 */
+	public void setHedgingMinSamples(int hedgingMinSamples) {
+		this.hedgingMinSamples = hedgingMinSamples;
+	}
+
+	/**
+	 * Return the minimum number of latency samples before requests are hedged.
+	 */
+	public int getHedgingMinSamples() {
+		return this.hedgingMinSamples;
+	}
+
+	/**
+	 * Set the executor for scheduling hedged requests. For {@code RestTemplate},
+	 * the executor also runs the original request of a hedged exchange, so it
+	 * needs at least two threads per concurrent hedged exchange.
+	 * <p>The executor is not managed by this interceptor, i.e. it is not shut down.
+	 */
+	public void setHedgingExecutor(ScheduledExecutorService hedgingExecutor) {
+		this.hedgingExecutor = hedgingExecutor;
+	}
+
+	/**
+	 * Return the executor for scheduling hedged requests, if any.
+	 */
+	public ScheduledExecutorService getHedgingExecutor() {
+		return this.hedgingExecutor;
+	}
+
+	/**
+	 * Set the number of consecutive failures after which an endpoint is excluded
+	 * from selection for the {@link #setEjectionTime ejection time}. Once that
+	 * time has passed, the endpoint receives requests again; if the next one
+	 * fails as well, it is ejected again for twice as long, up to 32 times the
+	 * ejection time. A successful request resets the count.
+	 * <p>Default is {@value #DEFAULT_EJECTION_THRESHOLD}. Set this to 0 to never
+	 * eject endpoints. If all endpoints are ejected, they are selected as usual.
+	 */
+	public void setEjectionThreshold(int ejectionThreshold) {
+		this.ejectionThreshold = ejectionThreshold;
+	}
+
+	/**
+	 * Return the number of consecutive failures after which an endpoint is ejected.
+	 */
+	public int getEjectionThreshold() {
+		return this.ejectionThreshold;
+	}
+
+	/**
+	 * Set the time in milliseconds for which an endpoint is ejected once it
+	 * reaches the {@link #setEjectionThreshold ejection threshold}.
+	 * <p>Default is {@value #DEFAULT_EJECTION_TIME}.
+	 */
+	public void setEjectionTime(long ejectionTime) {
+		Assert.isTrue(ejectionTime >= 0, "Ejection time must not be negative");
+		this.ejectionTime = ejectionTime;
+	}
+
+	/**
+	 * Return the time in milliseconds for which an endpoint is ejected at first.
+	 */
+	public long getEjectionTime() {
+		return this.ejectionTime;
+	}
+
+	/**
+	 * Return the statistics recorded per endpoint, in the order of the endpoints
+	 * given at construction time.
+	 */
+	public Map<URI, EndpointStatistics> getStatistics() {
+		Map<URI, EndpointStatistics> statistics = new LinkedHashMap<URI, EndpointStatistics>(this.endpoints.length);
+		for (EndpointStatistics endpoint : this.endpoints) {
+			statistics.put(endpoint.getEndpoint(), endpoint);
+		}
+		return Collections.unmodifiableMap(statistics);
+	}
+
+
+	@Override
+	public ClientHttpResponse intercept(final HttpRequest request, final byte[] body,
+			final ClientHttpRequestExecution execution) throws IOException {
+
+		EndpointStatistics primary = selectEndpoint(null);
+		long delay = getHedgingDelay(request, primary);
+		if (delay < 0) {
+			return execute(primary, request, body, execution);
+		}
+
+		AttemptLauncher launcher = new AttemptLauncher() {
+			@Override
+			public ListenableFuture<ClientHttpResponse> launch(final EndpointStatistics endpoint) {
+				ListenableFutureTask<ClientHttpResponse> task =
+						new ListenableFutureTask<ClientHttpResponse>(new Callable<ClientHttpResponse>() {
+							@Override
+							public ClientHttpResponse call() throws IOException {
+								return execute(endpoint, request, body, execution);
+							}
+						});
+				hedgingExecutor.execute(task);
+				return task;
+			}
+		};
+		// Running requests cannot be cancelled: closing the losing response instead
+		ListenableFuture<ClientHttpResponse> future = hedge(primary, delay, launcher, false);
+		try {
+			return future.get();
+		}
+		catch (InterruptedException ex) {
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for response from " + request.getURI());
+		}
+		catch (ExecutionException ex) {
+			Throwable cause = ex.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IOException("Request to " + request.getURI() + " failed", cause);
+		}
+	}
+
+	@Override
+	public ListenableFuture<ClientHttpResponse> intercept(final HttpRequest request, final byte[] body,
+			final AsyncClientHttpRequestExecution execution) throws IOException {
+
+		EndpointStatistics primary = selectEndpoint(null);
+		long delay = getHedgingDelay(request, primary);
+		if (delay < 0) {
+			return executeAsync(primary, request, body, execution);
+		}
+
+		AttemptLauncher launcher = new AttemptLauncher() {
+			@Override
+			public ListenableFuture<ClientHttpResponse> launch(EndpointStatistics endpoint) throws IOException {
+				return executeAsync(endpoint, request, body, execution);
+			}
+		};
+		return hedge(primary, delay, launcher, true);
+	}
+
+	/**
+	 * Return the delay in nanoseconds after which the given request is to be
+	 * hedged, or -1 if it is not to be hedged.
+	 */
+	private long getHedgingDelay(HttpRequest request, EndpointStatistics primary) {
+		if (this.hedgingPercentile <= 0 || this.hedgingExecutor == null || this.endpoints.length < 2 ||
+				!IDEMPOTENT_METHODS.contains(request.getMethod()) ||
+				primary.getSampleCount() < this.hedgingMinSamples) {
+			return -1;
+		}
+		return primary.getLatencyPercentileNanos(this.hedgingPercentile);
+	}
+
+	/**
+	 * Select the best endpoint according to the configured strategy, starting the
+	 * scan at a rotating position so that ties are distributed evenly.
+	 * Ejected endpoints are only considered if no other endpoint is available.
+	 * @param exclude an endpoint not to select, if there is any other
+	 */
+	private EndpointStatistics selectEndpoint(EndpointStatistics exclude) {
+		int start = (this.selectionCounter.getAndIncrement() & Integer.MAX_VALUE) % this.endpoints.length;
+		EndpointStatistics selected = selectEndpoint(start, exclude, false);
+		if (selected == null) {
+			selected = selectEndpoint(start, exclude, true);
+		}
+		return (selected != null ? selected : exclude);
+	}
+
+	private EndpointStatistics selectEndpoint(int start, EndpointStatistics exclude, boolean includeEjected) {
+		int count = this.endpoints.length;
+		EndpointStatistics selected = null;
+		double selectedScore = 0;
+		for (int i = 0; i < count; i++) {
+			EndpointStatistics candidate = this.endpoints[(start + i) % count];
+			if (candidate == exclude || (!includeEjected && candidate.isEjected())) {
+				continue;
+			}
+			double score = (this.selectionStrategy == SelectionStrategy.EWMA_LATENCY ?
+					candidate.getLoadScore() : candidate.getOutstandingRequestsScore());
+			if (selected == null || score < selectedScore) {
+				selected = candidate;
+				selectedScore = score;
+			}
+		}
+		return selected;
+	}
+
+	/**
+	 * Record the outcome of a request, ejecting the endpoint if it has
+	 * reached the ejection threshold.
+	 */
+	private void requestCompleted(EndpointStatistics endpoint, long startTime, boolean success) {
+		endpoint.requestCompleted(System.nanoTime() - startTime, success);
+		if (!success && this.ejectionThreshold > 0) {
+			int backoff = endpoint.getConsecutiveFailures() - this.ejectionThreshold;
+			if (backoff >= 0) {
+				long duration = this.ejectionTime << Math.min(backoff, MAX_EJECTION_BACKOFF);
+				endpoint.eject(TimeUnit.MILLISECONDS.toNanos(duration));
+			}
+		}
+	}
+
+	private ClientHttpResponse execute(EndpointStatistics endpoint, HttpRequest request, byte[] body,
+			ClientHttpRequestExecution execution) throws IOException {
+
+		long startTime = System.nanoTime();
+		endpoint.requestStarted();
+		boolean success = false;
+		try {
+			ClientHttpResponse response = execution.execute(new EndpointRequest(request, endpoint.getEndpoint()), body);
+			success = !isServerError(response);
+			return response;
+		}
+		finally {
+			requestCompleted(endpoint, startTime, success);
+		}
+	}
+
+	private ListenableFuture<ClientHttpResponse> executeAsync(final EndpointStatistics endpoint, HttpRequest request,
+			byte[] body, AsyncClientHttpRequestExecution execution) throws IOException {
+
+		final long startTime = System.nanoTime();
+		endpoint.requestStarted();
+		ListenableFuture<ClientHttpResponse> future;
+		try {
+			future = execution.executeAsync(new EndpointRequest(request, endpoint.getEndpoint()), body);
+		}
+		catch (IOException ex) {
+			requestCompleted(endpoint, startTime, false);
+			throw ex;
+		}
+		catch (RuntimeException ex) {
+			requestCompleted(endpoint, startTime, false);
+			throw ex;
+		}
+		future.addCallback(new ListenableFutureCallback<ClientHttpResponse>() {
+			@Override
+			public void onSuccess(ClientHttpResponse result) {
+				requestCompleted(endpoint, startTime, !isServerError(result));
+			}
+			@Override
+			public void onFailure(Throwable ex) {
+				if (ex instanceof CancellationException) {
+					endpoint.requestCancelled();
+				}
+				else {
+					requestCompleted(endpoint, startTime, false);
+				}
+			}
+		});
+		return future;
+	}
+
+	private static boolean isServerError(ClientHttpResponse response) {
+		try {
+			return (response.getRawStatusCode() >= 500);
+		}
+		catch (IOException ex) {
+			return false;
+		}
+	}
+
+	/**
+	 * Launch a request to the primary endpoint, and a second one to the next best
+	 * endpoint if the first has not completed after the given delay.
+	 * @param primary the endpoint for the first request
+	 * @param delay the hedging delay in nanoseconds
+	 * @param launcher the callback for sending a request to an endpoint
+	 * @param cancelLoser whether to cancel the losing request, rather than
+	 * closing its response once it arrives
+	 * @return the future for the first successful response, or for the last
+	 * failure if both requests fail
+	 */
+	private ListenableFuture<ClientHttpResponse> hedge(final EndpointStatistics primary, long delay,
+			final AttemptLauncher launcher, final boolean cancelLoser) throws IOException {
+
+		final SettableListenableFuture<ClientHttpResponse> result = new SettableListenableFuture<ClientHttpResponse>();
+		final List<ListenableFuture<ClientHttpResponse>> attempts =
+				new CopyOnWriteArrayList<ListenableFuture<ClientHttpResponse>>();
+		final AtomicInteger pending = new AtomicInteger(1);
+
+		final ListenableFutureCallback<ClientHttpResponse> callback = new ListenableFutureCallback<ClientHttpResponse>() {
+			@Override
+			public void onSuccess(ClientHttpResponse response) {
+				if (!result.set(response)) {
+					response.close();
+				}
+				else if (cancelLoser) {
+					cancelAttempts(attempts);
+				}
+			}
+			@Override
+			public void onFailure(Throwable ex) {
+				if (pending.decrementAndGet() == 0) {
+					result.setException(ex);
+				}
+			}
+		};
+
+		ListenableFuture<ClientHttpResponse> first = launcher.launch(primary);
+		attempts.add(first);
+		first.addCallback(callback);
+
+		this.hedgingExecutor.schedule(new Runnable() {
+			@Override
+			public void run() {
+				if (result.isDone()) {
+					return;
+				}
+				pending.incrementAndGet();
+				try {
+					ListenableFuture<ClientHttpResponse> second = launcher.launch(selectEndpoint(primary));
+					attempts.add(second);
+					if (result.isDone() && cancelLoser) {
+						second.cancel(true);
+					}
+					second.addCallback(callback);
+				}
+				catch (Throwable ex) {
+					callback.onFailure(ex);
+				}
+			}
+		}, delay, TimeUnit.NANOSECONDS);
+
+		result.addCallback(new ListenableFutureCallback<ClientHttpResponse>() {
+			@Override
+			public void onSuccess(ClientHttpResponse response) {
+			}
+			@Override
+			public void onFailure(Throwable ex) {
+				if (result.isCancelled() && cancelLoser) {
+					cancelAttempts(attempts);
+				}
+			}
+		});
+		return result;
+	}
+
+	private static void cancelAttempts(List<ListenableFuture<ClientHttpResponse>> attempts) {
+		for (ListenableFuture<ClientHttpResponse> attempt : attempts) {
+			if (!attempt.isDone()) {
+				attempt.cancel(true);
+			}
+		}
+	}
+
+
+	/**
+	 * Strategy for selecting the endpoint for a request.
+	 */
+	public enum SelectionStrategy {
+
+		/**
+		 * Select the endpoint with the fewest requests awaiting a response,
+		 * weighted by its recent failure rate.
+		 */
+		LEAST_OUTSTANDING_REQUESTS,
+
+		/**
+		 * Select the endpoint with the lowest exponentially weighted moving
+		 * average of its latency, weighted by its outstanding requests and
+		 * its recent failure rate. Endpoints without any recorded latency
+		 * are selected first.
+		 */
+		EWMA_LATENCY
+	}
+
+
+	private interface AttemptLauncher {
+
+		ListenableFuture<ClientHttpResponse> launch(EndpointStatistics endpoint) throws IOException;
+	}
+
+
+	/**
+	 * Request wrapper that redirects the request URI to a given endpoint.
+	 */
+	private static class EndpointRequest extends HttpRequestWrapper {
+
+		private final URI uri;
+
+		public EndpointRequest(HttpRequest request, URI endpoint) {
+			super(request);
+			this.uri = rewrite(request.getURI(), endpoint);
+		}
+
+		@Override
+		public URI getURI() {
+			return this.uri;
+		}
+
+		private static URI rewrite(URI uri, URI endpoint) {
+			StringBuilder builder = new StringBuilder(endpoint.getScheme()).append("://");
+			builder.append(endpoint.getRawAuthority());
+			String basePath = endpoint.getRawPath();
+			if (basePath != null && basePath.endsWith("/")) {
+				basePath = basePath.substring(0, basePath.length() - 1);
+			}
+			if (basePath != null) {
+				builder.append(basePath);
+			}
+			String path = uri.getRawPath();
+			if (path != null && !path.isEmpty()) {
+				if (!path.startsWith("/")) {
+					builder.append('/');
+				}
+				builder.append(path);
+			}
+			if (uri.getRawQuery() != null) {
+				builder.append('?').append(uri.getRawQuery());
+			}
+			if (uri.getRawFragment() != null) {
+				builder.append('#').append(uri.getRawFragment());
+			}
+			return URI.create(builder.toString());
+		}
+	}
+
+}
@@ -16,9 +16,15 @@
 
 package org.springframework.http.converter.json;
 
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.lang.reflect.Type;
 import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 import com.fasterxml.jackson.core.JsonEncoding;
@@ -28,6 +34,7 @@ import com.fasterxml.jackson.core.PrettyPrinter;
 import com.fasterxml.jackson.core.util.DefaultPrettyPrinter;
 import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.ser.FilterProvider;
@@ -42,6 +49,7 @@ import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.http.converter.HttpMessageNotWritableException;
 import org.springframework.util.Assert;
 import org.springframework.util.ClassUtils;
+import org.springframework.util.ObjectUtils;
 import org.springframework.util.TypeUtils;
 
 /**
@@ -62,6 +70,20 @@ public abstract class AbstractJackson2HttpMessageConverter extends AbstractGener
 
 	public static final Charset DEFAULT_CHARSET = Charset.forName("UTF-8");
 
+	/**
+	 * The default number of bytes after which an {@link Iterator} body is
+	 * flushed to the response while being written: {@value}.
+	 * @since 4.3
+	 */
+	public static final int DEFAULT_STREAMING_CHUNK_SIZE = 8192;
+
+	/**
+	 * The default maximum number of cached {@code ObjectReader} and
+	 * {@code ObjectWriter} instances, respectively: {@value}.
+	 * @since 4.3
+	 */
+	public static final int DEFAULT_CACHE_LIMIT = 256;
+
 	// Check for Jackson 2.3's overloaded canDeserialize/canSerialize variants with cause reference
 	private static final boolean jackson23Available = ClassUtils.hasMethod(ObjectMapper.class,
 			"canDeserialize", JavaType.class, AtomicReference.class);
@@ -75,6 +97,18 @@ public abstract class AbstractJackson2HttpMessageConverter extends AbstractGener
 
 	private Boolean prettyPrint;
 
+	private int streamingChunkSize = DEFAULT_STREAMING_CHUNK_SIZE;
+
+	private int cacheLimit = DEFAULT_CACHE_LIMIT;
+
+	private final Map<CacheKey, ObjectReader> readerCache = new ConcurrentHashMap<CacheKey, ObjectReader>(64);
+
+	private final Map<CacheKey, ObjectWriter> writerCache = new ConcurrentHashMap<CacheKey, ObjectWriter>(64);
+
+	private final AtomicLong cacheHits = new AtomicLong();
+
+	private final AtomicLong cacheMisses = new AtomicLong();
+
 
 	protected AbstractJackson2HttpMessageConverter(ObjectMapper objectMapper) {
 		this.objectMapper = objectMapper;
@@ -106,6 +140,7 @@ public abstract class AbstractJackson2HttpMessageConverter extends AbstractGener
 		Assert.notNull(objectMapper, "ObjectMapper must not be null");
 		this.objectMapper = objectMapper;
 		configurePrettyPrint();
+		clearCache();
 	}
 
 	/**
@@ -127,6 +162,97 @@ public abstract class AbstractJackson2HttpMessageConverter extends AbstractGener
 	public void setPrettyPrint(boolean prettyPrint) {
 		this.prettyPrint = prettyPrint;
 		configurePrettyPrint();
+		clearCache();
+	}
+
+	/**
+	 * Set the number of bytes after which the output is flushed to the response
+	 * while writing an {@link Iterator} element by element, so that neither this
+	 * converter nor the container needs to hold more than one chunk of a large
+	 * result at a time. Set this to 0 to only flush once the entire body has been
+	 * written. Default is {@link #DEFAULT_STREAMING_CHUNK_SIZE}.
+	 * <p>Element output itself goes through the generator's own buffer which
+	 * Jackson recycles across requests, so no per-request buffers are allocated.
+	 * @since 4.3
+	 */
+	public void setStreamingChunkSize(int streamingChunkSize) {
+		Assert.isTrue(streamingChunkSize >= 0, "'streamingChunkSize' must not be negative");
+		this.streamingChunkSize = streamingChunkSize;
+	}
+
+	/**
+	 * Return the number of bytes after which a streamed body is flushed.
+	 * @since 4.3
+	 */
+	public int getStreamingChunkSize() {
+		return this.streamingChunkSize;
+	}
+
+	/**
+	 * Specify the maximum number of {@code ObjectReader} and {@code ObjectWriter}
+	 * instances to cache per combination of target type and JSON view, so that
+	 * they do not have to be derived from the {@code ObjectMapper} for every
+	 * message. Further combinations are served without caching once the
+	 * limit has been reached. Set this to 0 to turn off caching.
+	 * <p>Writers for values with {@link MappingJacksonValue#setFilters filters}
+	 * are never cached, since filter providers are typically created per message.
+	 * Default is {@link #DEFAULT_CACHE_LIMIT}.
+	 * <p>Cached readers and writers capture the configuration of the
+	 * {@code ObjectMapper} at the time of their creation: the cache is reset
+	 * through {@link #setObjectMapper} and {@link #setPrettyPrint}, but
+	 * changes applied to the {@code ObjectMapper} itself once messages
+	 * have been converted require an explicit {@link #clearCache()}.
+	 * @since 4.3
+	 */
+	public void setCacheLimit(int cacheLimit) {
+		this.cacheLimit = cacheLimit;
+		clearCache();
+	}
+
+	/**
+	 * Return the maximum number of cached {@code ObjectReader} and
+	 * {@code ObjectWriter} instances, respectively.
+	 * @since 4.3
+	 */
+	public int getCacheLimit() {
+		return this.cacheLimit;
+	}
+
+	/**
+	 * Remove all cached {@code ObjectReader} and {@code ObjectWriter} instances.
+	 * @since 4.3
+	 */
+	public void clearCache() {
+		this.readerCache.clear();
+		this.writerCache.clear();
+	}
+
+	/**
+	 * Return the number of currently cached {@code ObjectReader} and
+	 * {@code ObjectWriter} instances.
+	 * @since 4.3
+	 */
+	public int getCacheSize() {
+		return this.readerCache.size() + this.writerCache.size();
+	}
+
+	/**
+	 * Return the number of reads and writes served with a cached
+	 * {@code ObjectReader} or {@code ObjectWriter}.
+	 * @since 4.3
+	 */
+	public long getCacheHitCount() {
+		return this.cacheHits.get();
+	}
+
+	/**
+	 * Return the number of reads and writes that had to create a new
+	 * {@code ObjectReader} or {@code ObjectWriter}, whether it was
+	 * cached afterwards or not.
+	 * @since 4.3
+	 */
+	public long getCacheMissCount() {
+		return this.cacheMisses.get();
 	}
 
 	private void configurePrettyPrint() {
@@ -144,6 +270,9 @@ public abstract class AbstractJackson2HttpMessageConverter extends AbstractGener
 	@Override
 	public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
 		JavaType javaType = getJavaType(type, contextClass);
+		if (isIteratorType(javaType)) {
+			javaType = javaType.containedType(0);
+		}
 		if (!jackson23Available || !logger.isWarnEnabled()) {
 			return (this.objectMapper.canDeserialize(javaType) && canRead(mediaType));
 		}
@@ -208,17 +337,17 @@ public abstract class AbstractJackson2HttpMessageConverter extends AbstractGener
 		return readJavaType(javaType, inputMessage);
 	}
 
-	@SuppressWarnings("deprecation")
 	private Object readJavaType(JavaType javaType, HttpInputMessage inputMessage) {
 		try {
+			Class<?> deserializationView = null;
 			if (inputMessage instanceof MappingJacksonInputMessage) {
-				Class<?> deserializationView = ((MappingJacksonInputMessage) inputMessage).getDeserializationView();
-				if (deserializationView != null) {
-					return this.objectMapper.readerWithView(deserializationView).withType(javaType).
-							readValue(inputMessage.getBody());
-				}
+				deserializationView = ((MappingJacksonInputMessage) inputMessage).getDeserializationView();
 			}
-			return this.objectMapper.readValue(inputMessage.getBody(), javaType);
+			if (isIteratorType(javaType)) {
+				// Deserialize one element per next() call, directly from the request stream
+				return getObjectReader(javaType.containedType(0), deserializationView).readValues(inputMessage.getBody());
+			}
+			return getObjectReader(javaType, deserializationView).readValue(inputMessage.getBody());
 		}
 		catch (IOException ex) {
 			throw new HttpMessageNotReadableException("Could not read document: " + ex.getMessage(), ex);
@@ -226,12 +355,18 @@ public abstract class AbstractJackson2HttpMessageConverter extends AbstractGener
 	}
 
 	@Override
-	@SuppressWarnings("deprecation")
 	protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
 			throws IOException, HttpMessageNotWritableException {
 
 		JsonEncoding encoding = getJsonEncoding(outputMessage.getHeaders().getContentType());
-		JsonGenerator generator = this.objectMapper.getFactory().createGenerator(outputMessage.getBody(), encoding);
+		OutputStream body = outputMessage.getBody();
+		ByteCountingOutputStream countingBody = null;
+		if (this.streamingChunkSize > 0 && (object instanceof Iterator ||
+				(object instanceof MappingJacksonValue && ((MappingJacksonValue) object).getValue() instanceof Iterator))) {
+			countingBody = new ByteCountingOutputStream(body);
+			body = countingBody;
+		}
+		JsonGenerator generator = this.objectMapper.getFactory().createGenerator(body, encoding);
 		try {
 			writePrefix(generator, object);
 
@@ -248,20 +383,20 @@ public abstract class AbstractJackson2HttpMessageConverter extends AbstractGener
 			if (jackson26Available && type != null && value != null && TypeUtils.isAssignable(type, value.getClass())) {
 				javaType = getJavaType(type, null);
 			}
-			ObjectWriter objectWriter;
-			if (serializationView != null) {
-				objectWriter = this.objectMapper.writerWithView(serializationView);
+			boolean elements = (value instanceof Iterator);
+			if (elements && javaType != null) {
+				javaType = (isIteratorType(javaType) ? javaType.containedType(0) : null);
 			}
-			else if (filters != null) {
-				objectWriter = this.objectMapper.writer(filters);
+			if (javaType != null && !javaType.isContainerType()) {
+				javaType = null;
 			}
-			else {
-				objectWriter = this.objectMapper.writer();
+			ObjectWriter objectWriter = getObjectWriter(javaType, serializationView, filters, elements);
+			if (elements) {
+				writeElements(objectWriter, generator, (Iterator<?>) value, countingBody);
 			}
-			if (javaType != null && javaType.isContainerType()) {
-				objectWriter = objectWriter.withType(javaType);
+			else {
+				objectWriter.writeValue(generator, value);
 			}
-			objectWriter.writeValue(generator, value);
 
 			writeSuffix(generator, object);
 			generator.flush();
@@ -272,6 +407,106 @@ public abstract class AbstractJackson2HttpMessageConverter extends AbstractGener
 		}
 	}
 
+	/**
+	 * Write the elements of the given Iterator as a JSON array, one at a time,
+	 * flushing the generator whenever another chunk of output has been passed
+	 * on to the response.
+	 */
+	private void writeElements(ObjectWriter objectWriter, JsonGenerator generator, Iterator<?> elements,
+			ByteCountingOutputStream countingBody) throws IOException {
+
+		long flushedBytes = 0;
+		generator.writeStartArray();
+		while (elements.hasNext()) {
+			objectWriter.writeValue(generator, elements.next());
+			if (countingBody != null && countingBody.getCount() - flushedBytes >= this.streamingChunkSize) {
+				generator.flush();
+				flushedBytes = countingBody.getCount();
+			}
+		}
+		generator.writeEndArray();
+	}
+
+	/**
+	 * Return an {@code ObjectReader} for the given type and deserialization view,
+	 * from the cache if enabled.
+	 */
+	private ObjectReader getObjectReader(JavaType javaType, Class<?> view) {
+		if (this.cacheLimit <= 0) {
+			return createObjectReader(javaType, view);
+		}
+		CacheKey cacheKey = new CacheKey(javaType, view, false);
+		ObjectReader objectReader = this.readerCache.get(cacheKey);
+		if (objectReader != null) {
+			this.cacheHits.incrementAndGet();
+			return objectReader;
+		}
+		this.cacheMisses.incrementAndGet();
+		objectReader = createObjectReader(javaType, view);
+		if (this.readerCache.size() < this.cacheLimit) {
+			this.readerCache.put(cacheKey, objectReader);
+		}
+		return objectReader;
+	}
+
+	@SuppressWarnings("deprecation")
+	private ObjectReader createObjectReader(JavaType javaType, Class<?> view) {
+		if (view != null) {
+			return this.objectMapper.readerWithView(view).withType(javaType);
+		}
+		return this.objectMapper.reader(javaType);
+	}
+
+	/**
+	 * Return an {@code ObjectWriter} for the given root type (if any), serialization
+	 * view and filters, from the cache if enabled and no filters are given.
+	 * @param elements whether the writer is used for the elements of an Iterator
+	 */
+	private ObjectWriter getObjectWriter(JavaType javaType, Class<?> view, FilterProvider filters, boolean elements) {
+		if (view != null) {
+			// Filters are ignored in combination with a serialization view
+			filters = null;
+		}
+		if (this.cacheLimit <= 0 || filters != null) {
+			return createObjectWriter(javaType, view, filters, elements);
+		}
+		CacheKey cacheKey = new CacheKey(javaType, view, elements);
+		ObjectWriter objectWriter = this.writerCache.get(cacheKey);
+		if (objectWriter != null) {
+			this.cacheHits.incrementAndGet();
+			return objectWriter;
+		}
+		this.cacheMisses.incrementAndGet();
+		objectWriter = createObjectWriter(javaType, view, filters, elements);
+		if (this.writerCache.size() < this.cacheLimit) {
+			this.writerCache.put(cacheKey, objectWriter);
+		}
+		return objectWriter;
+	}
+
+	@SuppressWarnings("deprecation")
+	private ObjectWriter createObjectWriter(JavaType javaType, Class<?> view, FilterProvider filters,
+			boolean elements) {
+
+		ObjectWriter objectWriter;
+		if (view != null) {
+			objectWriter = this.objectMapper.writerWithView(view);
+		}
+		else if (filters != null) {
+			objectWriter = this.objectMapper.writer(filters);
+		}
+		else {
+			objectWriter = this.objectMapper.writer();
+		}
+		if (javaType != null) {
+			objectWriter = objectWriter.withType(javaType);
+		}
+		if (elements) {
+			objectWriter = objectWriter.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+		}
+		return objectWriter;
+	}
+
 	/**
 	 * Write a prefix before the main content.
 	 * @param generator the generator to use for writing content.
@@ -314,6 +549,10 @@ public abstract class AbstractJackson2HttpMessageConverter extends AbstractGener
 		return this.objectMapper.getTypeFactory().constructType(type, contextClass);
 	}
 
+	private static boolean isIteratorType(JavaType javaType) {
+		return (javaType.getRawClass() == Iterator.class && javaType.containedTypeCount() == 1);
+	}
+
 	/**
 	 * Determine the JSON encoding to use for the given content type.
 	 * @param contentType the media type as requested by the caller
@@ -347,4 +586,71 @@ public abstract class AbstractJackson2HttpMessageConverter extends AbstractGener
 		return super.getContentLength(object, contentType);
 	}
 
+
+	/**
+	 * OutputStream decorator that counts the bytes passed on to the target stream.
+	 */
+	private static class ByteCountingOutputStream extends FilterOutputStream {
+
+		private long count;
+
+		public ByteCountingOutputStream(OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			this.out.write(b);
+			this.count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			this.out.write(b, off, len);
+			this.count += len;
+		}
+
+		public long getCount() {
+			return this.count;
+		}
+	}
+
+
+	/**
+	 * Cache key for ObjectReader and ObjectWriter instances.
+	 */
+	private static final class CacheKey {
+
+		private final JavaType javaType;
+
+		private final Class<?> view;
+
+		private final boolean elements;
+
+		public CacheKey(JavaType javaType, Class<?> view, boolean elements) {
+			this.javaType = javaType;
+			this.view = view;
+			this.elements = elements;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (this == other) {
+				return true;
+			}
+			if (!(other instanceof CacheKey)) {
+				return false;
+			}
+			CacheKey otherKey = (CacheKey) other;
+			return (ObjectUtils.nullSafeEquals(this.javaType, otherKey.javaType) && this.view == otherKey.view &&
+					this.elements == otherKey.elements);
+		}
+
+		@Override
+		public int hashCode() {
+			return (ObjectUtils.nullSafeHashCode(this.javaType) * 29 + ObjectUtils.nullSafeHashCode(this.view)) * 29 +
+					(this.elements ? 1 : 0);
+		}
+	}
+
 }
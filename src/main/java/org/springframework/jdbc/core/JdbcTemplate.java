@@ -43,6 +43,7 @@ import org.springframework.dao.support.DataAccessUtils;
 import org.springframework.jdbc.SQLWarningException;
 import org.springframework.jdbc.datasource.ConnectionProxy;
 import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.datasource.DeferredUpdateQueue;
 import org.springframework.jdbc.support.JdbcAccessor;
 import org.springframework.jdbc.support.JdbcUtils;
 import org.springframework.jdbc.support.KeyHolder;
@@ -337,6 +338,7 @@ public class JdbcTemplate extends JdbcAccessor implements JdbcOperations {
 
 		Connection con = DataSourceUtils.getConnection(getDataSource());
 		try {
+			flushDeferredUpdates();
 			Connection conToUse = con;
 			if (this.nativeJdbcExtractor != null) {
 				// Extract native JDBC Connection, castable to OracleConnection or the like.
@@ -404,6 +406,7 @@ public class JdbcTemplate extends JdbcAccessor implements JdbcOperations {
 		Connection con = DataSourceUtils.getConnection(getDataSource());
 		Statement stmt = null;
 		try {
+			flushDeferredUpdates();
 			Connection conToUse = con;
 			if (this.nativeJdbcExtractor != null &&
 					this.nativeJdbcExtractor.isNativeConnectionNecessaryForNativeStatements()) {
@@ -641,6 +644,7 @@ public class JdbcTemplate extends JdbcAccessor implements JdbcOperations {
 		Connection con = DataSourceUtils.getConnection(getDataSource());
 		PreparedStatement ps = null;
 		try {
+			flushDeferredUpdates();
 			Connection conToUse = con;
 			if (this.nativeJdbcExtractor != null &&
 					this.nativeJdbcExtractor.isNativeConnectionNecessaryForNativePreparedStatements()) {
@@ -1018,6 +1022,60 @@ public class JdbcTemplate extends JdbcAccessor implements JdbcOperations {
 		return update(sql, newArgPreparedStatementSetter(args));
 	}
 
+	/**
+	 * Issue an update statement whose execution may be deferred until the next
+	 * statement, savepoint or commit of the current transaction, in order to
+	 * be sent to the database in a JDBC batch with similar updates.
+	 * <p>The update is deferred if the current transaction collects deferred
+	 * updates, i.e. runs under a DataSourceTransactionManager with
+	 * {@link org.springframework.jdbc.datasource.DataSourceTransactionManager#setDeferUpdates
+	 * "deferUpdates"} turned on; otherwise it is executed immediately.
+	 * Since the update count is not known at this point, use
+	 * {@link #update(String, PreparedStatementSetter)} for updates whose count
+	 * needs to be checked, e.g. for optimistic locking.
+	 * <p>Note that the given setter is held until the update is executed, and
+	 * that a failure of a deferred update is reported by the statement or commit
+	 * that triggers its execution.
+	 * @param sql SQL containing bind parameters
+	 * @param pss helper that sets bind parameters (may be {@code null})
+	 * @throws DataAccessException if there is any problem issuing an immediate update
+	 * @since 4.3
+	 */
+	public void deferUpdate(String sql, PreparedStatementSetter pss) throws DataAccessException {
+		DeferredUpdateQueue deferredUpdateQueue = DataSourceUtils.getDeferredUpdateQueue(getDataSource());
+		if (deferredUpdateQueue == null) {
+			update(sql, pss);
+			return;
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("Deferring SQL update [" + sql + "]");
+		}
+		if (deferredUpdateQueue.getExceptionTranslator() == null) {
+			deferredUpdateQueue.setExceptionTranslator(new DeferredUpdateQueue.ExceptionTranslator() {
+				@Override
+				public RuntimeException translate(SQLException ex) {
+					return getExceptionTranslator().translate("Deferred SQL updates", null, ex);
+				}
+			});
+		}
+		deferredUpdateQueue.add(sql, new DeferredUpdateParameters(pss));
+	}
+
+	/**
+	 * Issue an update statement whose execution may be deferred until the next
+	 * statement, savepoint or commit of the current transaction, binding the
+	 * given arguments.
+	 * @param sql SQL containing bind parameters
+	 * @param args arguments to bind to the query
+	 * (leaving it to the PreparedStatement to guess the corresponding SQL type)
+	 * @throws DataAccessException if there is any problem issuing an immediate update
+	 * @since 4.3
+	 * @see #deferUpdate(String, PreparedStatementSetter)
+	 */
+	public void deferUpdate(String sql, Object... args) throws DataAccessException {
+		deferUpdate(sql, newArgPreparedStatementSetter(args));
+	}
+
 	@Override
 	public int[] batchUpdate(String sql, final BatchPreparedStatementSetter pss) throws DataAccessException {
 		if (logger.isDebugEnabled()) {
@@ -1146,6 +1204,7 @@ public class JdbcTemplate extends JdbcAccessor implements JdbcOperations {
 		Connection con = DataSourceUtils.getConnection(getDataSource());
 		CallableStatement cs = null;
 		try {
+			flushDeferredUpdates();
 			Connection conToUse = con;
 			if (this.nativeJdbcExtractor != null) {
 				conToUse = this.nativeJdbcExtractor.getNativeConnection(con);
@@ -1417,6 +1476,19 @@ public class JdbcTemplate extends JdbcAccessor implements JdbcOperations {
 		}
 	}
 
+	/**
+	 * Execute any updates that have been deferred within the current transaction,
+	 * so that subsequent statements observe them.
+	 * @throws SQLException if thrown by JDBC API
+	 * @see org.springframework.jdbc.datasource.DataSourceTransactionManager#setDeferUpdates
+	 */
+	private void flushDeferredUpdates() throws SQLException {
+		DeferredUpdateQueue deferredUpdateQueue = DataSourceUtils.getDeferredUpdateQueue(getDataSource());
+		if (deferredUpdateQueue != null && !deferredUpdateQueue.isEmpty()) {
+			DataSourceUtils.flushDeferredUpdates(getDataSource());
+		}
+	}
+
 	/**
 	 * Prepare the given JDBC Statement (or PreparedStatement or CallableStatement),
 	 * applying statement settings such as fetch size, max rows, and query timeout.
@@ -1618,6 +1690,34 @@ public class JdbcTemplate extends JdbcAccessor implements JdbcOperations {
 	}
 
 
+	/**
+	 * Adapter exposing a PreparedStatementSetter as parameters of a deferred update.
+	 * Note that argument values are held by reference until the update is flushed.
+	 */
+	private static class DeferredUpdateParameters implements DeferredUpdateQueue.UpdateParameters {
+
+		private final PreparedStatementSetter pss;
+
+		public DeferredUpdateParameters(PreparedStatementSetter pss) {
+			this.pss = pss;
+		}
+
+		@Override
+		public void setValues(PreparedStatement ps) throws SQLException {
+			if (this.pss != null) {
+				this.pss.setValues(ps);
+			}
+		}
+
+		@Override
+		public void cleanup() {
+			if (this.pss instanceof ParameterDisposer) {
+				((ParameterDisposer) this.pss).cleanupParameters();
+			}
+		}
+	}
+
+
 	/**
 	 * Simple adapter for CallableStatementCreator, allowing to use a plain SQL statement.
 	 */
@@ -53,6 +53,8 @@ public class ConnectionHolder extends ResourceHolderSupport {
 
 	private int savepointCounter = 0;
 
+	private DeferredUpdateQueue deferredUpdateQueue;
+
 
 	/**
 	 * Create a new ConnectionHolder for the given ConnectionHandle.
@@ -173,10 +175,46 @@ public class ConnectionHolder extends ResourceHolderSupport {
 	 * @throws SQLException if thrown by the JDBC driver
 	 */
 	public Savepoint createSavepoint() throws SQLException {
+		// Deferred updates belong before the savepoint, not to the nested transaction
+		flushDeferredUpdates();
 		this.savepointCounter++;
 		return getConnection().setSavepoint(SAVEPOINT_NAME_PREFIX + this.savepointCounter);
 	}
 
+	/**
+	 * Set the queue of deferred updates for the current transaction.
+	 * @param deferredUpdateQueue the queue, or {@code null} to execute
+	 * updates immediately
+	 * @since 4.3
+	 * @see DataSourceTransactionManager#setDeferUpdates
+	 */
+	public void setDeferredUpdateQueue(DeferredUpdateQueue deferredUpdateQueue) {
+		this.deferredUpdateQueue = deferredUpdateQueue;
+	}
+
+	/**
+	 * Return the queue of deferred updates for the current transaction, if any.
+	 * @since 4.3
+	 */
+	public DeferredUpdateQueue getDeferredUpdateQueue() {
+		return this.deferredUpdateQueue;
+	}
+
+	/**
+	 * Execute all deferred updates against the current Connection,
+	 * applying the remaining transaction timeout, if any.
+	 * @return the update counts, or an empty array if there were no deferred updates
+	 * @throws SQLException if thrown by the JDBC driver
+	 * @since 4.3
+	 * @see DeferredUpdateQueue#flush
+	 */
+	public int[] flushDeferredUpdates() throws SQLException {
+		if (this.deferredUpdateQueue == null || this.deferredUpdateQueue.isEmpty()) {
+			return new int[0];
+		}
+		return this.deferredUpdateQueue.flush(getConnection(), (hasTimeout() ? getTimeToLiveInSeconds() : -1));
+	}
+
 	/**
 	 * Releases the current Connection held by this ConnectionHolder.
 	 * <p>This is necessary for ConnectionHandles that expect "Connection borrowing",
@@ -202,6 +240,10 @@ public class ConnectionHolder extends ResourceHolderSupport {
 		this.transactionActive = false;
 		this.savepointsSupported = null;
 		this.savepointCounter = 0;
+		if (this.deferredUpdateQueue != null) {
+			this.deferredUpdateQueue.clear();
+			this.deferredUpdateQueue = null;
+		}
 	}
 
 }
@@ -104,6 +104,8 @@ public class DataSourceTransactionManager extends AbstractPlatformTransactionMan
 
 	private DataSource dataSource;
 
+	private boolean deferUpdates = false;
+
 
 	/**
 	 * Create a new DataSourceTransactionManager instance.
@@ -161,6 +163,36 @@ public class DataSourceTransactionManager extends AbstractPlatformTransactionMan
 		return this.dataSource;
 	}
 
+	/**
+	 * Specify whether transactions collect deferred updates, to be sent to the
+	 * database as JDBC batches right before the next statement, savepoint or
+	 * commit. Default is "false".
+	 * <p>Only updates that the caller explicitly defers are affected, e.g. through
+	 * {@link org.springframework.jdbc.core.JdbcTemplate#deferUpdate}; regular
+	 * {@code update} calls keep executing immediately and reporting their actual
+	 * update counts. Turn this on for write-heavy transactions that issue many
+	 * small updates, e.g. row-by-row inserts, in order to save database round-trips.
+	 * Note that errors in deferred updates, e.g. constraint violations, only surface
+	 * when the queue gets flushed: on the next statement, on an explicit
+	 * {@link DataSourceUtils#flushDeferredUpdates} call, or on commit, in which
+	 * case the transaction is rolled back. Plain JDBC code operating on the
+	 * transactional Connection directly does not flush deferred updates and
+	 * therefore does not see them.
+	 * @since 4.3
+	 * @see DeferredUpdateQueue
+	 */
+	public void setDeferUpdates(boolean deferUpdates) {
+		this.deferUpdates = deferUpdates;
+	}
+
+	/**
+	 * Return whether updates within a transaction are deferred and batched.
+	 * @since 4.3
+	 */
+	public boolean isDeferUpdates() {
+		return this.deferUpdates;
+	}
+
 	@Override
 	public void afterPropertiesSet() {
 		if (getDataSource() == null) {
@@ -254,6 +286,10 @@ public class DataSourceTransactionManager extends AbstractPlatformTransactionMan
 				txObject.getConnectionHolder().setTimeoutInSeconds(timeout);
 			}
 
+			if (this.deferUpdates && !definition.isReadOnly()) {
+				txObject.getConnectionHolder().setDeferredUpdateQueue(new DeferredUpdateQueue());
+			}
+
 			// Bind the session holder to the thread.
 			if (txObject.isNewConnectionHolder()) {
 				// 将当前获取到的连接绑定到当前线程
@@ -285,6 +321,42 @@ public class DataSourceTransactionManager extends AbstractPlatformTransactionMan
 		TransactionSynchronizationManager.bindResource(this.dataSource, conHolder);
 	}
 
+	@Override
+	protected void prepareForCommit(DefaultTransactionStatus status) {
+		if (status.isNewTransaction()) {
+			flushDeferredUpdates((DataSourceTransactionObject) status.getTransaction());
+		}
+	}
+
+	/**
+	 * Execute the updates deferred within the given transaction, if any.
+	 * <p>On failure, the Connection gets rolled back right away, so that the
+	 * batches executed so far cannot be committed by a later reset of auto-commit.
+	 */
+	private void flushDeferredUpdates(DataSourceTransactionObject txObject) {
+		ConnectionHolder conHolder = txObject.getConnectionHolder();
+		DeferredUpdateQueue deferredUpdateQueue = conHolder.getDeferredUpdateQueue();
+		if (deferredUpdateQueue == null || deferredUpdateQueue.isEmpty()) {
+			return;
+		}
+		try {
+			conHolder.flushDeferredUpdates();
+		}
+		catch (SQLException ex) {
+			try {
+				conHolder.getConnection().rollback();
+			}
+			catch (SQLException ex2) {
+				logger.error("Could not roll back JDBC transaction after failure to flush deferred updates", ex2);
+			}
+			DeferredUpdateQueue.ExceptionTranslator translator = deferredUpdateQueue.getExceptionTranslator();
+			if (translator != null) {
+				throw translator.translate(ex);
+			}
+			throw new TransactionSystemException("Could not flush deferred JDBC updates", ex);
+		}
+	}
+
 	@Override
 	protected void doCommit(DefaultTransactionStatus status) {
 		DataSourceTransactionObject txObject = (DataSourceTransactionObject) status.getTransaction();
@@ -292,6 +364,8 @@ public class DataSourceTransactionManager extends AbstractPlatformTransactionMan
 		if (status.isDebug()) {
 			logger.debug("Committing JDBC transaction on Connection [" + con + "]");
 		}
+		// Updates deferred by beforeCommit callbacks
+		flushDeferredUpdates(txObject);
 		try {
 			con.commit();
 		}
@@ -307,6 +381,9 @@ public class DataSourceTransactionManager extends AbstractPlatformTransactionMan
 		if (status.isDebug()) {
 			logger.debug("Rolling back JDBC transaction on Connection [" + con + "]");
 		}
+		if (txObject.getConnectionHolder().getDeferredUpdateQueue() != null) {
+			txObject.getConnectionHolder().getDeferredUpdateQueue().clear();
+		}
 		try {
 			con.rollback();
 		}
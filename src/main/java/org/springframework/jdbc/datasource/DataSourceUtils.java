@@ -432,6 +432,39 @@ public abstract class DataSourceUtils {
 		}
 	}
 
+	/**
+	 * Return the queue of deferred updates for the current transaction
+	 * on the given DataSource, if update deferral is active.
+	 * @param dataSource the DataSource to check
+	 * @return the queue, or {@code null} if updates are to be executed immediately
+	 * @since 4.3
+	 * @see DataSourceTransactionManager#setDeferUpdates
+	 */
+	public static DeferredUpdateQueue getDeferredUpdateQueue(DataSource dataSource) {
+		if (dataSource == null) {
+			return null;
+		}
+		ConnectionHolder conHolder = (ConnectionHolder) TransactionSynchronizationManager.getResource(dataSource);
+		return (conHolder != null && conHolder.isTransactionActive() ? conHolder.getDeferredUpdateQueue() : null);
+	}
+
+	/**
+	 * Execute all updates that have been deferred within the current transaction
+	 * on the given DataSource, e.g. in order to detect constraint violations
+	 * before the transaction gets committed.
+	 * @param dataSource the DataSource that the transaction runs against
+	 * @return the update counts of the executed updates, or an empty array
+	 * if none were pending
+	 * @throws SQLException if thrown by JDBC methods
+	 * @since 4.3
+	 * @see DataSourceTransactionManager#setDeferUpdates
+	 */
+	public static int[] flushDeferredUpdates(DataSource dataSource) throws SQLException {
+		Assert.notNull(dataSource, "No DataSource specified");
+		ConnectionHolder conHolder = (ConnectionHolder) TransactionSynchronizationManager.getResource(dataSource);
+		return (conHolder != null ? conHolder.flushDeferredUpdates() : new int[0]);
+	}
+
 	/**
 	 * Close the given Connection, obtained from the given DataSource,
 	 * if it is not managed externally (that is, not bound to the thread).
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2002-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.jdbc.datasource;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Queue of SQL updates whose execution has been deferred within a transaction,
+ * held by a {@link ConnectionHolder} if {@link DataSourceTransactionManager}
+ * runs with {@link DataSourceTransactionManager#setDeferUpdates "deferUpdates"}.
+ * Updates are added explicitly by the caller, e.g. through
+ * {@link org.springframework.jdbc.core.JdbcTemplate#deferUpdate}.
+ *
+ * <p>On {@link #flush}, consecutive updates with the same SQL text are sent to
+ * the database as one JDBC batch, so that a sequence of n identical inserts
+ * costs one round-trip instead of n. Updates with different SQL text are never
+ * reordered relative to each other.
+ *
+ * <p>Note: This is an SPI class, not intended to be used by applications.
+ *
+ * @since 4.3
+ * @see ConnectionHolder#getDeferredUpdateQueue()
+ * @see DataSourceUtils#flushDeferredUpdates
+ */
+public class DeferredUpdateQueue {
+
+	private static final Log logger = LogFactory.getLog(DeferredUpdateQueue.class);
+
+
+	private final List<DeferredUpdate> updates = new ArrayList<DeferredUpdate>();
+
+	private ExceptionTranslator exceptionTranslator;
+
+
+	/**
+	 * Add an update to this queue.
+	 * @param sql the SQL statement to execute
+	 * @param parameters the callback for setting the statement parameters
+	 * (may be {@code null} for a statement without parameters)
+	 */
+	public void add(String sql, UpdateParameters parameters) {
+		this.updates.add(new DeferredUpdate(sql, parameters));
+	}
+
+	/**
+	 * Set the translator for a failure to flush this queue on commit, typically
+	 * the exception translation of the component that added the updates.
+	 * <p>If not set, such a failure is reported as a
+	 * {@link org.springframework.transaction.TransactionSystemException}.
+	 */
+	public void setExceptionTranslator(ExceptionTranslator exceptionTranslator) {
+		this.exceptionTranslator = exceptionTranslator;
+	}
+
+	/**
+	 * Return the translator for a failure to flush this queue on commit, if any.
+	 */
+	public ExceptionTranslator getExceptionTranslator() {
+		return this.exceptionTranslator;
+	}
+
+	/**
+	 * Return the number of updates currently queued.
+	 */
+	public int size() {
+		return this.updates.size();
+	}
+
+	/**
+	 * Return whether no updates are queued.
+	 */
+	public boolean isEmpty() {
+		return this.updates.isEmpty();
+	}
+
+	/**
+	 * Execute all queued updates against the given Connection, in order,
+	 * batching consecutive updates with identical SQL text.
+	 * <p>The queue is empty afterwards, even in case of an exception.
+	 * @param con the Connection to execute the updates on
+	 * @param queryTimeout the query timeout to apply in seconds, or -1 for none
+	 * @return the update counts, in the order in which the updates were added;
+	 * entries may be {@link java.sql.Statement#SUCCESS_NO_INFO} if the driver
+	 * does not report counts for batched statements
+	 * @throws SQLException if thrown by JDBC methods
+	 */
+	public int[] flush(Connection con, int queryTimeout) throws SQLException {
+		if (this.updates.isEmpty()) {
+			return new int[0];
+		}
+		int[] updateCounts = new int[this.updates.size()];
+		try {
+			boolean batchSupported = con.getMetaData().supportsBatchUpdates();
+			int start = 0;
+			while (start < this.updates.size()) {
+				String sql = this.updates.get(start).sql;
+				int end = start + 1;
+				while (end < this.updates.size() && sql.equals(this.updates.get(end).sql)) {
+					end++;
+				}
+				executeGroup(con, sql, start, end, batchSupported, queryTimeout, updateCounts);
+				start = end;
+			}
+			if (logger.isDebugEnabled()) {
+				logger.debug("Flushed " + updateCounts.length + " deferred SQL updates");
+			}
+			return updateCounts;
+		}
+		finally {
+			clear();
+		}
+	}
+
+	private void executeGroup(Connection con, String sql, int start, int end, boolean batchSupported,
+			int queryTimeout, int[] updateCounts) throws SQLException {
+
+		PreparedStatement ps = con.prepareStatement(sql);
+		try {
+			if (queryTimeout >= 0) {
+				ps.setQueryTimeout(queryTimeout);
+			}
+			if (batchSupported && end - start > 1) {
+				for (int i = start; i < end; i++) {
+					this.updates.get(i).setValues(ps);
+					ps.addBatch();
+				}
+				int[] batchCounts = ps.executeBatch();
+				System.arraycopy(batchCounts, 0, updateCounts, start, Math.min(batchCounts.length, end - start));
+			}
+			else {
+				for (int i = start; i < end; i++) {
+					this.updates.get(i).setValues(ps);
+					updateCounts[i] = ps.executeUpdate();
+				}
+			}
+		}
+		finally {
+			closeStatement(ps);
+		}
+	}
+
+	private static void closeStatement(PreparedStatement ps) {
+		try {
+			ps.close();
+		}
+		catch (SQLException ex) {
+			logger.trace("Could not close JDBC Statement", ex);
+		}
+		catch (Throwable ex) {
+			// We don't trust the JDBC driver: It might throw RuntimeException or Error.
+			logger.trace("Unexpected exception on closing JDBC Statement", ex);
+		}
+	}
+
+	/**
+	 * Discard all queued updates without executing them,
+	 * e.g. on transaction rollback.
+	 */
+	public void clear() {
+		for (DeferredUpdate update : this.updates) {
+			update.cleanup();
+		}
+		this.updates.clear();
+	}
+
+
+	/**
+	 * Callback for setting the parameters of a deferred update.
+	 */
+	public interface UpdateParameters {
+
+		/**
+		 * Set parameter values on the given PreparedStatement.
+		 * @param ps the PreparedStatement to invoke setter methods on
+		 * @throws SQLException if a SQLException is encountered
+		 */
+		void setValues(PreparedStatement ps) throws SQLException;
+
+		/**
+		 * Release any resources held by the parameter values,
+		 * once the update has been executed or discarded.
+		 */
+		void cleanup();
+	}
+
+
+	/**
+	 * Strategy for translating a failure to flush the queue on commit.
+	 */
+	public interface ExceptionTranslator {
+
+		/**
+		 * Translate the given SQLException, thrown while flushing the queue.
+		 * @param ex the offending SQLException
+		 * @return the exception to throw (never {@code null})
+		 */
+		RuntimeException translate(SQLException ex);
+	}
+
+
+	private static class DeferredUpdate {
+
+		private final String sql;
+
+		private final UpdateParameters parameters;
+
+		public DeferredUpdate(String sql, UpdateParameters parameters) {
+			this.sql = sql;
+			this.parameters = parameters;
+		}
+
+		public void setValues(PreparedStatement ps) throws SQLException {
+			if (this.parameters != null) {
+				this.parameters.setValues(ps);
+			}
+		}
+
+		public void cleanup() {
+			if (this.parameters != null) {
+				this.parameters.cleanup();
+			}
+		}
+	}
+
+}
@@ -121,6 +121,10 @@ public abstract class JdbcTransactionObjectSupport implements SavepointManager,
 	@Override
 	public void rollbackToSavepoint(Object savepoint) throws TransactionException {
 		ConnectionHolder conHolder = getConnectionHolderForSavepoint();
+		if (conHolder.getDeferredUpdateQueue() != null) {
+			// Pending updates were all issued after the savepoint had been created
+			conHolder.getDeferredUpdateQueue().clear();
+		}
 		try {
 			conHolder.getConnection().rollback((Savepoint) savepoint);
 		}
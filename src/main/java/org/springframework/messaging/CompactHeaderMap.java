@@ -0,0 +1,348 @@
+/*
+ * Copyright 2002-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.messaging;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Map for the raw storage of {@link MessageHeaders}, keeping keys and values in
+ * parallel arrays that are scanned linearly. For the handful of headers a message
+ * typically carries, this is as fast as hashing and needs a fraction of the
+ * allocations of a {@link HashMap}, which is relevant since headers are copied
+ * whenever a message is created from another one.
+ *
+ * <p>Beyond {@link #MAX_INLINE_SIZE} entries, the map switches to a {@code HashMap}.
+ * It is serialized as a {@code HashMap} as well, keeping the serialized form of
+ * {@code MessageHeaders} compatible with previous versions.
+ *
+ * @since 4.3
+ */
+final class CompactHeaderMap extends AbstractMap<String, Object> implements Serializable {
+
+	private static final long serialVersionUID = -2394384389215464357L;
+
+	static final int MAX_INLINE_SIZE = 16;
+
+	private static final int DEFAULT_CAPACITY = 8;
+
+
+	private String[] keys;
+
+	private Object[] values;
+
+	private int[] hashes;
+
+	private int size;
+
+	private HashMap<String, Object> overflow;
+
+	private transient int modCount;
+
+
+	/**
+	 * Create a map with a copy of the given entries.
+	 * @param source the entries to copy (may be {@code null})
+	 * @param extraCapacity the number of entries expected to be added
+	 */
+	CompactHeaderMap(Map<String, ?> source, int extraCapacity) {
+		int sourceSize = (source != null ? source.size() : 0);
+		int capacity = sourceSize + extraCapacity;
+		if (capacity > MAX_INLINE_SIZE) {
+			this.overflow = (source != null ?
+					new HashMap<String, Object>(source) : new HashMap<String, Object>(capacity));
+			return;
+		}
+		capacity = Math.max(capacity, DEFAULT_CAPACITY);
+		if (source instanceof CompactHeaderMap && ((CompactHeaderMap) source).overflow == null) {
+			CompactHeaderMap other = (CompactHeaderMap) source;
+			this.keys = new String[capacity];
+			this.values = new Object[capacity];
+			this.hashes = new int[capacity];
+			System.arraycopy(other.keys, 0, this.keys, 0, other.size);
+			System.arraycopy(other.values, 0, this.values, 0, other.size);
+			System.arraycopy(other.hashes, 0, this.hashes, 0, other.size);
+			this.size = other.size;
+		}
+		else {
+			this.keys = new String[capacity];
+			this.values = new Object[capacity];
+			this.hashes = new int[capacity];
+			if (source != null) {
+				for (Map.Entry<String, ?> entry : source.entrySet()) {
+					put(entry.getKey(), entry.getValue());
+				}
+			}
+		}
+	}
+
+
+	private int indexOf(Object key) {
+		if (key == null) {
+			return -1;
+		}
+		int hash = key.hashCode();
+		for (int i = 0; i < this.size; i++) {
+			if (this.hashes[i] == hash && (this.keys[i] == key || this.keys[i].equals(key))) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public int size() {
+		return (this.overflow != null ? this.overflow.size() : this.size);
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return (this.overflow != null ? this.overflow.containsKey(key) : indexOf(key) >= 0);
+	}
+
+	@Override
+	public Object get(Object key) {
+		if (this.overflow != null) {
+			return this.overflow.get(key);
+		}
+		int index = indexOf(key);
+		return (index >= 0 ? this.values[index] : null);
+	}
+
+	@Override
+	public Object put(String key, Object value) {
+		if (this.overflow != null) {
+			return this.overflow.put(key, value);
+		}
+		if (key == null) {
+			inflate();
+			return this.overflow.put(null, value);
+		}
+		int index = indexOf(key);
+		if (index >= 0) {
+			Object oldValue = this.values[index];
+			this.values[index] = value;
+			return oldValue;
+		}
+		if (this.size == MAX_INLINE_SIZE) {
+			inflate();
+			return this.overflow.put(key, value);
+		}
+		if (this.size == this.keys.length) {
+			grow(Math.min(this.size * 2, MAX_INLINE_SIZE));
+		}
+		this.keys[this.size] = key;
+		this.values[this.size] = value;
+		this.hashes[this.size] = key.hashCode();
+		this.size++;
+		this.modCount++;
+		return null;
+	}
+
+	@Override
+	public Object remove(Object key) {
+		if (this.overflow != null) {
+			return this.overflow.remove(key);
+		}
+		int index = indexOf(key);
+		if (index < 0) {
+			return null;
+		}
+		Object oldValue = this.values[index];
+		removeAt(index);
+		return oldValue;
+	}
+
+	private void removeAt(int index) {
+		int moved = this.size - index - 1;
+		if (moved > 0) {
+			System.arraycopy(this.keys, index + 1, this.keys, index, moved);
+			System.arraycopy(this.values, index + 1, this.values, index, moved);
+			System.arraycopy(this.hashes, index + 1, this.hashes, index, moved);
+		}
+		this.size--;
+		this.keys[this.size] = null;
+		this.values[this.size] = null;
+		this.modCount++;
+	}
+
+	@Override
+	public void clear() {
+		if (this.overflow != null) {
+			this.overflow.clear();
+			return;
+		}
+		for (int i = 0; i < this.size; i++) {
+			this.keys[i] = null;
+			this.values[i] = null;
+		}
+		this.size = 0;
+		this.modCount++;
+	}
+
+	@Override
+	public Set<Entry<String, Object>> entrySet() {
+		return (this.overflow != null ? this.overflow.entrySet() : new EntrySet());
+	}
+
+	private void grow(int capacity) {
+		String[] newKeys = new String[capacity];
+		Object[] newValues = new Object[capacity];
+		int[] newHashes = new int[capacity];
+		System.arraycopy(this.keys, 0, newKeys, 0, this.size);
+		System.arraycopy(this.values, 0, newValues, 0, this.size);
+		System.arraycopy(this.hashes, 0, newHashes, 0, this.size);
+		this.keys = newKeys;
+		this.values = newValues;
+		this.hashes = newHashes;
+	}
+
+	private void inflate() {
+		HashMap<String, Object> map = new HashMap<String, Object>(this.size * 2);
+		for (int i = 0; i < this.size; i++) {
+			map.put(this.keys[i], this.values[i]);
+		}
+		this.overflow = map;
+		this.keys = null;
+		this.values = null;
+		this.hashes = null;
+		this.size = 0;
+	}
+
+	/**
+	 * Serialize as a plain {@code HashMap}.
+	 */
+	private Object writeReplace() throws ObjectStreamException {
+		return new HashMap<String, Object>(this);
+	}
+
+
+	private class EntrySet extends AbstractSet<Entry<String, Object>> {
+
+		@Override
+		public Iterator<Entry<String, Object>> iterator() {
+			return new EntryIterator();
+		}
+
+		@Override
+		public int size() {
+			return CompactHeaderMap.this.size();
+		}
+	}
+
+
+	private class EntryIterator implements Iterator<Entry<String, Object>> {
+
+		private int index;
+
+		private int lastReturned = -1;
+
+		private int expectedModCount = modCount;
+
+		@Override
+		public boolean hasNext() {
+			return (this.index < size);
+		}
+
+		@Override
+		public Entry<String, Object> next() {
+			checkForComodification();
+			if (this.index >= size) {
+				throw new NoSuchElementException();
+			}
+			this.lastReturned = this.index++;
+			return new InlineEntry(this.lastReturned);
+		}
+
+		@Override
+		public void remove() {
+			if (this.lastReturned < 0) {
+				throw new IllegalStateException();
+			}
+			checkForComodification();
+			removeAt(this.lastReturned);
+			this.index = this.lastReturned;
+			this.lastReturned = -1;
+			this.expectedModCount = modCount;
+		}
+
+		private void checkForComodification() {
+			if (modCount != this.expectedModCount || overflow != null) {
+				throw new ConcurrentModificationException();
+			}
+		}
+	}
+
+
+	private class InlineEntry implements Entry<String, Object> {
+
+		private final int index;
+
+		public InlineEntry(int index) {
+			this.index = index;
+		}
+
+		@Override
+		public String getKey() {
+			return keys[this.index];
+		}
+
+		@Override
+		public Object getValue() {
+			return values[this.index];
+		}
+
+		@Override
+		public Object setValue(Object value) {
+			Object oldValue = values[this.index];
+			values[this.index] = value;
+			return oldValue;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof Entry)) {
+				return false;
+			}
+			Entry<?, ?> otherEntry = (Entry<?, ?>) other;
+			Object key = getKey();
+			Object value = getValue();
+			return (key.equals(otherEntry.getKey()) &&
+					(value != null ? value.equals(otherEntry.getValue()) : otherEntry.getValue() == null));
+		}
+
+		@Override
+		public int hashCode() {
+			Object value = getValue();
+			return getKey().hashCode() ^ (value != null ? value.hashCode() : 0);
+		}
+
+		@Override
+		public String toString() {
+			return getKey() + "=" + getValue();
+		}
+	}
+
+}
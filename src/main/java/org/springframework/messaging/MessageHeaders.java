@@ -23,7 +23,6 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -117,7 +116,8 @@ public class MessageHeaders implements Map<String, Object>, Serializable {
 	 * @param timestamp the {@link #TIMESTAMP} header value
 	 */
 	protected MessageHeaders(Map<String, Object> headers, UUID id, Long timestamp) {
-		this.headers = (headers != null ? new HashMap<String, Object>(headers) : new HashMap<String, Object>());
+		Map<String, Object> source = (headers instanceof MessageHeaders ? ((MessageHeaders) headers).headers : headers);
+		this.headers = new CompactHeaderMap(source, 2);
 
 		if (id == null) {
 			this.headers.put(ID, getIdGenerator().generateId());
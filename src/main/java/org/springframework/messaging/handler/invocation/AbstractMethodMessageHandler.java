@@ -79,6 +79,8 @@ public abstract class AbstractMethodMessageHandler<T>
 
 	private HandlerMethodReturnValueHandlerComposite returnValueHandlers =new HandlerMethodReturnValueHandlerComposite();
 
+	private boolean useGeneratedInvokers = false;
+
 	private ApplicationContext applicationContext;
 
 	private final Map<T, HandlerMethod> handlerMethods = new LinkedHashMap<T, HandlerMethod>();
@@ -189,6 +191,28 @@ public abstract class AbstractMethodMessageHandler<T>
 		return this.returnValueHandlers.getReturnValueHandlers();
 	}
 
+	/**
+	 * Set whether to invoke handler methods through generated invoker classes
+	 * instead of through reflection, with argument resolvers looked up once per
+	 * handler method rather than per parameter for every message.
+	 * <p>Default is "false". Turn this on for a high rate of messages where
+	 * reflective invocation overhead matters; see
+	 * {@link InvocableHandlerMethod#setUseGeneratedInvoker} for the methods
+	 * this applies to.
+	 * @since 4.3
+	 */
+	public void setUseGeneratedInvokers(boolean useGeneratedInvokers) {
+		this.useGeneratedInvokers = useGeneratedInvokers;
+	}
+
+	/**
+	 * Return whether handler methods are invoked through generated invoker classes.
+	 * @since 4.3
+	 */
+	public boolean isUseGeneratedInvokers() {
+		return this.useGeneratedInvokers;
+	}
+
 	/**
 	 * Return a map with all handler methods and their mappings.
 	 */
@@ -394,9 +418,8 @@ public abstract class AbstractMethodMessageHandler<T>
 			addMatchesToCollection(mappingsByUrl, message, matches);
 		}
 		if (matches.isEmpty()) {
-			// No direct hits, go through all mappings
-			Set<T> allMappings = this.handlerMethods.keySet();
-			addMatchesToCollection(allMappings, message, matches);
+			// No direct hits, go through all candidate mappings
+			addMatchesToCollection(getPatternMatchCandidates(lookupDestination), message, matches);
 		}
 		if (matches.isEmpty()) {
 			handleNoMatch(handlerMethods.keySet(), lookupDestination, message);
@@ -433,6 +456,20 @@ public abstract class AbstractMethodMessageHandler<T>
 		}
 	}
 
+	/**
+	 * Return the mappings to check for a destination without direct lookup hits.
+	 * <p>The default implementation returns all registered mappings. Subclasses
+	 * may narrow this down, e.g. through an index over the destination patterns
+	 * of the registered mappings, as long as every mapping that could possibly
+	 * match the given destination is included.
+	 * @param lookupDestination the destination, with the prefix already removed
+	 * @return the mappings to check, in registration order
+	 * @since 4.3
+	 */
+	protected Collection<T> getPatternMatchCandidates(String lookupDestination) {
+		return this.handlerMethods.keySet();
+	}
+
 	/**
 	 * Check if a mapping matches the current message and return a possibly
 	 * new mapping with conditions relevant to the current request.
@@ -458,6 +495,7 @@ public abstract class AbstractMethodMessageHandler<T>
 		handlerMethod = handlerMethod.createWithResolvedBean();
 		InvocableHandlerMethod invocable = new InvocableHandlerMethod(handlerMethod);
 		invocable.setMessageMethodArgumentResolvers(this.argumentResolvers);
+		invocable.setUseGeneratedInvoker(this.useGeneratedInvokers);
 		try {
 			Object returnValue = invocable.invoke(message);
 			MethodParameter returnType = handlerMethod.getReturnType();
@@ -491,6 +529,7 @@ public abstract class AbstractMethodMessageHandler<T>
 			return;
 		}
 		invocable.setMessageMethodArgumentResolvers(this.argumentResolvers);
+		invocable.setUseGeneratedInvoker(this.useGeneratedInvokers);
 		if (logger.isDebugEnabled()) {
 			logger.debug("Invoking " + invocable.getShortLogMessage());
 		}
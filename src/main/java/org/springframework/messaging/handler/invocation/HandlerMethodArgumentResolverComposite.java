@@ -25,6 +25,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import org.springframework.core.MethodParameter;
 import org.springframework.messaging.Message;
 import org.springframework.util.Assert;
+import org.springframework.util.ConcurrentReferenceHashMap;
 
 /**
  * Resolves method parameters by delegating to a list of registered
@@ -41,6 +42,9 @@ public class HandlerMethodArgumentResolverComposite implements HandlerMethodArgu
 	private final Map<MethodParameter, HandlerMethodArgumentResolver> argumentResolverCache =
 			new ConcurrentHashMap<MethodParameter, HandlerMethodArgumentResolver>(256);
 
+	private final Map<MethodParameter[], HandlerMethodArgumentResolver[]> argumentResolversByMethod =
+			new ConcurrentReferenceHashMap<MethodParameter[], HandlerMethodArgumentResolver[]>(256);
+
 
 	/**
 	 * Return a read-only list with the contained resolvers, or an empty list.
@@ -94,6 +98,26 @@ public class HandlerMethodArgumentResolverComposite implements HandlerMethodArgu
 		return result;
 	}
 
+	/**
+	 * Find the registered {@link HandlerMethodArgumentResolver} for each of the given
+	 * method parameters, caching the result per parameter array, i.e. per handler method.
+	 * @param parameters the (initialized) parameters of a handler method
+	 * @return the resolver for each parameter position, with {@code null} entries
+	 * for parameters that no resolver supports
+	 * @since 4.3
+	 */
+	HandlerMethodArgumentResolver[] getArgumentResolvers(MethodParameter[] parameters) {
+		HandlerMethodArgumentResolver[] resolvers = this.argumentResolversByMethod.get(parameters);
+		if (resolvers == null) {
+			resolvers = new HandlerMethodArgumentResolver[parameters.length];
+			for (int i = 0; i < parameters.length; i++) {
+				resolvers[i] = getArgumentResolver(parameters[i]);
+			}
+			this.argumentResolversByMethod.put(parameters, resolvers);
+		}
+		return resolvers;
+	}
+
 	/**
 	 * Add the given {@link HandlerMethodArgumentResolver}.
 	 */
@@ -0,0 +1,558 @@
+/*
+ * Copyright 2002-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.messaging.simp;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.core.NamedThreadLocal;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedOperationParameter;
+import org.springframework.jmx.export.annotation.ManagedOperationParameters;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.support.AbstractMessageChannel;
+import org.springframework.messaging.support.ChannelInterceptorAdapter;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.messaging.support.LatencyHistogram;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.PathMatcher;
+
+/**
+ * Records per-destination latency statistics for the messaging pipeline into
+ * {@link LatencyHistogram}s, for the purpose of finding out where time goes
+ * between the client inbound channel, message handlers, the broker and the
+ * client outbound channel.
+ *
+ * <p>Registered as interceptor on one or more
+ * {@link org.springframework.messaging.support.ExecutorSubscribableChannel}s,
+ * and optionally set on a broker through
+ * {@link org.springframework.messaging.simp.broker.AbstractBrokerMessageHandler#setMessageMetricsRecorder},
+ * this recorder tracks the following for each destination key:
+ * <ul>
+ * <li>queue wait time: from the send to a channel until a handler of that channel
+ * starts handling the message, per channel;
+ * <li>handling time: the time spent in a handler, per handler type;
+ * <li>broker time: the time spent by the broker handling the message;
+ * <li>end-to-end latency: from the send of the originating message to the first
+ * instrumented channel until a message to a client has been handled on the
+ * {@link #setOutboundChannel outbound channel}.
+ * </ul>
+ *
+ * <p>A message sent while a message is being handled on the same thread, e.g.
+ * from an {@code @MessageMapping} method or by the simple broker, is considered
+ * to originate from the message being handled. Messages are passed on as they
+ * are: the origin and send times are kept aside by message instance, for as long
+ * as the message is referenced. A message that another interceptor replaces
+ * between the send and the handling is therefore not timed.
+ *
+ * <p>Destinations are grouped by the first matching of the configured
+ * {@link #setDestinationPatterns destination patterns}. Without patterns, each
+ * destination is tracked separately, up to the {@link #setDestinationLimit limit}.
+ *
+ * <p>The recorder is annotated for export through an
+ * {@link org.springframework.jmx.export.annotation.AnnotationMBeanExporter},
+ * e.g. with {@link org.springframework.context.annotation.EnableMBeanExport}.
+ *
+ * @since 4.3
+ */
+@ManagedResource(description = "Latency statistics of the messaging pipeline per destination")
+public class SimpMessageMetricsRecorder extends ChannelInterceptorAdapter implements ExecutorChannelInterceptor {
+
+	/** Key for messages without a destination */
+	public static final String NO_DESTINATION_KEY = "[no destination]";
+
+	/** Key for destinations that do not match any pattern or exceed the destination limit */
+	public static final String OTHER_DESTINATION_KEY = "[other]";
+
+	private static final int DESTINATION_CACHE_LIMIT = 1024;
+
+	private static final int SEND_TIMING_STRIPES = 16;
+
+	private static final ThreadLocal<HandlingContext> handlingContextHolder =
+			new NamedThreadLocal<HandlingContext>("SiMP message handling metrics");
+
+
+	private List<String> destinationPatterns = Collections.emptyList();
+
+	private PathMatcher pathMatcher = new AntPathMatcher();
+
+	private int destinationLimit = 256;
+
+	private MessageChannel outboundChannel;
+
+	private final ConcurrentMap<String, String> destinationKeyCache = new ConcurrentHashMap<String, String>();
+
+	private final ConcurrentMap<String, DestinationMetrics> destinationMetrics =
+			new ConcurrentHashMap<String, DestinationMetrics>();
+
+	private final AtomicInteger trackedDestinationCount = new AtomicInteger();
+
+	/** Send times by message instance, striped to reduce contention */
+	private final List<SendTimingRegistry> sendTimings = createSendTimings();
+
+
+	/**
+	 * Configure the destination patterns to group destinations by, e.g.
+	 * "/topic/chat.*" or "/app/**". A destination is recorded under the first
+	 * pattern it matches, or under {@link #OTHER_DESTINATION_KEY} if none.
+	 * <p>By default no patterns are configured and each destination is recorded
+	 * separately.
+	 */
+	public void setDestinationPatterns(Collection<String> destinationPatterns) {
+		this.destinationPatterns = (destinationPatterns != null ?
+				new ArrayList<String>(destinationPatterns) : Collections.<String>emptyList());
+		this.destinationKeyCache.clear();
+	}
+
+	/**
+	 * Return the configured destination patterns.
+	 */
+	@ManagedAttribute(description = "Destination patterns that destinations are grouped by")
+	public List<String> getDestinationPatterns() {
+		return Collections.unmodifiableList(this.destinationPatterns);
+	}
+
+	/**
+	 * Set the PathMatcher to match destinations against the destination patterns.
+	 * <p>By default, {@link AntPathMatcher} is used.
+	 */
+	public void setPathMatcher(PathMatcher pathMatcher) {
+		Assert.notNull(pathMatcher, "PathMatcher must not be null");
+		this.pathMatcher = pathMatcher;
+		this.destinationKeyCache.clear();
+	}
+
+	/**
+	 * Return the configured PathMatcher.
+	 */
+	public PathMatcher getPathMatcher() {
+		return this.pathMatcher;
+	}
+
+	/**
+	 * Set the maximum number of destinations to track separately if no destination
+	 * patterns are configured. Further destinations are recorded under
+	 * {@link #OTHER_DESTINATION_KEY}.
+	 * <p>By default this is set to 256.
+	 */
+	public void setDestinationLimit(int destinationLimit) {
+		this.destinationLimit = destinationLimit;
+	}
+
+	/**
+	 * Return the configured destination limit.
+	 */
+	public int getDestinationLimit() {
+		return this.destinationLimit;
+	}
+
+	/**
+	 * Set the channel for messages to clients, i.e. the channel on which the
+	 * handling of a message completes the end-to-end latency of its originating
+	 * message.
+	 * <p>By default this is not set, in which case no end-to-end latency is recorded.
+	 */
+	public void setOutboundChannel(MessageChannel outboundChannel) {
+		this.outboundChannel = outboundChannel;
+	}
+
+	/**
+	 * Return the configured outbound channel.
+	 */
+	public MessageChannel getOutboundChannel() {
+		return this.outboundChannel;
+	}
+
+
+	@Override
+	public Message<?> preSend(Message<?> message, MessageChannel channel) {
+		long now = System.nanoTime();
+		HandlingContext context = handlingContextHolder.get();
+		getSendTimings(message).recordSend(message, now, (context != null ? context.originTime : null));
+		return message;
+	}
+
+	@Override
+	public Message<?> beforeHandle(Message<?> message, MessageChannel channel, MessageHandler handler) {
+		long now = System.nanoTime();
+		SendTiming timing = getSendTimings(message).getSendTiming(message);
+		if (timing != null) {
+			getDestinationMetrics(message).getQueueWaitTime(getChannelName(channel)).record(now - timing.sendTime);
+		}
+		handlingContextHolder.set(new HandlingContext(
+				now, (timing != null ? timing.originTime : null), handlingContextHolder.get()));
+		return message;
+	}
+
+	@Override
+	public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception ex) {
+		long now = System.nanoTime();
+		HandlingContext context = handlingContextHolder.get();
+		if (context == null) {
+			return;
+		}
+		if (context.previous != null) {
+			handlingContextHolder.set(context.previous);
+		}
+		else {
+			handlingContextHolder.remove();
+		}
+		DestinationMetrics metrics = getDestinationMetrics(message);
+		metrics.getHandlingTime(ClassUtils.getShortName(handler.getClass())).record(now - context.startTime);
+		if (channel == this.outboundChannel && context.originTime != null) {
+			metrics.endToEndLatency.record(now - context.originTime);
+		}
+	}
+
+	/**
+	 * Record the time a broker has spent handling the given message.
+	 * @param message the message handled
+	 * @param nanos the handling time in nanoseconds
+	 */
+	public void recordBrokerTime(Message<?> message, long nanos) {
+		getDestinationMetrics(message).brokerTime.record(nanos);
+	}
+
+	/**
+	 * Return the histogram of queue wait times for the given destination key and channel.
+	 * @param destinationKey a destination pattern, or a destination if no patterns are configured
+	 * @param channelName the bean name of the channel
+	 * @return the histogram, or {@code null} if no values have been recorded
+	 */
+	public LatencyHistogram getQueueWaitTime(String destinationKey, String channelName) {
+		DestinationMetrics metrics = this.destinationMetrics.get(destinationKey);
+		return (metrics != null ? metrics.queueWaitTimes.get(channelName) : null);
+	}
+
+	/**
+	 * Return the histogram of handling times for the given destination key and handler type.
+	 * @param destinationKey a destination pattern, or a destination if no patterns are configured
+	 * @param handlerName the short class name of the handler
+	 * @return the histogram, or {@code null} if no values have been recorded
+	 */
+	public LatencyHistogram getHandlingTime(String destinationKey, String handlerName) {
+		DestinationMetrics metrics = this.destinationMetrics.get(destinationKey);
+		return (metrics != null ? metrics.handlingTimes.get(handlerName) : null);
+	}
+
+	/**
+	 * Return the histogram of broker times for the given destination key.
+	 * @param destinationKey a destination pattern, or a destination if no patterns are configured
+	 * @return the histogram, or {@code null} if no values have been recorded
+	 */
+	public LatencyHistogram getBrokerTime(String destinationKey) {
+		DestinationMetrics metrics = this.destinationMetrics.get(destinationKey);
+		return (metrics != null ? metrics.brokerTime : null);
+	}
+
+	/**
+	 * Return the histogram of end-to-end latencies for the given destination key.
+	 * @param destinationKey a destination pattern, or a destination if no patterns are configured
+	 * @return the histogram, or {@code null} if no values have been recorded
+	 */
+	public LatencyHistogram getEndToEndLatency(String destinationKey) {
+		DestinationMetrics metrics = this.destinationMetrics.get(destinationKey);
+		return (metrics != null ? metrics.endToEndLatency : null);
+	}
+
+	/**
+	 * Return the keys of all destinations with recorded values.
+	 */
+	@ManagedAttribute(description = "Destination keys with recorded latencies")
+	public String[] getDestinationKeys() {
+		return this.destinationMetrics.keySet().toArray(new String[this.destinationMetrics.size()]);
+	}
+
+	/**
+	 * Return a summary of the statistics for the given destination key.
+	 */
+	@ManagedOperation(description = "Latency statistics for a destination key")
+	@ManagedOperationParameters(@ManagedOperationParameter(name = "destinationKey",
+			description = "A destination pattern, or a destination if no patterns are configured"))
+	public String getDestinationStatsInfo(String destinationKey) {
+		DestinationMetrics metrics = this.destinationMetrics.get(destinationKey);
+		return (metrics != null ? destinationKey + " " + metrics : null);
+	}
+
+	/**
+	 * Return a summary of the statistics for all destination keys.
+	 */
+	@ManagedAttribute(description = "Latency statistics for all destination keys")
+	public String getStatsInfo() {
+		StringBuilder sb = new StringBuilder();
+		for (Map.Entry<String, DestinationMetrics> entry : this.destinationMetrics.entrySet()) {
+			if (sb.length() > 0) {
+				sb.append("\n");
+			}
+			sb.append(entry.getKey()).append(" ").append(entry.getValue());
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Discard all recorded values.
+	 */
+	@ManagedOperation(description = "Discard all recorded latencies")
+	public void reset() {
+		this.destinationMetrics.clear();
+		this.trackedDestinationCount.set(0);
+	}
+
+
+	private DestinationMetrics getDestinationMetrics(Message<?> message) {
+		String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+		String key = getDestinationKey(destination);
+		DestinationMetrics metrics = this.destinationMetrics.get(key);
+		if (metrics != null) {
+			return metrics;
+		}
+		if (destination != null && this.destinationPatterns.isEmpty()) {
+			// Reserve a slot before inserting so that concurrent inserts cannot exceed the limit
+			if (this.trackedDestinationCount.incrementAndGet() <= this.destinationLimit) {
+				metrics = new DestinationMetrics();
+				DestinationMetrics existing = this.destinationMetrics.putIfAbsent(key, metrics);
+				if (existing != null) {
+					this.trackedDestinationCount.decrementAndGet();
+					metrics = existing;
+				}
+				return metrics;
+			}
+			this.trackedDestinationCount.decrementAndGet();
+			key = OTHER_DESTINATION_KEY;
+		}
+		metrics = this.destinationMetrics.get(key);
+		if (metrics == null) {
+			metrics = new DestinationMetrics();
+			DestinationMetrics existing = this.destinationMetrics.putIfAbsent(key, metrics);
+			if (existing != null) {
+				metrics = existing;
+			}
+		}
+		return metrics;
+	}
+
+	private String getDestinationKey(String destination) {
+		if (destination == null) {
+			return NO_DESTINATION_KEY;
+		}
+		if (this.destinationPatterns.isEmpty()) {
+			// The destination limit is enforced on insertion into the metrics map
+			return destination;
+		}
+		String key = this.destinationKeyCache.get(destination);
+		if (key == null) {
+			key = OTHER_DESTINATION_KEY;
+			for (String pattern : this.destinationPatterns) {
+				if (this.pathMatcher.match(pattern, destination)) {
+					key = pattern;
+					break;
+				}
+			}
+			if (this.destinationKeyCache.size() < DESTINATION_CACHE_LIMIT) {
+				this.destinationKeyCache.put(destination, key);
+			}
+		}
+		return key;
+	}
+
+	private SendTimingRegistry getSendTimings(Message<?> message) {
+		return this.sendTimings.get((System.identityHashCode(message) & Integer.MAX_VALUE) % SEND_TIMING_STRIPES);
+	}
+
+	private static List<SendTimingRegistry> createSendTimings() {
+		List<SendTimingRegistry> sendTimings = new ArrayList<SendTimingRegistry>(SEND_TIMING_STRIPES);
+		for (int i = 0; i < SEND_TIMING_STRIPES; i++) {
+			sendTimings.add(new SendTimingRegistry());
+		}
+		return sendTimings;
+	}
+
+	private static String getChannelName(MessageChannel channel) {
+		return (channel instanceof AbstractMessageChannel ?
+				((AbstractMessageChannel) channel).getBeanName() : channel.toString());
+	}
+
+
+	/**
+	 * The start of the handling of a message on the current thread,
+	 * linked to the enclosing handling of another message, if any.
+	 */
+	private static class HandlingContext {
+
+		private final long startTime;
+
+		private final Long originTime;
+
+		private final HandlingContext previous;
+
+		public HandlingContext(long startTime, Long originTime, HandlingContext previous) {
+			this.startTime = startTime;
+			this.originTime = originTime;
+			this.previous = previous;
+		}
+	}
+
+
+	/**
+	 * The send times of a message, in {@link System#nanoTime()}: of the send of
+	 * the originating message, and of the latest send of the message itself.
+	 */
+	private static class SendTiming {
+
+		private final long originTime;
+
+		private volatile long sendTime;
+
+		public SendTiming(long originTime, long sendTime) {
+			this.originTime = originTime;
+			this.sendTime = sendTime;
+		}
+	}
+
+
+	/**
+	 * Send times by message instance, with weakly referenced keys so that the
+	 * entry for a message goes away once the message has been garbage collected.
+	 */
+	private static class SendTimingRegistry {
+
+		private final Map<MessageKey, SendTiming> timings = new HashMap<MessageKey, SendTiming>();
+
+		private final ReferenceQueue<Message<?>> queue = new ReferenceQueue<Message<?>>();
+
+		public synchronized void recordSend(Message<?> message, long sendTime, Long contextOriginTime) {
+			purge();
+			SendTiming timing = this.timings.get(new MessageKey(message, null));
+			if (timing != null) {
+				// Sent again, e.g. to the next channel: keep the origin time
+				timing.sendTime = sendTime;
+			}
+			else {
+				long originTime = (contextOriginTime != null ? contextOriginTime : sendTime);
+				this.timings.put(new MessageKey(message, this.queue), new SendTiming(originTime, sendTime));
+			}
+		}
+
+		public synchronized SendTiming getSendTiming(Message<?> message) {
+			purge();
+			return this.timings.get(new MessageKey(message, null));
+		}
+
+		private void purge() {
+			Reference<? extends Message<?>> ref;
+			while ((ref = this.queue.poll()) != null) {
+				this.timings.remove(ref);
+			}
+		}
+	}
+
+
+	/**
+	 * Weak reference to a message, equal to any other key for the same instance.
+	 */
+	private static class MessageKey extends WeakReference<Message<?>> {
+
+		private final int hash;
+
+		public MessageKey(Message<?> message, ReferenceQueue<Message<?>> queue) {
+			super(message, queue);
+			this.hash = System.identityHashCode(message);
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (this == other) {
+				return true;
+			}
+			if (!(other instanceof MessageKey)) {
+				return false;
+			}
+			Message<?> message = get();
+			return (message != null && message == ((MessageKey) other).get());
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hash;
+		}
+	}
+
+
+	private static class DestinationMetrics {
+
+		private final ConcurrentMap<String, LatencyHistogram> queueWaitTimes =
+				new ConcurrentHashMap<String, LatencyHistogram>(4);
+
+		private final ConcurrentMap<String, LatencyHistogram> handlingTimes =
+				new ConcurrentHashMap<String, LatencyHistogram>(4);
+
+		private final LatencyHistogram brokerTime = new LatencyHistogram();
+
+		private final LatencyHistogram endToEndLatency = new LatencyHistogram();
+
+		public LatencyHistogram getQueueWaitTime(String channelName) {
+			return getHistogram(this.queueWaitTimes, channelName);
+		}
+
+		public LatencyHistogram getHandlingTime(String handlerName) {
+			return getHistogram(this.handlingTimes, handlerName);
+		}
+
+		private static LatencyHistogram getHistogram(ConcurrentMap<String, LatencyHistogram> map, String key) {
+			LatencyHistogram histogram = map.get(key);
+			if (histogram == null) {
+				histogram = new LatencyHistogram();
+				LatencyHistogram existing = map.putIfAbsent(key, histogram);
+				if (existing != null) {
+					histogram = existing;
+				}
+			}
+			return histogram;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder("[");
+			for (Map.Entry<String, LatencyHistogram> entry : this.queueWaitTimes.entrySet()) {
+				sb.append("queue wait in ").append(entry.getKey()).append(" (").append(entry.getValue()).append("), ");
+			}
+			for (Map.Entry<String, LatencyHistogram> entry : this.handlingTimes.entrySet()) {
+				sb.append("handling in ").append(entry.getKey()).append(" (").append(entry.getValue()).append("), ");
+			}
+			sb.append("broker (").append(this.brokerTime).append("), ");
+			sb.append("end-to-end (").append(this.endToEndLatency).append(")]");
+			return sb.toString();
+		}
+	}
+
+}
@@ -19,9 +19,12 @@ package org.springframework.messaging.simp.annotation.support;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 
@@ -69,7 +72,9 @@ import org.springframework.util.AntPathMatcher;
 import org.springframework.util.Assert;
 import org.springframework.util.ClassUtils;
 import org.springframework.util.CollectionUtils;
+import org.springframework.util.CompiledPathMatcher;
 import org.springframework.util.PathMatcher;
+import org.springframework.util.StringUtils;
 import org.springframework.util.StringValueResolver;
 import org.springframework.validation.Validator;
 
@@ -104,6 +109,8 @@ public class SimpAnnotationMethodMessageHandler extends AbstractMethodMessageHan
 
 	private boolean slashPathSeparator = true;
 
+	private volatile DestinationPatternIndex destinationPatternIndex;
+
 	private Validator validator;
 
 	private StringValueResolver valueResolver;
@@ -213,6 +220,7 @@ public class SimpAnnotationMethodMessageHandler extends AbstractMethodMessageHan
 		Assert.notNull(pathMatcher, "PathMatcher must not be null");
 		this.pathMatcher = pathMatcher;
 		this.slashPathSeparator = this.pathMatcher.combine("a", "a").equals("a/a");
+		this.destinationPatternIndex = null;
 	}
 
 	/**
@@ -411,6 +419,12 @@ public class SimpAnnotationMethodMessageHandler extends AbstractMethodMessageHan
 		return result;
 	}
 
+	@Override
+	protected void registerHandlerMethod(Object handler, Method method, SimpMessageMappingInfo mapping) {
+		super.registerHandlerMethod(handler, method, mapping);
+		this.destinationPatternIndex = null;
+	}
+
 	@Override
 	protected Set<String> getDirectLookupDestinations(SimpMessageMappingInfo mapping) {
 		Set<String> result = new LinkedHashSet<String>();
@@ -448,6 +462,29 @@ public class SimpAnnotationMethodMessageHandler extends AbstractMethodMessageHan
 		return null;
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>With an {@link AntPathMatcher} or a {@link CompiledPathMatcher}, this
+	 * implementation consults an index over the leading literal segments of all
+	 * registered destination patterns, returning only the mappings whose literal
+	 * segments match the leading segments of the given destination, plus those
+	 * whose patterns start with a wildcard. The index is built on first use and
+	 * rebuilt after the registration of further handler methods.
+	 */
+	@Override
+	protected Collection<SimpMessageMappingInfo> getPatternMatchCandidates(String lookupDestination) {
+		Class<?> pathMatcherClass = this.pathMatcher.getClass();
+		if (pathMatcherClass != AntPathMatcher.class && pathMatcherClass != CompiledPathMatcher.class) {
+			return super.getPatternMatchCandidates(lookupDestination);
+		}
+		DestinationPatternIndex index = this.destinationPatternIndex;
+		if (index == null) {
+			index = new DestinationPatternIndex((AntPathMatcher) this.pathMatcher, getHandlerMethods().keySet());
+			this.destinationPatternIndex = index;
+		}
+		return index.getCandidates(lookupDestination);
+	}
+
 	@Override
 	protected SimpMessageMappingInfo getMatchingMapping(SimpMessageMappingInfo mapping, Message<?> message) {
 		return mapping.getMatchingCondition(message);
@@ -491,4 +528,131 @@ public class SimpAnnotationMethodMessageHandler extends AbstractMethodMessageHan
 		return new AnnotationExceptionHandlerMethodResolver(beanType);
 	}
 
+
+	/**
+	 * Index of mappings by the literal segments their destination patterns start
+	 * with, as tokenized by the given AntPathMatcher. AntPathMatcher matches the
+	 * segments of a pattern up to the first wildcard one by one against the
+	 * segments of a destination, so a mapping can only match a destination if
+	 * the path to the mapping's node is a prefix of the destination's segments.
+	 */
+	private static class DestinationPatternIndex {
+
+		private static final Comparator<IndexEntry> ORDER_COMPARATOR = new Comparator<IndexEntry>() {
+			@Override
+			public int compare(IndexEntry entry1, IndexEntry entry2) {
+				return (entry1.order < entry2.order ? -1 : (entry1.order == entry2.order ? 0 : 1));
+			}
+		};
+
+		private final String pathSeparator;
+
+		private final boolean caseSensitive;
+
+		private final boolean trimTokens;
+
+		private final IndexNode root = new IndexNode();
+
+		public DestinationPatternIndex(AntPathMatcher pathMatcher, Collection<SimpMessageMappingInfo> mappings) {
+			this.pathSeparator = pathMatcher.getPathSeparator();
+			this.caseSensitive = pathMatcher.isCaseSensitive();
+			this.trimTokens = pathMatcher.isTrimTokens();
+			int order = 0;
+			for (SimpMessageMappingInfo mapping : mappings) {
+				Set<String> patterns = mapping.getDestinationConditions().getPatterns();
+				if (patterns.isEmpty()) {
+					this.root.add(new IndexEntry(order, mapping));
+				}
+				for (String pattern : patterns) {
+					IndexNode node = this.root;
+					for (String token : tokenize(pattern)) {
+						if (token.indexOf('*') != -1 || token.indexOf('?') != -1 || token.indexOf('{') != -1) {
+							break;
+						}
+						node = node.getOrCreateChild(normalize(token));
+					}
+					node.add(new IndexEntry(order, mapping));
+				}
+				order++;
+			}
+		}
+
+		/**
+		 * Return the mappings that may match the given destination, in registration order.
+		 */
+		public Collection<SimpMessageMappingInfo> getCandidates(String destination) {
+			List<IndexEntry> entries = new ArrayList<IndexEntry>(this.root.entries);
+			IndexNode node = this.root;
+			for (String token : tokenize(destination)) {
+				node = node.getChild(normalize(token));
+				if (node == null) {
+					break;
+				}
+				entries.addAll(node.entries);
+			}
+			if (entries.isEmpty()) {
+				return Collections.emptyList();
+			}
+			Collections.sort(entries, ORDER_COMPARATOR);
+			List<SimpMessageMappingInfo> candidates = new ArrayList<SimpMessageMappingInfo>(entries.size());
+			int lastOrder = -1;
+			for (IndexEntry entry : entries) {
+				if (entry.order != lastOrder) {
+					candidates.add(entry.mapping);
+					lastOrder = entry.order;
+				}
+			}
+			return candidates;
+		}
+
+		private String[] tokenize(String path) {
+			return StringUtils.tokenizeToStringArray(path, this.pathSeparator, this.trimTokens, true);
+		}
+
+		private String normalize(String token) {
+			return (this.caseSensitive ? token : token.toLowerCase(Locale.ENGLISH));
+		}
+	}
+
+
+	private static class IndexNode {
+
+		private final List<IndexEntry> entries = new ArrayList<IndexEntry>(1);
+
+		private Map<String, IndexNode> children;
+
+		public IndexNode getChild(String token) {
+			return (this.children != null ? this.children.get(token) : null);
+		}
+
+		public IndexNode getOrCreateChild(String token) {
+			if (this.children == null) {
+				this.children = new HashMap<String, IndexNode>(4);
+			}
+			IndexNode child = this.children.get(token);
+			if (child == null) {
+				child = new IndexNode();
+				this.children.put(token, child);
+			}
+			return child;
+		}
+
+		public void add(IndexEntry entry) {
+			this.entries.add(entry);
+		}
+	}
+
+
+	private static class IndexEntry {
+
+		private final int order;
+
+		private final SimpMessageMappingInfo mapping;
+
+		public IndexEntry(int order, SimpMessageMappingInfo mapping) {
+			this.order = order;
+			this.mapping = mapping;
+		}
+	}
+
 }
@@ -31,6 +31,7 @@ import org.springframework.messaging.MessageChannel;
 import org.springframework.messaging.MessageHandler;
 import org.springframework.messaging.SubscribableChannel;
 import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageMetricsRecorder;
 import org.springframework.messaging.simp.SimpMessageType;
 import org.springframework.messaging.support.ChannelInterceptor;
 import org.springframework.messaging.support.ChannelInterceptorAdapter;
@@ -68,6 +69,8 @@ public abstract class AbstractBrokerMessageHandler
 
 	private boolean autoStartup = true;
 
+	private SimpMessageMetricsRecorder messageMetricsRecorder;
+
 	private volatile boolean running = false;
 
 	private final Object lifecycleMonitor = new Object();
@@ -149,6 +152,24 @@ public abstract class AbstractBrokerMessageHandler
 		return Integer.MAX_VALUE;
 	}
 
+	/**
+	 * Configure a recorder for the time spent handling each message.
+	 * <p>By default this is not set.
+	 * @since 4.3
+	 * @see SimpMessageMetricsRecorder#recordBrokerTime
+	 */
+	public void setMessageMetricsRecorder(SimpMessageMetricsRecorder messageMetricsRecorder) {
+		this.messageMetricsRecorder = messageMetricsRecorder;
+	}
+
+	/**
+	 * Return the configured message metrics recorder, if any.
+	 * @since 4.3
+	 */
+	public SimpMessageMetricsRecorder getMessageMetricsRecorder() {
+		return this.messageMetricsRecorder;
+	}
+
 
 	@Override
 	public void start() {
@@ -235,7 +256,18 @@ public abstract class AbstractBrokerMessageHandler
 			}
 			return;
 		}
-		handleMessageInternal(message);
+		SimpMessageMetricsRecorder recorder = this.messageMetricsRecorder;
+		if (recorder == null) {
+			handleMessageInternal(message);
+			return;
+		}
+		long startTime = System.nanoTime();
+		try {
+			handleMessageInternal(message);
+		}
+		finally {
+			recorder.recordBrokerTime(message, System.nanoTime() - startTime);
+		}
 	}
 
 	protected abstract void handleMessageInternal(Message<?> message);
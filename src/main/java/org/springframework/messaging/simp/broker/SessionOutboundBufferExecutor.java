@@ -0,0 +1,681 @@
+/*
+ * Copyright 2002-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.messaging.simp.broker;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.ChannelInterceptorAdapter;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHandlingRunnable;
+import org.springframework.util.Assert;
+
+/**
+ * An {@link Executor} for the {@code clientOutboundChannel} that buffers messages
+ * per session in a bounded queue and applies a {@link SlowConsumerPolicy} when
+ * the buffer of a session is full, so that a client that does not keep up with
+ * its messages cannot make the broker run out of memory.
+ *
+ * <p>The buffer of a session is drained by at most one thread of the delegate
+ * executor at a time, which also means that messages to a session are handled
+ * in the order in which they were sent. Only messages of type
+ * {@link SimpMessageType#MESSAGE} count against the buffer capacity; other
+ * messages, e.g. heartbeats or a {@code DISCONNECT_ACK}, are always accepted.
+ * Tasks without a session id are passed to the delegate executor directly.
+ *
+ * <p>The buffer of a session, along with its statistics, is released once the
+ * session has been closed and its remaining messages have been handled. A session
+ * is considered closed once a {@code DISCONNECT} message for it has passed the
+ * {@code clientInboundChannel}, as observed through the
+ * {@link #getSessionDisconnectInterceptor() session disconnect interceptor}, or
+ * once a {@code DISCONNECT_ACK} message for it has been handled. Messages to a
+ * closed session are passed to the delegate executor directly rather than
+ * creating a new buffer. {@link #removeSession} releases a buffer right away.
+ * As a backstop, empty buffers that have been idle for the
+ * {@link #setIdleTimeout idle timeout} are released as well.
+ *
+ * @since 4.3
+ * @see org.springframework.messaging.simp.config.ChannelRegistration#sessionOutboundBuffer
+ */
+public class SessionOutboundBufferExecutor implements Executor {
+
+	private static final Log logger = LogFactory.getLog(SessionOutboundBufferExecutor.class);
+
+	private static final byte[] EMPTY_PAYLOAD = new byte[0];
+
+	/** Interval between checks for idle buffers, in milliseconds */
+	private static final long SWEEP_INTERVAL = 10000;
+
+	/** Time for which a closed session is remembered, in milliseconds */
+	private static final long CLOSED_SESSION_RETENTION = 60000;
+
+
+	private final Executor delegate;
+
+	private final int bufferSize;
+
+	private final SlowConsumerPolicy policy;
+
+	private MessageChannel outboundChannel;
+
+	private int batchSize = 32;
+
+	private long idleTimeout = 5 * 60 * 1000;
+
+	private final ConcurrentMap<String, SessionBuffer> buffers = new ConcurrentHashMap<String, SessionBuffer>();
+
+	/** Recently closed sessions, with the time of closing */
+	private final ConcurrentMap<String, Long> closedSessions = new ConcurrentHashMap<String, Long>();
+
+	private final AtomicLong lastSweepTime = new AtomicLong(System.currentTimeMillis());
+
+	private final AtomicLong totalDropCount = new AtomicLong();
+
+	private final ChannelInterceptor sessionDisconnectInterceptor = new SessionDisconnectInterceptor();
+
+
+	/**
+	 * Create a new executor.
+	 * @param delegate the executor to run the session buffers on
+	 * @param bufferSize the maximum number of messages buffered per session
+	 * @param policy the policy to apply when the buffer of a session is full
+	 */
+	public SessionOutboundBufferExecutor(Executor delegate, int bufferSize, SlowConsumerPolicy policy) {
+		Assert.notNull(delegate, "Delegate executor must not be null");
+		Assert.isTrue(bufferSize > 0, "Buffer size must be greater than 0");
+		Assert.notNull(policy, "SlowConsumerPolicy must not be null");
+		this.delegate = delegate;
+		this.bufferSize = bufferSize;
+		this.policy = policy;
+	}
+
+
+	/**
+	 * Return the maximum number of messages buffered per session.
+	 */
+	public int getBufferSize() {
+		return this.bufferSize;
+	}
+
+	/**
+	 * Return the policy applied when the buffer of a session is full.
+	 */
+	public SlowConsumerPolicy getPolicy() {
+		return this.policy;
+	}
+
+	/**
+	 * Set the channel to send a {@code DISCONNECT_ACK} message to when a session
+	 * is disconnected under the {@link SlowConsumerPolicy#DISCONNECT} policy,
+	 * typically the channel this executor is used by.
+	 * <p>This property is required for the {@code DISCONNECT} policy.
+	 */
+	public void setOutboundChannel(MessageChannel outboundChannel) {
+		this.outboundChannel = outboundChannel;
+	}
+
+	/**
+	 * Set the maximum number of messages of a session to handle before the session
+	 * is handed back to the delegate executor, allowing other sessions to make progress.
+	 * <p>By default this is set to 32.
+	 */
+	public void setBatchSize(int batchSize) {
+		Assert.isTrue(batchSize > 0, "Batch size must be greater than 0");
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Return the maximum number of messages of a session to handle in one go.
+	 */
+	public int getBatchSize() {
+		return this.batchSize;
+	}
+
+	/**
+	 * Set the time in milliseconds after which the buffer of a session that has
+	 * neither buffered nor handled any messages is released, in case the closing
+	 * of the session went unnoticed. The buffer is recreated with the next
+	 * message to the session, with fresh statistics.
+	 * <p>By default this is set to 5 minutes.
+	 */
+	public void setIdleTimeout(long idleTimeout) {
+		Assert.isTrue(idleTimeout > 0, "Idle timeout must be greater than 0");
+		this.idleTimeout = idleTimeout;
+	}
+
+	/**
+	 * Return the time in milliseconds after which an idle, empty buffer is released.
+	 */
+	public long getIdleTimeout() {
+		return this.idleTimeout;
+	}
+
+	/**
+	 * Return an interceptor to register on the {@code clientInboundChannel}, which
+	 * closes the buffer of a session once a {@code DISCONNECT} message for it has
+	 * been sent, i.e. when the client disconnects or its connection is closed.
+	 */
+	public ChannelInterceptor getSessionDisconnectInterceptor() {
+		return this.sessionDisconnectInterceptor;
+	}
+
+	/**
+	 * Return the statistics for the given session, or {@code null} if
+	 * no messages have been sent to the session.
+	 */
+	public SessionStats getSessionStats(String sessionId) {
+		return this.buffers.get(sessionId);
+	}
+
+	/**
+	 * Return the statistics of all sessions with a buffer, keyed by session id.
+	 */
+	public Map<String, SessionStats> getSessionStats() {
+		return Collections.<String, SessionStats>unmodifiableMap(new LinkedHashMap<String, SessionBuffer>(this.buffers));
+	}
+
+	/**
+	 * Return the number of messages dropped or conflated across all sessions.
+	 */
+	public long getTotalDropCount() {
+		return this.totalDropCount.get();
+	}
+
+	/**
+	 * Release the buffer of the given session, discarding any messages it holds.
+	 * Further messages to the session are passed to the delegate executor directly.
+	 */
+	public void removeSession(String sessionId) {
+		this.closedSessions.put(sessionId, System.currentTimeMillis());
+		SessionBuffer buffer = this.buffers.remove(sessionId);
+		if (buffer != null) {
+			buffer.discard();
+		}
+	}
+
+	/**
+	 * Mark the given session as closed, releasing its buffer once the messages
+	 * it holds have been handled.
+	 */
+	public void closeSession(String sessionId) {
+		this.closedSessions.put(sessionId, System.currentTimeMillis());
+		SessionBuffer buffer = this.buffers.get(sessionId);
+		if (buffer != null && buffer.close()) {
+			this.buffers.remove(sessionId, buffer);
+		}
+	}
+
+
+	@Override
+	public void execute(Runnable task) {
+		Message<?> message = (task instanceof MessageHandlingRunnable ?
+				((MessageHandlingRunnable) task).getMessage() : null);
+		String sessionId = (message != null ? SimpMessageHeaderAccessor.getSessionId(message.getHeaders()) : null);
+		if (sessionId == null) {
+			this.delegate.execute(task);
+			return;
+		}
+		long now = System.currentTimeMillis();
+		long lastSweep = this.lastSweepTime.get();
+		if (now - lastSweep >= SWEEP_INTERVAL && this.lastSweepTime.compareAndSet(lastSweep, now)) {
+			releaseIdleBuffers(now);
+		}
+		while (true) {
+			SessionBuffer buffer = this.buffers.get(sessionId);
+			if (buffer == null) {
+				if (this.closedSessions.containsKey(sessionId)) {
+					this.delegate.execute(task);
+					return;
+				}
+				buffer = new SessionBuffer(sessionId);
+				SessionBuffer existing = this.buffers.putIfAbsent(sessionId, buffer);
+				if (existing != null) {
+					buffer = existing;
+				}
+				else if (this.closedSessions.containsKey(sessionId) && buffer.close()) {
+					// Closed concurrently
+					this.buffers.remove(sessionId, buffer);
+				}
+			}
+			if (buffer.add(task, message)) {
+				return;
+			}
+			// The buffer has been released in the meantime: look up the session again
+			this.buffers.remove(sessionId, buffer);
+		}
+	}
+
+	private void releaseIdleBuffers(long now) {
+		for (SessionBuffer buffer : this.buffers.values()) {
+			if (buffer.releaseIfIdle(now - this.idleTimeout)) {
+				this.buffers.remove(buffer.getSessionId(), buffer);
+				if (logger.isDebugEnabled()) {
+					logger.debug("Released idle outbound buffer of session " + buffer.getSessionId());
+				}
+			}
+		}
+		for (Map.Entry<String, Long> entry : this.closedSessions.entrySet()) {
+			if (now - entry.getValue() > CLOSED_SESSION_RETENTION) {
+				this.closedSessions.remove(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	private void disconnect(SessionBuffer buffer) {
+		if (logger.isWarnEnabled()) {
+			logger.warn("Disconnecting session " + buffer.getSessionId() + " after its outbound buffer of " +
+					this.bufferSize + " messages overflowed");
+		}
+		if (this.outboundChannel == null) {
+			logger.error("No outbound channel configured: cannot disconnect session " + buffer.getSessionId());
+			return;
+		}
+		SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.DISCONNECT_ACK);
+		accessor.setSessionId(buffer.getSessionId());
+		this.outboundChannel.send(MessageBuilder.createMessage(EMPTY_PAYLOAD, accessor.getMessageHeaders()));
+	}
+
+	@Override
+	public String toString() {
+		return "SessionOutboundBufferExecutor[sessions=" + this.buffers.size() + ", bufferSize=" + this.bufferSize +
+				", policy=" + this.policy + ", dropped=" + this.totalDropCount.get() + "]";
+	}
+
+
+	/**
+	 * Policy for a session whose outbound buffer is full.
+	 */
+	public enum SlowConsumerPolicy {
+
+		/**
+		 * Drop the oldest buffered message to make room for the new one.
+		 */
+		DROP_OLDEST,
+
+		/**
+		 * Drop the new message.
+		 */
+		DROP_NEWEST,
+
+		/**
+		 * Replace the buffered message with the same destination as the new
+		 * one, if any, as only the latest value of a destination matters;
+		 * otherwise drop the oldest buffered message.
+		 */
+		CONFLATE_BY_DESTINATION,
+
+		/**
+		 * Discard the buffered messages and disconnect the session by sending
+		 * it a {@code DISCONNECT_ACK} message.
+		 */
+		DISCONNECT
+	}
+
+
+	/**
+	 * Outbound buffer statistics of a session.
+	 */
+	public interface SessionStats {
+
+		/**
+		 * Return the session id.
+		 */
+		String getSessionId();
+
+		/**
+		 * Return the number of messages currently buffered.
+		 */
+		int getQueueDepth();
+
+		/**
+		 * Return the highest number of messages buffered at any time.
+		 */
+		int getMaxQueueDepth();
+
+		/**
+		 * Return the number of messages dropped, including conflated messages.
+		 */
+		long getDropCount();
+
+		/**
+		 * Return the number of messages handled.
+		 */
+		long getSentCount();
+	}
+
+
+	private class SessionBuffer implements Runnable, SessionStats {
+
+		private final String sessionId;
+
+		private final ArrayDeque<BufferedTask> queue = new ArrayDeque<BufferedTask>();
+
+		private int messageCount;
+
+		private int maxQueueDepth;
+
+		private boolean scheduled;
+
+		private boolean disconnecting;
+
+		private boolean closed;
+
+		private boolean released;
+
+		private long lastActivity = System.currentTimeMillis();
+
+		private final AtomicLong dropCount = new AtomicLong();
+
+		private final AtomicLong sentCount = new AtomicLong();
+
+		public SessionBuffer(String sessionId) {
+			this.sessionId = sessionId;
+		}
+
+		@Override
+		public String getSessionId() {
+			return this.sessionId;
+		}
+
+		@Override
+		public synchronized int getQueueDepth() {
+			return this.queue.size();
+		}
+
+		@Override
+		public synchronized int getMaxQueueDepth() {
+			return this.maxQueueDepth;
+		}
+
+		@Override
+		public long getDropCount() {
+			return this.dropCount.get();
+		}
+
+		@Override
+		public long getSentCount() {
+			return this.sentCount.get();
+		}
+
+		/**
+		 * Add the given task to this buffer.
+		 * @return {@code false} if this buffer has been released
+		 */
+		public boolean add(Runnable task, Message<?> message) {
+			boolean disconnect = false;
+			boolean schedule = false;
+			synchronized (this) {
+				if (this.released) {
+					return false;
+				}
+				this.lastActivity = System.currentTimeMillis();
+				BufferedTask bufferedTask = new BufferedTask(task, message);
+				if (!bufferedTask.isRegularMessage()) {
+					this.queue.add(bufferedTask);
+				}
+				else if (this.disconnecting) {
+					dropped(1);
+				}
+				else if (this.messageCount < bufferSize) {
+					this.queue.add(bufferedTask);
+					this.messageCount++;
+				}
+				else {
+					disconnect = handleOverflow(bufferedTask);
+				}
+				this.maxQueueDepth = Math.max(this.maxQueueDepth, this.queue.size());
+				if (!this.scheduled && !this.queue.isEmpty()) {
+					this.scheduled = true;
+					schedule = true;
+				}
+			}
+			if (disconnect) {
+				disconnect(this);
+			}
+			if (schedule) {
+				schedule();
+			}
+			return true;
+		}
+
+		/**
+		 * Apply the policy for the given message, for which there is no room.
+		 * @return whether to disconnect the session
+		 */
+		private boolean handleOverflow(BufferedTask bufferedTask) {
+			switch (policy) {
+				case DROP_NEWEST:
+					dropped(1);
+					return false;
+				case CONFLATE_BY_DESTINATION:
+					if (removeRegularMessage(bufferedTask.getDestination())) {
+						this.queue.add(bufferedTask);
+						return false;
+					}
+					// fall through to DROP_OLDEST
+				case DROP_OLDEST:
+					removeRegularMessage(null);
+					this.queue.add(bufferedTask);
+					return false;
+				case DISCONNECT:
+					int discarded = this.messageCount + 1;
+					Iterator<BufferedTask> it = this.queue.iterator();
+					while (it.hasNext()) {
+						if (it.next().isRegularMessage()) {
+							it.remove();
+						}
+					}
+					this.messageCount = 0;
+					this.disconnecting = true;
+					dropped(discarded);
+					return true;
+				default:
+					throw new IllegalStateException("Unexpected policy " + policy);
+			}
+		}
+
+		/**
+		 * Remove the oldest regular message, with the given destination if specified.
+		 */
+		private boolean removeRegularMessage(String destination) {
+			Iterator<BufferedTask> it = this.queue.iterator();
+			while (it.hasNext()) {
+				BufferedTask candidate = it.next();
+				if (candidate.isRegularMessage() &&
+						(destination == null || destination.equals(candidate.getDestination()))) {
+					it.remove();
+					dropped(1);
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private void dropped(int count) {
+			this.dropCount.addAndGet(count);
+			totalDropCount.addAndGet(count);
+		}
+
+		private void schedule() {
+			try {
+				delegate.execute(this);
+			}
+			catch (RuntimeException ex) {
+				synchronized (this) {
+					this.scheduled = false;
+				}
+				throw ex;
+			}
+		}
+
+		@Override
+		public void run() {
+			boolean reschedule = false;
+			try {
+				for (int i = 0; i < batchSize; i++) {
+					BufferedTask bufferedTask;
+					synchronized (this) {
+						bufferedTask = this.queue.poll();
+						if (bufferedTask == null) {
+							break;
+						}
+						if (bufferedTask.isRegularMessage()) {
+							this.messageCount--;
+						}
+					}
+					try {
+						bufferedTask.run();
+						this.sentCount.incrementAndGet();
+					}
+					catch (Throwable ex) {
+						logger.error("Failed to send message to session " + this.sessionId, ex);
+					}
+					if (bufferedTask.isDisconnectAck()) {
+						closeSession(this.sessionId);
+					}
+				}
+			}
+			finally {
+				boolean release = false;
+				synchronized (this) {
+					reschedule = !this.queue.isEmpty();
+					this.scheduled = reschedule;
+					this.lastActivity = System.currentTimeMillis();
+					if (!reschedule && this.closed && !this.released) {
+						this.released = true;
+						release = true;
+					}
+				}
+				if (release) {
+					buffers.remove(this.sessionId, this);
+				}
+				if (reschedule) {
+					try {
+						schedule();
+					}
+					catch (RuntimeException ex) {
+						logger.error("Failed to reschedule outbound buffer of session " + this.sessionId, ex);
+					}
+				}
+			}
+		}
+
+		/**
+		 * Mark the session as closed.
+		 * @return whether this buffer is released right away, i.e. has no messages
+		 * left to handle; otherwise it is released once it has handled them
+		 */
+		public synchronized boolean close() {
+			this.closed = true;
+			if (!this.scheduled && this.queue.isEmpty()) {
+				this.released = true;
+			}
+			return this.released;
+		}
+
+		/**
+		 * Release this buffer if it is empty and has been idle since the given time.
+		 */
+		public synchronized boolean releaseIfIdle(long idleSince) {
+			if (!this.released && !this.scheduled && this.queue.isEmpty() && this.lastActivity < idleSince) {
+				this.released = true;
+			}
+			return this.released;
+		}
+
+		public synchronized void discard() {
+			this.queue.clear();
+			this.messageCount = 0;
+			this.released = true;
+		}
+
+		@Override
+		public String toString() {
+			return "SessionStats[" + this.sessionId + ": queued=" + getQueueDepth() +
+					", maxQueued=" + getMaxQueueDepth() + ", dropped=" + getDropCount() + ", sent=" + getSentCount() + "]";
+		}
+	}
+
+
+	/**
+	 * Closes the buffer of a session once a DISCONNECT message has been sent
+	 * for it to the {@code clientInboundChannel}.
+	 */
+	private class SessionDisconnectInterceptor extends ChannelInterceptorAdapter {
+
+		@Override
+		public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+			MessageHeaders headers = message.getHeaders();
+			if (SimpMessageHeaderAccessor.getMessageType(headers) == SimpMessageType.DISCONNECT) {
+				String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+				if (sessionId != null) {
+					closeSession(sessionId);
+				}
+			}
+		}
+	}
+
+
+	private static class BufferedTask {
+
+		private final Runnable task;
+
+		private final SimpMessageType messageType;
+
+		private final String destination;
+
+		public BufferedTask(Runnable task, Message<?> message) {
+			MessageHeaders headers = message.getHeaders();
+			this.task = task;
+			this.messageType = SimpMessageHeaderAccessor.getMessageType(headers);
+			this.destination = SimpMessageHeaderAccessor.getDestination(headers);
+		}
+
+		public boolean isRegularMessage() {
+			return (this.messageType == SimpMessageType.MESSAGE);
+		}
+
+		public boolean isDisconnectAck() {
+			return (this.messageType == SimpMessageType.DISCONNECT_ACK);
+		}
+
+		public String getDestination() {
+			return this.destination;
+		}
+
+		public void run() {
+			this.task.run();
+		}
+	}
+
+}
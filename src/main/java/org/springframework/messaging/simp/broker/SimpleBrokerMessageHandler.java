@@ -18,6 +18,8 @@ package org.springframework.messaging.simp.broker;
 
 import java.security.Principal;
 import java.util.Collection;
+import java.util.Date;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledFuture;
@@ -58,7 +60,8 @@ public class SimpleBrokerMessageHandler extends AbstractBrokerMessageHandler {
 
 	private long[] heartbeatValue;
 
-	private ScheduledFuture<?> heartbeatFuture;
+	/** Whether heartbeat checks may be scheduled, i.e. the handler has not been stopped */
+	private volatile boolean heartbeatsEnabled;
 
 	private MessageHeaderInitializer headerInitializer;
 
@@ -117,6 +120,9 @@ public class SimpleBrokerMessageHandler extends AbstractBrokerMessageHandler {
 	 * Configure the {@link TaskScheduler} to
 	 * use for providing heartbeat support. Setting this property also sets the
 	 * {@link #setHeartbeatValue heartbeatValue} to "10000, 10000".
+	 * <p>Heartbeat deadlines are scheduled per session and only when due, so a
+	 * {@link org.springframework.scheduling.concurrent.TimingWheelTaskScheduler}
+	 * is a good fit for large numbers of connected sessions.
 	 * <p>By default this is not set.
 	 * @since 4.2
 	 */
@@ -177,9 +183,9 @@ public class SimpleBrokerMessageHandler extends AbstractBrokerMessageHandler {
 	public void startInternal() {
 		publishBrokerAvailableEvent();
 		if (getTaskScheduler() != null) {
-			long interval = initHeartbeatTaskDelay();
-			if (interval > 0) {
-				this.heartbeatFuture = this.taskScheduler.scheduleWithFixedDelay(new HeartbeatTask(), interval);
+			this.heartbeatsEnabled = true;
+			for (SessionInfo info : this.sessions.values()) {
+				scheduleHeartbeat(info);
 			}
 		}
 		else {
@@ -189,23 +195,12 @@ public class SimpleBrokerMessageHandler extends AbstractBrokerMessageHandler {
 		}
 	}
 
-	private long initHeartbeatTaskDelay() {
-		if (getHeartbeatValue() == null) {
-			return 0;
-		}
-		else if (getHeartbeatValue()[0] > 0 && getHeartbeatValue()[1] > 0) {
-			return Math.min(getHeartbeatValue()[0], getHeartbeatValue()[1]);
-		}
-		else {
-			return (getHeartbeatValue()[0] > 0 ? getHeartbeatValue()[0] : getHeartbeatValue()[1]);
-		}
-	}
-
 	@Override
 	public void stopInternal() {
 		publishBrokerUnavailableEvent();
-		if (this.heartbeatFuture != null) {
-			this.heartbeatFuture.cancel(true);
+		this.heartbeatsEnabled = false;
+		for (SessionInfo info : this.sessions.values()) {
+			info.cancelHeartbeat();
 		}
 	}
 
@@ -237,7 +232,11 @@ public class SimpleBrokerMessageHandler extends AbstractBrokerMessageHandler {
 			logMessage(message);
 			long[] clientHeartbeat = SimpMessageHeaderAccessor.getHeartbeat(headers);
 			long[] serverHeartbeat = getHeartbeatValue();
-			this.sessions.put(sessionId, new SessionInfo(sessionId, user, clientHeartbeat, serverHeartbeat));
+			SessionInfo info = new SessionInfo(sessionId, user, clientHeartbeat, serverHeartbeat);
+			this.sessions.put(sessionId, info);
+			if (getTaskScheduler() != null) {
+				scheduleHeartbeat(info);
+			}
 			SimpMessageHeaderAccessor connectAck = SimpMessageHeaderAccessor.create(SimpMessageType.CONNECT_ACK);
 			initHeaders(connectAck);
 			connectAck.setSessionId(sessionId);
@@ -284,8 +283,25 @@ public class SimpleBrokerMessageHandler extends AbstractBrokerMessageHandler {
 		}
 	}
 
+	private void scheduleHeartbeat(SessionInfo info) {
+		if (!this.heartbeatsEnabled) {
+			return;
+		}
+		long nextHeartbeatTime = info.getNextHeartbeatTime();
+		if (nextHeartbeatTime > 0) {
+			info.setHeartbeatFuture(getTaskScheduler().schedule(new HeartbeatTask(info), new Date(nextHeartbeatTime)));
+			if (!this.heartbeatsEnabled) {
+				// Stopped concurrently, possibly without seeing the new future
+				info.cancelHeartbeat();
+			}
+		}
+	}
+
 	private void handleDisconnect(String sessionId, Principal user) {
-		this.sessions.remove(sessionId);
+		SessionInfo info = this.sessions.remove(sessionId);
+		if (info != null) {
+			info.cancelHeartbeat();
+		}
 		this.subscriptionRegistry.unregisterAllSubscriptions(sessionId);
 		SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.DISCONNECT_ACK);
 		accessor.setSessionId(sessionId);
@@ -297,18 +313,27 @@ public class SimpleBrokerMessageHandler extends AbstractBrokerMessageHandler {
 
 	protected void sendMessageToSubscribers(String destination, Message<?> message) {
 		MultiValueMap<String,String> subscriptions = this.subscriptionRegistry.findSubscriptions(message);
-		if (!subscriptions.isEmpty() && logger.isDebugEnabled()) {
+		if (subscriptions.isEmpty()) {
+			return;
+		}
+		if (logger.isDebugEnabled()) {
 			logger.debug("Broadcasting to " + subscriptions.size() + " sessions.");
 		}
+		// Headers shared by all subscribers: each message below copies them with a plain
+		// array copy and shares the native headers, adding its session and subscription id
+		SimpMessageHeaderAccessor templateAccessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+		templateAccessor.copyHeadersIfAbsent(message.getHeaders());
+		Object payload = message.getPayload();
+		Message<?> template = MessageBuilder.createMessage(payload, templateAccessor.getMessageHeaders());
 		long now = System.currentTimeMillis();
-		for (String sessionId : subscriptions.keySet()) {
-			for (String subscriptionId : subscriptions.get(sessionId)) {
-				SimpMessageHeaderAccessor headerAccessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+		for (Map.Entry<String, List<String>> entry : subscriptions.entrySet()) {
+			String sessionId = entry.getKey();
+			SessionInfo info = this.sessions.get(sessionId);
+			for (String subscriptionId : entry.getValue()) {
+				SimpMessageHeaderAccessor headerAccessor = SimpMessageHeaderAccessor.wrap(template);
 				initHeaders(headerAccessor);
 				headerAccessor.setSessionId(sessionId);
 				headerAccessor.setSubscriptionId(subscriptionId);
-				headerAccessor.copyHeadersIfAbsent(message.getHeaders());
-				Object payload = message.getPayload();
 				Message<?> reply = MessageBuilder.createMessage(payload, headerAccessor.getMessageHeaders());
 				try {
 					getClientOutboundChannel().send(reply);
@@ -317,7 +342,6 @@ public class SimpleBrokerMessageHandler extends AbstractBrokerMessageHandler {
 					logger.error("Failed to send " + message, ex);
 				}
 				finally {
-					SessionInfo info = this.sessions.get(sessionId);
 					if (info != null) {
 						info.setLastWriteTime(now);
 					}
@@ -349,6 +373,8 @@ public class SimpleBrokerMessageHandler extends AbstractBrokerMessageHandler {
 
 		private volatile long lastWriteTime;
 
+		private volatile ScheduledFuture<?> heartbeatFuture;
+
 		public SessionInfo(String sessiondId, Principal user, long[] clientHeartbeat, long[] serverHeartbeat) {
 			this.sessiondId = sessiondId;
 			this.user = user;
@@ -396,27 +422,70 @@ public class SimpleBrokerMessageHandler extends AbstractBrokerMessageHandler {
 		public void setLastWriteTime(long lastWriteTime) {
 			this.lastWriteTime = lastWriteTime;
 		}
+
+		/**
+		 * Return the time at which the read or write interval, whichever comes
+		 * first, elapses without activity, or 0 if heartbeats are not enabled.
+		 */
+		public long getNextHeartbeatTime() {
+			long time = 0;
+			if (this.readInterval > 0) {
+				time = this.lastReadTime + this.readInterval;
+			}
+			if (this.writeInterval > 0) {
+				long writeTime = this.lastWriteTime + this.writeInterval;
+				time = (time > 0 ? Math.min(time, writeTime) : writeTime);
+			}
+			return time;
+		}
+
+		public void setHeartbeatFuture(ScheduledFuture<?> heartbeatFuture) {
+			this.heartbeatFuture = heartbeatFuture;
+		}
+
+		public void cancelHeartbeat() {
+			ScheduledFuture<?> future = this.heartbeatFuture;
+			if (future != null) {
+				future.cancel(false);
+			}
+		}
 	}
 
 
+	/**
+	 * Checks the heartbeat deadlines of one session when the earliest of them is
+	 * due, and schedules itself again for the next one, so that activity on a
+	 * session in the meantime only costs updating its read or write time.
+	 */
 	private class HeartbeatTask implements Runnable {
 
+		private final SessionInfo info;
+
+		public HeartbeatTask(SessionInfo info) {
+			this.info = info;
+		}
+
 		@Override
 		public void run() {
+			SessionInfo info = this.info;
+			if (!heartbeatsEnabled || sessions.get(info.getSessiondId()) != info) {
+				return;
+			}
 			long now = System.currentTimeMillis();
-			for (SessionInfo info : sessions.values()) {
-				if (info.getReadInterval() > 0 && (now - info.getLastReadTime()) > info.getReadInterval()) {
-					handleDisconnect(info.getSessiondId(), info.getUser());
-				}
-				if (info.getWriteInterval() > 0 && (now - info.getLastWriteTime()) > info.getWriteInterval()) {
-					SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.HEARTBEAT);
-					accessor.setSessionId(info.getSessiondId());
-					accessor.setUser(info.getUser());
-					initHeaders(accessor);
-					MessageHeaders headers = accessor.getMessageHeaders();
-					getClientOutboundChannel().send(MessageBuilder.createMessage(EMPTY_PAYLOAD, headers));
-				}
+			if (info.getReadInterval() > 0 && (now - info.getLastReadTime()) >= info.getReadInterval()) {
+				handleDisconnect(info.getSessiondId(), info.getUser());
+				return;
+			}
+			if (info.getWriteInterval() > 0 && (now - info.getLastWriteTime()) >= info.getWriteInterval()) {
+				SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.HEARTBEAT);
+				accessor.setSessionId(info.getSessiondId());
+				accessor.setUser(info.getUser());
+				initHeaders(accessor);
+				MessageHeaders headers = accessor.getMessageHeaders();
+				getClientOutboundChannel().send(MessageBuilder.createMessage(EMPTY_PAYLOAD, headers));
+				info.setLastWriteTime(now);
 			}
+			scheduleHeartbeat(info);
 		}
 	}
 
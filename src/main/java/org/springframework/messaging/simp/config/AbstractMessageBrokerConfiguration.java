@@ -20,6 +20,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.BeanInitializationException;
@@ -39,6 +40,7 @@ import org.springframework.messaging.handler.invocation.HandlerMethodReturnValue
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.messaging.simp.annotation.support.SimpAnnotationMethodMessageHandler;
 import org.springframework.messaging.simp.broker.AbstractBrokerMessageHandler;
+import org.springframework.messaging.simp.broker.SessionOutboundBufferExecutor;
 import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
 import org.springframework.messaging.simp.stomp.StompBrokerRelayMessageHandler;
 import org.springframework.messaging.simp.user.DefaultUserDestinationResolver;
@@ -50,6 +52,7 @@ import org.springframework.messaging.simp.user.UserRegistryMessageHandler;
 import org.springframework.messaging.support.AbstractSubscribableChannel;
 import org.springframework.messaging.support.ExecutorSubscribableChannel;
 import org.springframework.messaging.support.ImmutableMessageChannelInterceptor;
+import org.springframework.messaging.support.ShardedMessageExecutor;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 import org.springframework.util.ClassUtils;
@@ -117,9 +120,20 @@ public abstract class AbstractMessageBrokerConfiguration implements ApplicationC
 
 	@Bean
 	public AbstractSubscribableChannel clientInboundChannel() {
-		ExecutorSubscribableChannel channel = new ExecutorSubscribableChannel(clientInboundChannelExecutor());
 		ChannelRegistration reg = getClientInboundChannelRegistration();
+		Executor executor = clientInboundChannelExecutor();
+		if (reg.isPreserveSessionOrder()) {
+			executor = new ShardedMessageExecutor(executor);
+		}
+		ExecutorSubscribableChannel channel = new ExecutorSubscribableChannel(executor);
 		channel.setInterceptors(reg.getInterceptors());
+		if (getClientOutboundChannelRegistration().hasSessionOutboundBuffer()) {
+			Executor outboundExecutor = ((ExecutorSubscribableChannel) clientOutboundChannel()).getExecutor();
+			if (outboundExecutor instanceof SessionOutboundBufferExecutor) {
+				// Release outbound buffers of sessions once they disconnect
+				channel.addInterceptor(((SessionOutboundBufferExecutor) outboundExecutor).getSessionDisconnectInterceptor());
+			}
+		}
 		return channel;
 	}
 
@@ -150,9 +164,22 @@ public abstract class AbstractMessageBrokerConfiguration implements ApplicationC
 
 	@Bean
 	public AbstractSubscribableChannel clientOutboundChannel() {
-		ExecutorSubscribableChannel channel = new ExecutorSubscribableChannel(clientOutboundChannelExecutor());
 		ChannelRegistration reg = getClientOutboundChannelRegistration();
+		Executor executor = clientOutboundChannelExecutor();
+		SessionOutboundBufferExecutor bufferExecutor = null;
+		if (reg.hasSessionOutboundBuffer()) {
+			bufferExecutor = new SessionOutboundBufferExecutor(executor,
+					reg.getSessionOutboundBufferSize(), reg.getSlowConsumerPolicy());
+			executor = bufferExecutor;
+		}
+		else if (reg.isPreserveSessionOrder()) {
+			executor = new ShardedMessageExecutor(executor);
+		}
+		ExecutorSubscribableChannel channel = new ExecutorSubscribableChannel(executor);
 		channel.setInterceptors(reg.getInterceptors());
+		if (bufferExecutor != null) {
+			bufferExecutor.setOutboundChannel(channel);
+		}
 		return channel;
 	}
 
@@ -20,6 +20,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import org.springframework.messaging.simp.broker.SessionOutboundBufferExecutor;
 import org.springframework.messaging.support.ChannelInterceptor;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
@@ -36,6 +37,12 @@ public class ChannelRegistration {
 
 	private final List<ChannelInterceptor> interceptors = new ArrayList<ChannelInterceptor>();
 
+	private boolean preserveSessionOrder;
+
+	private int sessionOutboundBufferSize = -1;
+
+	private SessionOutboundBufferExecutor.SlowConsumerPolicy slowConsumerPolicy;
+
 
 	/**
 	 * Configure the thread pool backing this message channel.
@@ -69,6 +76,41 @@ public class ChannelRegistration {
 	}
 
 
+	/**
+	 * Whether messages of the same session are to be handled in the order in
+	 * which they were sent to the channel, one at a time. Messages of different
+	 * sessions are still handled concurrently.
+	 * <p>By default this is set to {@code false}, i.e. messages of one session
+	 * may be handled concurrently and hence out of order.
+	 * @since 4.3
+	 * @see org.springframework.messaging.support.ShardedMessageExecutor
+	 */
+	public ChannelRegistration preserveSessionOrder(boolean preserveSessionOrder) {
+		this.preserveSessionOrder = preserveSessionOrder;
+		return this;
+	}
+
+	/**
+	 * Bound the number of messages buffered per session, applying the given
+	 * policy to sessions whose buffer is full. This is intended for the
+	 * {@code clientOutboundChannel} and is ignored for other channels.
+	 * <p>Messages to a session are handled in order, as with
+	 * {@link #preserveSessionOrder(boolean)}.
+	 * <p>By default the number of messages buffered per session is unbounded.
+	 * @param bufferSize the maximum number of messages buffered per session
+	 * @param policy the policy for a session whose buffer is full
+	 * @since 4.3
+	 * @see SessionOutboundBufferExecutor
+	 */
+	public ChannelRegistration sessionOutboundBuffer(int bufferSize,
+			SessionOutboundBufferExecutor.SlowConsumerPolicy policy) {
+
+		this.sessionOutboundBufferSize = bufferSize;
+		this.slowConsumerPolicy = policy;
+		return this;
+	}
+
+
 	protected boolean hasTaskExecutor() {
 		return (this.registration != null);
 	}
@@ -88,4 +130,20 @@ public class ChannelRegistration {
 	protected List<ChannelInterceptor> getInterceptors() {
 		return this.interceptors;
 	}
+
+	protected boolean isPreserveSessionOrder() {
+		return this.preserveSessionOrder;
+	}
+
+	protected boolean hasSessionOutboundBuffer() {
+		return (this.sessionOutboundBufferSize > 0);
+	}
+
+	protected int getSessionOutboundBufferSize() {
+		return this.sessionOutboundBufferSize;
+	}
+
+	protected SessionOutboundBufferExecutor.SlowConsumerPolicy getSlowConsumerPolicy() {
+		return this.slowConsumerPolicy;
+	}
 }
@@ -0,0 +1,983 @@
+/*
+ * Copyright 2002-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.messaging.simp.stomp;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.SubscribableChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.broker.SimpleBrokerMessageHandler;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.NativeMessageHeaderAccessor;
+import org.springframework.messaging.tcp.FixedIntervalReconnectStrategy;
+import org.springframework.messaging.tcp.TcpConnection;
+import org.springframework.messaging.tcp.TcpConnectionHandler;
+import org.springframework.messaging.tcp.TcpOperations;
+import org.springframework.messaging.tcp.reactor.Reactor2TcpClient;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+import org.springframework.util.Base64Utils;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.util.concurrent.ListenableFutureCallback;
+
+/**
+ * A {@link SimpleBrokerMessageHandler} for running the simple broker on a small
+ * cluster of application servers without an external message broker.
+ *
+ * <p>Subscriptions are kept locally, as with the simple broker, while messages
+ * published on one node are also forwarded to all other nodes which then deliver
+ * them to their own subscribers. Nodes connect to each other through the
+ * {@link TcpOperations} abstraction, by default through {@link Reactor2TcpClient}
+ * for each of the configured {@link #setPeers peers}, and each node accepts
+ * connections from its peers on the configured {@link #setListenPort port}.
+ *
+ * <p>Forwarded messages are encoded as STOMP SEND frames. Messages published
+ * while a previous batch to the same peer is still being written are sent
+ * together in the next batch, up to the {@link #setBatchSize batch size}, and
+ * batches are compressed once they exceed the
+ * {@link #setCompressionThreshold compression threshold}.
+ *
+ * <p>Delivery across nodes is best-effort: messages published while a peer is
+ * not connected, or in excess of the {@link #setPeerQueueLimit queue limit},
+ * are not delivered to subscribers on that peer.
+ *
+ * <p><strong>Note:</strong> any party that can connect to the listen port can
+ * publish messages to the subscribers of this node. By default the listener is
+ * therefore bound to the loopback address only, and binding it to any other
+ * {@link #setListenAddress address} requires a {@link #setSharedSecret shared
+ * secret} which peers must prove knowledge of before their batches are accepted.
+ * Connections between nodes are not encrypted, so the listen port should still
+ * only be reachable from a trusted network.
+ *
+ * @since 4.3
+ * @see StompBrokerRelayMessageHandler
+ */
+public class ClusteredBrokerMessageHandler extends SimpleBrokerMessageHandler {
+
+	private static final String BATCH_DESTINATION = "/cluster/batch";
+
+	private static final String BATCH_ENCODING_HEADER = "batch-encoding";
+
+	private static final String DEFLATE_ENCODING = "deflate";
+
+	private static final String NONCE_HEADER = "cluster-nonce";
+
+	private static final String SIGNATURE_HEADER = "cluster-signature";
+
+	private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+	private static final int HANDSHAKE_TIMEOUT = 10000;
+
+	private static final int MAX_HANDSHAKE_FRAME_SIZE = 4096;
+
+	private static final int DEFAULT_MAX_LISTENER_THREADS = 64;
+
+	private static final Charset UTF8_CHARSET = Charset.forName("UTF-8");
+
+
+	private List<String> peers = new ArrayList<String>();
+
+	private List<TcpOperations<byte[]>> peerClients;
+
+	private volatile List<TcpOperations<byte[]>> createdPeerClients;
+
+	private String listenAddress;
+
+	private int listenPort = -1;
+
+	private String sharedSecret;
+
+	private Executor listenerExecutor;
+
+	private int batchSize = 64;
+
+	private int compressionThreshold = 1024;
+
+	private int peerQueueLimit = 10000;
+
+	private int maxBatchBufferSize = 16 * 1024 * 1024;
+
+	private final StompEncoder stompEncoder = new StompEncoder();
+
+	private final List<PeerConnectionHandler> peerHandlers = new CopyOnWriteArrayList<PeerConnectionHandler>();
+
+	private volatile ServerSocket serverSocket;
+
+	private ExecutorService defaultListenerExecutor;
+
+	private final Set<Socket> acceptedSockets = new CopyOnWriteArraySet<Socket>();
+
+	private final SecureRandom secureRandom = new SecureRandom();
+
+	private final Stats stats = new Stats();
+
+
+	/**
+	 * Create a ClusteredBrokerMessageHandler instance with the given message
+	 * channels and destination prefixes.
+	 * @param clientInboundChannel the channel for receiving messages from clients (e.g. WebSocket clients)
+	 * @param clientOutboundChannel the channel for sending messages to clients (e.g. WebSocket clients)
+	 * @param brokerChannel the channel for the application to send messages to the broker
+	 * @param destinationPrefixes prefixes to use to filter out messages
+	 */
+	public ClusteredBrokerMessageHandler(SubscribableChannel clientInboundChannel,
+			MessageChannel clientOutboundChannel, SubscribableChannel brokerChannel,
+			Collection<String> destinationPrefixes) {
+
+		super(clientInboundChannel, clientOutboundChannel, brokerChannel, destinationPrefixes);
+	}
+
+
+	/**
+	 * Set the addresses of the other nodes in the cluster in the form
+	 * {@code "host:port"}, where the port is the {@link #setListenPort listen port}
+	 * of the respective node.
+	 */
+	public void setPeers(List<String> peers) {
+		Assert.notNull(peers, "Peers must not be null");
+		this.peers = peers;
+	}
+
+	/**
+	 * Return the configured peer addresses.
+	 */
+	public List<String> getPeers() {
+		return this.peers;
+	}
+
+	/**
+	 * Configure the TCP clients to connect to the other nodes in the cluster with,
+	 * one per node, as an alternative to {@link #setPeers}. The clients must
+	 * encode messages as STOMP frames, e.g. using a {@link Reactor2StompCodec}.
+	 * <p>The handler connects through the given clients when started and closes
+	 * its connections when stopped, but does not shut the clients down: that
+	 * remains the responsibility of the caller. Clients created for the
+	 * configured {@link #setPeers peers} on the other hand are created on every
+	 * start and shut down on stop.
+	 */
+	public void setPeerClients(List<TcpOperations<byte[]>> peerClients) {
+		this.peerClients = peerClients;
+	}
+
+	/**
+	 * Return the configured TCP clients, or the ones created for the configured
+	 * peer addresses while the handler is running.
+	 */
+	public List<TcpOperations<byte[]>> getPeerClients() {
+		return (this.peerClients != null ? this.peerClients : this.createdPeerClients);
+	}
+
+	/**
+	 * Set the local address to accept connections from other nodes on, e.g.
+	 * the address of a private network interface, or {@code "0.0.0.0"} for
+	 * all interfaces.
+	 * <p>By default connections are accepted on the loopback address only.
+	 * Any other address requires a {@link #setSharedSecret shared secret}.
+	 */
+	public void setListenAddress(String listenAddress) {
+		this.listenAddress = listenAddress;
+	}
+
+	/**
+	 * Return the configured listen address, or {@code null} for loopback.
+	 */
+	public String getListenAddress() {
+		return this.listenAddress;
+	}
+
+	/**
+	 * Set the port to accept connections from other nodes on. Use 0 for an
+	 * ephemeral port, e.g. for testing, which can be obtained via
+	 * {@link #getListenPort()} once the handler has been started.
+	 * <p>By default this is set to -1, in which case this node only forwards
+	 * messages to other nodes but does not receive any.
+	 */
+	public void setListenPort(int listenPort) {
+		this.listenPort = listenPort;
+	}
+
+	/**
+	 * Return the port this node accepts connections from other nodes on.
+	 */
+	public int getListenPort() {
+		ServerSocket serverSocket = this.serverSocket;
+		return (serverSocket != null ? serverSocket.getLocalPort() : this.listenPort);
+	}
+
+	/**
+	 * Set a secret shared by all nodes in the cluster. Nodes accepting a
+	 * connection send a random nonce, and only accept batches once the
+	 * connecting node has replied with the HMAC-SHA256 of the nonce keyed
+	 * with the secret. The secret itself is never sent.
+	 * <p>By default this is not set, which is only allowed when listening
+	 * on the loopback address.
+	 */
+	public void setSharedSecret(String sharedSecret) {
+		this.sharedSecret = sharedSecret;
+	}
+
+	/**
+	 * Return the configured shared secret.
+	 */
+	public String getSharedSecret() {
+		return this.sharedSecret;
+	}
+
+	/**
+	 * Configure the executor to accept and read peer connections with. Each
+	 * accepted connection occupies one thread for as long as it is open, and
+	 * connections the executor rejects are closed.
+	 * <p>By default a thread pool with up to 64 daemon threads is used.
+	 */
+	public void setListenerExecutor(Executor listenerExecutor) {
+		this.listenerExecutor = listenerExecutor;
+	}
+
+	/**
+	 * Return the configured listener executor.
+	 */
+	public Executor getListenerExecutor() {
+		return this.listenerExecutor;
+	}
+
+	/**
+	 * Set the maximum number of messages to forward to a peer in one batch.
+	 * <p>By default this is set to 64.
+	 */
+	public void setBatchSize(int batchSize) {
+		Assert.isTrue(batchSize > 0, "Batch size must be greater than 0");
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Return the configured batch size.
+	 */
+	public int getBatchSize() {
+		return this.batchSize;
+	}
+
+	/**
+	 * Set the size in bytes from which a batch is compressed, or -1 to never
+	 * compress batches.
+	 * <p>By default this is set to 1024.
+	 */
+	public void setCompressionThreshold(int compressionThreshold) {
+		this.compressionThreshold = compressionThreshold;
+	}
+
+	/**
+	 * Return the configured compression threshold.
+	 */
+	public int getCompressionThreshold() {
+		return this.compressionThreshold;
+	}
+
+	/**
+	 * Set the maximum number of messages to queue per peer while a batch is
+	 * being written. Messages in excess of the limit are not forwarded.
+	 * <p>By default this is set to 10000.
+	 */
+	public void setPeerQueueLimit(int peerQueueLimit) {
+		this.peerQueueLimit = peerQueueLimit;
+	}
+
+	/**
+	 * Return the configured peer queue limit.
+	 */
+	public int getPeerQueueLimit() {
+		return this.peerQueueLimit;
+	}
+
+	/**
+	 * Return a String describing internal state and counters.
+	 */
+	public String getStatsInfo() {
+		return this.stats.toString();
+	}
+
+
+	@Override
+	public void startInternal() {
+		List<TcpOperations<byte[]>> clients = this.peerClients;
+		if (clients == null) {
+			clients = new ArrayList<TcpOperations<byte[]>>(this.peers.size());
+			for (String peer : this.peers) {
+				int index = peer.lastIndexOf(':');
+				Assert.isTrue(index > 0, "Expected peer address in the form \"host:port\": " + peer);
+				String host = peer.substring(0, index);
+				int port = Integer.parseInt(peer.substring(index + 1));
+				clients.add(new PeerTcpClientFactory().create(host, port, createStompDecoder()));
+			}
+			this.createdPeerClients = clients;
+		}
+		if (this.listenPort >= 0) {
+			startListener();
+		}
+		for (TcpOperations<byte[]> client : clients) {
+			PeerConnectionHandler handler = new PeerConnectionHandler(client);
+			this.peerHandlers.add(handler);
+			client.connect(handler, new FixedIntervalReconnectStrategy(5000));
+		}
+		super.startInternal();
+	}
+
+	private StompDecoder createStompDecoder() {
+		StompDecoder decoder = new StompDecoder();
+		decoder.setHeaderInitializer(getHeaderInitializer());
+		return decoder;
+	}
+
+	private void startListener() {
+		InetAddress address;
+		try {
+			// A null host resolves to the loopback address
+			address = InetAddress.getByName(this.listenAddress);
+		}
+		catch (IOException ex) {
+			throw new IllegalStateException("Failed to resolve cluster listen address " + this.listenAddress, ex);
+		}
+		if (this.sharedSecret == null && !address.isLoopbackAddress()) {
+			throw new IllegalStateException("A shared secret is required to accept cluster peer connections " +
+					"on non-loopback address " + address.getHostAddress());
+		}
+		if (this.listenerExecutor == null) {
+			CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(getClass().getSimpleName() + "-");
+			threadFactory.setDaemon(true);
+			this.defaultListenerExecutor = new ThreadPoolExecutor(0, DEFAULT_MAX_LISTENER_THREADS,
+					60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), threadFactory);
+			this.listenerExecutor = this.defaultListenerExecutor;
+		}
+		try {
+			ServerSocket serverSocket = new ServerSocket();
+			serverSocket.setReuseAddress(true);
+			serverSocket.bind(new InetSocketAddress(address, this.listenPort));
+			this.serverSocket = serverSocket;
+		}
+		catch (IOException ex) {
+			throw new IllegalStateException("Failed to listen for cluster peers on " +
+					address.getHostAddress() + ":" + this.listenPort, ex);
+		}
+		if (logger.isInfoEnabled()) {
+			logger.info("Accepting cluster peer connections on " + address.getHostAddress() + ":" + getListenPort());
+		}
+		this.listenerExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				acceptConnections();
+			}
+		});
+	}
+
+	@Override
+	public void stopInternal() {
+		super.stopInternal();
+		ServerSocket serverSocket = this.serverSocket;
+		this.serverSocket = null;
+		if (serverSocket != null) {
+			closeQuietly(serverSocket);
+		}
+		for (Socket socket : this.acceptedSockets) {
+			closeQuietly(socket);
+		}
+		if (this.defaultListenerExecutor != null) {
+			this.defaultListenerExecutor.shutdownNow();
+			this.defaultListenerExecutor = null;
+			this.listenerExecutor = null;
+		}
+		for (PeerConnectionHandler handler : this.peerHandlers) {
+			handler.close();
+		}
+		this.peerHandlers.clear();
+		// Configured clients are left to their owner
+		List<TcpOperations<byte[]>> createdClients = this.createdPeerClients;
+		this.createdPeerClients = null;
+		if (createdClients != null) {
+			for (TcpOperations<byte[]> client : createdClients) {
+				try {
+					client.shutdown().get(5000, TimeUnit.MILLISECONDS);
+				}
+				catch (Throwable ex) {
+					logger.error("Error in shutdown of TCP client", ex);
+				}
+			}
+		}
+	}
+
+	private void closeQuietly(ServerSocket serverSocket) {
+		try {
+			serverSocket.close();
+		}
+		catch (IOException ex) {
+			// ignore
+		}
+	}
+
+	private void closeQuietly(Socket socket) {
+		try {
+			socket.close();
+		}
+		catch (IOException ex) {
+			// ignore
+		}
+	}
+
+	@Override
+	protected void handleMessageInternal(Message<?> message) {
+		super.handleMessageInternal(message);
+		MessageHeaders headers = message.getHeaders();
+		if (SimpMessageType.MESSAGE.equals(SimpMessageHeaderAccessor.getMessageType(headers))) {
+			String destination = SimpMessageHeaderAccessor.getDestination(headers);
+			if (checkDestinationPrefix(destination) && !this.peerHandlers.isEmpty()) {
+				forwardToPeers(destination, message);
+			}
+		}
+	}
+
+	private void forwardToPeers(String destination, Message<?> message) {
+		byte[] frame = encodeFrame(destination, message);
+		if (frame == null) {
+			return;
+		}
+		for (PeerConnectionHandler handler : this.peerHandlers) {
+			handler.forward(frame);
+		}
+	}
+
+	/**
+	 * Encode the given message as a STOMP SEND frame with the destination,
+	 * content type and native headers of the message.
+	 * @return the encoded frame, or {@code null} if the payload is neither
+	 * a {@code byte[]} nor a String
+	 */
+	private byte[] encodeFrame(String destination, Message<?> message) {
+		byte[] payload;
+		if (message.getPayload() instanceof byte[]) {
+			payload = (byte[]) message.getPayload();
+		}
+		else if (message.getPayload() instanceof String) {
+			payload = ((String) message.getPayload()).getBytes(UTF8_CHARSET);
+		}
+		else {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Not forwarding message with payload type " +
+						message.getPayload().getClass().getName() + " to cluster peers");
+			}
+			return null;
+		}
+		MessageHeaders headers = message.getHeaders();
+		StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SEND);
+		@SuppressWarnings("unchecked")
+		Map<String, List<String>> nativeHeaders =
+				(Map<String, List<String>>) headers.get(NativeMessageHeaderAccessor.NATIVE_HEADERS);
+		if (nativeHeaders != null) {
+			for (Map.Entry<String, List<String>> entry : nativeHeaders.entrySet()) {
+				String name = entry.getKey();
+				if (!StompHeaderAccessor.STOMP_DESTINATION_HEADER.equals(name) &&
+						!StompHeaderAccessor.STOMP_CONTENT_TYPE_HEADER.equals(name) &&
+						!StompHeaderAccessor.STOMP_CONTENT_LENGTH_HEADER.equals(name)) {
+					for (String value : entry.getValue()) {
+						accessor.addNativeHeader(name, value);
+					}
+				}
+			}
+		}
+		accessor.setDestination(destination);
+		Object contentType = headers.get(MessageHeaders.CONTENT_TYPE);
+		if (contentType instanceof MimeType) {
+			accessor.setContentType((MimeType) contentType);
+		}
+		else if (contentType instanceof String) {
+			accessor.setContentType(MimeTypeUtils.parseMimeType((String) contentType));
+		}
+		return this.stompEncoder.encode(accessor.getMessageHeaders(), payload);
+	}
+
+	private Message<byte[]> createBatch(List<byte[]> frames) {
+		int length = 0;
+		for (byte[] frame : frames) {
+			length += frame.length;
+		}
+		byte[] payload = new byte[length];
+		int offset = 0;
+		for (byte[] frame : frames) {
+			System.arraycopy(frame, 0, payload, offset, frame.length);
+			offset += frame.length;
+		}
+		StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SEND);
+		accessor.setDestination(BATCH_DESTINATION);
+		if (this.compressionThreshold >= 0 && length >= this.compressionThreshold) {
+			payload = deflate(payload);
+			accessor.setNativeHeader(BATCH_ENCODING_HEADER, DEFLATE_ENCODING);
+		}
+		this.stats.incrementBatchCount(frames.size());
+		return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+	}
+
+	private static byte[] deflate(byte[] payload) {
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try {
+			deflater.setInput(payload);
+			deflater.finish();
+			ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length / 2 + 64);
+			byte[] buffer = new byte[8192];
+			while (!deflater.finished()) {
+				int count = deflater.deflate(buffer);
+				out.write(buffer, 0, count);
+			}
+			return out.toByteArray();
+		}
+		finally {
+			deflater.end();
+		}
+	}
+
+	private byte[] inflate(byte[] payload) throws DataFormatException {
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(payload);
+			ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length * 4);
+			byte[] buffer = new byte[8192];
+			while (!inflater.finished()) {
+				int count = inflater.inflate(buffer);
+				if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					throw new DataFormatException("Truncated compressed batch");
+				}
+				out.write(buffer, 0, count);
+				if (out.size() > this.maxBatchBufferSize) {
+					throw new DataFormatException("Decompressed batch exceeds " + this.maxBatchBufferSize + " bytes");
+				}
+			}
+			return out.toByteArray();
+		}
+		finally {
+			inflater.end();
+		}
+	}
+
+	private void acceptConnections() {
+		ServerSocket serverSocket;
+		while ((serverSocket = this.serverSocket) != null) {
+			try {
+				final Socket socket = serverSocket.accept();
+				socket.setTcpNoDelay(true);
+				this.acceptedSockets.add(socket);
+				try {
+					this.listenerExecutor.execute(new Runnable() {
+						@Override
+						public void run() {
+							readBatches(socket);
+						}
+					});
+				}
+				catch (RejectedExecutionException ex) {
+					if (this.serverSocket != null && logger.isWarnEnabled()) {
+						logger.warn("Rejected cluster peer connection from " + socket.getRemoteSocketAddress() +
+								": " + ex.getMessage());
+					}
+					this.acceptedSockets.remove(socket);
+					closeQuietly(socket);
+				}
+			}
+			catch (IOException ex) {
+				if (this.serverSocket != null && logger.isErrorEnabled()) {
+					logger.error("Failed to accept cluster peer connection", ex);
+				}
+			}
+		}
+	}
+
+	private void readBatches(Socket socket) {
+		if (logger.isDebugEnabled()) {
+			logger.debug("Accepted cluster peer connection from " + socket.getRemoteSocketAddress());
+		}
+		try {
+			InputStream in = new BufferedInputStream(socket.getInputStream());
+			if (this.sharedSecret != null && !authenticatePeer(socket, in)) {
+				if (logger.isWarnEnabled()) {
+					logger.warn("Closing unauthenticated cluster peer connection from " +
+							socket.getRemoteSocketAddress());
+				}
+				return;
+			}
+			// Only buffer up to the batch limit for authenticated peers
+			BufferingStompDecoder decoder = new BufferingStompDecoder(new StompDecoder(), this.maxBatchBufferSize);
+			byte[] buffer = new byte[8192];
+			int count;
+			while ((count = in.read(buffer)) != -1) {
+				// The decoder may hold on to a partial frame, so pass it a copy
+				for (Message<byte[]> batch : decoder.decode(ByteBuffer.wrap(Arrays.copyOf(buffer, count)))) {
+					handleBatch(batch);
+				}
+			}
+		}
+		catch (Throwable ex) {
+			if (this.serverSocket != null && logger.isErrorEnabled()) {
+				logger.error("Closing cluster peer connection from " + socket.getRemoteSocketAddress(), ex);
+			}
+		}
+		finally {
+			this.acceptedSockets.remove(socket);
+			closeQuietly(socket);
+		}
+	}
+
+	/**
+	 * Send a nonce to the peer and check the signature in its CONNECT frame,
+	 * reading no more than {@link #MAX_HANDSHAKE_FRAME_SIZE} bytes.
+	 */
+	private boolean authenticatePeer(Socket socket, InputStream in) throws IOException {
+		String nonce = sendNonce(socket);
+		socket.setSoTimeout(HANDSHAKE_TIMEOUT);
+		ByteArrayOutputStream frame = new ByteArrayOutputStream(256);
+		int b;
+		while ((b = in.read()) != 0) {
+			if (b == -1) {
+				return false;
+			}
+			if (frame.size() >= MAX_HANDSHAKE_FRAME_SIZE) {
+				throw new IOException("Cluster handshake frame exceeds " + MAX_HANDSHAKE_FRAME_SIZE + " bytes");
+			}
+			frame.write(b);
+		}
+		frame.write(0);
+		List<Message<byte[]>> messages = new StompDecoder().decode(ByteBuffer.wrap(frame.toByteArray()));
+		if (messages.size() != 1 || !isValidSignature(messages.get(0), nonce)) {
+			return false;
+		}
+		socket.setSoTimeout(0);
+		return true;
+	}
+
+	private String sendNonce(Socket socket) throws IOException {
+		byte[] bytes = new byte[32];
+		this.secureRandom.nextBytes(bytes);
+		String nonce = Base64Utils.encodeToString(bytes);
+		StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECTED);
+		accessor.setNativeHeader(NONCE_HEADER, nonce);
+		OutputStream out = socket.getOutputStream();
+		out.write(this.stompEncoder.encode(accessor.getMessageHeaders(), new byte[0]));
+		out.flush();
+		return nonce;
+	}
+
+	private boolean isValidSignature(Message<byte[]> message, String nonce) {
+		StompHeaderAccessor accessor = StompHeaderAccessor.wrap(message);
+		String signature = accessor.getFirstNativeHeader(SIGNATURE_HEADER);
+		return (StompCommand.CONNECT.equals(accessor.getCommand()) && signature != null &&
+				MessageDigest.isEqual(signature.getBytes(UTF8_CHARSET), sign(nonce).getBytes(UTF8_CHARSET)));
+	}
+
+	private String sign(String nonce) {
+		try {
+			Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+			mac.init(new SecretKeySpec(this.sharedSecret.getBytes(UTF8_CHARSET), HMAC_ALGORITHM));
+			return Base64Utils.encodeToString(mac.doFinal(nonce.getBytes(UTF8_CHARSET)));
+		}
+		catch (GeneralSecurityException ex) {
+			throw new IllegalStateException("Failed to sign cluster handshake nonce", ex);
+		}
+	}
+
+	private void handleBatch(Message<byte[]> batch) throws DataFormatException {
+		byte[] payload = batch.getPayload();
+		String encoding = StompHeaderAccessor.wrap(batch).getFirstNativeHeader(BATCH_ENCODING_HEADER);
+		if (DEFLATE_ENCODING.equals(encoding)) {
+			payload = inflate(payload);
+		}
+		List<Message<byte[]>> messages = createStompDecoder().decode(ByteBuffer.wrap(payload));
+		this.stats.incrementReceivedCount(messages.size());
+		for (Message<byte[]> message : messages) {
+			String destination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
+			if (checkDestinationPrefix(destination)) {
+				sendMessageToSubscribers(destination, message);
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "ClusteredBrokerMessageHandler[peers=" + this.peerHandlers.size() + ", " + getSubscriptionRegistry() + "]";
+	}
+
+
+	/**
+	 * Forwards messages to one peer over a TCP connection, writing queued
+	 * messages in batches with at most one batch in flight at a time.
+	 */
+	private class PeerConnectionHandler implements TcpConnectionHandler<byte[]> {
+
+		private final TcpOperations<byte[]> client;
+
+		private volatile TcpConnection<byte[]> connection;
+
+		private volatile TcpConnection<byte[]> pendingConnection;
+
+		private volatile boolean closed;
+
+		private final Queue<byte[]> queue = new ConcurrentLinkedQueue<byte[]>();
+
+		private final AtomicInteger queueSize = new AtomicInteger();
+
+		private final AtomicBoolean writing = new AtomicBoolean();
+
+		public PeerConnectionHandler(TcpOperations<byte[]> client) {
+			this.client = client;
+		}
+
+		public void forward(byte[] frame) {
+			if (this.connection == null) {
+				stats.incrementDroppedCount(1);
+				return;
+			}
+			if (this.queueSize.incrementAndGet() > getPeerQueueLimit()) {
+				this.queueSize.decrementAndGet();
+				stats.incrementDroppedCount(1);
+				return;
+			}
+			this.queue.add(frame);
+			writeNextBatch();
+		}
+
+		private void writeNextBatch() {
+			if (this.queue.isEmpty() || !this.writing.compareAndSet(false, true)) {
+				return;
+			}
+			List<byte[]> frames = new ArrayList<byte[]>(Math.min(getBatchSize(), this.queueSize.get()));
+			byte[] frame;
+			while (frames.size() < getBatchSize() && (frame = this.queue.poll()) != null) {
+				frames.add(frame);
+			}
+			this.queueSize.addAndGet(-frames.size());
+			TcpConnection<byte[]> connection = this.connection;
+			if (frames.isEmpty() || connection == null) {
+				stats.incrementDroppedCount(frames.size());
+				this.writing.set(false);
+				return;
+			}
+			connection.send(createBatch(frames)).addCallback(new ListenableFutureCallback<Void>() {
+				@Override
+				public void onSuccess(Void result) {
+					writing.set(false);
+					writeNextBatch();
+				}
+				@Override
+				public void onFailure(Throwable ex) {
+					if (logger.isDebugEnabled()) {
+						logger.debug("Failed to forward batch to cluster peer " + client, ex);
+					}
+					writing.set(false);
+					writeNextBatch();
+				}
+			});
+		}
+
+		/**
+		 * Close the connection to the peer, along with any connection
+		 * established later on, e.g. by the reconnect strategy.
+		 */
+		public void close() {
+			this.closed = true;
+			TcpConnection<byte[]> connection = this.connection;
+			TcpConnection<byte[]> pendingConnection = this.pendingConnection;
+			this.connection = null;
+			this.pendingConnection = null;
+			if (connection != null) {
+				connection.close();
+			}
+			if (pendingConnection != null) {
+				pendingConnection.close();
+			}
+			clearQueue();
+		}
+
+		private void clearQueue() {
+			int count = 0;
+			while (this.queue.poll() != null) {
+				count++;
+			}
+			this.queueSize.addAndGet(-count);
+			stats.incrementDroppedCount(count);
+		}
+
+		@Override
+		public void afterConnected(TcpConnection<byte[]> connection) {
+			if (this.closed) {
+				// Reconnected through a client that outlives this handler
+				connection.close();
+				return;
+			}
+			if (logger.isInfoEnabled()) {
+				logger.info("Connected to cluster peer " + this.client);
+			}
+			if (getSharedSecret() != null) {
+				// Start forwarding once the peer's nonce has been signed
+				this.pendingConnection = connection;
+			}
+			else {
+				this.connection = connection;
+			}
+		}
+
+		@Override
+		public void afterConnectFailure(Throwable ex) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Failed to connect to cluster peer " + this.client, ex);
+			}
+		}
+
+		@Override
+		public void handleMessage(Message<byte[]> message) {
+			// Peers only write a handshake nonce to the connections they accept
+			final TcpConnection<byte[]> connection = this.pendingConnection;
+			StompHeaderAccessor accessor = StompHeaderAccessor.wrap(message);
+			String nonce = accessor.getFirstNativeHeader(NONCE_HEADER);
+			if (connection == null || !StompCommand.CONNECTED.equals(accessor.getCommand()) || nonce == null) {
+				return;
+			}
+			this.pendingConnection = null;
+			StompHeaderAccessor connectAccessor = StompHeaderAccessor.create(StompCommand.CONNECT);
+			connectAccessor.setNativeHeader(SIGNATURE_HEADER, sign(nonce));
+			Message<byte[]> connect = MessageBuilder.createMessage(new byte[0], connectAccessor.getMessageHeaders());
+			connection.send(connect).addCallback(new ListenableFutureCallback<Void>() {
+				@Override
+				public void onSuccess(Void result) {
+					if (closed) {
+						connection.close();
+					}
+					else {
+						PeerConnectionHandler.this.connection = connection;
+					}
+				}
+				@Override
+				public void onFailure(Throwable ex) {
+					handleFailure(ex);
+				}
+			});
+		}
+
+		@Override
+		public void handleFailure(Throwable ex) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Failure on connection to cluster peer " + this.client, ex);
+			}
+			TcpConnection<byte[]> connection = this.connection;
+			if (connection == null) {
+				connection = this.pendingConnection;
+			}
+			this.connection = null;
+			this.pendingConnection = null;
+			if (connection != null) {
+				connection.close();
+			}
+			clearQueue();
+		}
+
+		@Override
+		public void afterConnectionClosed() {
+			if (logger.isInfoEnabled()) {
+				logger.info("Connection to cluster peer " + this.client + " closed");
+			}
+			this.connection = null;
+			this.pendingConnection = null;
+			clearQueue();
+		}
+	}
+
+
+	private class Stats {
+
+		private final AtomicLong batches = new AtomicLong();
+
+		private final AtomicLong forwarded = new AtomicLong();
+
+		private final AtomicLong received = new AtomicLong();
+
+		private final AtomicLong dropped = new AtomicLong();
+
+		public void incrementBatchCount(int messageCount) {
+			this.batches.incrementAndGet();
+			this.forwarded.addAndGet(messageCount);
+		}
+
+		public void incrementReceivedCount(int messageCount) {
+			this.received.addAndGet(messageCount);
+		}
+
+		public void incrementDroppedCount(int messageCount) {
+			if (messageCount > 0) {
+				this.dropped.addAndGet(messageCount);
+			}
+		}
+
+		public String toString() {
+			return peerHandlers.size() + " peer(s), " + acceptedSockets.size() + " accepted connection(s), " +
+					this.forwarded.get() + " forwarded in " + this.batches.get() + " batch(es), " +
+					this.received.get() + " received, " + this.dropped.get() + " dropped";
+		}
+	}
+
+
+	private static class PeerTcpClientFactory {
+
+		public TcpOperations<byte[]> create(String host, int port, StompDecoder decoder) {
+			return new Reactor2TcpClient<byte[]>(host, port, new Reactor2StompCodec(new StompEncoder(), decoder));
+		}
+	}
+
+}
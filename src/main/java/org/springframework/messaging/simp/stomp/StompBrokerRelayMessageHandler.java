@@ -114,6 +114,8 @@ public class StompBrokerRelayMessageHandler extends AbstractBrokerMessageHandler
 
 	private String virtualHost;
 
+	private long writeCoalescingDelay = 0;
+
 	private final Map<String, MessageHandler> systemSubscriptions = new HashMap<String, MessageHandler>(4);
 
 	private TcpOperations<byte[]> tcpClient;
@@ -325,6 +327,27 @@ public class StompBrokerRelayMessageHandler extends AbstractBrokerMessageHandler
 		return this.virtualHost;
 	}
 
+	/**
+	 * Configure the maximum time in milliseconds that messages to the STOMP broker
+	 * may be held back in order to write several of them with a single flush.
+	 * This applies to the default TCP client only; a TCP client configured via
+	 * {@link #setTcpClient} needs to be configured directly.
+	 * <p>By default this is set to 0, i.e. every message is flushed individually.
+	 * @since 4.3
+	 * @see Reactor2TcpClient#setWriteCoalescingDelay
+	 */
+	public void setWriteCoalescingDelay(long writeCoalescingDelay) {
+		this.writeCoalescingDelay = writeCoalescingDelay;
+	}
+
+	/**
+	 * Return the configured write coalescing delay.
+	 * @since 4.3
+	 */
+	public long getWriteCoalescingDelay() {
+		return this.writeCoalescingDelay;
+	}
+
 	/**
 	 * Configure a TCP client for managing TCP connections to the STOMP broker.
 	 * By default {@link Reactor2TcpClient} is used.
@@ -380,7 +403,8 @@ public class StompBrokerRelayMessageHandler extends AbstractBrokerMessageHandler
 			StompDecoder decoder = new StompDecoder();
 			decoder.setHeaderInitializer(getHeaderInitializer());
 			Reactor2StompCodec codec = new Reactor2StompCodec(new StompEncoder(), decoder);
-			this.tcpClient = new StompTcpClientFactory().create(this.relayHost, this.relayPort, codec);
+			this.tcpClient = new StompTcpClientFactory().create(
+					this.relayHost, this.relayPort, codec, this.writeCoalescingDelay);
 		}
 
 		if (logger.isInfoEnabled()) {
@@ -956,8 +980,12 @@ public class StompBrokerRelayMessageHandler extends AbstractBrokerMessageHandler
 
 	private static class StompTcpClientFactory {
 
-		public TcpOperations<byte[]> create(String relayHost, int relayPort, Reactor2StompCodec codec) {
-			return new Reactor2TcpClient<byte[]>(relayHost, relayPort, codec);
+		public TcpOperations<byte[]> create(String relayHost, int relayPort, Reactor2StompCodec codec,
+				long writeCoalescingDelay) {
+
+			Reactor2TcpClient<byte[]> tcpClient = new Reactor2TcpClient<byte[]>(relayHost, relayPort, codec);
+			tcpClient.setWriteCoalescingDelay(writeCoalescingDelay);
+			return tcpClient;
 		}
 	}
 
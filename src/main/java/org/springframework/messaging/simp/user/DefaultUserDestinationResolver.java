@@ -18,8 +18,12 @@ package org.springframework.messaging.simp.user;
 
 import java.security.Principal;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -44,6 +48,14 @@ import org.springframework.util.StringUtils;
  * "/user/{username}" prefix is removed and a suffix based on active session id's
  * is added, e.g. "/queue/position-updates-useri9oqdfzo".
  *
+ * <p>The results of resolving messages sent to a user may optionally be cached
+ * (see {@link #setCacheLimit}) in order to avoid consulting the user registry
+ * and building target destinations for every message. Cached results for a
+ * user are evicted whenever a session of that user connects, disconnects, or
+ * subscribes to or unsubscribes from a user destination, and in any case expire
+ * after the {@link #setCacheExpirationPeriod expiration period} in order to pick
+ * up changes in remote registries (see {@link MultiServerUserRegistry}).
+ *
  * @author Rossen Stoyanchev
  * @author Brian Clozel
  * @since 4.0
@@ -57,6 +69,12 @@ public class DefaultUserDestinationResolver implements UserDestinationResolver {
 
 	private String prefix = "/user/";
 
+	private volatile int cacheLimit = 0;
+
+	private volatile long cacheExpirationPeriod = 5000;
+
+	private final ResolutionCache resolutionCache = new ResolutionCache();
+
 
 	/**
 	 * Create an instance that will access user session id information through
@@ -94,9 +112,88 @@ public class DefaultUserDestinationResolver implements UserDestinationResolver {
 		return this.prefix;
 	}
 
+	/**
+	 * Specify the maximum number of resolved user destinations to cache.
+	 * <p>By default this is set to 0, i.e. caching is disabled.
+	 * @param cacheLimit the cache limit
+	 * @since 4.3
+	 */
+	public void setCacheLimit(int cacheLimit) {
+		this.cacheLimit = cacheLimit;
+	}
+
+	/**
+	 * Return the configured cache limit.
+	 * @since 4.3
+	 */
+	public int getCacheLimit() {
+		return this.cacheLimit;
+	}
+
+	/**
+	 * Configure how long a cached resolution result remains valid, if caching is
+	 * enabled. This bounds how long changes in the user registry that are not
+	 * observed by this resolver, e.g. sessions connected to another server in a
+	 * multi-server setup, may remain unnoticed.
+	 * <p>By default this is set to 5000 (5 seconds).
+	 * @param expirationPeriod the expiration period in milliseconds
+	 * @since 4.3
+	 */
+	public void setCacheExpirationPeriod(long expirationPeriod) {
+		this.cacheExpirationPeriod = expirationPeriod;
+	}
+
+	/**
+	 * Return the configured cache expiration period.
+	 * @since 4.3
+	 */
+	public long getCacheExpirationPeriod() {
+		return this.cacheExpirationPeriod;
+	}
+
 
 	@Override
 	public UserDestinationResult resolveDestination(Message<?> message) {
+		if (getCacheLimit() <= 0) {
+			return resolveDestinationInternal(message);
+		}
+		MessageHeaders headers = message.getHeaders();
+		SimpMessageType messageType = SimpMessageHeaderAccessor.getMessageType(headers);
+		String destination = SimpMessageHeaderAccessor.getDestination(headers);
+		if (!SimpMessageType.MESSAGE.equals(messageType) || destination == null) {
+			if (isSessionChange(messageType, destination)) {
+				Principal principal = SimpMessageHeaderAccessor.getUser(headers);
+				if (principal != null) {
+					this.resolutionCache.evictUser(principal.getName());
+				}
+			}
+			return resolveDestinationInternal(message);
+		}
+		String sessionId = SimpMessageHeaderAccessor.getSessionId(headers);
+		String cacheKey = (sessionId != null ? destination + '\u0000' + sessionId : destination);
+		UserDestinationResult result = this.resolutionCache.get(cacheKey);
+		if (result == null) {
+			long generation = this.resolutionCache.getGeneration();
+			result = resolveDestinationInternal(message);
+			if (result != null && result.getUser() != null) {
+				result = new UserDestinationResult(result.getSourceDestination(),
+						Collections.unmodifiableSet(result.getTargetDestinations()),
+						result.getSubscribeDestination(), result.getUser());
+				this.resolutionCache.put(cacheKey, result, generation);
+			}
+		}
+		return result;
+	}
+
+	private boolean isSessionChange(SimpMessageType messageType, String destination) {
+		if (SimpMessageType.CONNECT.equals(messageType) || SimpMessageType.DISCONNECT.equals(messageType)) {
+			return true;
+		}
+		return ((SimpMessageType.SUBSCRIBE.equals(messageType) || SimpMessageType.UNSUBSCRIBE.equals(messageType)) &&
+				destination != null && checkDestination(destination, this.prefix));
+	}
+
+	private UserDestinationResult resolveDestinationInternal(Message<?> message) {
 		String sourceDestination = SimpMessageHeaderAccessor.getDestination(message.getHeaders());
 		ParseResult parseResult = parse(message);
 		if (parseResult == null) {
@@ -198,6 +295,116 @@ public class DefaultUserDestinationResolver implements UserDestinationResolver {
 	}
 
 
+	/**
+	 * A cache for user destinations previously resolved for messages sent to a
+	 * user, evicted per user on session changes.
+	 */
+	private class ResolutionCache {
+
+		/** Map from destination (and session id) -> result for fast look-ups */
+		private final Map<String, CachedResult> accessCache = new ConcurrentHashMap<String, CachedResult>(256);
+
+		/** Map from destination (and session id) -> user name with locking */
+		@SuppressWarnings("serial")
+		private final Map<String, String> updateCache = new LinkedHashMap<String, String>(256, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+				if (size() > getCacheLimit()) {
+					accessCache.remove(eldest.getKey());
+					removeUserKey(eldest.getValue(), eldest.getKey());
+					return true;
+				}
+				return false;
+			}
+		};
+
+		/** Map from user name -> cached destinations, guarded by the update cache */
+		private final Map<String, Set<String>> userKeys = new HashMap<String, Set<String>>();
+
+		/** Incremented on every eviction so that results resolved concurrently are not cached */
+		private volatile long generation;
+
+
+		public UserDestinationResult get(String key) {
+			CachedResult cached = this.accessCache.get(key);
+			if (cached == null || cached.getExpirationTime() < System.currentTimeMillis()) {
+				return null;
+			}
+			return cached.getResult();
+		}
+
+		public long getGeneration() {
+			return this.generation;
+		}
+
+		public void put(String key, UserDestinationResult result, long resolvedGeneration) {
+			synchronized (this.updateCache) {
+				if (this.generation != resolvedGeneration) {
+					return;
+				}
+				this.updateCache.put(key, result.getUser());
+				Set<String> keys = this.userKeys.get(result.getUser());
+				if (keys == null) {
+					keys = new HashSet<String>(4);
+					this.userKeys.put(result.getUser(), keys);
+				}
+				keys.add(key);
+				long expirationTime = System.currentTimeMillis() + getCacheExpirationPeriod();
+				this.accessCache.put(key, new CachedResult(result, expirationTime));
+			}
+		}
+
+		public void evictUser(String user) {
+			synchronized (this.updateCache) {
+				this.generation++;
+				Set<String> keys = this.userKeys.remove(user);
+				if (keys != null) {
+					for (String key : keys) {
+						this.updateCache.remove(key);
+						this.accessCache.remove(key);
+					}
+				}
+			}
+		}
+
+		private void removeUserKey(String user, String key) {
+			Set<String> keys = this.userKeys.get(user);
+			if (keys != null) {
+				keys.remove(key);
+				if (keys.isEmpty()) {
+					this.userKeys.remove(user);
+				}
+			}
+		}
+
+		@Override
+		public String toString() {
+			return "cache[" + this.accessCache.size() + " destination(s)]";
+		}
+	}
+
+
+	private static class CachedResult {
+
+		private final UserDestinationResult result;
+
+		private final long expirationTime;
+
+		public CachedResult(UserDestinationResult result, long expirationTime) {
+			this.result = result;
+			this.expirationTime = expirationTime;
+		}
+
+		public UserDestinationResult getResult() {
+			return this.result;
+		}
+
+		public long getExpirationTime() {
+			return this.expirationTime;
+		}
+	}
+
+
 	/**
 	 * A temporary placeholder for a parsed source "user" destination.
 	 */
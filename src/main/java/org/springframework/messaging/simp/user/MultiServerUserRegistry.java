@@ -26,6 +26,9 @@ import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
 import org.springframework.context.ApplicationEvent;
 import org.springframework.context.event.SmartApplicationListener;
 import org.springframework.core.Ordered;
@@ -40,12 +43,19 @@ import org.springframework.util.ObjectUtils;
  * {@link UserRegistryMessageHandler} which broadcasts periodically the content
  * of the local registry and receives updates from other servers.
  *
+ * <p>Broadcasts carry either a full snapshot of the local registry or, in
+ * between full snapshots, only the users that changed since the previous
+ * broadcast (see {@link UserRegistryMessageHandler#setFullBroadcastInterval}).
+ * Such deltas are applied to the last snapshot received from the same server.
+ *
  * @author Rossen Stoyanchev
  * @since 4.2
  */
 @SuppressWarnings("serial")
 public class MultiServerUserRegistry implements SimpUserRegistry, SmartApplicationListener {
 
+	private static final Log logger = LogFactory.getLog(MultiServerUserRegistry.class);
+
 	private final String id;
 
 	private final SimpUserRegistry localRegistry;
@@ -55,6 +65,11 @@ public class MultiServerUserRegistry implements SimpUserRegistry, SmartApplicati
 	private final Map<String, UserRegistryDto> remoteRegistries =
 			new ConcurrentHashMap<String, UserRegistryDto>();
 
+	/** The users in the last broadcast, to compute deltas from */
+	private Map<String, SimpUserDto> lastBroadcastUsers;
+
+	private long broadcastVersion;
+
 
 	/**
 	 * Create an instance wrapping the local user registry.
@@ -133,16 +148,45 @@ public class MultiServerUserRegistry implements SimpUserRegistry, SmartApplicati
 		return this.listener.getOrder();
 	}
 
-	Object getLocalRegistryDto() {
-		return new UserRegistryDto(this.id, this.localRegistry);
+	/**
+	 * Return the content of the local registry to broadcast, either in full or
+	 * as the changes since the previous broadcast.
+	 * @param full whether to return a full snapshot; if {@code false} a delta is
+	 * returned unless there has been no previous broadcast
+	 */
+	synchronized Object getLocalRegistryDto(boolean full) {
+		UserRegistryDto registryDto = new UserRegistryDto(this.id, this.localRegistry);
+		Map<String, SimpUserDto> previousUsers = this.lastBroadcastUsers;
+		long baseVersion = this.broadcastVersion++;
+		registryDto.setVersion(this.broadcastVersion);
+		this.lastBroadcastUsers = registryDto.getUsers();
+		return (full || previousUsers == null ? registryDto : registryDto.createDelta(previousUsers, baseVersion));
 	}
 
 	void addRemoteRegistryDto(Message<?> message, MessageConverter converter, long expirationPeriod) {
 		UserRegistryDto registryDto = (UserRegistryDto) converter.fromMessage(message, UserRegistryDto.class);
-		if (registryDto != null && !registryDto.getId().equals(this.id)) {
-			long expirationTime = System.currentTimeMillis() + expirationPeriod;
+		if (registryDto == null || registryDto.getId().equals(this.id)) {
+			return;
+		}
+		long expirationTime = System.currentTimeMillis() + expirationPeriod;
+		registryDto.restoreParentReferences();
+		if (registryDto.isDelta()) {
+			UserRegistryDto existing = this.remoteRegistries.get(registryDto.getId());
+			if (existing == null || registryDto.getVersion() <= existing.getVersion()) {
+				// No snapshot to apply to yet, or out of date: wait for the next full snapshot
+				return;
+			}
+			if (registryDto.getBaseVersion() != existing.getVersion() && logger.isDebugEnabled()) {
+				logger.debug("Missed user registry update(s) from " + registryDto.getId() +
+						", applying changes until the next full snapshot");
+			}
+			existing.applyDelta(registryDto);
+			existing.setExpirationTime(expirationTime);
+		}
+		else {
+			// Deltas are applied in place while the registry is being read
+			registryDto.setUsers(new ConcurrentHashMap<String, SimpUserDto>(registryDto.getUsers()));
 			registryDto.setExpirationTime(expirationTime);
-			registryDto.restoreParentReferences();
 			this.remoteRegistries.put(registryDto.getId(), registryDto);
 		}
 	}
@@ -173,6 +217,14 @@ public class MultiServerUserRegistry implements SimpUserRegistry, SmartApplicati
 
 		private long expirationTime;
 
+		private long version;
+
+		private boolean delta;
+
+		private long baseVersion;
+
+		private Set<String> removedUsers;
+
 		public UserRegistryDto() {
 		}
 
@@ -223,9 +275,81 @@ public class MultiServerUserRegistry implements SimpUserRegistry, SmartApplicati
 			return this.expirationTime;
 		}
 
-		private void restoreParentReferences() {
+		public void setVersion(long version) {
+			this.version = version;
+		}
+
+		public long getVersion() {
+			return this.version;
+		}
+
+		public void setDelta(boolean delta) {
+			this.delta = delta;
+		}
+
+		public boolean isDelta() {
+			return this.delta;
+		}
+
+		public void setBaseVersion(long baseVersion) {
+			this.baseVersion = baseVersion;
+		}
+
+		public long getBaseVersion() {
+			return this.baseVersion;
+		}
+
+		public void setRemovedUsers(Set<String> removedUsers) {
+			this.removedUsers = removedUsers;
+		}
+
+		public Set<String> getRemovedUsers() {
+			return this.removedUsers;
+		}
+
+		/**
+		 * Create a delta with the users of this registry that are new or
+		 * changed compared to the given users, and those that were removed.
+		 */
+		private UserRegistryDto createDelta(Map<String, SimpUserDto> previousUsers, long baseVersion) {
+			UserRegistryDto delta = new UserRegistryDto();
+			delta.setId(this.id);
+			delta.setVersion(this.version);
+			delta.setDelta(true);
+			delta.setBaseVersion(baseVersion);
+			delta.setUsers(new HashMap<String, SimpUserDto>());
+			delta.setRemovedUsers(new HashSet<String>());
 			for (SimpUserDto user : this.users.values()) {
-				user.restoreParentReferences();
+				SimpUserDto previousUser = previousUsers.get(user.getName());
+				if (previousUser == null || !user.hasSameContent(previousUser)) {
+					delta.getUsers().put(user.getName(), user);
+				}
+			}
+			for (String userName : previousUsers.keySet()) {
+				if (!this.users.containsKey(userName)) {
+					delta.getRemovedUsers().add(userName);
+				}
+			}
+			return delta;
+		}
+
+		private void applyDelta(UserRegistryDto delta) {
+			if (delta.getRemovedUsers() != null) {
+				for (String userName : delta.getRemovedUsers()) {
+					this.users.remove(userName);
+				}
+			}
+			if (delta.getUsers() != null) {
+				this.users.putAll(delta.getUsers());
+			}
+			this.version = delta.getVersion();
+		}
+
+		private void restoreParentReferences() {
+			if (this.users != null) {
+				for (SimpUserDto user : this.users.values()) {
+					user.restoreParentReferences();
+				}
 			}
 		}
 		@Override
@@ -295,6 +419,20 @@ public class MultiServerUserRegistry implements SimpUserRegistry, SmartApplicati
 			}
 		}
 
+		private boolean hasSameContent(SimpUserDto other) {
+			if (this.sessions.size() != other.sessions.size()) {
+				return false;
+			}
+			for (SimpSessionDto session : this.sessions) {
+				SimpSessionDto otherSession = other.getSession(session.getId());
+				if (otherSession == null || !session.getSubscriptionDestinations().equals(
+						otherSession.getSubscriptionDestinations())) {
+					return false;
+				}
+			}
+			return true;
+		}
+
 		@Override
 		public boolean equals(Object other) {
 			return (this == other || (other instanceof SimpUser && this.name.equals(((SimpUser) other).getName())));
@@ -367,6 +505,14 @@ public class MultiServerUserRegistry implements SimpUserRegistry, SmartApplicati
 			}
 		}
 
+		private Map<String, String> getSubscriptionDestinations() {
+			Map<String, String> destinations = new HashMap<String, String>(this.subscriptions.size());
+			for (SimpSubscriptionDto subscription : this.subscriptions) {
+				destinations.put(subscription.getId(), subscription.getDestination());
+			}
+			return destinations;
+		}
+
 		@Override
 		public boolean equals(Object other) {
 			return (this == other || (other instanceof SimpSession && this.id.equals(((SimpSession) other).getId())));
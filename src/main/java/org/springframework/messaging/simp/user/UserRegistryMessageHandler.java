@@ -55,6 +55,8 @@ public class UserRegistryMessageHandler implements MessageHandler, ApplicationLi
 
 	private long registryExpirationPeriod = 20 * 1000;
 
+	private int fullBroadcastInterval = 1;
+
 
 	public UserRegistryMessageHandler(SimpUserRegistry userRegistry, SimpMessagingTemplate brokerTemplate,
 			String broadcastDestination, TaskScheduler scheduler) {
@@ -96,6 +98,33 @@ public class UserRegistryMessageHandler implements MessageHandler, ApplicationLi
 		return this.registryExpirationPeriod;
 	}
 
+	/**
+	 * Configure how often the full content of the local registry is broadcast.
+	 * Every n-th broadcast carries a full snapshot while the broadcasts in
+	 * between only carry the users that changed since the previous broadcast,
+	 * which keeps broadcasts small when there are many connected users.
+	 * <p>By default this is set to 1, i.e. every broadcast is a full snapshot,
+	 * as expected by servers running an earlier version. Note that other servers
+	 * only pick up the local registry with the next full snapshot after they
+	 * start, and that the interval multiplied by half the
+	 * {@link #setRegistryExpirationPeriod expiration period} determines how long
+	 * missed changes may remain unnoticed.
+	 * @param fullBroadcastInterval the number of broadcasts per full snapshot
+	 * @since 4.3
+	 */
+	public void setFullBroadcastInterval(int fullBroadcastInterval) {
+		Assert.isTrue(fullBroadcastInterval > 0, "'fullBroadcastInterval' must be greater than 0");
+		this.fullBroadcastInterval = fullBroadcastInterval;
+	}
+
+	/**
+	 * Return the configured number of broadcasts per full snapshot.
+	 * @since 4.3
+	 */
+	public int getFullBroadcastInterval() {
+		return this.fullBroadcastInterval;
+	}
+
 
 	@Override
 	public void onApplicationEvent(BrokerAvailabilityEvent event) {
@@ -118,13 +147,16 @@ public class UserRegistryMessageHandler implements MessageHandler, ApplicationLi
 
 	private class UserRegistryTask implements Runnable {
 
+		private int broadcastCount;
+
 		@Override
 		public void run() {
 			try {
 				SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
 				accessor.setHeader(SimpMessageHeaderAccessor.IGNORE_ERROR, true);
 				accessor.setLeaveMutable(true);
-				Object payload = userRegistry.getLocalRegistryDto();
+				boolean full = (this.broadcastCount++ % getFullBroadcastInterval() == 0);
+				Object payload = userRegistry.getLocalRegistryDto(full);
 				brokerTemplate.convertAndSend(getBroadcastDestination(), payload, accessor.getMessageHeaders());
 			}
 			finally {
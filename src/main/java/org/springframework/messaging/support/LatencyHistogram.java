@@ -0,0 +1,178 @@
+/*
+ * Copyright 2002-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.messaging.support;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of latencies in nanoseconds, recording values into
+ * logarithmic buckets with linear sub-buckets in the style of an HDR histogram.
+ *
+ * <p>Values are tracked with a relative precision of 1/16 (about 6%) up to
+ * 2<sup>40</sup> nanoseconds (about 18 minutes); larger values are recorded as
+ * that maximum. Each bucket is an atomic counter, so recording a value never
+ * blocks and costs a few atomic increments, and the memory footprint is fixed
+ * at a few kilobytes regardless of the number of recorded values.
+ *
+ * <p>Statistics are computed from the bucket counts at the time of the call.
+ * Values recorded concurrently may or may not be reflected.
+ *
+ * @since 4.3
+ * @see org.springframework.messaging.simp.SimpMessageMetricsRecorder
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 4;
+
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+	private static final int LINEAR_LIMIT = SUB_BUCKET_COUNT << 1;
+
+	private static final int MAX_VALUE_BITS = 40;
+
+	private static final long MAX_TRACKABLE_VALUE = (1L << MAX_VALUE_BITS) - 1;
+
+	private static final int BUCKET_COUNT =
+			LINEAR_LIMIT + (MAX_VALUE_BITS - SUB_BUCKET_BITS - 1) * SUB_BUCKET_COUNT;
+
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+	private final AtomicLong totalCount = new AtomicLong();
+
+	private final AtomicLong totalValue = new AtomicLong();
+
+	private final AtomicLong maxValue = new AtomicLong();
+
+
+	/**
+	 * Record the given latency.
+	 * @param nanos the latency in nanoseconds; negative values are recorded as 0
+	 */
+	public void record(long nanos) {
+		long value = (nanos < 0 ? 0 : Math.min(nanos, MAX_TRACKABLE_VALUE));
+		this.counts.incrementAndGet(getIndex(value));
+		this.totalCount.incrementAndGet();
+		this.totalValue.addAndGet(value);
+		long max = this.maxValue.get();
+		while (value > max && !this.maxValue.compareAndSet(max, value)) {
+			max = this.maxValue.get();
+		}
+	}
+
+	/**
+	 * Return the number of recorded values.
+	 */
+	public long getCount() {
+		return this.totalCount.get();
+	}
+
+	/**
+	 * Return the mean of the recorded values in nanoseconds, or 0 if none.
+	 */
+	public long getMean() {
+		long count = this.totalCount.get();
+		return (count > 0 ? this.totalValue.get() / count : 0);
+	}
+
+	/**
+	 * Return the largest recorded value in nanoseconds, or 0 if none.
+	 */
+	public long getMax() {
+		return this.maxValue.get();
+	}
+
+	/**
+	 * Return the value in nanoseconds below which the given percentage of the
+	 * recorded values fall, within the precision of this histogram.
+	 * @param percentile the percentile, between 0 and 100
+	 * @return the value at the percentile, or 0 if no values have been recorded
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long[] snapshot = new long[BUCKET_COUNT];
+		long count = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			snapshot[i] = this.counts.get(i);
+			count += snapshot[i];
+		}
+		if (count == 0) {
+			return 0;
+		}
+		double fraction = Math.min(Math.max(percentile, 0), 100) / 100;
+		long rank = Math.max(1, (long) Math.ceil(fraction * count));
+		long seen = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			seen += snapshot[i];
+			if (seen >= rank) {
+				return Math.min(getHighestValue(i), getMax());
+			}
+		}
+		return getMax();
+	}
+
+	/**
+	 * Clear all recorded values.
+	 * <p>Values recorded concurrently may be partially retained.
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			this.counts.set(i, 0);
+		}
+		this.totalCount.set(0);
+		this.totalValue.set(0);
+		this.maxValue.set(0);
+	}
+
+
+	private static int getIndex(long value) {
+		if (value < LINEAR_LIMIT) {
+			return (int) value;
+		}
+		int msb = 63 - Long.numberOfLeadingZeros(value);
+		int subBucket = (int) (value >>> (msb - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+		return LINEAR_LIMIT + (msb - SUB_BUCKET_BITS - 1) * SUB_BUCKET_COUNT + subBucket;
+	}
+
+	private static long getHighestValue(int index) {
+		if (index < LINEAR_LIMIT) {
+			return index;
+		}
+		int shift = (index - LINEAR_LIMIT) / SUB_BUCKET_COUNT + 1;
+		int subBucket = (index - LINEAR_LIMIT) % SUB_BUCKET_COUNT;
+		return ((long) (SUB_BUCKET_COUNT + subBucket + 1) << shift) - 1;
+	}
+
+
+	/**
+	 * Return a summary with count, mean, median, 90th and 99th percentile
+	 * and maximum, in milliseconds.
+	 */
+	@Override
+	public String toString() {
+		return "count=" + getCount() + ", mean=" + formatMillis(getMean()) +
+				", p50=" + formatMillis(getValueAtPercentile(50)) +
+				", p90=" + formatMillis(getValueAtPercentile(90)) +
+				", p99=" + formatMillis(getValueAtPercentile(99)) +
+				", max=" + formatMillis(getMax());
+	}
+
+	private static String formatMillis(long nanos) {
+		return String.format("%.3fms", nanos / 1000000d);
+	}
+
+}
@@ -47,7 +47,6 @@ public final class MessageBuilder<T> {
 		Assert.notNull(originalMessage, "Message must not be null");
 		this.payload = originalMessage.getPayload();
 		this.originalMessage = originalMessage;
-		this.headerAccessor = new MessageHeaderAccessor(originalMessage);
 	}
 
 	private MessageBuilder(T payload, MessageHeaderAccessor accessor) {
@@ -74,7 +73,7 @@ public final class MessageBuilder<T> {
 	 * the header will be removed.
 	 */
 	public MessageBuilder<T> setHeader(String headerName, Object headerValue) {
-		this.headerAccessor.setHeader(headerName, headerValue);
+		getHeaderAccessor().setHeader(headerName, headerValue);
 		return this;
 	}
 
@@ -83,7 +82,7 @@ public final class MessageBuilder<T> {
 	 * associated with a value.
 	 */
 	public MessageBuilder<T> setHeaderIfAbsent(String headerName, Object headerValue) {
-		this.headerAccessor.setHeaderIfAbsent(headerName, headerValue);
+		getHeaderAccessor().setHeaderIfAbsent(headerName, headerValue);
 		return this;
 	}
 
@@ -93,14 +92,14 @@ public final class MessageBuilder<T> {
 	 * styles are: "xxx*", "*xxx", "*xxx*" and "xxx*yyy".
 	 */
 	public MessageBuilder<T> removeHeaders(String... headerPatterns) {
-		this.headerAccessor.removeHeaders(headerPatterns);
+		getHeaderAccessor().removeHeaders(headerPatterns);
 		return this;
 	}
 	/**
 	 * Remove the value for the given header name.
 	 */
 	public MessageBuilder<T> removeHeader(String headerName) {
-		this.headerAccessor.removeHeader(headerName);
+		getHeaderAccessor().removeHeader(headerName);
 		return this;
 	}
 
@@ -110,7 +109,7 @@ public final class MessageBuilder<T> {
 	 * values. Note that the 'id' and 'timestamp' header values will never be overwritten.
 	 */
 	public MessageBuilder<T> copyHeaders(Map<String, ?> headersToCopy) {
-		this.headerAccessor.copyHeaders(headersToCopy);
+		getHeaderAccessor().copyHeaders(headersToCopy);
 		return this;
 	}
 
@@ -119,33 +118,45 @@ public final class MessageBuilder<T> {
 	 * overwrite any existing values.
 	 */
 	public MessageBuilder<T> copyHeadersIfAbsent(Map<String, ?> headersToCopy) {
-		this.headerAccessor.copyHeadersIfAbsent(headersToCopy);
+		getHeaderAccessor().copyHeadersIfAbsent(headersToCopy);
 		return this;
 	}
 
 	public MessageBuilder<T> setReplyChannel(MessageChannel replyChannel) {
-		this.headerAccessor.setReplyChannel(replyChannel);
+		getHeaderAccessor().setReplyChannel(replyChannel);
 		return this;
 	}
 
 	public MessageBuilder<T> setReplyChannelName(String replyChannelName) {
-		this.headerAccessor.setReplyChannelName(replyChannelName);
+		getHeaderAccessor().setReplyChannelName(replyChannelName);
 		return this;
 	}
 
 	public MessageBuilder<T> setErrorChannel(MessageChannel errorChannel) {
-		this.headerAccessor.setErrorChannel(errorChannel);
+		getHeaderAccessor().setErrorChannel(errorChannel);
 		return this;
 	}
 
 	public MessageBuilder<T> setErrorChannelName(String errorChannelName) {
-		this.headerAccessor.setErrorChannelName(errorChannelName);
+		getHeaderAccessor().setErrorChannelName(errorChannelName);
 		return this;
 	}
 
+	/**
+	 * Return the accessor for the headers of the message to build, creating
+	 * it on first access for a builder created from an existing message, so
+	 * that the headers of that message are only copied if they are modified.
+	 */
+	private MessageHeaderAccessor getHeaderAccessor() {
+		if (this.headerAccessor == null) {
+			this.headerAccessor = new MessageHeaderAccessor(this.originalMessage);
+		}
+		return this.headerAccessor;
+	}
+
 	@SuppressWarnings("unchecked")
 	public Message<T> build() {
-		if (this.originalMessage != null && !this.headerAccessor.isModified()) {
+		if (this.originalMessage != null && (this.headerAccessor == null || !this.headerAccessor.isModified())) {
 			return this.originalMessage;
 		}
 		MessageHeaders headersToUse = this.headerAccessor.toMessageHeaders();
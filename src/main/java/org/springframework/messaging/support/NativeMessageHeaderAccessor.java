@@ -43,6 +43,9 @@ import org.springframework.util.ObjectUtils;
  * reversely to translate Spring {@link Message} headers to a message to send to an
  * external source.
  *
+ * <p>When created for an existing message, the accessor shares the native headers
+ * of that message until one of them is modified, at which point they are copied.
+ *
  * @author Rossen Stoyanchev
  * @since 4.0
  */
@@ -51,6 +54,9 @@ public class NativeMessageHeaderAccessor extends MessageHeaderAccessor {
 	public static final String NATIVE_HEADERS = "nativeHeaders";
 
 
+	private boolean nativeHeadersShared;
+
+
 	/**
 	 * A protected constructor to create new headers.
 	 */
@@ -65,6 +71,7 @@ public class NativeMessageHeaderAccessor extends MessageHeaderAccessor {
 	protected NativeMessageHeaderAccessor(Map<String, List<String>> nativeHeaders) {
 		if (!CollectionUtils.isEmpty(nativeHeaders)) {
 			setHeader(NATIVE_HEADERS, new LinkedMultiValueMap<String, String>(nativeHeaders));
+			this.nativeHeadersShared = false;
 		}
 	}
 
@@ -73,15 +80,7 @@ public class NativeMessageHeaderAccessor extends MessageHeaderAccessor {
 	 */
 	protected NativeMessageHeaderAccessor(Message<?> message) {
 		super(message);
-		if (message != null) {
-			@SuppressWarnings("unchecked")
-			Map<String, List<String>> map = (Map<String, List<String>>) getHeader(NATIVE_HEADERS);
-			if (map != null) {
-				// Force removal since setHeader checks for equality
-				removeHeader(NATIVE_HEADERS);
-				setHeader(NATIVE_HEADERS, new LinkedMultiValueMap<String, String>(map));
-			}
-		}
+		this.nativeHeadersShared = (message != null && getHeader(NATIVE_HEADERS) != null);
 	}
 
 	@SuppressWarnings("unchecked")
@@ -89,6 +88,45 @@ public class NativeMessageHeaderAccessor extends MessageHeaderAccessor {
 		return (Map<String, List<String>>) getHeader(NATIVE_HEADERS);
 	}
 
+	/**
+	 * Return the native headers for modification, copying them first if they
+	 * are still shared with the message this accessor was created for.
+	 * @param create whether to create the native headers if there are none
+	 */
+	private Map<String, List<String>> getMutableNativeHeaders(boolean create) {
+		Map<String, List<String>> map = getNativeHeaders();
+		if (map != null && this.nativeHeadersShared) {
+			LinkedMultiValueMap<String, String> copy = new LinkedMultiValueMap<String, String>(map.size() + 4);
+			for (Map.Entry<String, List<String>> entry : map.entrySet()) {
+				copy.put(entry.getKey(), new LinkedList<String>(entry.getValue()));
+			}
+			// Force removal since setHeader checks for equality
+			removeHeader(NATIVE_HEADERS);
+			setHeader(NATIVE_HEADERS, copy);
+			this.nativeHeadersShared = false;
+			map = copy;
+		}
+		else if (map == null && create) {
+			map = new LinkedMultiValueMap<String, String>(4);
+			setHeader(NATIVE_HEADERS, map);
+			this.nativeHeadersShared = false;
+		}
+		return map;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>A native headers map set through this method is treated as shared,
+	 * i.e. it is copied before any native header is modified.
+	 */
+	@Override
+	public void setHeader(String name, Object value) {
+		super.setHeader(name, value);
+		if (NATIVE_HEADERS.equals(name)) {
+			this.nativeHeadersShared = (value != null);
+		}
+	}
+
 	/**
 	 * Return a copy of the native header values or an empty map.
 	 */
@@ -101,7 +139,7 @@ public class NativeMessageHeaderAccessor extends MessageHeaderAccessor {
 	public void setImmutable() {
 		if (isMutable()) {
 			Map<String, List<String>> map = getNativeHeaders();
-			if (map != null) {
+			if (map != null && !this.nativeHeadersShared) {
 				// Force removal since setHeader checks for equality
 				removeHeader(NATIVE_HEADERS);
 				setHeader(NATIVE_HEADERS, Collections.<String, List<String>>unmodifiableMap(map));
@@ -149,19 +187,15 @@ public class NativeMessageHeaderAccessor extends MessageHeaderAccessor {
 		if (value == null) {
 			if (map != null && map.get(name) != null) {
 				setModified(true);
-				map.remove(name);
+				getMutableNativeHeaders(false).remove(name);
 			}
 			return;
 		}
-		if (map == null) {
-			map = new LinkedMultiValueMap<String, String>(4);
-			setHeader(NATIVE_HEADERS, map);
-		}
 		List<String> values = new LinkedList<String>();
 		values.add(value);
-		if (!ObjectUtils.nullSafeEquals(values, getHeader(name))) {
+		if (!ObjectUtils.nullSafeEquals(values, (map != null ? map.get(name) : null))) {
 			setModified(true);
-			map.put(name, values);
+			getMutableNativeHeaders(true).put(name, values);
 		}
 	}
 
@@ -173,11 +207,7 @@ public class NativeMessageHeaderAccessor extends MessageHeaderAccessor {
 		if (value == null) {
 			return;
 		}
-		Map<String, List<String>> nativeHeaders = getNativeHeaders();
-		if (nativeHeaders == null) {
-			nativeHeaders = new LinkedMultiValueMap<String, String>(4);
-			setHeader(NATIVE_HEADERS, nativeHeaders);
-		}
+		Map<String, List<String>> nativeHeaders = getMutableNativeHeaders(true);
 		List<String> values = nativeHeaders.get(name);
 		if (values == null) {
 			values = new LinkedList<String>();
@@ -201,10 +231,10 @@ public class NativeMessageHeaderAccessor extends MessageHeaderAccessor {
 	public List<String> removeNativeHeader(String name) {
 		Assert.state(isMutable(), "Already immutable");
 		Map<String, List<String>> nativeHeaders = getNativeHeaders();
-		if (nativeHeaders == null) {
+		if (nativeHeaders == null || !nativeHeaders.containsKey(name)) {
 			return null;
 		}
-		return nativeHeaders.remove(name);
+		return getMutableNativeHeaders(false).remove(name);
 	}
 
 	@SuppressWarnings("unchecked")
@@ -0,0 +1,275 @@
+/*
+ * Copyright 2002-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.messaging.support;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.messaging.Message;
+import org.springframework.util.Assert;
+
+/**
+ * An {@link Executor} for {@link ExecutorSubscribableChannel} that preserves the
+ * order of messages sharing the same key, by default the same session id.
+ *
+ * <p>Each {@link MessageHandlingRunnable} is assigned to one of a fixed number of
+ * lanes according to the hash of the value of the {@link #setShardKeyHeader shard
+ * key header} of its message. Each lane is a lock-free queue that is drained by at
+ * most one thread of the delegate executor at a time, so that messages with the
+ * same key are handled one after the other and in the order in which they were
+ * sent, while messages for different lanes are handled concurrently. A thread
+ * handles up to {@link #setBatchSize batchSize} messages of a lane before handing
+ * the lane back to the delegate executor, so that a busy lane causes one executor
+ * hand-off per batch rather than per message.
+ *
+ * <p>Tasks that are not a {@code MessageHandlingRunnable}, or whose message does
+ * not have the shard key header, are passed to the delegate executor directly.
+ *
+ * <p>Note that an exception thrown from a task is logged rather than propagated,
+ * so that it does not prevent the remaining tasks of the lane from running.
+ *
+ * @since 4.3
+ * @see org.springframework.messaging.simp.config.ChannelRegistration#preserveSessionOrder
+ */
+public class ShardedMessageExecutor implements Executor {
+
+	/**
+	 * The default shard key header: the session id header of
+	 * {@link org.springframework.messaging.simp.SimpMessageHeaderAccessor}.
+	 */
+	public static final String DEFAULT_SHARD_KEY_HEADER = "simpSessionId";
+
+	private static final Log logger = LogFactory.getLog(ShardedMessageExecutor.class);
+
+
+	private final Executor delegate;
+
+	private String shardKeyHeader = DEFAULT_SHARD_KEY_HEADER;
+
+	private int queueCapacity = Integer.MAX_VALUE;
+
+	private int batchSize = 32;
+
+	private final Lane[] lanes;
+
+
+	/**
+	 * Create a new executor with twice as many lanes as there are available processors.
+	 * @param delegate the executor to run the lanes on
+	 */
+	public ShardedMessageExecutor(Executor delegate) {
+		this(delegate, Runtime.getRuntime().availableProcessors() * 2);
+	}
+
+	/**
+	 * Create a new executor with the given number of lanes.
+	 * @param delegate the executor to run the lanes on
+	 * @param laneCount the number of lanes, i.e. the maximum number of
+	 * messages handled concurrently
+	 */
+	public ShardedMessageExecutor(Executor delegate, int laneCount) {
+		Assert.notNull(delegate, "Delegate executor must not be null");
+		Assert.isTrue(laneCount > 0, "Lane count must be greater than 0");
+		this.delegate = delegate;
+		this.lanes = new Lane[laneCount];
+		for (int i = 0; i < laneCount; i++) {
+			this.lanes[i] = new Lane();
+		}
+	}
+
+
+	/**
+	 * Return the executor that the lanes run on.
+	 */
+	public Executor getDelegate() {
+		return this.delegate;
+	}
+
+	/**
+	 * Return the number of lanes.
+	 */
+	public int getLaneCount() {
+		return this.lanes.length;
+	}
+
+	/**
+	 * Set the name of the message header whose value determines the lane of a message.
+	 * <p>By default this is {@link #DEFAULT_SHARD_KEY_HEADER}.
+	 */
+	public void setShardKeyHeader(String shardKeyHeader) {
+		Assert.hasText(shardKeyHeader, "Shard key header must not be empty");
+		this.shardKeyHeader = shardKeyHeader;
+	}
+
+	/**
+	 * Return the name of the message header whose value determines the lane of a message.
+	 */
+	public String getShardKeyHeader() {
+		return this.shardKeyHeader;
+	}
+
+	/**
+	 * Set the maximum number of tasks queued per lane, beyond which tasks are
+	 * rejected with a {@link RejectedExecutionException}.
+	 * <p>By default this is set to {@code Integer.MAX_VALUE}.
+	 */
+	public void setQueueCapacity(int queueCapacity) {
+		Assert.isTrue(queueCapacity > 0, "Queue capacity must be greater than 0");
+		this.queueCapacity = queueCapacity;
+	}
+
+	/**
+	 * Return the maximum number of tasks queued per lane.
+	 */
+	public int getQueueCapacity() {
+		return this.queueCapacity;
+	}
+
+	/**
+	 * Set the maximum number of tasks of a lane to run before the lane is handed
+	 * back to the delegate executor, allowing other lanes to make progress.
+	 * <p>By default this is set to 32.
+	 */
+	public void setBatchSize(int batchSize) {
+		Assert.isTrue(batchSize > 0, "Batch size must be greater than 0");
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Return the maximum number of tasks of a lane to run in one go.
+	 */
+	public int getBatchSize() {
+		return this.batchSize;
+	}
+
+	/**
+	 * Return the number of tasks currently queued in all lanes.
+	 */
+	public int getQueueSize() {
+		int size = 0;
+		for (Lane lane : this.lanes) {
+			size += lane.size.get();
+		}
+		return size;
+	}
+
+
+	@Override
+	public void execute(Runnable task) {
+		Object key = getShardKey(task);
+		if (key == null) {
+			this.delegate.execute(task);
+			return;
+		}
+		this.lanes[(key.hashCode() & Integer.MAX_VALUE) % this.lanes.length].add(task);
+	}
+
+	/**
+	 * Determine the key for the given task, or {@code null} if the task
+	 * does not need to be ordered.
+	 */
+	protected Object getShardKey(Runnable task) {
+		if (task instanceof MessageHandlingRunnable) {
+			Message<?> message = ((MessageHandlingRunnable) task).getMessage();
+			return message.getHeaders().get(this.shardKeyHeader);
+		}
+		return null;
+	}
+
+	@Override
+	public String toString() {
+		return "ShardedMessageExecutor[lanes=" + this.lanes.length + ", queued=" + getQueueSize() +
+				", delegate=" + this.delegate + "]";
+	}
+
+
+	private class Lane implements Runnable {
+
+		private final Queue<Runnable> queue = new ConcurrentLinkedQueue<Runnable>();
+
+		private final AtomicInteger size = new AtomicInteger();
+
+		private final AtomicBoolean scheduled = new AtomicBoolean();
+
+		public void add(Runnable task) {
+			if (this.size.incrementAndGet() > queueCapacity) {
+				this.size.decrementAndGet();
+				throw new RejectedExecutionException("Queue capacity of " + queueCapacity + " exceeded");
+			}
+			this.queue.offer(task);
+			try {
+				schedule();
+			}
+			catch (RuntimeException ex) {
+				if (this.queue.remove(task)) {
+					this.size.decrementAndGet();
+				}
+				throw ex;
+			}
+		}
+
+		private void schedule() {
+			if (this.scheduled.compareAndSet(false, true)) {
+				try {
+					delegate.execute(this);
+				}
+				catch (RuntimeException ex) {
+					this.scheduled.set(false);
+					throw ex;
+				}
+			}
+		}
+
+		@Override
+		public void run() {
+			try {
+				for (int i = 0; i < batchSize; i++) {
+					Runnable task = this.queue.poll();
+					if (task == null) {
+						break;
+					}
+					this.size.decrementAndGet();
+					try {
+						task.run();
+					}
+					catch (Throwable ex) {
+						logger.error("Failed to run " + task, ex);
+					}
+				}
+			}
+			finally {
+				this.scheduled.set(false);
+				if (!this.queue.isEmpty()) {
+					try {
+						schedule();
+					}
+					catch (RuntimeException ex) {
+						logger.error("Failed to reschedule lane with " + this.size.get() + " queued tasks", ex);
+					}
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2002-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.messaging.tcp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.messaging.Message;
+import org.springframework.util.Assert;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.ListenableFutureCallback;
+import org.springframework.util.concurrent.SettableListenableFuture;
+
+/**
+ * Gathers the messages sent over a {@link TcpConnection} within a short time
+ * window, or up to a byte limit, and hands them to a {@link BatchWriter} in one
+ * go, so that a transport can write and flush them together rather than paying
+ * for one flush (i.e. one system call) per message.
+ *
+ * <p>A batch is written once the first message in it has waited for the
+ * configured maximum delay, or as soon as the payloads in it reach the byte
+ * limit, whichever comes first. Only {@code byte[]} and String payloads count
+ * towards the byte limit, the latter with the length of their UTF-8 encoding.
+ * Batches are written in the order the messages were sent.
+ *
+ * @param <P> the type of payload for outbound {@link Message}s
+ * @since 4.3
+ * @see org.springframework.messaging.tcp.reactor.Reactor2TcpClient#setWriteCoalescingDelay
+ */
+public class TcpWriteCoalescer<P> {
+
+	private final BatchWriter<P> batchWriter;
+
+	private final ScheduledExecutorService scheduler;
+
+	private final long maxDelay;
+
+	private final int byteLimit;
+
+	private final Object monitor = new Object();
+
+	private List<Message<P>> messages = new ArrayList<Message<P>>();
+
+	private List<SettableListenableFuture<Void>> futures = new ArrayList<SettableListenableFuture<Void>>();
+
+	private int byteCount;
+
+	private boolean flushScheduled;
+
+	private final Runnable flushTask = new Runnable() {
+		@Override
+		public void run() {
+			synchronized (monitor) {
+				flushScheduled = false;
+				flush();
+			}
+		}
+	};
+
+
+	/**
+	 * Create a new coalescer.
+	 * @param batchWriter the callback to write batches with
+	 * @param scheduler the scheduler to delay writing batches with
+	 * @param maxDelay the maximum time in milliseconds a message is held back
+	 * @param byteLimit the number of payload bytes at which a batch is written
+	 * without further delay
+	 */
+	public TcpWriteCoalescer(BatchWriter<P> batchWriter, ScheduledExecutorService scheduler,
+			long maxDelay, int byteLimit) {
+
+		Assert.notNull(batchWriter, "BatchWriter must not be null");
+		Assert.notNull(scheduler, "ScheduledExecutorService must not be null");
+		Assert.isTrue(maxDelay > 0, "Maximum delay must be greater than 0");
+		this.batchWriter = batchWriter;
+		this.scheduler = scheduler;
+		this.maxDelay = maxDelay;
+		this.byteLimit = byteLimit;
+	}
+
+
+	/**
+	 * Add the given message to the current batch.
+	 * @return a future completed once the batch with the message has been written
+	 */
+	public ListenableFuture<Void> send(Message<P> message) {
+		SettableListenableFuture<Void> future = new SettableListenableFuture<Void>();
+		synchronized (this.monitor) {
+			this.messages.add(message);
+			this.futures.add(future);
+			this.byteCount += getPayloadSize(message);
+			if (this.byteCount >= this.byteLimit) {
+				flush();
+			}
+			else if (!this.flushScheduled) {
+				try {
+					this.scheduler.schedule(this.flushTask, this.maxDelay, TimeUnit.MILLISECONDS);
+					this.flushScheduled = true;
+				}
+				catch (RejectedExecutionException ex) {
+					// Scheduler shut down: write now rather than never completing the futures
+					flush();
+				}
+			}
+		}
+		return future;
+	}
+
+	/**
+	 * Write the current batch, if any, without waiting for the delay to expire.
+	 */
+	public void flush() {
+		final List<Message<P>> batch;
+		final List<SettableListenableFuture<Void>> batchFutures;
+		synchronized (this.monitor) {
+			if (this.messages.isEmpty()) {
+				return;
+			}
+			batch = this.messages;
+			batchFutures = this.futures;
+			this.messages = new ArrayList<Message<P>>(batch.size());
+			this.futures = new ArrayList<SettableListenableFuture<Void>>(batch.size());
+			this.byteCount = 0;
+			// Write while holding the lock so that batches are not reordered
+			ListenableFuture<Void> result;
+			try {
+				result = this.batchWriter.write(batch);
+			}
+			catch (Throwable ex) {
+				for (SettableListenableFuture<Void> future : batchFutures) {
+					future.setException(ex);
+				}
+				return;
+			}
+			result.addCallback(new ListenableFutureCallback<Void>() {
+				@Override
+				public void onSuccess(Void value) {
+					for (SettableListenableFuture<Void> future : batchFutures) {
+						future.set(null);
+					}
+				}
+				@Override
+				public void onFailure(Throwable ex) {
+					for (SettableListenableFuture<Void> future : batchFutures) {
+						future.setException(ex);
+					}
+				}
+			});
+		}
+	}
+
+	private int getPayloadSize(Message<P> message) {
+		Object payload = message.getPayload();
+		if (payload instanceof byte[]) {
+			return ((byte[]) payload).length;
+		}
+		else if (payload instanceof String) {
+			return getUtf8Length((String) payload);
+		}
+		return 0;
+	}
+
+	private static int getUtf8Length(String value) {
+		int length = 0;
+		for (int i = 0; i < value.length(); i++) {
+			char ch = value.charAt(i);
+			if (ch < 0x80) {
+				length++;
+			}
+			else if (ch < 0x800) {
+				length += 2;
+			}
+			else if (Character.isHighSurrogate(ch) && i + 1 < value.length() &&
+					Character.isLowSurrogate(value.charAt(i + 1))) {
+				length += 4;
+				i++;
+			}
+			else {
+				length += 3;
+			}
+		}
+		return length;
+	}
+
+
+	/**
+	 * Callback to write a batch of messages with a single flush.
+	 * @param <P> the type of payload for outbound {@link Message}s
+	 */
+	public interface BatchWriter<P> {
+
+		/**
+		 * Write the given messages, in order.
+		 * @param messages the messages to write
+		 * @return a future completed once all messages have been written
+		 */
+		ListenableFuture<Void> write(List<Message<P>> messages);
+	}
+
+}
@@ -21,6 +21,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.util.concurrent.Future;
@@ -56,6 +58,7 @@ import org.springframework.messaging.Message;
 import org.springframework.messaging.tcp.ReconnectStrategy;
 import org.springframework.messaging.tcp.TcpConnectionHandler;
 import org.springframework.messaging.tcp.TcpOperations;
+import org.springframework.messaging.tcp.TcpWriteCoalescer;
 import org.springframework.util.Assert;
 import org.springframework.util.concurrent.ListenableFuture;
 
@@ -66,6 +69,11 @@ import org.springframework.util.concurrent.ListenableFuture;
  * <p>This implementation wraps N (Reactor) clients for N {@link #connect} calls,
  * i.e. a separate (Reactor) client instance for each connection.
  *
+ * <p>By default every message sent is written and flushed individually. With a
+ * {@link #setWriteCoalescingDelay write coalescing delay}, messages sent within
+ * that delay are written with a single flush instead, trading a bounded amount
+ * of latency for fewer system calls under load.
+ *
  * @author Rossen Stoyanchev
  * @author Stephane Maldini
  * @since 4.2
@@ -85,6 +93,12 @@ public class Reactor2TcpClient<P> implements TcpOperations<P> {
 
 	private boolean stopping;
 
+	private long writeCoalescingDelay = 0;
+
+	private int writeCoalescingByteLimit = 64 * 1024;
+
+	private ScheduledExecutorService writeCoalescingScheduler;
+
 
 	/**
 	 * A constructor that creates a {@link TcpClientSpec TcpClientSpec} factory
@@ -129,6 +143,47 @@ public class Reactor2TcpClient<P> implements TcpOperations<P> {
 	}
 
 
+	/**
+	 * Enable write coalescing for connections created subsequently: messages
+	 * are held back for up to the given delay and written together with a
+	 * single flush, or as soon as they reach the
+	 * {@link #setWriteCoalescingByteLimit byte limit}.
+	 * <p>By default this is set to 0, i.e. each message is flushed individually.
+	 * @param writeCoalescingDelay the maximum delay in milliseconds
+	 * @since 4.3
+	 * @see TcpWriteCoalescer
+	 */
+	public void setWriteCoalescingDelay(long writeCoalescingDelay) {
+		this.writeCoalescingDelay = writeCoalescingDelay;
+	}
+
+	/**
+	 * Return the configured write coalescing delay.
+	 * @since 4.3
+	 */
+	public long getWriteCoalescingDelay() {
+		return this.writeCoalescingDelay;
+	}
+
+	/**
+	 * Configure the number of payload bytes at which coalesced messages are
+	 * written without waiting for the {@link #setWriteCoalescingDelay delay}.
+	 * <p>By default this is set to 65536 (64K).
+	 * @since 4.3
+	 */
+	public void setWriteCoalescingByteLimit(int writeCoalescingByteLimit) {
+		this.writeCoalescingByteLimit = writeCoalescingByteLimit;
+	}
+
+	/**
+	 * Return the configured write coalescing byte limit.
+	 * @since 4.3
+	 */
+	public int getWriteCoalescingByteLimit() {
+		return this.writeCoalescingByteLimit;
+	}
+
+
 	private static NioEventLoopGroup initEventLoopGroup() {
 		int ioThreadCount;
 		try {
@@ -145,6 +200,24 @@ public class Reactor2TcpClient<P> implements TcpOperations<P> {
 				new NamedDaemonThreadFactory("reactor-tcp-io"));
 	}
 
+	private Reactor2TcpConnection<P> createConnection(ChannelStream<Message<P>, Message<P>> channelStream,
+			Promise<Void> closePromise) {
+
+		if (this.writeCoalescingDelay <= 0) {
+			return new Reactor2TcpConnection<P>(channelStream, closePromise);
+		}
+		ScheduledExecutorService scheduler;
+		synchronized (this.tcpClients) {
+			if (this.writeCoalescingScheduler == null) {
+				this.writeCoalescingScheduler = Executors.newSingleThreadScheduledExecutor(
+						new NamedDaemonThreadFactory("reactor-tcp-coalescing"));
+			}
+			scheduler = this.writeCoalescingScheduler;
+		}
+		return new Reactor2TcpConnection<P>(channelStream, closePromise,
+				scheduler, this.writeCoalescingDelay, this.writeCoalescingByteLimit);
+	}
+
 
 	@Override
 	public ListenableFuture<Void> connect(final TcpConnectionHandler<P> connectionHandler) {
@@ -161,7 +234,7 @@ public class Reactor2TcpClient<P> implements TcpOperations<P> {
 			this.tcpClients.add(tcpClient);
 		}
 
-		Promise<Void> promise = tcpClient.start(new MessageChannelStreamHandler<P>(connectionHandler));
+		Promise<Void> promise = tcpClient.start(new MessageChannelStreamHandler<P>(this, connectionHandler));
 
 		return new PassThroughPromiseToListenableFutureAdapter<Void>(
 				promise.onError(new Consumer<Throwable>() {
@@ -190,7 +263,7 @@ public class Reactor2TcpClient<P> implements TcpOperations<P> {
 		}
 
 		Stream<Tuple2<InetSocketAddress, Integer>> stream = tcpClient.start(
-				new MessageChannelStreamHandler<P>(connectionHandler),
+				new MessageChannelStreamHandler<P>(this, connectionHandler),
 				new ReactorReconnectAdapter(strategy));
 
 		return new PassThroughPromiseToListenableFutureAdapter<Void>(stream.next().after());
@@ -200,6 +273,9 @@ public class Reactor2TcpClient<P> implements TcpOperations<P> {
 	public ListenableFuture<Void> shutdown() {
 		synchronized (this.tcpClients) {
 			this.stopping = true;
+			if (this.writeCoalescingScheduler != null) {
+				this.writeCoalescingScheduler.shutdown();
+			}
 		}
 
 		Promise<Void> promise = Streams.from(this.tcpClients)
@@ -252,16 +328,19 @@ public class Reactor2TcpClient<P> implements TcpOperations<P> {
 	private static class MessageChannelStreamHandler<P>
 			implements ReactorChannelHandler<Message<P>, Message<P>, ChannelStream<Message<P>, Message<P>>> {
 
+		private final Reactor2TcpClient<P> tcpClient;
+
 		private final TcpConnectionHandler<P> connectionHandler;
 
-		public MessageChannelStreamHandler(TcpConnectionHandler<P> connectionHandler) {
+		public MessageChannelStreamHandler(Reactor2TcpClient<P> tcpClient, TcpConnectionHandler<P> connectionHandler) {
+			this.tcpClient = tcpClient;
 			this.connectionHandler = connectionHandler;
 		}
 
 		@Override
 		public Publisher<Void> apply(ChannelStream<Message<P>, Message<P>> channelStream) {
 			Promise<Void> closePromise = Promises.prepare();
-			this.connectionHandler.afterConnected(new Reactor2TcpConnection<P>(channelStream, closePromise));
+			this.connectionHandler.afterConnected(this.tcpClient.createConnection(channelStream, closePromise));
 			channelStream
 					.finallyDo(new Consumer<Signal<Message<P>>>() {
 						@Override
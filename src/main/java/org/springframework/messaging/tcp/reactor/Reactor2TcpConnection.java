@@ -16,6 +16,9 @@
 
 package org.springframework.messaging.tcp.reactor;
 
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+
 import reactor.io.net.ChannelStream;
 import reactor.rx.Promise;
 import reactor.rx.Promises;
@@ -23,6 +26,7 @@ import reactor.rx.Streams;
 
 import org.springframework.messaging.Message;
 import org.springframework.messaging.tcp.TcpConnection;
+import org.springframework.messaging.tcp.TcpWriteCoalescer;
 import org.springframework.util.concurrent.ListenableFuture;
 
 /**
@@ -40,17 +44,44 @@ public class Reactor2TcpConnection<P> implements TcpConnection<P> {
 
 	private final Promise<Void> closePromise;
 
+	private final TcpWriteCoalescer<P> writeCoalescer;
+
 
 	public Reactor2TcpConnection(ChannelStream<Message<P>, Message<P>> channelStream,
 			Promise<Void> closePromise) {
 
 		this.channelStream = channelStream;
 		this.closePromise = closePromise;
+		this.writeCoalescer = null;
+	}
+
+	/**
+	 * Create a connection that coalesces writes.
+	 * @since 4.3
+	 * @see TcpWriteCoalescer
+	 */
+	public Reactor2TcpConnection(ChannelStream<Message<P>, Message<P>> channelStream,
+			Promise<Void> closePromise, ScheduledExecutorService scheduler, long maxDelay, int byteLimit) {
+
+		this.channelStream = channelStream;
+		this.closePromise = closePromise;
+		this.writeCoalescer = new TcpWriteCoalescer<P>(new TcpWriteCoalescer.BatchWriter<P>() {
+			@Override
+			public ListenableFuture<Void> write(List<Message<P>> messages) {
+				// A multi-element publisher is flushed once it completes
+				Promise<Void> afterWrite = Promises.prepare();
+				Reactor2TcpConnection.this.channelStream.writeWith(Streams.from(messages)).subscribe(afterWrite);
+				return new PassThroughPromiseToListenableFutureAdapter<Void>(afterWrite);
+			}
+		}, scheduler, maxDelay, byteLimit);
 	}
 
 
 	@Override
 	public ListenableFuture<Void> send(Message<P> message) {
+		if (this.writeCoalescer != null) {
+			return this.writeCoalescer.send(message);
+		}
 		Promise<Void> afterWrite = Promises.prepare();
 		this.channelStream.writeWith(Streams.just(message)).subscribe(afterWrite);
 		return new PassThroughPromiseToListenableFutureAdapter<Void>(afterWrite);
@@ -70,6 +101,9 @@ public class Reactor2TcpConnection<P> implements TcpConnection<P> {
 
 	@Override
 	public void close() {
+		if (this.writeCoalescer != null) {
+			this.writeCoalescer.flush();
+		}
 		this.closePromise.onComplete();
 	}
 
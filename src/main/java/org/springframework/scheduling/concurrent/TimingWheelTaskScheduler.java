@@ -0,0 +1,540 @@
+/*
+ * Copyright 2002-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.scheduling.concurrent;
+
+import java.util.Date;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.Trigger;
+import org.springframework.scheduling.support.SimpleTriggerContext;
+import org.springframework.scheduling.support.TaskUtils;
+import org.springframework.util.Assert;
+import org.springframework.util.ErrorHandler;
+
+/**
+ * Implementation of Spring's {@link TaskScheduler} interface based on a hashed
+ * timing wheel: scheduled tasks are hashed into a fixed number of buckets by
+ * their execution time, and a single thread advances through the buckets one
+ * tick at a time, only looking at the tasks in the current bucket.
+ *
+ * <p>Scheduling and cancelling a task are constant-time operations, independent
+ * of the number of scheduled tasks, at the expense of precision: tasks execute
+ * within one {@link #setTickDuration tick} after their scheduled time. This
+ * makes the scheduler a good fit for large numbers of timeouts that are usually
+ * cancelled or rescheduled before they expire, e.g. per-session heartbeat and
+ * inactivity deadlines, as opposed to a {@link ThreadPoolTaskScheduler} whose
+ * delay queue costs O(log n) per operation.
+ *
+ * <p>Tasks are executed on the wheel thread by default and should therefore be
+ * short; alternatively a {@link #setTaskExecutor task executor} may be configured
+ * to hand expired tasks off to.
+ *
+ * @since 4.3
+ * @see #setTickDuration
+ * @see #setTicksPerWheel
+ * @see ThreadPoolTaskScheduler
+ */
+@SuppressWarnings("serial")
+public class TimingWheelTaskScheduler extends CustomizableThreadFactory
+		implements TaskScheduler, InitializingBean, DisposableBean {
+
+	private static final int STATE_NEW = 0;
+
+	private static final int STATE_STARTED = 1;
+
+	private static final int STATE_SHUTDOWN = 2;
+
+
+	protected final Log logger = LogFactory.getLog(getClass());
+
+	private long tickDuration = 100;
+
+	private int ticksPerWheel = 512;
+
+	private Executor taskExecutor;
+
+	private volatile ErrorHandler errorHandler;
+
+	private final AtomicInteger state = new AtomicInteger(STATE_NEW);
+
+	private final Queue<WheelTask> pendingTasks = new ConcurrentLinkedQueue<WheelTask>();
+
+	private final Queue<WheelTask> cancelledTasks = new ConcurrentLinkedQueue<WheelTask>();
+
+	private Bucket[] wheel;
+
+	private volatile long startTime;
+
+	private Thread workerThread;
+
+
+	/**
+	 * Set the duration of a tick, i.e. the precision of the scheduler.
+	 * Default is 100 milliseconds.
+	 */
+	public void setTickDuration(long tickDuration) {
+		Assert.isTrue(tickDuration > 0, "'tickDuration' must be greater than 0");
+		this.tickDuration = tickDuration;
+	}
+
+	/**
+	 * Return the configured tick duration in milliseconds.
+	 */
+	public long getTickDuration() {
+		return this.tickDuration;
+	}
+
+	/**
+	 * Set the number of buckets in the wheel, rounded up to a power of two.
+	 * Tasks scheduled further ahead than one revolution of the wheel
+	 * ({@code ticksPerWheel * tickDuration}) share buckets with nearer tasks.
+	 * Default is 512.
+	 */
+	public void setTicksPerWheel(int ticksPerWheel) {
+		Assert.isTrue(ticksPerWheel > 0 && ticksPerWheel <= (1 << 30),
+				"'ticksPerWheel' must be between 1 and 2^30");
+		this.ticksPerWheel = ticksPerWheel;
+	}
+
+	/**
+	 * Return the configured number of buckets in the wheel.
+	 */
+	public int getTicksPerWheel() {
+		return this.ticksPerWheel;
+	}
+
+	/**
+	 * Set an {@link Executor} to run expired tasks on.
+	 * By default, tasks are run on the wheel thread.
+	 */
+	public void setTaskExecutor(Executor taskExecutor) {
+		this.taskExecutor = taskExecutor;
+	}
+
+	/**
+	 * Set a custom {@link ErrorHandler} strategy.
+	 */
+	public void setErrorHandler(ErrorHandler errorHandler) {
+		this.errorHandler = errorHandler;
+	}
+
+
+	@Override
+	public void afterPropertiesSet() {
+		initialize();
+	}
+
+	/**
+	 * Start the wheel thread. Called automatically on the first
+	 * scheduled task if the scheduler has not been initialized.
+	 */
+	public void initialize() {
+		if (this.state.compareAndSet(STATE_NEW, STATE_STARTED)) {
+			int size = 1;
+			while (size < this.ticksPerWheel) {
+				size <<= 1;
+			}
+			this.wheel = new Bucket[size];
+			for (int i = 0; i < size; i++) {
+				this.wheel[i] = new Bucket();
+			}
+			this.startTime = System.nanoTime();
+			this.workerThread = newThread(new Worker());
+			this.workerThread.start();
+			if (logger.isInfoEnabled()) {
+				logger.info("Started TimingWheelTaskScheduler with " + size + " buckets of " +
+						this.tickDuration + " ms");
+			}
+		}
+	}
+
+	@Override
+	public void destroy() {
+		shutdown();
+	}
+
+	/**
+	 * Stop the wheel thread, cancelling all tasks that have not run yet.
+	 */
+	public void shutdown() {
+		if (this.state.getAndSet(STATE_SHUTDOWN) == STATE_STARTED) {
+			if (logger.isInfoEnabled()) {
+				logger.info("Shutting down TimingWheelTaskScheduler");
+			}
+			this.workerThread.interrupt();
+		}
+	}
+
+
+	// TaskScheduler implementation
+
+	@Override
+	public ScheduledFuture<?> schedule(Runnable task, Trigger trigger) {
+		ErrorHandler errorHandler =
+				(this.errorHandler != null ? this.errorHandler : TaskUtils.getDefaultErrorHandler(true));
+		Runnable decoratedTask = TaskUtils.decorateTaskWithErrorHandler(task, errorHandler, true);
+		WheelTask wheelTask = new WheelTask(decoratedTask, trigger);
+		Date nextExecutionTime = trigger.nextExecutionTime(wheelTask.triggerContext);
+		if (nextExecutionTime == null) {
+			return null;
+		}
+		wheelTask.scheduledExecutionTime = nextExecutionTime;
+		return addTask(wheelTask, task, nanoTimeFor(nextExecutionTime));
+	}
+
+	@Override
+	public ScheduledFuture<?> schedule(Runnable task, Date startTime) {
+		WheelTask wheelTask = new WheelTask(errorHandlingTask(task, false), 0);
+		return addTask(wheelTask, task, nanoTimeFor(startTime));
+	}
+
+	@Override
+	public ScheduledFuture<?> scheduleAtFixedRate(Runnable task, Date startTime, long period) {
+		Assert.isTrue(period > 0, "'period' must be greater than 0");
+		WheelTask wheelTask = new WheelTask(errorHandlingTask(task, true), TimeUnit.MILLISECONDS.toNanos(period));
+		return addTask(wheelTask, task, nanoTimeFor(startTime));
+	}
+
+	@Override
+	public ScheduledFuture<?> scheduleAtFixedRate(Runnable task, long period) {
+		return scheduleAtFixedRate(task, new Date(), period);
+	}
+
+	@Override
+	public ScheduledFuture<?> scheduleWithFixedDelay(Runnable task, Date startTime, long delay) {
+		Assert.isTrue(delay > 0, "'delay' must be greater than 0");
+		WheelTask wheelTask = new WheelTask(errorHandlingTask(task, true), -TimeUnit.MILLISECONDS.toNanos(delay));
+		return addTask(wheelTask, task, nanoTimeFor(startTime));
+	}
+
+	@Override
+	public ScheduledFuture<?> scheduleWithFixedDelay(Runnable task, long delay) {
+		return scheduleWithFixedDelay(task, new Date(), delay);
+	}
+
+
+	private Runnable errorHandlingTask(Runnable task, boolean isRepeatingTask) {
+		return TaskUtils.decorateTaskWithErrorHandler(task, this.errorHandler, isRepeatingTask);
+	}
+
+	private long nanoTimeFor(Date time) {
+		long delay = time.getTime() - System.currentTimeMillis();
+		return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+	}
+
+	private ScheduledFuture<?> addTask(WheelTask wheelTask, Runnable task, long nanoTime) {
+		initialize();
+		if (this.state.get() != STATE_STARTED) {
+			throw new TaskRejectedException("TimingWheelTaskScheduler has been shut down, " +
+					"did not accept task: " + task);
+		}
+		wheelTask.deadline = nanoTime;
+		this.pendingTasks.add(wheelTask);
+		return wheelTask;
+	}
+
+	private void reschedule(WheelTask wheelTask) {
+		if (this.state.get() == STATE_STARTED) {
+			this.pendingTasks.add(wheelTask);
+		}
+		else {
+			wheelTask.cancel(false);
+		}
+	}
+
+	private void expire(WheelTask wheelTask) {
+		if (this.taskExecutor != null) {
+			try {
+				this.taskExecutor.execute(wheelTask);
+			}
+			catch (Throwable ex) {
+				logger.error("Failed to hand off expired task to executor: " + wheelTask, ex);
+			}
+		}
+		else {
+			wheelTask.run();
+		}
+	}
+
+
+	/**
+	 * The wheel thread: advances one bucket per tick, first moving newly
+	 * scheduled tasks into their buckets and unlinking cancelled ones.
+	 */
+	private class Worker implements Runnable {
+
+		private final long tickNanos = TimeUnit.MILLISECONDS.toNanos(tickDuration);
+
+		private final int mask = wheel.length - 1;
+
+		private long tick;
+
+		@Override
+		public void run() {
+			while (state.get() == STATE_STARTED) {
+				long deadline = waitForNextTick();
+				if (deadline < 0) {
+					break;
+				}
+				removeCancelledTasks();
+				transferPendingTasks();
+				wheel[(int) (this.tick & this.mask)].expireTasks(deadline);
+				this.tick++;
+			}
+			for (Bucket bucket : wheel) {
+				bucket.cancelAll();
+			}
+			WheelTask wheelTask;
+			while ((wheelTask = pendingTasks.poll()) != null) {
+				wheelTask.cancel(false);
+			}
+			cancelledTasks.clear();
+		}
+
+		/**
+		 * Sleep until the end of the current tick.
+		 * @return the end of the tick relative to the start time,
+		 * or -1 if interrupted through shutdown
+		 */
+		private long waitForNextTick() {
+			long deadline = this.tickNanos * (this.tick + 1);
+			while (true) {
+				long sleepMillis = TimeUnit.NANOSECONDS.toMillis(deadline - (System.nanoTime() - startTime) + 999999);
+				if (sleepMillis <= 0) {
+					return deadline;
+				}
+				try {
+					Thread.sleep(sleepMillis);
+				}
+				catch (InterruptedException ex) {
+					if (state.get() != STATE_STARTED) {
+						return -1;
+					}
+				}
+			}
+		}
+
+		private void removeCancelledTasks() {
+			WheelTask wheelTask;
+			while ((wheelTask = cancelledTasks.poll()) != null) {
+				if (wheelTask.bucket != null) {
+					wheelTask.bucket.remove(wheelTask);
+				}
+			}
+		}
+
+		private void transferPendingTasks() {
+			// Bounded, so that tasks rescheduling themselves immediately cannot stall the wheel
+			for (int i = 0; i < 100000; i++) {
+				WheelTask wheelTask = pendingTasks.poll();
+				if (wheelTask == null) {
+					break;
+				}
+				if (wheelTask.isCancelled()) {
+					continue;
+				}
+				long calculated = (wheelTask.deadline - startTime) / this.tickNanos;
+				wheelTask.remainingRounds = (calculated - this.tick) / wheel.length;
+				long ticks = Math.max(calculated, this.tick);
+				wheel[(int) (ticks & this.mask)].add(wheelTask);
+			}
+		}
+	}
+
+
+	/**
+	 * A doubly-linked list of tasks, only accessed by the wheel thread.
+	 */
+	private class Bucket {
+
+		private WheelTask head;
+
+		private WheelTask tail;
+
+		public void add(WheelTask wheelTask) {
+			wheelTask.bucket = this;
+			if (this.head == null) {
+				this.head = this.tail = wheelTask;
+			}
+			else {
+				this.tail.next = wheelTask;
+				wheelTask.prev = this.tail;
+				this.tail = wheelTask;
+			}
+		}
+
+		public void expireTasks(long deadline) {
+			WheelTask wheelTask = this.head;
+			while (wheelTask != null) {
+				WheelTask next = wheelTask.next;
+				if (wheelTask.isCancelled()) {
+					remove(wheelTask);
+				}
+				else if (wheelTask.remainingRounds <= 0) {
+					remove(wheelTask);
+					if (wheelTask.deadline - startTime <= deadline) {
+						expire(wheelTask);
+					}
+					else {
+						// Hashed into this bucket in an earlier round than its own
+						pendingTasks.add(wheelTask);
+					}
+				}
+				else {
+					wheelTask.remainingRounds--;
+				}
+				wheelTask = next;
+			}
+		}
+
+		public void remove(WheelTask wheelTask) {
+			if (wheelTask.bucket != this) {
+				return;
+			}
+			if (wheelTask.prev != null) {
+				wheelTask.prev.next = wheelTask.next;
+			}
+			if (wheelTask.next != null) {
+				wheelTask.next.prev = wheelTask.prev;
+			}
+			if (wheelTask == this.head) {
+				this.head = wheelTask.next;
+			}
+			if (wheelTask == this.tail) {
+				this.tail = wheelTask.prev;
+			}
+			wheelTask.prev = null;
+			wheelTask.next = null;
+			wheelTask.bucket = null;
+		}
+
+		public void cancelAll() {
+			while (this.head != null) {
+				WheelTask wheelTask = this.head;
+				remove(wheelTask);
+				wheelTask.cancel(false);
+			}
+		}
+	}
+
+
+	/**
+	 * A task scheduled on the wheel, doubling as its {@link ScheduledFuture}.
+	 */
+	private class WheelTask extends FutureTask<Object> implements ScheduledFuture<Object> {
+
+		/** 0 for a one-time task, positive for a fixed rate, negative for a fixed delay */
+		private final long period;
+
+		private final Trigger trigger;
+
+		private final SimpleTriggerContext triggerContext;
+
+		private Date scheduledExecutionTime;
+
+		private volatile long deadline;
+
+		// Wheel state, only accessed by the wheel thread
+
+		private long remainingRounds;
+
+		private Bucket bucket;
+
+		private WheelTask prev;
+
+		private WheelTask next;
+
+		public WheelTask(Runnable task, long period) {
+			super(task, null);
+			this.period = period;
+			this.trigger = null;
+			this.triggerContext = null;
+		}
+
+		public WheelTask(Runnable task, Trigger trigger) {
+			super(task, null);
+			this.period = 0;
+			this.trigger = trigger;
+			this.triggerContext = new SimpleTriggerContext();
+		}
+
+		@Override
+		public void run() {
+			if (this.trigger != null) {
+				Date actualExecutionTime = new Date();
+				if (runAndReset()) {
+					this.triggerContext.update(this.scheduledExecutionTime, actualExecutionTime, new Date());
+					this.scheduledExecutionTime = this.trigger.nextExecutionTime(this.triggerContext);
+					if (this.scheduledExecutionTime == null) {
+						set(null);
+					}
+					else {
+						this.deadline = nanoTimeFor(this.scheduledExecutionTime);
+						reschedule(this);
+					}
+				}
+			}
+			else if (this.period != 0) {
+				if (runAndReset()) {
+					this.deadline = (this.period > 0 ? this.deadline + this.period : System.nanoTime() - this.period);
+					reschedule(this);
+				}
+			}
+			else {
+				super.run();
+			}
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			boolean cancelled = super.cancel(mayInterruptIfRunning);
+			if (cancelled && state.get() == STATE_STARTED) {
+				cancelledTasks.add(this);
+			}
+			return cancelled;
+		}
+
+		@Override
+		public long getDelay(TimeUnit unit) {
+			return unit.convert(this.deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+		}
+
+		@Override
+		public int compareTo(Delayed other) {
+			if (this == other) {
+				return 0;
+			}
+			long diff = getDelay(TimeUnit.NANOSECONDS) - other.getDelay(TimeUnit.NANOSECONDS);
+			return (diff == 0 ? 0 : ((diff < 0) ? -1 : 1));
+		}
+	}
+
+}
@@ -296,6 +296,26 @@ public abstract class TransactionAspectSupport implements BeanFactoryAware, Init
 		final PlatformTransactionManager tm = determineTransactionManager(txAttr);
 		// 构造方法唯一标识（类，方法，如service.UserServiceImpl.save）
 		final String joinpointIdentification = methodIdentification(method, targetClass);
+		return invokeWithinTransaction(txAttr, tm, joinpointIdentification, invocation);
+	}
+
+	/**
+	 * Variant of {@link #invokeWithinTransaction(Method, Class, InvocationCallback)}
+	 * for a transaction attribute, transaction manager and joinpoint identification
+	 * that have been determined upfront, e.g. once per method rather than per call.
+	 * @param txAttr the TransactionAttribute (may be {@code null})
+	 * @param tm the transaction manager to use (may be {@code null})
+	 * @param joinpointIdentification the fully qualified method name
+	 * @param invocation the callback to use for proceeding with the target invocation
+	 * @return the return value of the method, if any
+	 * @throws Throwable propagated from the target invocation
+	 * @since 4.3
+	 * @see #determineTransactionManager
+	 * @see #methodIdentification(Method, Class)
+	 */
+	protected Object invokeWithinTransaction(final TransactionAttribute txAttr, final PlatformTransactionManager tm,
+			final String joinpointIdentification, final InvocationCallback invocation) throws Throwable {
+
 		// 声明式事务处理
 		if (txAttr == null || !(tm instanceof CallbackPreferringPlatformTransactionManager)) {
 			// Standard transaction demarcation with getTransaction and commit/rollback calls.
@@ -451,19 +471,13 @@ public abstract class TransactionAspectSupport implements BeanFactoryAware, Init
 	 * 我们分别对以上的步骤进行详细的解析
 	 *
 	 */
-	@SuppressWarnings("serial")
 	protected TransactionInfo createTransactionIfNecessary(
 			PlatformTransactionManager tm, TransactionAttribute txAttr, final String joinpointIdentification) {
 
 		// If no name specified, apply method identification as transaction name.
 		// 如果没有名称指定则使用方法唯一的标识，并使用DelegatingTransactionAttribute 封装txAttr
 		if (txAttr != null && txAttr.getName() == null) {
-			txAttr = new DelegatingTransactionAttribute(txAttr) {
-				@Override
-				public String getName() {
-					return joinpointIdentification;
-				}
-			};
+			txAttr = withJoinpointName(txAttr, joinpointIdentification);
 		}
 		// 获取TransactionStatus
 		TransactionStatus status = null;
@@ -482,6 +496,23 @@ public abstract class TransactionAspectSupport implements BeanFactoryAware, Init
 		return prepareTransactionInfo(tm, txAttr, joinpointIdentification, status);
 	}
 
+	/**
+	 * Expose the given joinpoint identification as the name of the given attribute.
+	 * @param txAttr the TransactionAttribute (not {@code null}), without a name
+	 * @param joinpointIdentification the fully qualified method name
+	 * @return the named TransactionAttribute
+	 * @since 4.3
+	 */
+	@SuppressWarnings("serial")
+	protected TransactionAttribute withJoinpointName(TransactionAttribute txAttr, final String joinpointIdentification) {
+		return new DelegatingTransactionAttribute(txAttr) {
+			@Override
+			public String getName() {
+				return joinpointIdentification;
+			}
+		};
+	}
+
 	/**
 	 * Prepare a TransactionInfo for the given attribute and status object.
 	 * @param txAttr the TransactionAttribute (may be {@code null})
@@ -20,14 +20,19 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.util.Properties;
 
 import org.aopalliance.intercept.MethodInterceptor;
 import org.aopalliance.intercept.MethodInvocation;
 
+import org.springframework.aop.TargetClassAware;
+import org.springframework.aop.framework.PreparableMethodInterceptor;
 import org.springframework.aop.support.AopUtils;
 import org.springframework.beans.factory.BeanFactory;
 import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.util.ClassUtils;
 
 /**
  * AOP Alliance MethodInterceptor for declarative transaction
@@ -41,6 +46,10 @@ import org.springframework.transaction.PlatformTransactionManager;
  *
  * <p>TransactionInterceptors are thread-safe.
  *
+ * <p>With {@link #setPrepareForMethods "prepareForMethods"} enabled, the transaction
+ * attribute, transaction manager and joinpoint identification are resolved once per
+ * proxied method when its advice chain is built, rather than on every invocation.
+ *
  * @author Rod Johnson
  * @author Juergen Hoeller
  * @see TransactionProxyFactoryBean
@@ -48,7 +57,11 @@ import org.springframework.transaction.PlatformTransactionManager;
  * @see org.springframework.aop.framework.ProxyFactory
  */
 @SuppressWarnings("serial")
-public class TransactionInterceptor extends TransactionAspectSupport implements MethodInterceptor, Serializable {
+public class TransactionInterceptor extends TransactionAspectSupport
+		implements PreparableMethodInterceptor, Serializable {
+
+	private boolean prepareForMethods = false;
+
 
 	/**
 	 * Create a new TransactionInterceptor.
@@ -85,6 +98,45 @@ public class TransactionInterceptor extends TransactionAspectSupport implements
 	}
 
 
+	/**
+	 * Set whether to resolve the transaction attribute, the transaction manager and
+	 * the joinpoint identification once per method, when the AOP proxy builds the
+	 * advice chain for that method. This avoids the attribute source lookup, the
+	 * transaction manager lookup and the String concatenation on every call.
+	 * <p>Default is "false". Only switch this on if the transaction attribute source
+	 * and the transaction manager resolution yield stable results per method, i.e. if
+	 * {@link #determineTransactionManager} has not been overridden for per-call routing.
+	 * @since 4.3
+	 * @see #prepareFor(Method, Class)
+	 */
+	public void setPrepareForMethods(boolean prepareForMethods) {
+		this.prepareForMethods = prepareForMethods;
+	}
+
+	/**
+	 * Return whether transaction metadata gets resolved once per method.
+	 * @since 4.3
+	 */
+	public boolean isPrepareForMethods() {
+		return this.prepareForMethods;
+	}
+
+
+	@Override
+	public MethodInterceptor prepareFor(Method method, Class<?> targetClass) {
+		if (!this.prepareForMethods || targetClass == null || Proxy.isProxyClass(targetClass) ||
+				ClassUtils.isCglibProxyClass(targetClass) || TargetClassAware.class.isAssignableFrom(targetClass)) {
+			// The actual target class is only known per invocation then.
+			return this;
+		}
+		TransactionAttribute txAttr = getTransactionAttributeSource().getTransactionAttribute(method, targetClass);
+		String joinpointIdentification = methodIdentification(method, targetClass);
+		if (txAttr != null && txAttr.getName() == null) {
+			txAttr = withJoinpointName(txAttr, joinpointIdentification);
+		}
+		return new PreparedTransactionInterceptor(txAttr, determineTransactionManager(txAttr), joinpointIdentification);
+	}
+
 	@Override
 	public Object invoke(final MethodInvocation invocation) throws Throwable {
 		// Work out the target class: may be {@code null}.
@@ -102,6 +154,44 @@ public class TransactionInterceptor extends TransactionAspectSupport implements
 	}
 
 
+	/**
+	 * Method-specific variant of the surrounding interceptor, holding the
+	 * transaction metadata that has been resolved for that method.
+	 */
+	private class PreparedTransactionInterceptor implements MethodInterceptor {
+
+		private final TransactionAttribute transactionAttribute;
+
+		private final PlatformTransactionManager transactionManager;
+
+		private final String joinpointIdentification;
+
+		public PreparedTransactionInterceptor(TransactionAttribute transactionAttribute,
+				PlatformTransactionManager transactionManager, String joinpointIdentification) {
+
+			this.transactionAttribute = transactionAttribute;
+			this.transactionManager = transactionManager;
+			this.joinpointIdentification = joinpointIdentification;
+		}
+
+		@Override
+		public Object invoke(final MethodInvocation invocation) throws Throwable {
+			return invokeWithinTransaction(this.transactionAttribute, this.transactionManager,
+					this.joinpointIdentification, new InvocationCallback() {
+						@Override
+						public Object proceedWithInvocation() throws Throwable {
+							return invocation.proceed();
+						}
+					});
+		}
+
+		@Override
+		public String toString() {
+			return "PreparedTransactionInterceptor for [" + this.joinpointIdentification + "]";
+		}
+	}
+
+
 	//---------------------------------------------------------------------
 	// Serialization support
 	//---------------------------------------------------------------------
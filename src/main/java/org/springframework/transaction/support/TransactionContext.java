@@ -0,0 +1,123 @@
+/*
+ * Copyright 2002-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.transaction.support;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+/**
+ * Holder for all transactional state that {@link TransactionSynchronizationManager}
+ * associates with a thread: bound resources, registered synchronizations and the
+ * characteristics of the current transaction.
+ *
+ * <p>Obtained through {@link TransactionSynchronizationManager#captureContext()}
+ * and re-attached to another thread through
+ * {@link TransactionSynchronizationManager#restoreContext}, or more conveniently
+ * through {@link #wrap(Runnable)} / {@link #wrap(Callable)} when handing work
+ * over to a {@link org.springframework.core.task.TaskExecutor}.
+ *
+ * <p>A captured context is <i>shared</i>, not copied: the receiving thread sees
+ * the same resource holders (e.g. the same JDBC Connection) and will observe the
+ * end of the transaction once it has been completed. Since transactional resources
+ * are not thread-safe, a context must only be used for handing work over from one
+ * thread to another, never by several threads at the same time.
+ *
+ * @since 4.3
+ * @see TransactionSynchronizationManager#captureContext()
+ * @see TransactionSynchronizationManager#restoreContext
+ */
+public final class TransactionContext {
+
+	Map<Object, Object> resources;
+
+	Set<TransactionSynchronization> synchronizations;
+
+	String currentTransactionName;
+
+	boolean currentTransactionReadOnly;
+
+	Integer currentTransactionIsolationLevel;
+
+	boolean actualTransactionActive;
+
+
+	TransactionContext() {
+	}
+
+
+	/**
+	 * Return whether this context does not hold any transactional state,
+	 * in which case there is no need to keep it bound to a thread.
+	 */
+	public boolean isEmpty() {
+		return (this.resources == null && this.synchronizations == null && this.currentTransactionName == null &&
+				!this.currentTransactionReadOnly && this.currentTransactionIsolationLevel == null &&
+				!this.actualTransactionActive);
+	}
+
+	/**
+	 * Decorate the given task so that it runs with this transaction context bound
+	 * to the executing thread, restoring that thread's previous context afterwards.
+	 * @param task the task to decorate
+	 * @return the decorated task
+	 */
+	public Runnable wrap(final Runnable task) {
+		return new Runnable() {
+			@Override
+			public void run() {
+				TransactionContext previous = TransactionSynchronizationManager.restoreContext(TransactionContext.this);
+				try {
+					task.run();
+				}
+				finally {
+					TransactionSynchronizationManager.restoreContext(previous);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Decorate the given task so that it runs with this transaction context bound
+	 * to the executing thread, restoring that thread's previous context afterwards.
+	 * @param task the task to decorate
+	 * @return the decorated task
+	 */
+	public <T> Callable<T> wrap(final Callable<T> task) {
+		return new Callable<T>() {
+			@Override
+			public T call() throws Exception {
+				TransactionContext previous = TransactionSynchronizationManager.restoreContext(TransactionContext.this);
+				try {
+					return task.call();
+				}
+				finally {
+					TransactionSynchronizationManager.restoreContext(previous);
+				}
+			}
+		};
+	}
+
+	@Override
+	public String toString() {
+		return "TransactionContext: name [" + this.currentTransactionName + "], active=" +
+				this.actualTransactionActive + ", readOnly=" + this.currentTransactionReadOnly +
+				", resources=" + (this.resources != null ? this.resources.keySet() : "[]") +
+				", synchronizationActive=" + (this.synchronizations != null);
+	}
+
+}
@@ -63,6 +63,10 @@ import org.springframework.util.Assert;
  * within a JTA transaction, e.g. a JDBC Connection or a Hibernate Session for
  * any given DataSource or SessionFactory, respectively.
  *
+ * <p>All of this state is kept in a single {@link TransactionContext} per thread,
+ * which can be handed over to other threads (e.g. for a task submitted to an
+ * executor) through {@link #captureContext()} and {@link #restoreContext}.
+ *
  * @author Juergen Hoeller
  * @since 02.06.2003
  * @see #isSynchronizationActive
@@ -77,23 +81,37 @@ public abstract class TransactionSynchronizationManager {
 
 	private static final Log logger = LogFactory.getLog(TransactionSynchronizationManager.class);
 
-	private static final ThreadLocal<Map<Object, Object>> resources =
-			new NamedThreadLocal<Map<Object, Object>>("Transactional resources");
-
-	private static final ThreadLocal<Set<TransactionSynchronization>> synchronizations =
-			new NamedThreadLocal<Set<TransactionSynchronization>>("Transaction synchronizations");
-
-	private static final ThreadLocal<String> currentTransactionName =
-			new NamedThreadLocal<String>("Current transaction name");
+	/**
+	 * ThreadLocal holding all transactional state of the current thread:
+	 * a single lookup per operation, and nothing bound outside of transactions
+	 */
+	private static final ThreadLocal<TransactionContext> currentContext =
+			new NamedThreadLocal<TransactionContext>("Transaction context");
 
-	private static final ThreadLocal<Boolean> currentTransactionReadOnly =
-			new NamedThreadLocal<Boolean>("Current transaction read-only status");
 
-	private static final ThreadLocal<Integer> currentTransactionIsolationLevel =
-			new NamedThreadLocal<Integer>("Current transaction isolation level");
+	/**
+	 * Return the transaction context of the current thread.
+	 * @param create whether to create and bind a new context if none bound yet
+	 * @return the current context, or {@code null} if none bound and not created
+	 */
+	private static TransactionContext getContext(boolean create) {
+		TransactionContext context = currentContext.get();
+		if (context == null && create) {
+			context = new TransactionContext();
+			currentContext.set(context);
+		}
+		return context;
+	}
 
-	private static final ThreadLocal<Boolean> actualTransactionActive =
-			new NamedThreadLocal<Boolean>("Actual transaction active");
+	/**
+	 * Unbind the given context from the current thread if it has become empty,
+	 * in order to not leave any state behind in pooled threads.
+	 */
+	private static void removeContextIfEmpty(TransactionContext context) {
+		if (context.isEmpty()) {
+			currentContext.remove();
+		}
+	}
 
 
 	//-------------------------------------------------------------------------
@@ -110,7 +128,8 @@ public abstract class TransactionSynchronizationManager {
 	 * @see #hasResource
 	 */
 	public static Map<Object, Object> getResourceMap() {
-		Map<Object, Object> map = resources.get();
+		TransactionContext context = currentContext.get();
+		Map<Object, Object> map = (context != null ? context.resources : null);
 		return (map != null ? Collections.unmodifiableMap(map) : Collections.emptyMap());
 	}
 
@@ -147,7 +166,8 @@ public abstract class TransactionSynchronizationManager {
 	 * Actually check the value of the resource that is bound for the given key.
 	 */
 	private static Object doGetResource(Object actualKey) {
-		Map<Object, Object> map = resources.get();
+		TransactionContext context = currentContext.get();
+		Map<Object, Object> map = (context != null ? context.resources : null);
 		if (map == null) {
 			return null;
 		}
@@ -155,9 +175,10 @@ public abstract class TransactionSynchronizationManager {
 		// Transparently remove ResourceHolder that was marked as void...
 		if (value instanceof ResourceHolder && ((ResourceHolder) value).isVoid()) {
 			map.remove(actualKey);
-			// Remove entire ThreadLocal if empty...
+			// Remove entire resource map if empty...
 			if (map.isEmpty()) {
-				resources.remove();
+				context.resources = null;
+				removeContextIfEmpty(context);
 			}
 			value = null;
 		}
@@ -174,11 +195,12 @@ public abstract class TransactionSynchronizationManager {
 	public static void bindResource(Object key, Object value) throws IllegalStateException {
 		Object actualKey = TransactionSynchronizationUtils.unwrapResourceIfNecessary(key);
 		Assert.notNull(value, "Value must not be null");
-		Map<Object, Object> map = resources.get();
-		// set ThreadLocal Map if none found
+		TransactionContext context = getContext(true);
+		Map<Object, Object> map = context.resources;
+		// set resource Map if none found
 		if (map == null) {
 			map = new HashMap<Object, Object>();
-			resources.set(map);
+			context.resources = map;
 		}
 		Object oldValue = map.put(actualKey, value);
 		// Transparently suppress a ResourceHolder that was marked as void...
@@ -226,14 +248,16 @@ public abstract class TransactionSynchronizationManager {
 	 * Actually remove the value of the resource that is bound for the given key.
 	 */
 	private static Object doUnbindResource(Object actualKey) {
-		Map<Object, Object> map = resources.get();
+		TransactionContext context = currentContext.get();
+		Map<Object, Object> map = (context != null ? context.resources : null);
 		if (map == null) {
 			return null;
 		}
 		Object value = map.remove(actualKey);
-		// Remove entire ThreadLocal if empty...
+		// Remove entire resource map if empty...
 		if (map.isEmpty()) {
-			resources.remove();
+			context.resources = null;
+			removeContextIfEmpty(context);
 		}
 		// Transparently suppress a ResourceHolder that was marked as void...
 		if (value instanceof ResourceHolder && ((ResourceHolder) value).isVoid()) {
@@ -257,7 +281,8 @@ public abstract class TransactionSynchronizationManager {
 	 * @see #registerSynchronization
 	 */
 	public static boolean isSynchronizationActive() {
-		return (synchronizations.get() != null);
+		TransactionContext context = currentContext.get();
+		return (context != null && context.synchronizations != null);
 	}
 
 	/**
@@ -266,11 +291,12 @@ public abstract class TransactionSynchronizationManager {
 	 * @throws IllegalStateException if synchronization is already active
 	 */
 	public static void initSynchronization() throws IllegalStateException {
-		if (isSynchronizationActive()) {
+		TransactionContext context = getContext(true);
+		if (context.synchronizations != null) {
 			throw new IllegalStateException("Cannot activate transaction synchronization - already active");
 		}
 		logger.trace("Initializing transaction synchronization");
-		synchronizations.set(new LinkedHashSet<TransactionSynchronization>());
+		context.synchronizations = new LinkedHashSet<TransactionSynchronization>();
 	}
 
 	/**
@@ -287,10 +313,11 @@ public abstract class TransactionSynchronizationManager {
 			throws IllegalStateException {
 
 		Assert.notNull(synchronization, "TransactionSynchronization must not be null");
-		if (!isSynchronizationActive()) {
+		TransactionContext context = currentContext.get();
+		if (context == null || context.synchronizations == null) {
 			throw new IllegalStateException("Transaction synchronization is not active");
 		}
-		synchronizations.get().add(synchronization);
+		context.synchronizations.add(synchronization);
 	}
 
 	/**
@@ -301,7 +328,8 @@ public abstract class TransactionSynchronizationManager {
 	 * @see TransactionSynchronization
 	 */
 	public static List<TransactionSynchronization> getSynchronizations() throws IllegalStateException {
-		Set<TransactionSynchronization> synchs = synchronizations.get();
+		TransactionContext context = currentContext.get();
+		Set<TransactionSynchronization> synchs = (context != null ? context.synchronizations : null);
 		if (synchs == null) {
 			throw new IllegalStateException("Transaction synchronization is not active");
 		}
@@ -325,11 +353,13 @@ public abstract class TransactionSynchronizationManager {
 	 * @throws IllegalStateException if synchronization is not active
 	 */
 	public static void clearSynchronization() throws IllegalStateException {
-		if (!isSynchronizationActive()) {
+		TransactionContext context = currentContext.get();
+		if (context == null || context.synchronizations == null) {
 			throw new IllegalStateException("Cannot deactivate transaction synchronization - not active");
 		}
 		logger.trace("Clearing transaction synchronization");
-		synchronizations.remove();
+		context.synchronizations = null;
+		removeContextIfEmpty(context);
 	}
 
 
@@ -344,7 +374,11 @@ public abstract class TransactionSynchronizationManager {
 	 * @see org.springframework.transaction.TransactionDefinition#getName()
 	 */
 	public static void setCurrentTransactionName(String name) {
-		currentTransactionName.set(name);
+		TransactionContext context = getContext(name != null);
+		if (context != null) {
+			context.currentTransactionName = name;
+			removeContextIfEmpty(context);
+		}
 	}
 
 	/**
@@ -354,7 +388,8 @@ public abstract class TransactionSynchronizationManager {
 	 * @see org.springframework.transaction.TransactionDefinition#getName()
 	 */
 	public static String getCurrentTransactionName() {
-		return currentTransactionName.get();
+		TransactionContext context = currentContext.get();
+		return (context != null ? context.currentTransactionName : null);
 	}
 
 	/**
@@ -365,7 +400,11 @@ public abstract class TransactionSynchronizationManager {
 	 * @see org.springframework.transaction.TransactionDefinition#isReadOnly()
 	 */
 	public static void setCurrentTransactionReadOnly(boolean readOnly) {
-		currentTransactionReadOnly.set(readOnly ? Boolean.TRUE : null);
+		TransactionContext context = getContext(readOnly);
+		if (context != null) {
+			context.currentTransactionReadOnly = readOnly;
+			removeContextIfEmpty(context);
+		}
 	}
 
 	/**
@@ -381,7 +420,8 @@ public abstract class TransactionSynchronizationManager {
 	 * @see TransactionSynchronization#beforeCommit(boolean)
 	 */
 	public static boolean isCurrentTransactionReadOnly() {
-		return (currentTransactionReadOnly.get() != null);
+		TransactionContext context = currentContext.get();
+		return (context != null && context.currentTransactionReadOnly);
 	}
 
 	/**
@@ -401,7 +441,11 @@ public abstract class TransactionSynchronizationManager {
 	 * @see org.springframework.transaction.TransactionDefinition#getIsolationLevel()
 	 */
 	public static void setCurrentTransactionIsolationLevel(Integer isolationLevel) {
-		currentTransactionIsolationLevel.set(isolationLevel);
+		TransactionContext context = getContext(isolationLevel != null);
+		if (context != null) {
+			context.currentTransactionIsolationLevel = isolationLevel;
+			removeContextIfEmpty(context);
+		}
 	}
 
 	/**
@@ -422,7 +466,8 @@ public abstract class TransactionSynchronizationManager {
 	 * @see org.springframework.transaction.TransactionDefinition#getIsolationLevel()
 	 */
 	public static Integer getCurrentTransactionIsolationLevel() {
-		return currentTransactionIsolationLevel.get();
+		TransactionContext context = currentContext.get();
+		return (context != null ? context.currentTransactionIsolationLevel : null);
 	}
 
 	/**
@@ -432,7 +477,11 @@ public abstract class TransactionSynchronizationManager {
 	 * with an actual transaction; {@code false} to reset that marker
 	 */
 	public static void setActualTransactionActive(boolean active) {
-		actualTransactionActive.set(active ? Boolean.TRUE : null);
+		TransactionContext context = getContext(active);
+		if (context != null) {
+			context.actualTransactionActive = active;
+			removeContextIfEmpty(context);
+		}
 	}
 
 	/**
@@ -447,7 +496,8 @@ public abstract class TransactionSynchronizationManager {
 	 * @see #isSynchronizationActive()
 	 */
 	public static boolean isActualTransactionActive() {
-		return (actualTransactionActive.get() != null);
+		TransactionContext context = currentContext.get();
+		return (context != null && context.actualTransactionActive);
 	}
 
 
@@ -461,11 +511,83 @@ public abstract class TransactionSynchronizationManager {
 	 * @see #setActualTransactionActive
 	 */
 	public static void clear() {
-		clearSynchronization();
-		setCurrentTransactionName(null);
-		setCurrentTransactionReadOnly(false);
-		setCurrentTransactionIsolationLevel(null);
-		setActualTransactionActive(false);
+		TransactionContext context = currentContext.get();
+		if (context == null || context.synchronizations == null) {
+			throw new IllegalStateException("Cannot deactivate transaction synchronization - not active");
+		}
+		logger.trace("Clearing transaction synchronization");
+		context.synchronizations = null;
+		context.currentTransactionName = null;
+		context.currentTransactionReadOnly = false;
+		context.currentTransactionIsolationLevel = null;
+		context.actualTransactionActive = false;
+		removeContextIfEmpty(context);
+	}
+
+	/**
+	 * Expose the given transaction characteristics and activate transaction
+	 * synchronization for the current thread, with a single context lookup.
+	 * Used by {@link AbstractPlatformTransactionManager} on transaction begin.
+	 * @see #setActualTransactionActive
+	 * @see #setCurrentTransactionIsolationLevel
+	 * @see #setCurrentTransactionReadOnly
+	 * @see #setCurrentTransactionName
+	 * @see #initSynchronization()
+	 */
+	static void initSynchronization(boolean actualTransactionActive, Integer isolationLevel,
+			boolean readOnly, String name) throws IllegalStateException {
+
+		TransactionContext context = getContext(true);
+		if (context.synchronizations != null) {
+			throw new IllegalStateException("Cannot activate transaction synchronization - already active");
+		}
+		logger.trace("Initializing transaction synchronization");
+		context.actualTransactionActive = actualTransactionActive;
+		context.currentTransactionIsolationLevel = isolationLevel;
+		context.currentTransactionReadOnly = readOnly;
+		context.currentTransactionName = name;
+		context.synchronizations = new LinkedHashSet<TransactionSynchronization>();
+	}
+
+
+	//-------------------------------------------------------------------------
+	// Propagation of the transaction context to other threads
+	//-------------------------------------------------------------------------
+
+	/**
+	 * Capture the transaction context of the current thread, for handing
+	 * work over to another thread through {@link #restoreContext} or
+	 * {@link TransactionContext#wrap(Runnable)}.
+	 * <p>The returned context is shared with the current thread rather than
+	 * copied, see {@link TransactionContext}.
+	 * @return the current context (never {@code null}; possibly empty)
+	 * @since 4.3
+	 */
+	public static TransactionContext captureContext() {
+		TransactionContext context = currentContext.get();
+		return (context != null ? context : new TransactionContext());
+	}
+
+	/**
+	 * Bind the given transaction context to the current thread, replacing
+	 * the thread's present context (if any).
+	 * <p>Typically used in a try-finally block, reinstating the returned
+	 * previous context when done.
+	 * @param context the context to bind, or {@code null} (or an empty context)
+	 * to unbind all transactional state from the current thread
+	 * @return the previously bound context, or {@code null} if none
+	 * @since 4.3
+	 * @see #captureContext()
+	 */
+	public static TransactionContext restoreContext(TransactionContext context) {
+		TransactionContext previous = currentContext.get();
+		if (context != null && !context.isEmpty()) {
+			currentContext.set(context);
+		}
+		else {
+			currentContext.remove();
+		}
+		return previous;
 	}
 
 }
@@ -119,6 +119,14 @@ public class AntPathMatcher implements PathMatcher {
 		this.pathSeparatorPatternCache = new PathSeparatorPatternCache(this.pathSeparator);
 	}
 
+	/**
+	 * Return the path separator used for pattern parsing.
+	 * @since 4.3
+	 */
+	public String getPathSeparator() {
+		return this.pathSeparator;
+	}
+
 	/**
 	 * Specify whether to perform pattern matching in a case-sensitive fashion.
 	 * <p>Default is {@code true}. Switch this to {@code false} for case-insensitive matching.
@@ -128,6 +136,14 @@ public class AntPathMatcher implements PathMatcher {
 		this.caseSensitive = caseSensitive;
 	}
 
+	/**
+	 * Return whether pattern matching is performed in a case-sensitive fashion.
+	 * @since 4.3
+	 */
+	public boolean isCaseSensitive() {
+		return this.caseSensitive;
+	}
+
 	/**
 	 * Specify whether to trim tokenized paths and patterns.
 	 * <p>Default is {@code true}.
@@ -136,6 +152,14 @@ public class AntPathMatcher implements PathMatcher {
 		this.trimTokens = trimTokens;
 	}
 
+	/**
+	 * Return whether tokenized paths and patterns are trimmed.
+	 * @since 4.3
+	 */
+	public boolean isTrimTokens() {
+		return this.trimTokens;
+	}
+
 	/**
 	 * Specify whether to cache parsed pattern metadata for patterns passed
 	 * into this matcher's {@link #match} method. A value of {@code true}
@@ -327,8 +351,7 @@ public class AntPathMatcher implements PathMatcher {
 			}
 
 			pattIdxStart = patIdxTmp;
-			pathIdxStart = foundId
-		x + patLength;
+			pathIdxStart = foundIdx + patLength;
 		}
 
 		for (int i = pattIdxStart; i <= pattIdxEnd; i++) {
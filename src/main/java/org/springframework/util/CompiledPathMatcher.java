@@ -0,0 +1,464 @@
+/*
+ * Copyright 2002-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link PathMatcher} implementation for Ant-style path patterns that compiles
+ * each pattern once into an immutable sequence of segments, instead of
+ * re-tokenizing the pattern and running a regular expression per segment on
+ * every match like {@link AntPathMatcher} does.
+ *
+ * <p>Supports the same syntax and matching rules as {@link AntPathMatcher}:
+ * {@code ?}, {@code *}, {@code **} and URI template variables such as
+ * {@code {hotel}}. The path is split lazily while matching, without creating
+ * substrings except for extracted URI template variable values. Only segments
+ * declaring a URI template variable with a custom regular expression, e.g.
+ * {@code {id:\\d+}}, are still matched through a regular expression.
+ *
+ * <p>Compiled patterns are kept in a soft-reference cache which, unlike the
+ * caches in {@link AntPathMatcher}, is not turned off when a large number of
+ * distinct patterns is encountered, e.g. for dynamically created STOMP
+ * subscription destinations.
+ *
+ * <p>Can be used wherever a {@link PathMatcher} is pluggable, e.g. for handler
+ * mappings, for {@code DefaultSubscriptionRegistry} or for
+ * {@code PathMatchingResourcePatternResolver}. Pattern combination, comparison
+ * and extraction of the path within a pattern are inherited unchanged.
+ *
+ * @since 4.3
+ * @see AntPathMatcher
+ */
+public class CompiledPathMatcher extends AntPathMatcher {
+
+	private String pathSeparator = DEFAULT_PATH_SEPARATOR;
+
+	private boolean caseSensitive = true;
+
+	private boolean trimTokens = true;
+
+	private boolean cachePatterns = true;
+
+	private final Map<String, CompiledPattern> compiledPatternCache =
+			new ConcurrentReferenceHashMap<String, CompiledPattern>(256);
+
+
+	/**
+	 * Create a new instance with the {@link #DEFAULT_PATH_SEPARATOR}.
+	 */
+	public CompiledPathMatcher() {
+		super();
+	}
+
+	/**
+	 * Create a new instance with a custom path separator.
+	 * @param pathSeparator the path separator to use, must not be {@code null}.
+	 */
+	public CompiledPathMatcher(String pathSeparator) {
+		super(pathSeparator);
+		this.pathSeparator = pathSeparator;
+	}
+
+
+	@Override
+	public void setPathSeparator(String pathSeparator) {
+		super.setPathSeparator(pathSeparator);
+		this.pathSeparator = (pathSeparator != null ? pathSeparator : DEFAULT_PATH_SEPARATOR);
+		this.compiledPatternCache.clear();
+	}
+
+	@Override
+	public void setCaseSensitive(boolean caseSensitive) {
+		super.setCaseSensitive(caseSensitive);
+		this.caseSensitive = caseSensitive;
+		this.compiledPatternCache.clear();
+	}
+
+	@Override
+	public void setTrimTokens(boolean trimTokens) {
+		super.setTrimTokens(trimTokens);
+		this.trimTokens = trimTokens;
+		this.compiledPatternCache.clear();
+	}
+
+	/**
+	 * Specify whether to cache compiled patterns.
+	 * <p>Default is {@code true}, holding compiled patterns through soft references.
+	 * Switch this to {@code false} if patterns are hardly ever reused.
+	 */
+	@Override
+	public void setCachePatterns(boolean cachePatterns) {
+		super.setCachePatterns(cachePatterns);
+		this.cachePatterns = cachePatterns;
+		if (!cachePatterns) {
+			this.compiledPatternCache.clear();
+		}
+	}
+
+
+	@Override
+	protected boolean doMatch(String pattern, String path, boolean fullMatch, Map<String, String> uriTemplateVariables) {
+		if (path.startsWith(this.pathSeparator) != pattern.startsWith(this.pathSeparator)) {
+			return false;
+		}
+		return getCompiledPattern(pattern).matches(path, fullMatch, uriTemplateVariables);
+	}
+
+	/**
+	 * Build or retrieve the {@link CompiledPattern} for the given pattern.
+	 * @param pattern the pattern to compile
+	 * @return the compiled pattern (never {@code null})
+	 */
+	protected CompiledPattern getCompiledPattern(String pattern) {
+		if (!this.cachePatterns) {
+			return new CompiledPattern(pattern);
+		}
+		CompiledPattern compiled = this.compiledPatternCache.get(pattern);
+		if (compiled == null) {
+			compiled = new CompiledPattern(pattern);
+			this.compiledPatternCache.put(pattern, compiled);
+		}
+		return compiled;
+	}
+
+	private boolean isSeparator(char c) {
+		return (this.pathSeparator.length() == 1 ? c == this.pathSeparator.charAt(0) :
+				this.pathSeparator.indexOf(c) != -1);
+	}
+
+	/**
+	 * Return the start index of the next non-empty path segment at or after
+	 * the given index, or the path length if there is none, following the
+	 * tokenization rules of {@link #tokenizePath}.
+	 */
+	private int nextSegmentStart(String path, int index) {
+		int length = path.length();
+		while (index < length) {
+			char c = path.charAt(index);
+			if (isSeparator(c)) {
+				index++;
+			}
+			else if (this.trimTokens && Character.isWhitespace(c)) {
+				int end = index;
+				while (end < length && !isSeparator(path.charAt(end)) && Character.isWhitespace(path.charAt(end))) {
+					end++;
+				}
+				if (end < length && !isSeparator(path.charAt(end))) {
+					return end;
+				}
+				index = end;
+			}
+			else {
+				return index;
+			}
+		}
+		return length;
+	}
+
+	/**
+	 * Return the end index (exclusive) of the path segment starting at the given index.
+	 */
+	private int segmentEnd(String path, int start) {
+		int end = start;
+		while (end < path.length() && !isSeparator(path.charAt(end))) {
+			end++;
+		}
+		if (this.trimTokens) {
+			while (end > start && Character.isWhitespace(path.charAt(end - 1))) {
+				end--;
+			}
+		}
+		return end;
+	}
+
+
+	/**
+	 * A pattern parsed into path segments, each of which knows how to match
+	 * a region of a path String.
+	 */
+	protected class CompiledPattern {
+
+		private final String pattern;
+
+		private final Segment[] segments;
+
+		private final boolean[] onlyDoubleWildcardsFrom;
+
+		private final boolean hasDoubleWildcard;
+
+		public CompiledPattern(String pattern) {
+			this.pattern = pattern;
+			String[] tokens = tokenizePath(pattern);
+			this.segments = new Segment[tokens.length];
+			this.onlyDoubleWildcardsFrom = new boolean[tokens.length + 1];
+			this.onlyDoubleWildcardsFrom[tokens.length] = true;
+			boolean hasDoubleWildcard = false;
+			for (int i = 0; i < tokens.length; i++) {
+				this.segments[i] = createSegment(tokens[i]);
+				hasDoubleWildcard |= (this.segments[i] == DOUBLE_WILDCARD);
+			}
+			for (int i = tokens.length - 1; i >= 0; i--) {
+				this.onlyDoubleWildcardsFrom[i] =
+						(this.segments[i] == DOUBLE_WILDCARD && this.onlyDoubleWildcardsFrom[i + 1]);
+			}
+			this.hasDoubleWildcard = hasDoubleWildcard;
+		}
+
+		public boolean matches(String path, boolean fullMatch, Map<String, String> uriTemplateVariables) {
+			return matchFrom(0, path, 0, fullMatch, uriTemplateVariables);
+		}
+
+		private boolean matchFrom(int segmentIndex, String path, int pathIndex, boolean fullMatch,
+				Map<String, String> uriTemplateVariables) {
+
+			int index = nextSegmentStart(path, pathIndex);
+			for (int i = segmentIndex; i < this.segments.length; i++) {
+				Segment segment = this.segments[i];
+				if (segment == DOUBLE_WILDCARD) {
+					if (!fullMatch || i == this.segments.length - 1) {
+						return true;
+					}
+					// Let "**" consume zero or more path segments, shortest first
+					while (true) {
+						if (matchFrom(i + 1, path, index, true, uriTemplateVariables)) {
+							return true;
+						}
+						if (index >= path.length()) {
+							return false;
+						}
+						index = nextSegmentStart(path, segmentEnd(path, index));
+					}
+				}
+				if (index >= path.length()) {
+					// Path exhausted before pattern
+					if (!fullMatch) {
+						return true;
+					}
+					if (!this.hasDoubleWildcard && i == this.segments.length - 1 &&
+							segment == SINGLE_WILDCARD && path.endsWith(pathSeparator)) {
+						return true;
+					}
+					return this.onlyDoubleWildcardsFrom[i];
+				}
+				int end = segmentEnd(path, index);
+				if (!segment.matches(path, index, end, uriTemplateVariables)) {
+					return false;
+				}
+				index = nextSegmentStart(path, end);
+			}
+			if (index < path.length()) {
+				// Pattern exhausted before path
+				return false;
+			}
+			if (this.hasDoubleWildcard) {
+				return true;
+			}
+			return (this.pattern.endsWith(pathSeparator) ? path.endsWith(pathSeparator) :
+					!path.endsWith(pathSeparator));
+		}
+
+		private Segment createSegment(String token) {
+			if ("**".equals(token)) {
+				return DOUBLE_WILDCARD;
+			}
+			if ("*".equals(token)) {
+				return SINGLE_WILDCARD;
+			}
+			if (token.indexOf('*') == -1 && token.indexOf('?') == -1 && token.indexOf('{') == -1) {
+				return new LiteralSegment(token);
+			}
+			if (token.indexOf('{') != -1 && (token.indexOf(':') != -1 || token.indexOf('\\') != -1)) {
+				// Custom variable regex: not worth re-implementing
+				return new RegexSegment(getStringMatcher(token));
+			}
+			return new GlobSegment(token);
+		}
+
+		@Override
+		public String toString() {
+			return this.pattern;
+		}
+	}
+
+
+	/**
+	 * A single pattern segment, matching exactly one path segment
+	 * unless it is the {@code "**"} segment.
+	 */
+	private static abstract class Segment {
+
+		public abstract boolean matches(String path, int start, int end, Map<String, String> uriTemplateVariables);
+	}
+
+
+	private static final Segment DOUBLE_WILDCARD = new Segment() {
+		@Override
+		public boolean matches(String path, int start, int end, Map<String, String> uriTemplateVariables) {
+			throw new IllegalStateException("'**' is handled by the path iteration itself");
+		}
+	};
+
+
+	private static final Segment SINGLE_WILDCARD = new Segment() {
+		@Override
+		public boolean matches(String path, int start, int end, Map<String, String> uriTemplateVariables) {
+			return true;
+		}
+	};
+
+
+	private class LiteralSegment extends Segment {
+
+		private final String literal;
+
+		public LiteralSegment(String literal) {
+			this.literal = literal;
+		}
+
+		@Override
+		public boolean matches(String path, int start, int end, Map<String, String> uriTemplateVariables) {
+			return (end - start == this.literal.length() &&
+					path.regionMatches(!caseSensitive, start, this.literal, 0, this.literal.length()));
+		}
+	}
+
+
+	private static class RegexSegment extends Segment {
+
+		private final AntPathStringMatcher matcher;
+
+		public RegexSegment(AntPathStringMatcher matcher) {
+			this.matcher = matcher;
+		}
+
+		@Override
+		public boolean matches(String path, int start, int end, Map<String, String> uriTemplateVariables) {
+			return this.matcher.matchStrings(path.substring(start, end), uriTemplateVariables);
+		}
+	}
+
+
+	/**
+	 * Segment consisting of literal text, {@code ?}, {@code *} and URI template
+	 * variables, matched by backtracking with the same greedy semantics as the
+	 * regular expression that {@link AntPathStringMatcher} would build.
+	 */
+	private class GlobSegment extends Segment {
+
+		private static final int LITERAL = 0;
+
+		private static final int ANY_CHAR = 1;
+
+		private static final int ANY_CHARS = 2;
+
+		private static final int VARIABLE = 3;
+
+		private final int[] kinds;
+
+		private final String[] values;
+
+		public GlobSegment(String token) {
+			List<Integer> kinds = new ArrayList<Integer>();
+			List<String> values = new ArrayList<String>();
+			StringBuilder literal = new StringBuilder();
+			int i = 0;
+			while (i < token.length()) {
+				char c = token.charAt(i);
+				int closing = (c == '{' ? token.indexOf('}', i) : -1);
+				if (c == '?' || c == '*' || closing > i + 1) {
+					if (literal.length() > 0) {
+						kinds.add(LITERAL);
+						values.add(literal.toString());
+						literal.setLength(0);
+					}
+					if (c == '?') {
+						kinds.add(ANY_CHAR);
+						values.add(null);
+						i++;
+					}
+					else if (c == '*') {
+						kinds.add(ANY_CHARS);
+						values.add(null);
+						i++;
+					}
+					else {
+						kinds.add(VARIABLE);
+						values.add(token.substring(i + 1, closing));
+						i = closing + 1;
+					}
+				}
+				else {
+					literal.append(c);
+					i++;
+				}
+			}
+			if (literal.length() > 0) {
+				kinds.add(LITERAL);
+				values.add(literal.toString());
+			}
+			this.kinds = new int[kinds.size()];
+			for (int j = 0; j < this.kinds.length; j++) {
+				this.kinds[j] = kinds.get(j);
+			}
+			this.values = values.toArray(new String[values.size()]);
+		}
+
+		@Override
+		public boolean matches(String path, int start, int end, Map<String, String> uriTemplateVariables) {
+			return matchFrom(0, path, start, end, uriTemplateVariables);
+		}
+
+		private boolean matchFrom(int partIndex, String path, int index, int end,
+				Map<String, String> uriTemplateVariables) {
+
+			for (int i = partIndex; i < this.kinds.length; i++) {
+				switch (this.kinds[i]) {
+					case LITERAL:
+						String literal = this.values[i];
+						if (end - index < literal.length() ||
+								!path.regionMatches(!caseSensitive, index, literal, 0, literal.length())) {
+							return false;
+						}
+						index += literal.length();
+						break;
+					case ANY_CHAR:
+						if (index >= end) {
+							return false;
+						}
+						index++;
+						break;
+					default:
+						// "*" or variable: greedy, backtracking towards shorter matches
+						for (int split = end; split >= index; split--) {
+							if (this.kinds[i] == VARIABLE && uriTemplateVariables != null) {
+								uriTemplateVariables.put(this.values[i], path.substring(index, split));
+							}
+							if (matchFrom(i + 1, path, split, end, uriTemplateVariables)) {
+								return true;
+							}
+						}
+						return false;
+				}
+			}
+			return (index == end);
+		}
+	}
+
+}
@@ -16,9 +16,18 @@
 
 package org.springframework.web.filter;
 
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.SequenceInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
 import javax.servlet.ServletOutputStream;
@@ -30,6 +39,7 @@ import org.springframework.http.HttpMethod;
 import org.springframework.util.Assert;
 import org.springframework.util.ClassUtils;
 import org.springframework.util.DigestUtils;
+import org.springframework.util.StreamUtils;
 import org.springframework.web.util.ContentCachingResponseWrapper;
 import org.springframework.web.util.WebUtils;
 
@@ -42,6 +52,17 @@ import org.springframework.web.util.WebUtils;
  * <p>Since the ETag is based on the response content, the response
  * (e.g. a {@link org.springframework.web.servlet.View}) is still rendered.
  * As such, this filter only saves bandwidth, not server performance.
+ * Handlers that can determine a "deep" ETag up front should call
+ * {@link org.springframework.web.context.request.WebRequest#checkNotModified(String)}
+ * instead, which skips rendering altogether for a matching request.
+ *
+ * <p>By default, the entire response body is buffered in memory and hashed once
+ * it is complete. With {@link #setIncrementalDigest "incrementalDigest"}, the
+ * body is hashed while it is being written, and with a
+ * {@link #setSpillThreshold "spillThreshold"}, content beyond that size is
+ * buffered in a temporary file instead of in memory. In that mode, a response
+ * that already carries an ETag, e.g. a "deep" one as set above, is passed
+ * through untouched rather than being hashed again.
  *
  * @author Arjen Poutsma
  * @author Rossen Stoyanchev
@@ -65,6 +86,54 @@ public class ShallowEtagHeaderFilter extends OncePerRequestFilter {
 	private static final String STREAMING_ATTRIBUTE = ShallowEtagHeaderFilter.class.getName() + ".STREAMING";
 
 
+	private boolean incrementalDigest = false;
+
+	private int spillThreshold = -1;
+
+
+	/**
+	 * Whether to compute the MD5 hash of the response body incrementally while
+	 * it is being written, rather than in a separate pass over the complete body.
+	 * <p>Note that {@link #generateETagHeaderValue} is not called in this mode:
+	 * the ETag always has the default format, i.e. the hex-encoded MD5 hash.
+	 * Responses that already carry an {@code ETag} header are passed through
+	 * without generating one.
+	 * <p>Default is "false".
+	 * @since 4.3
+	 * @see #setSpillThreshold
+	 */
+	public void setIncrementalDigest(boolean incrementalDigest) {
+		this.incrementalDigest = incrementalDigest;
+	}
+
+	/**
+	 * Return whether the MD5 hash is computed while the body is being written.
+	 * @since 4.3
+	 */
+	public boolean isIncrementalDigest() {
+		return this.incrementalDigest;
+	}
+
+	/**
+	 * Set the number of bytes of a response body to buffer in memory, with any
+	 * further content written to a temporary file until the response is complete.
+	 * Only applies with {@link #setIncrementalDigest "incrementalDigest"}.
+	 * <p>Default is -1, buffering the entire body in memory.
+	 * @since 4.3
+	 */
+	public void setSpillThreshold(int spillThreshold) {
+		this.spillThreshold = spillThreshold;
+	}
+
+	/**
+	 * Return the number of bytes of a response body to buffer in memory.
+	 * @since 4.3
+	 */
+	public int getSpillThreshold() {
+		return this.spillThreshold;
+	}
+
+
 	/**
 	 * The default value is "false" so that the filter may delay the generation of
 	 * an ETag until the last asynchronously dispatched thread.
@@ -80,13 +149,25 @@ public class ShallowEtagHeaderFilter extends OncePerRequestFilter {
 
 		HttpServletResponse responseToUse = response;
 		if (!isAsyncDispatch(request) && !(response instanceof ContentCachingResponseWrapper)) {
-			responseToUse = new HttpStreamingAwareContentCachingResponseWrapper(response, request);
+			responseToUse = (this.incrementalDigest ?
+					new DigestingContentCachingResponseWrapper(response, request, this.spillThreshold) :
+					new HttpStreamingAwareContentCachingResponseWrapper(response, request));
 		}
 
-		filterChain.doFilter(request, responseToUse);
-
-		if (!isAsyncStarted(request) && !isContentCachingDisabled(request)) {
-			updateResponse(request, responseToUse);
+		try {
+			filterChain.doFilter(request, responseToUse);
+			if (!isAsyncStarted(request) && !isContentCachingDisabled(request)) {
+				updateResponse(request, responseToUse);
+			}
+		}
+		finally {
+			if (!isAsyncStarted(request)) {
+				DigestingContentCachingResponseWrapper digestingWrapper =
+						WebUtils.getNativeResponse(responseToUse, DigestingContentCachingResponseWrapper.class);
+				if (digestingWrapper != null) {
+					digestingWrapper.discardSpillFile();
+				}
+			}
 		}
 	}
 
@@ -97,11 +178,11 @@ public class ShallowEtagHeaderFilter extends OncePerRequestFilter {
 		HttpServletResponse rawResponse = (HttpServletResponse) responseWrapper.getResponse();
 		int statusCode = responseWrapper.getStatusCode();
 
-		if (rawResponse.isCommitted()) {
+		if (rawResponse.isCommitted() || (this.incrementalDigest && hasDeepETag(rawResponse))) {
 			responseWrapper.copyBodyToResponse();
 		}
-		else if (isEligibleForEtag(request, responseWrapper, statusCode, responseWrapper.getContentInputStream())) {
-			String responseETag = generateETagHeaderValue(responseWrapper.getContentInputStream());
+		else if (isEligibleForEtag(request, responseWrapper, statusCode)) {
+			String responseETag = generateETagHeaderValue(responseWrapper);
 			rawResponse.setHeader(HEADER_ETAG, responseETag);
 			String requestETag = request.getHeader(HEADER_IF_NONE_MATCH);
 			if (responseETag.equals(requestETag)) {
@@ -126,6 +207,48 @@ public class ShallowEtagHeaderFilter extends OncePerRequestFilter {
 		}
 	}
 
+	private boolean isEligibleForEtag(HttpServletRequest request, ContentCachingResponseWrapper responseWrapper,
+			int statusCode) {
+
+		InputStream content = responseWrapper.getContentInputStream();
+		try {
+			return isEligibleForEtag(request, responseWrapper, statusCode, content);
+		}
+		finally {
+			closeContent(content);
+		}
+	}
+
+	private String generateETagHeaderValue(ContentCachingResponseWrapper responseWrapper) {
+		if (responseWrapper instanceof DigestingContentCachingResponseWrapper) {
+			return ((DigestingContentCachingResponseWrapper) responseWrapper).getETagHeaderValue();
+		}
+		InputStream content = responseWrapper.getContentInputStream();
+		try {
+			return generateETagHeaderValue(content);
+		}
+		finally {
+			closeContent(content);
+		}
+	}
+
+	private void closeContent(InputStream content) {
+		try {
+			content.close();
+		}
+		catch (IOException ex) {
+			// ignore
+		}
+	}
+
+	/**
+	 * Whether the handler has already set an ETag, e.g. through
+	 * {@link org.springframework.web.context.request.WebRequest#checkNotModified(String)}.
+	 */
+	private boolean hasDeepETag(HttpServletResponse response) {
+		return (responseGetHeaderAvailable && response.getHeader(HEADER_ETAG) != null);
+	}
+
 	/**
 	 * Indicates whether the given request and response are eligible for ETag generation.
 	 * <p>The default implementation returns {@code true} if all conditions match:
@@ -208,9 +331,236 @@ public class ShallowEtagHeaderFilter extends OncePerRequestFilter {
 			return (useRawResponse() ? getResponse().getWriter() : super.getWriter());
 		}
 
-		private boolean useRawResponse() {
+		protected boolean useRawResponse() {
 			return isContentCachingDisabled(this.request);
 		}
 	}
 
+
+	/**
+	 * Content caching wrapper that updates an MD5 digest with every byte written,
+	 * optionally moving content beyond a threshold size to a temporary file.
+	 */
+	private static class DigestingContentCachingResponseWrapper extends HttpStreamingAwareContentCachingResponseWrapper {
+
+		private static final char[] HEX_CHARS =
+				{'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'};
+
+		private final MessageDigest digest;
+
+		private final int spillThreshold;
+
+		private final ServletOutputStream outputStream = new DigestingServletOutputStream();
+
+		private PrintWriter writer;
+
+		private File spillFile;
+
+		private OutputStream spillOutputStream;
+
+		private long spilledBytes;
+
+		private Long declaredContentLength;
+
+		public DigestingContentCachingResponseWrapper(HttpServletResponse response, HttpServletRequest request,
+				int spillThreshold) {
+
+			super(response, request);
+			try {
+				this.digest = MessageDigest.getInstance("MD5");
+			}
+			catch (NoSuchAlgorithmException ex) {
+				throw new IllegalStateException("Could not find MessageDigest with algorithm \"MD5\"", ex);
+			}
+			this.spillThreshold = spillThreshold;
+		}
+
+		@Override
+		public ServletOutputStream getOutputStream() throws IOException {
+			return (useRawResponse() ? getResponse().getOutputStream() : this.outputStream);
+		}
+
+		@Override
+		public PrintWriter getWriter() throws IOException {
+			if (useRawResponse()) {
+				return getResponse().getWriter();
+			}
+			if (this.writer == null) {
+				String characterEncoding = getCharacterEncoding();
+				this.writer = new FlushingPrintWriter(new OutputStreamWriter(this.outputStream,
+						(characterEncoding != null ? characterEncoding : WebUtils.DEFAULT_CHARACTER_ENCODING)));
+			}
+			return this.writer;
+		}
+
+		@Override
+		public void setContentLength(int len) {
+			setContentLengthLong(len);
+		}
+
+		// Overrides Servlet 3.1 setContentLengthLong(long) at runtime
+		@Override
+		public void setContentLengthLong(long len) {
+			if (this.spillThreshold >= 0 && len > this.spillThreshold) {
+				// Don't let the in-memory buffer be pre-sized beyond the threshold
+				this.declaredContentLength = len;
+			}
+			else {
+				super.setContentLengthLong(len);
+			}
+		}
+
+		@Override
+		public void setBufferSize(int size) {
+			super.setBufferSize(this.spillThreshold >= 0 ? Math.min(size, this.spillThreshold) : size);
+		}
+
+		@Override
+		public void resetBuffer() {
+			super.resetBuffer();
+			resetContent();
+		}
+
+		@Override
+		public void reset() {
+			super.reset();
+			resetContent();
+		}
+
+		private void resetContent() {
+			this.digest.reset();
+			discardSpillFile();
+		}
+
+		@Override
+		public InputStream getContentInputStream() {
+			if (this.spillFile == null) {
+				return super.getContentInputStream();
+			}
+			try {
+				this.spillOutputStream.flush();
+				return new SequenceInputStream(super.getContentInputStream(), new FileInputStream(this.spillFile));
+			}
+			catch (IOException ex) {
+				throw new IllegalStateException("Could not read spilled response content", ex);
+			}
+		}
+
+		@Override
+		public int getContentSize() {
+			return (int) Math.min(super.getContentSize() + this.spilledBytes, Integer.MAX_VALUE);
+		}
+
+		@Override
+		protected void copyBodyToResponse(boolean complete) throws IOException {
+			if (this.spillFile == null) {
+				super.copyBodyToResponse(complete);
+				return;
+			}
+			HttpServletResponse rawResponse = (HttpServletResponse) getResponse();
+			if ((complete || this.declaredContentLength != null) && !rawResponse.isCommitted()) {
+				long contentLength = (complete ? super.getContentSize() + this.spilledBytes : this.declaredContentLength);
+				rawResponse.setHeader("Content-Length", Long.toString(contentLength));
+				this.declaredContentLength = null;
+			}
+			super.copyBodyToResponse(false);
+			this.spillOutputStream.close();
+			InputStream in = new FileInputStream(this.spillFile);
+			try {
+				StreamUtils.copy(in, rawResponse.getOutputStream());
+			}
+			finally {
+				in.close();
+			}
+			discardSpillFile();
+		}
+
+		/**
+		 * Return the ETag for the content written so far, in the same format as
+		 * {@link ShallowEtagHeaderFilter#generateETagHeaderValue}.
+		 */
+		public String getETagHeaderValue() {
+			byte[] hash = this.digest.digest();
+			StringBuilder builder = new StringBuilder(hash.length * 2 + 3);
+			builder.append("\"0");
+			for (byte b : hash) {
+				builder.append(HEX_CHARS[(b >>> 4) & 0xf]).append(HEX_CHARS[b & 0xf]);
+			}
+			builder.append('"');
+			return builder.toString();
+		}
+
+		public void discardSpillFile() {
+			if (this.spillFile != null) {
+				try {
+					this.spillOutputStream.close();
+				}
+				catch (IOException ex) {
+					// ignore
+				}
+				if (!this.spillFile.delete()) {
+					this.spillFile.deleteOnExit();
+				}
+				this.spillFile = null;
+				this.spillOutputStream = null;
+				this.spilledBytes = 0;
+			}
+		}
+
+		private void write(byte[] b, int off, int len) throws IOException {
+			this.digest.update(b, off, len);
+			if (this.spillFile == null &&
+					(this.spillThreshold < 0 || super.getContentSize() + len <= this.spillThreshold)) {
+				super.getOutputStream().write(b, off, len);
+				return;
+			}
+			if (this.spillFile == null) {
+				this.spillFile = File.createTempFile("etag-", ".tmp");
+				this.spillOutputStream = new BufferedOutputStream(new FileOutputStream(this.spillFile));
+			}
+			this.spillOutputStream.write(b, off, len);
+			this.spilledBytes += len;
+		}
+
+
+		private class DigestingServletOutputStream extends ServletOutputStream {
+
+			@Override
+			public void write(int b) throws IOException {
+				write(new byte[] {(byte) b}, 0, 1);
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				DigestingContentCachingResponseWrapper.this.write(b, off, len);
+			}
+		}
+
+
+		private static class FlushingPrintWriter extends PrintWriter {
+
+			public FlushingPrintWriter(OutputStreamWriter out) {
+				super(out);
+			}
+
+			@Override
+			public void write(char buf[], int off, int len) {
+				super.write(buf, off, len);
+				super.flush();
+			}
+
+			@Override
+			public void write(String s, int off, int len) {
+				super.write(s, off, len);
+				super.flush();
+			}
+
+			@Override
+			public void write(int c) {
+				super.write(c);
+				super.flush();
+			}
+		}
+	}
+
 }
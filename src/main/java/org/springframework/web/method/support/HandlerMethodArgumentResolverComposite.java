@@ -26,6 +26,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import org.springframework.core.MethodParameter;
+import org.springframework.util.ConcurrentReferenceHashMap;
 import org.springframework.web.bind.support.WebDataBinderFactory;
 import org.springframework.web.context.request.NativeWebRequest;
 
@@ -46,6 +47,9 @@ public class HandlerMethodArgumentResolverComposite implements HandlerMethodArgu
 	private final Map<MethodParameter, HandlerMethodArgumentResolver> argumentResolverCache =
 			new ConcurrentHashMap<MethodParameter, HandlerMethodArgumentResolver>(256);
 
+	private final Map<MethodParameter[], HandlerMethodArgumentResolver[]> argumentResolversByMethod =
+			new ConcurrentReferenceHashMap<MethodParameter[], HandlerMethodArgumentResolver[]>(256);
+
 
 	/**
 	 * Return a read-only list with the contained resolvers, or an empty list.
@@ -99,6 +103,26 @@ public class HandlerMethodArgumentResolverComposite implements HandlerMethodArgu
 		return result;
 	}
 
+	/**
+	 * Find the registered {@link HandlerMethodArgumentResolver} for each of the given
+	 * method parameters, caching the result per parameter array, i.e. per handler method.
+	 * @param parameters the (initialized) parameters of a handler method
+	 * @return the resolver for each parameter position, with {@code null} entries
+	 * for parameters that no resolver supports
+	 * @since 4.3
+	 */
+	HandlerMethodArgumentResolver[] getArgumentResolvers(MethodParameter[] parameters) {
+		HandlerMethodArgumentResolver[] resolvers = this.argumentResolversByMethod.get(parameters);
+		if (resolvers == null) {
+			resolvers = new HandlerMethodArgumentResolver[parameters.length];
+			for (int i = 0; i < parameters.length; i++) {
+				resolvers[i] = getArgumentResolver(parameters[i]);
+			}
+			this.argumentResolversByMethod.put(parameters, resolvers);
+		}
+		return resolvers;
+	}
+
 	/**
 	 * Add the given {@link HandlerMethodArgumentResolver}.
 	 */
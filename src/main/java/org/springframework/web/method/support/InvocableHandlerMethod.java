@@ -18,12 +18,17 @@ package org.springframework.web.method.support;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.Arrays;
+import java.util.Map;
 
+import org.springframework.cglib.reflect.FastClass;
+import org.springframework.cglib.reflect.FastMethod;
 import org.springframework.core.DefaultParameterNameDiscoverer;
 import org.springframework.core.GenericTypeResolver;
 import org.springframework.core.MethodParameter;
 import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.util.ConcurrentReferenceHashMap;
 import org.springframework.util.ReflectionUtils;
 import org.springframework.web.bind.WebDataBinder;
 import org.springframework.web.bind.support.SessionStatus;
@@ -48,12 +53,20 @@ import org.springframework.web.method.HandlerMethod;
  */
 public class InvocableHandlerMethod extends HandlerMethod {
 
+	/** Generated invokers per handler method, or NO_GENERATED_INVOKER if not applicable */
+	private static final Map<Method, Object> generatedInvokerCache = new ConcurrentReferenceHashMap<Method, Object>(256);
+
+	private static final Object NO_GENERATED_INVOKER = new Object();
+
+
 	private WebDataBinderFactory dataBinderFactory;
 
 	private HandlerMethodArgumentResolverComposite argumentResolvers = new HandlerMethodArgumentResolverComposite();
 
 	private ParameterNameDiscoverer parameterNameDiscoverer = new DefaultParameterNameDiscoverer();
 
+	private boolean useGeneratedInvoker = false;
+
 
 	/**
 	 * Create an instance from the given handler and method.
@@ -108,6 +121,28 @@ public class InvocableHandlerMethod extends HandlerMethod {
 		this.parameterNameDiscoverer = parameterNameDiscoverer;
 	}
 
+	/**
+	 * Set whether to invoke the handler method through a generated invoker class
+	 * rather than through reflection, with the argument resolver for each parameter
+	 * position looked up once per handler method rather than once per invocation.
+	 * <p>Default is "false". The generated invoker is shared by all invocations of
+	 * the same method and only applies to public methods on public classes; other
+	 * methods are invoked reflectively as usual.
+	 * @since 4.3
+	 * @see org.springframework.cglib.reflect.FastClass
+	 */
+	public void setUseGeneratedInvoker(boolean useGeneratedInvoker) {
+		this.useGeneratedInvoker = useGeneratedInvoker;
+	}
+
+	/**
+	 * Return whether the handler method is invoked through a generated invoker class.
+	 * @since 4.3
+	 */
+	public boolean isUseGeneratedInvoker() {
+		return this.useGeneratedInvoker;
+	}
+
 
 	/**
 	 * Invoke the method after resolving its argument values in the context of the given request.
@@ -148,18 +183,30 @@ public class InvocableHandlerMethod extends HandlerMethod {
 			Object... providedArgs) throws Exception {
 
 		MethodParameter[] parameters = getMethodParameters();
+		HandlerMethodArgumentResolver[] resolvers = null;
+		if (this.useGeneratedInvoker) {
+			for (MethodParameter parameter : parameters) {
+				parameter.initParameterNameDiscovery(this.parameterNameDiscoverer);
+				GenericTypeResolver.resolveParameterType(parameter, getBean().getClass());
+			}
+			resolvers = this.argumentResolvers.getArgumentResolvers(parameters);
+		}
 		Object[] args = new Object[parameters.length];
 		for (int i = 0; i < parameters.length; i++) {
 			MethodParameter parameter = parameters[i];
-			parameter.initParameterNameDiscovery(this.parameterNameDiscoverer);
-			GenericTypeResolver.resolveParameterType(parameter, getBean().getClass());
+			if (resolvers == null) {
+				parameter.initParameterNameDiscovery(this.parameterNameDiscoverer);
+				GenericTypeResolver.resolveParameterType(parameter, getBean().getClass());
+			}
 			args[i] = resolveProvidedArgument(parameter, providedArgs);
 			if (args[i] != null) {
 				continue;
 			}
-			if (this.argumentResolvers.supportsParameter(parameter)) {
+			HandlerMethodArgumentResolver resolver = (resolvers != null ? resolvers[i] :
+					(this.argumentResolvers.supportsParameter(parameter) ? this.argumentResolvers : null));
+			if (resolver != null) {
 				try {
-					args[i] = this.argumentResolvers.resolveArgument(
+					args[i] = resolver.resolveArgument(
 							parameter, mavContainer, request, this.dataBinderFactory);
 					continue;
 				}
@@ -216,8 +263,14 @@ public class InvocableHandlerMethod extends HandlerMethod {
 	 * Invoke the handler method with the given argument values.
 	 */
 	protected Object doInvoke(Object... args) throws Exception {
-		ReflectionUtils.makeAccessible(getBridgedMethod());
+		FastMethod generatedInvoker = (this.useGeneratedInvoker ? getGeneratedInvoker(args) : null);
+		if (generatedInvoker == null) {
+			ReflectionUtils.makeAccessible(getBridgedMethod());
+		}
 		try {
+			if (generatedInvoker != null) {
+				return generatedInvoker.invoke(getBean(), args);
+			}
 			return getBridgedMethod().invoke(getBean(), args);
 		}
 		catch (IllegalArgumentException ex) {
@@ -243,6 +296,47 @@ public class InvocableHandlerMethod extends HandlerMethod {
 		}
 	}
 
+	/**
+	 * Return the generated invoker for the bridged method, if applicable to the
+	 * given arguments. Falls back to reflection (returning {@code null}) where the
+	 * latter provides more meaningful error messages: for a bean that does not
+	 * implement the method and for {@code null} values of primitive parameters.
+	 */
+	private FastMethod getGeneratedInvoker(Object[] args) {
+		Method method = getBridgedMethod();
+		Object invoker = generatedInvokerCache.get(method);
+		if (invoker == null) {
+			invoker = generateInvoker(method);
+			generatedInvokerCache.put(method, invoker);
+		}
+		if (invoker == NO_GENERATED_INVOKER || !method.getDeclaringClass().isInstance(getBean())) {
+			return null;
+		}
+		MethodParameter[] parameters = getMethodParameters();
+		for (int i = 0; i < args.length; i++) {
+			if (args[i] == null && parameters[i].getParameterType().isPrimitive()) {
+				return null;
+			}
+		}
+		return (FastMethod) invoker;
+	}
+
+	private Object generateInvoker(Method method) {
+		Class<?> declaringClass = method.getDeclaringClass();
+		if (!Modifier.isPublic(method.getModifiers()) || !Modifier.isPublic(declaringClass.getModifiers())) {
+			return NO_GENERATED_INVOKER;
+		}
+		try {
+			return FastClass.create(declaringClass).getMethod(method);
+		}
+		catch (Throwable ex) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Could not generate invoker for " + method + " - using reflection instead", ex);
+			}
+			return NO_GENERATED_INVOKER;
+		}
+	}
+
 	/**
 	 * Assert that the target bean class is an instance of the class where the given
 	 * method is declared. In some cases the actual controller instance at request-
@@ -27,7 +27,6 @@ import javax.servlet.http.HttpServletRequest;
 
 import org.springframework.http.InvalidMediaTypeException;
 import org.springframework.http.MediaType;
-import org.springframework.util.StringUtils;
 import org.springframework.web.HttpMediaTypeNotSupportedException;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.servlet.mvc.condition.HeadersRequestCondition.HeaderExpression;
@@ -154,15 +153,27 @@ public final class ConsumesRequestCondition extends AbstractRequestCondition<Con
 	 * to contain matching expressions only. The match is performed via
 	 * {@link MediaType#includes(MediaType)}.
 	 * @param request the current request
-	 * @return the same instance if the condition contains no expressions;
-	 * or a new condition with matching expressions only;
-	 * or {@code null} if no expressions match.
+	 * @return the same instance if the condition contains no expressions
+	 * or if all expressions match; or a new condition with matching expressions
+	 * only; or {@code null} if no expressions match.
 	 */
 	@Override
 	public ConsumesRequestCondition getMatchingCondition(HttpServletRequest request) {
 		if (isEmpty()) {
 			return this;
 		}
+		int matchCount = 0;
+		for (ConsumeMediaTypeExpression expression : this.expressions) {
+			if (expression.match(request)) {
+				matchCount++;
+			}
+		}
+		if (matchCount == 0) {
+			return null;
+		}
+		if (matchCount == this.expressions.size()) {
+			return this;
+		}
 		Set<ConsumeMediaTypeExpression> result = new LinkedHashSet<ConsumeMediaTypeExpression>(expressions);
 		for (Iterator<ConsumeMediaTypeExpression> iterator = result.iterator(); iterator.hasNext();) {
 			ConsumeMediaTypeExpression expression = iterator.next();
@@ -217,10 +228,8 @@ public final class ConsumesRequestCondition extends AbstractRequestCondition<Con
 		@Override
 		protected boolean matchMediaType(HttpServletRequest request) throws HttpMediaTypeNotSupportedException {
 			try {
-				MediaType contentType = StringUtils.hasLength(request.getContentType()) ?
-						MediaType.parseMediaType(request.getContentType()) :
-						MediaType.APPLICATION_OCTET_STREAM;
-						return getMediaType().includes(contentType);
+				MediaType contentType = RequestMatchingContext.getContentType(request);
+				return getMediaType().includes(contentType);
 			}
 			catch (InvalidMediaTypeException ex) {
 				throw new HttpMediaTypeNotSupportedException(
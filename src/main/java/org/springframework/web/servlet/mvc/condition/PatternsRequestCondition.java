@@ -206,7 +206,18 @@ public final class PatternsRequestCondition extends AbstractRequestCondition<Pat
 			return this;
 		}
 
-		String lookupPath = this.pathHelper.getLookupPathForRequest(request);
+		String lookupPath = RequestMatchingContext.getLookupPath(request, this.pathHelper);
+		if (this.patterns.size() == 1) {
+			// Common case: avoid building and sorting a list of matches
+			String pattern = this.patterns.iterator().next();
+			String match = getMatchingPattern(pattern, lookupPath);
+			if (match == null) {
+				return null;
+			}
+			return (match.equals(pattern) ? this :
+					new PatternsRequestCondition(Collections.singletonList(match), this.pathHelper, this.pathMatcher,
+							this.useSuffixPatternMatch, this.useTrailingSlashMatch, this.fileExtensions));
+		}
 		List<String> matches = getMatchingPatterns(lookupPath);
 
 		return matches.isEmpty() ? null :
@@ -278,7 +289,7 @@ public final class PatternsRequestCondition extends AbstractRequestCondition<Pat
 	 */
 	@Override
 	public int compareTo(PatternsRequestCondition other, HttpServletRequest request) {
-		String lookupPath = this.pathHelper.getLookupPathForRequest(request);
+		String lookupPath = RequestMatchingContext.getLookupPath(request, this.pathHelper);
 		Comparator<String> patternComparator = this.pathMatcher.getPatternComparator(lookupPath);
 		Iterator<String> iterator = this.patterns.iterator();
 		Iterator<String> iteratorOther = other.patterns.iterator();
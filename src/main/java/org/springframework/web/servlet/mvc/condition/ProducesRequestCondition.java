@@ -29,7 +29,6 @@ import org.springframework.http.MediaType;
 import org.springframework.web.HttpMediaTypeNotAcceptableException;
 import org.springframework.web.accept.ContentNegotiationManager;
 import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.servlet.mvc.condition.HeadersRequestCondition.HeaderExpression;
 
 /**
@@ -170,8 +169,8 @@ public final class ProducesRequestCondition extends AbstractRequestCondition<Pro
 	 * to contain matching expressions only. The match is performed via
 	 * {@link MediaType#isCompatibleWith(MediaType)}.
 	 * @param request the current request
-	 * @return the same instance if there are no expressions;
-	 * or a new condition with matching expressions;
+	 * @return the same instance if there are no expressions or if all
+	 * expressions match; or a new condition with matching expressions;
 	 * or {@code null} if no expressions match.
 	 */
 	@Override
@@ -179,6 +178,18 @@ public final class ProducesRequestCondition extends AbstractRequestCondition<Pro
 		if (isEmpty()) {
 			return this;
 		}
+		int matchCount = 0;
+		for (ProduceMediaTypeExpression expression : this.expressions) {
+			if (expression.match(request)) {
+				matchCount++;
+			}
+		}
+		if (matchCount == 0) {
+			return null;
+		}
+		if (matchCount == this.expressions.size()) {
+			return this;
+		}
 		Set<ProduceMediaTypeExpression> result = new LinkedHashSet<ProduceMediaTypeExpression>(expressions);
 		for (Iterator<ProduceMediaTypeExpression> iterator = result.iterator(); iterator.hasNext();) {
 			ProduceMediaTypeExpression expression = iterator.next();
@@ -233,8 +244,7 @@ public final class ProducesRequestCondition extends AbstractRequestCondition<Pro
 	}
 
 	private List<MediaType> getAcceptedMediaTypes(HttpServletRequest request) throws HttpMediaTypeNotAcceptableException {
-		List<MediaType> mediaTypes = this.contentNegotiationManager.resolveMediaTypes(new ServletWebRequest(request));
-		return mediaTypes.isEmpty() ? Collections.singletonList(MediaType.ALL) : mediaTypes;
+		return RequestMatchingContext.getAcceptedMediaTypes(request, this.contentNegotiationManager);
 	}
 
 	private int indexOfEqualMediaType(MediaType mediaType) {
@@ -111,7 +111,10 @@ public final class RequestConditionHolder extends AbstractRequestCondition<Reque
 			return this;
 		}
 		RequestCondition<?> match = (RequestCondition<?>) this.condition.getMatchingCondition(request);
-		return (match != null ? new RequestConditionHolder(match) : null);
+		if (match == null) {
+			return null;
+		}
+		return (match == this.condition ? this : new RequestConditionHolder(match));
 	}
 
 	/**
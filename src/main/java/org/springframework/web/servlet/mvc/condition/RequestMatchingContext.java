@@ -0,0 +1,184 @@
+/*
+ * Copyright 2002-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.servlet.mvc.condition;
+
+import java.util.Collections;
+import java.util.List;
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.util.StringUtils;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
+import org.springframework.web.accept.ContentNegotiationManager;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.util.UrlPathHelper;
+
+/**
+ * Holds request-derived values that {@link RequestCondition} implementations
+ * need for matching -- the lookup path, the parsed 'Content-Type' header and
+ * the accepted media types -- so that they are computed once per handler lookup
+ * instead of once per candidate mapping.
+ *
+ * <p>A context is bound to the request for the duration of a handler lookup via
+ * {@link #bind} and {@link #unbind}. Conditions evaluated outside of such a
+ * lookup, i.e. without a bound context, resolve all values from the request
+ * directly, so that they never see values cached for a different dispatch.
+ *
+ * @since 4.3
+ * @see org.springframework.web.servlet.mvc.method.RequestMappingInfoHandlerMapping
+ */
+public final class RequestMatchingContext {
+
+	private static final String CONTEXT_ATTRIBUTE = RequestMatchingContext.class.getName() + ".CONTEXT";
+
+
+	private UrlPathHelper pathHelper;
+
+	private String lookupPath;
+
+	private boolean contentTypeResolved;
+
+	private MediaType contentType;
+
+	private InvalidMediaTypeException contentTypeException;
+
+	private ContentNegotiationManager contentNegotiationManager;
+
+	private List<MediaType> acceptedMediaTypes;
+
+
+	private RequestMatchingContext() {
+	}
+
+
+	/**
+	 * Return the lookup path for the given request as determined by the given
+	 * UrlPathHelper, reusing the cached value if computed by the same helper.
+	 */
+	private String getCachedLookupPath(UrlPathHelper pathHelper, HttpServletRequest request) {
+		if (this.lookupPath == null || this.pathHelper != pathHelper) {
+			this.lookupPath = pathHelper.getLookupPathForRequest(request);
+			this.pathHelper = pathHelper;
+		}
+		return this.lookupPath;
+	}
+
+	/**
+	 * Return the parsed 'Content-Type' of the given request, defaulting to
+	 * {@code application/octet-stream} if none is specified.
+	 * @throws InvalidMediaTypeException if the header value cannot be parsed
+	 */
+	private MediaType getCachedContentType(HttpServletRequest request) throws InvalidMediaTypeException {
+		if (!this.contentTypeResolved) {
+			try {
+				this.contentType = parseContentType(request);
+			}
+			catch (InvalidMediaTypeException ex) {
+				this.contentTypeException = ex;
+			}
+			this.contentTypeResolved = true;
+		}
+		if (this.contentTypeException != null) {
+			throw this.contentTypeException;
+		}
+		return this.contentType;
+	}
+
+	/**
+	 * Return the media types accepted by the given request as resolved by the
+	 * given ContentNegotiationManager, reusing the cached result if resolved
+	 * by the same manager.
+	 * @return the accepted media types, or a list with {@code MediaType.ALL}
+	 * if the request does not express a preference
+	 */
+	private List<MediaType> getCachedAcceptedMediaTypes(ContentNegotiationManager manager, HttpServletRequest request)
+			throws HttpMediaTypeNotAcceptableException {
+
+		if (this.acceptedMediaTypes == null || this.contentNegotiationManager != manager) {
+			this.acceptedMediaTypes = resolveAcceptedMediaTypes(manager, request);
+			this.contentNegotiationManager = manager;
+		}
+		return this.acceptedMediaTypes;
+	}
+
+
+	/**
+	 * Bind a new context to the given request.
+	 * @param request the current request
+	 * @return the previously bound context, if any, to be passed to {@link #unbind}
+	 */
+	public static Object bind(HttpServletRequest request) {
+		Object previous = request.getAttribute(CONTEXT_ATTRIBUTE);
+		request.setAttribute(CONTEXT_ATTRIBUTE, new RequestMatchingContext());
+		return previous;
+	}
+
+	/**
+	 * Remove the context bound to the given request, restoring the given previous one.
+	 * @param request the current request
+	 * @param previous the value returned from {@link #bind}
+	 */
+	public static void unbind(HttpServletRequest request, Object previous) {
+		if (previous != null) {
+			request.setAttribute(CONTEXT_ATTRIBUTE, previous);
+		}
+		else {
+			request.removeAttribute(CONTEXT_ATTRIBUTE);
+		}
+	}
+
+	/**
+	 * Return the context bound to the given request, or {@code null} if none.
+	 */
+	static RequestMatchingContext find(HttpServletRequest request) {
+		Object context = request.getAttribute(CONTEXT_ATTRIBUTE);
+		return (context instanceof RequestMatchingContext ? (RequestMatchingContext) context : null);
+	}
+
+	static String getLookupPath(HttpServletRequest request, UrlPathHelper pathHelper) {
+		RequestMatchingContext context = find(request);
+		return (context != null ? context.getCachedLookupPath(pathHelper, request) :
+				pathHelper.getLookupPathForRequest(request));
+	}
+
+	static MediaType getContentType(HttpServletRequest request) throws InvalidMediaTypeException {
+		RequestMatchingContext context = find(request);
+		return (context != null ? context.getCachedContentType(request) : parseContentType(request));
+	}
+
+	static List<MediaType> getAcceptedMediaTypes(HttpServletRequest request, ContentNegotiationManager manager)
+			throws HttpMediaTypeNotAcceptableException {
+
+		RequestMatchingContext context = find(request);
+		return (context != null ? context.getCachedAcceptedMediaTypes(manager, request) :
+				resolveAcceptedMediaTypes(manager, request));
+	}
+
+	private static MediaType parseContentType(HttpServletRequest request) throws InvalidMediaTypeException {
+		return (StringUtils.hasLength(request.getContentType()) ?
+				MediaType.parseMediaType(request.getContentType()) : MediaType.APPLICATION_OCTET_STREAM);
+	}
+
+	private static List<MediaType> resolveAcceptedMediaTypes(ContentNegotiationManager manager,
+			HttpServletRequest request) throws HttpMediaTypeNotAcceptableException {
+
+		List<MediaType> mediaTypes = manager.resolveMediaTypes(new ServletWebRequest(request));
+		return (mediaTypes.isEmpty() ? Collections.singletonList(MediaType.ALL) : mediaTypes);
+	}
+
+}
@@ -19,8 +19,10 @@ package org.springframework.web.servlet.mvc.condition;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import javax.servlet.http.HttpServletRequest;
 
@@ -36,6 +38,16 @@ import org.springframework.web.bind.annotation.RequestMethod;
  */
 public final class RequestMethodsRequestCondition extends AbstractRequestCondition<RequestMethodsRequestCondition> {
 
+	/** Single-method conditions, shared as matching results across requests */
+	private static final Map<RequestMethod, RequestMethodsRequestCondition> SINGLE_METHOD_CONDITIONS =
+			new EnumMap<RequestMethod, RequestMethodsRequestCondition>(RequestMethod.class);
+
+	static {
+		for (RequestMethod method : RequestMethod.values()) {
+			SINGLE_METHOD_CONDITIONS.put(method, new RequestMethodsRequestCondition(method));
+		}
+	}
+
 	private final Set<RequestMethod> methods;
 
 
@@ -90,8 +102,9 @@ public final class RequestMethodsRequestCondition extends AbstractRequestConditi
 	 * Check if any of the HTTP request methods match the given request and
 	 * return an instance that contains the matching HTTP request method only.
 	 * @param request the current request
-	 * @return the same instance if the condition is empty, a new condition with
-	 * the matched request method, or {@code null} if no request methods match
+	 * @return the same instance if the condition is empty or only contains the
+	 * matched request method, a shared condition with the matched request method,
+	 * or {@code null} if no request methods match
 	 */
 	@Override
 	public RequestMethodsRequestCondition getMatchingCondition(HttpServletRequest request) {
@@ -102,7 +115,7 @@ public final class RequestMethodsRequestCondition extends AbstractRequestConditi
 		if (incomingRequestMethod != null) {
 			for (RequestMethod method : this.methods) {
 				if (method.equals(incomingRequestMethod)) {
-					return new RequestMethodsRequestCondition(method);
+					return (this.methods.size() == 1 ? this : SINGLE_METHOD_CONDITIONS.get(method));
 				}
 			}
 		}
@@ -204,7 +204,8 @@ public final class RequestMappingInfo implements RequestCondition<RequestMapping
 	 * a potentially new request mapping info with conditions tailored to the current request.
 	 * <p>For example the returned instance may contain the subset of URL patterns that match to
 	 * the current request, sorted with best matching patterns on top.
-	 * @return a new instance in case all conditions match; or {@code null} otherwise
+	 * @return a new instance in case all conditions match, this instance if all conditions
+	 * match exactly as declared; or {@code null} otherwise
 	 */
 	@Override
 	public RequestMappingInfo getMatchingCondition(HttpServletRequest request) {
@@ -236,6 +237,14 @@ public final class RequestMappingInfo implements RequestCondition<RequestMapping
 			return null;
 		}
 
+		if (patterns == this.patternsCondition && methods == this.methodsCondition &&
+				params == this.paramsCondition && headers == this.headersCondition &&
+				consumes == this.consumesCondition && produces == this.producesCondition &&
+				custom == this.customConditionHolder) {
+			// All conditions match as declared: no need for a request-specific instance
+			return this;
+		}
+
 		return new RequestMappingInfo(this.name, patterns,
 				methods, params, headers, consumes, produces, custom.getCondition());
 	}
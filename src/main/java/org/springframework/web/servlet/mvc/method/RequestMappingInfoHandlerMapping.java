@@ -44,6 +44,7 @@ import org.springframework.web.servlet.HandlerMapping;
 import org.springframework.web.servlet.handler.AbstractHandlerMethodMapping;
 import org.springframework.web.servlet.mvc.condition.NameValueExpression;
 import org.springframework.web.servlet.mvc.condition.ParamsRequestCondition;
+import org.springframework.web.servlet.mvc.condition.RequestMatchingContext;
 import org.springframework.web.util.WebUtils;
 
 /**
@@ -69,6 +70,22 @@ public abstract class RequestMappingInfoHandlerMapping extends AbstractHandlerMe
 		return info.getPatternsCondition().getPatterns();
 	}
 
+	/**
+	 * Bind a {@link RequestMatchingContext} to the request for the duration of
+	 * the lookup, so that the lookup path and the 'Content-Type' and 'Accept'
+	 * headers are resolved once rather than for every candidate mapping.
+	 */
+	@Override
+	protected HandlerMethod getHandlerInternal(HttpServletRequest request) throws Exception {
+		Object previousContext = RequestMatchingContext.bind(request);
+		try {
+			return super.getHandlerInternal(request);
+		}
+		finally {
+			RequestMatchingContext.unbind(request, previousContext);
+		}
+	}
+
 	/**
 	 * Check if the given RequestMappingInfo matches the current request and
 	 * return a (potentially new) instance with conditions that match the
@@ -159,6 +159,8 @@ public class RequestMappingHandlerAdapter extends AbstractHandlerMethodAdapter
 
 	private ParameterNameDiscoverer parameterNameDiscoverer = new DefaultParameterNameDiscoverer();
 
+	private boolean useGeneratedInvokers = false;
+
 	private ConfigurableBeanFactory beanFactory;
 
 
@@ -432,6 +434,20 @@ public class RequestMappingHandlerAdapter extends AbstractHandlerMethodAdapter
 		this.ignoreDefaultModelOnRedirect = ignoreDefaultModelOnRedirect;
 	}
 
+	/**
+	 * Set whether to invoke controller methods through generated invoker classes
+	 * instead of through reflection, with argument resolvers looked up once per
+	 * controller method rather than per parameter on every request.
+	 * <p>Default is "false". Turn this on for a large number of short requests
+	 * where reflective invocation overhead matters; see
+	 * {@link org.springframework.web.method.support.InvocableHandlerMethod#setUseGeneratedInvoker}
+	 * for the methods this applies to.
+	 * @since 4.3
+	 */
+	public void setUseGeneratedInvokers(boolean useGeneratedInvokers) {
+		this.useGeneratedInvokers = useGeneratedInvokers;
+	}
+
 	/**
 	 * Specify the strategy to store session attributes with. The default is
 	 * {@link DefaultSessionAttributeStore},
@@ -788,6 +804,7 @@ public class RequestMappingHandlerAdapter extends AbstractHandlerMethodAdapter
 		invocableMethod.setHandlerMethodReturnValueHandlers(this.returnValueHandlers);
 		invocableMethod.setDataBinderFactory(binderFactory);
 		invocableMethod.setParameterNameDiscoverer(this.parameterNameDiscoverer);
+		invocableMethod.setUseGeneratedInvoker(this.useGeneratedInvokers);
 
 		ModelAndViewContainer mavContainer = new ModelAndViewContainer();
 		mavContainer.addAllAttributes(RequestContextUtils.getInputFlashMap(request));
@@ -18,6 +18,7 @@ package org.springframework.web.servlet.mvc.method.annotation;
 
 import java.io.IOException;
 import java.lang.reflect.Type;
+import java.util.Iterator;
 import java.util.List;
 import javax.servlet.http.HttpServletRequest;
 
@@ -38,6 +39,7 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.support.WebDataBinderFactory;
 import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.filter.ShallowEtagHeaderFilter;
 import org.springframework.web.method.support.ModelAndViewContainer;
 import org.springframework.web.servlet.mvc.support.DefaultHandlerExceptionResolver;
 
@@ -162,6 +164,14 @@ public class RequestResponseBodyMethodProcessor extends AbstractMessageConverter
 
 		mavContainer.setRequestHandled(true);
 
+		if (returnValue instanceof Iterator) {
+			// Streamed element by element: don't let a ShallowEtagHeaderFilter buffer the whole body
+			HttpServletRequest servletRequest = webRequest.getNativeRequest(HttpServletRequest.class);
+			if (servletRequest != null) {
+				ShallowEtagHeaderFilter.disableContentCaching(servletRequest);
+			}
+		}
+
 		// Try even with null return value. ResponseBodyAdvice could get involved.
 		writeWithMessageConverters(returnValue, returnType, webRequest);
 	}
@@ -0,0 +1,402 @@
+/*
+ * Copyright 2002-2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.servlet.resource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.StreamUtils;
+import org.springframework.util.StringUtils;
+
+/**
+ * A {@code ResourceResolver} that keeps the content of frequently requested
+ * resources in memory, together with a gzip-compressed variant computed on
+ * first access, so that they are served from byte arrays rather than being
+ * read from their location (and compressed, if at all) over and over again.
+ *
+ * <p>Resources are served as {@link HttpResource}s that expose a strong
+ * {@code ETag} derived from the actual content of the variant being served,
+ * and that add "Accept-Encoding" to the {@code Vary} header if a gzip variant
+ * exists.
+ * The gzip variant is served if the "Accept-Encoding" request header
+ * contains "gzip" and compression actually reduces the content size.
+ * This resolver always returns the original content, so that configured
+ * {@link ResourceTransformer}s never see compressed bytes; the gzip variant
+ * is only selected by the {@link ResourceHttpRequestHandler} once all
+ * transformers have left the resource unchanged. Transformed content is
+ * served uncompressed.
+ *
+ * <p>Once cached, a resource is served without resolving it through the rest
+ * of the chain until the {@link #setRecheckInterval recheck interval} has
+ * elapsed. It is then resolved again, and the cached entry is discarded if the
+ * resolved resource reports a different {@code lastModified} timestamp. This
+ * resolver must not be combined with a {@link CachingResourceResolver} in front
+ * of it: that would hold on to the in-memory resources indefinitely, bypassing
+ * both the {@link #setMaxCacheSize size limit} and the {@code lastModified}
+ * check. Resources that are already encoded, e.g. pre-compressed resources
+ * served by a {@link GzipResourceResolver} further down the chain, are passed
+ * through as they are.
+ *
+ * <p>The cache is bounded by the total number of bytes held for all variants,
+ * evicting the least recently used entries once the limit has been exceeded.
+ *
+ * @since 4.3
+ * @see ResourceHttpRequestHandler
+ */
+public class InMemoryResourceResolver extends AbstractResourceResolver {
+
+	/** Default maximum number of bytes to keep in memory: 16 MB */
+	public static final long DEFAULT_MAX_CACHE_SIZE = 16 * 1024 * 1024;
+
+	/** Default maximum size of a resource to keep in memory: 1 MB */
+	public static final long DEFAULT_MAX_RESOURCE_SIZE = 1024 * 1024;
+
+	/** Default time after which a cached resource is resolved again: 5 seconds */
+	public static final long DEFAULT_RECHECK_INTERVAL = 5000;
+
+
+	private long maxCacheSize = DEFAULT_MAX_CACHE_SIZE;
+
+	private long maxResourceSize = DEFAULT_MAX_RESOURCE_SIZE;
+
+	private long recheckInterval = DEFAULT_RECHECK_INTERVAL;
+
+	private long cacheSize;
+
+	/** Map from request path to cached content, in access order */
+	private final Map<String, CachedContent> contentCache = new LinkedHashMap<String, CachedContent>(64, 0.75f, true);
+
+
+	/**
+	 * Specify the maximum number of bytes to keep in memory, counting
+	 * both the original content and the gzip variant of each resource.
+	 * Default is {@link #DEFAULT_MAX_CACHE_SIZE}.
+	 */
+	public void setMaxCacheSize(long maxCacheSize) {
+		this.maxCacheSize = maxCacheSize;
+	}
+
+	/**
+	 * Return the maximum number of bytes to keep in memory.
+	 */
+	public long getMaxCacheSize() {
+		return this.maxCacheSize;
+	}
+
+	/**
+	 * Specify the maximum content length of a resource to keep in memory.
+	 * Larger resources are passed through without caching.
+	 * Default is {@link #DEFAULT_MAX_RESOURCE_SIZE}.
+	 */
+	public void setMaxResourceSize(long maxResourceSize) {
+		this.maxResourceSize = maxResourceSize;
+	}
+
+	/**
+	 * Return the maximum content length of a resource to keep in memory.
+	 */
+	public long getMaxResourceSize() {
+		return this.maxResourceSize;
+	}
+
+	/**
+	 * Specify the time in milliseconds after which a cached resource is
+	 * resolved through the rest of the chain again, to find out whether it
+	 * has been modified. Use 0 to resolve it on every request, or -1 to never
+	 * resolve it again once cached.
+	 * Default is {@link #DEFAULT_RECHECK_INTERVAL}.
+	 */
+	public void setRecheckInterval(long recheckInterval) {
+		this.recheckInterval = recheckInterval;
+	}
+
+	/**
+	 * Return the time after which a cached resource is resolved again.
+	 */
+	public long getRecheckInterval() {
+		return this.recheckInterval;
+	}
+
+	/**
+	 * Return the number of bytes currently held in memory.
+	 */
+	public long getCacheSize() {
+		synchronized (this.contentCache) {
+			return this.cacheSize;
+		}
+	}
+
+	/**
+	 * Remove all cached content.
+	 */
+	public void clearCache() {
+		synchronized (this.contentCache) {
+			this.contentCache.clear();
+			this.cacheSize = 0;
+		}
+	}
+
+
+	@Override
+	protected Resource resolveResourceInternal(HttpServletRequest request, String requestPath,
+			List<? extends Resource> locations, ResourceResolverChain chain) {
+
+		CachedContent recentContent = getRecentlyCheckedContent(requestPath);
+		if (recentContent != null) {
+			return new InMemoryResource(recentContent.resource, recentContent);
+		}
+
+		Resource resource = chain.resolveResource(request, requestPath, locations);
+		if (resource == null || resource instanceof EncodedResource) {
+			return resource;
+		}
+
+		CachedContent content;
+		try {
+			content = getCachedContent(requestPath, resource);
+		}
+		catch (IOException ex) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Could not load content of " + resource + " into memory", ex);
+			}
+			return resource;
+		}
+		if (content == null) {
+			return resource;
+		}
+		return new InMemoryResource(resource, content);
+	}
+
+	/**
+	 * Return the cached content for the given request path if it has been
+	 * checked against its resource within the recheck interval.
+	 */
+	private CachedContent getRecentlyCheckedContent(String requestPath) {
+		if (this.recheckInterval == 0) {
+			return null;
+		}
+		synchronized (this.contentCache) {
+			CachedContent content = this.contentCache.get(requestPath);
+			if (content != null && (this.recheckInterval < 0 ||
+					System.currentTimeMillis() - content.lastChecked < this.recheckInterval)) {
+				return content;
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Return the cached content for the given resource, loading it if not
+	 * cached yet or if the resource has been modified in the meantime.
+	 * @return the content, or {@code null} if the resource is not eligible for caching
+	 */
+	private CachedContent getCachedContent(String requestPath, Resource resource) throws IOException {
+		long lastModified = resource.lastModified();
+		synchronized (this.contentCache) {
+			CachedContent content = this.contentCache.get(requestPath);
+			if (content != null) {
+				if (content.lastModified == lastModified) {
+					content.lastChecked = System.currentTimeMillis();
+					return content;
+				}
+				this.contentCache.remove(requestPath);
+				this.cacheSize -= content.size();
+				if (logger.isTraceEnabled()) {
+					logger.trace("Discarding stale content for " + resource);
+				}
+			}
+		}
+
+		long contentLength = resource.contentLength();
+		if (contentLength > this.maxResourceSize || contentLength > this.maxCacheSize) {
+			return null;
+		}
+
+		// Load outside of the lock: concurrent loads of the same resource simply race
+		CachedContent content = new CachedContent(
+				resource, StreamUtils.copyToByteArray(resource.getInputStream()), lastModified);
+		synchronized (this.contentCache) {
+			CachedContent existing = this.contentCache.put(requestPath, content);
+			if (existing != null) {
+				this.cacheSize -= existing.size();
+			}
+			this.cacheSize += content.size();
+			Iterator<CachedContent> it = this.contentCache.values().iterator();
+			while (this.cacheSize > this.maxCacheSize && it.hasNext()) {
+				CachedContent eldest = it.next();
+				if (eldest != content) {
+					it.remove();
+					this.cacheSize -= eldest.size();
+				}
+			}
+		}
+		if (logger.isTraceEnabled()) {
+			logger.trace("Keeping content of " + resource + " in memory");
+		}
+		return content;
+	}
+
+	@Override
+	protected String resolveUrlPathInternal(String resourceUrlPath, List<? extends Resource> locations,
+			ResourceResolverChain chain) {
+
+		return chain.resolveUrlPath(resourceUrlPath, locations);
+	}
+
+
+	/**
+	 * The content of a resource along with its gzip variant and ETags.
+	 */
+	private static class CachedContent {
+
+		private final Resource resource;
+
+		private final byte[] content;
+
+		private final String etag;
+
+		private final byte[] gzippedContent;
+
+		private final String gzippedEtag;
+
+		private final long lastModified;
+
+		/** Time of the last check against the resource, guarded by the content cache */
+		private long lastChecked;
+
+		public CachedContent(Resource resource, byte[] content, long lastModified) throws IOException {
+			this.resource = resource;
+			this.content = content;
+			this.etag = "\"" + DigestUtils.md5DigestAsHex(content) + "\"";
+			byte[] gzipped = gzip(content);
+			if (gzipped.length < content.length) {
+				this.gzippedContent = gzipped;
+				this.gzippedEtag = "\"" + DigestUtils.md5DigestAsHex(gzipped) + "\"";
+			}
+			else {
+				this.gzippedContent = null;
+				this.gzippedEtag = null;
+			}
+			this.lastModified = lastModified;
+			this.lastChecked = System.currentTimeMillis();
+		}
+
+		private static byte[] gzip(byte[] content) throws IOException {
+			ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 2 + 64);
+			GZIPOutputStream gzip = new GZIPOutputStream(out);
+			gzip.write(content);
+			gzip.close();
+			return out.toByteArray();
+		}
+
+		public long size() {
+			return this.content.length + (this.gzippedContent != null ? this.gzippedContent.length : 0);
+		}
+	}
+
+
+	/**
+	 * A resource served from memory, with its original content.
+	 */
+	static class InMemoryResource extends TransformedResource implements HttpResource {
+
+		private final Resource original;
+
+		private final CachedContent cachedContent;
+
+		private final HttpHeaders headers;
+
+		public InMemoryResource(Resource original, CachedContent content) {
+			this(original, content, content.content, content.etag);
+		}
+
+		private InMemoryResource(Resource original, CachedContent cachedContent, byte[] content, String etag) {
+			super(original, content);
+			this.original = original;
+			this.cachedContent = cachedContent;
+			this.headers = new HttpHeaders();
+			if (original instanceof HttpResource) {
+				for (Map.Entry<String, List<String>> entry : ((HttpResource) original).getResponseHeaders().entrySet()) {
+					this.headers.put(entry.getKey(), new ArrayList<String>(entry.getValue()));
+				}
+			}
+			this.headers.setETag(etag);
+			if (cachedContent.gzippedContent != null && !varies(this.headers, "Accept-Encoding")) {
+				this.headers.add(HttpHeaders.VARY, "Accept-Encoding");
+			}
+		}
+
+		private static boolean varies(HttpHeaders headers, String headerName) {
+			List<String> values = headers.get(HttpHeaders.VARY);
+			if (values != null) {
+				for (String value : values) {
+					for (String token : StringUtils.tokenizeToStringArray(value, ",")) {
+						if (token.equals("*") || token.equalsIgnoreCase(headerName)) {
+							return true;
+						}
+					}
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public HttpHeaders getResponseHeaders() {
+			return this.headers;
+		}
+
+		/**
+		 * Return the variant of this resource to serve for the given request:
+		 * the gzip variant if available and accepted, this resource otherwise.
+		 */
+		public Resource getVariant(HttpServletRequest request) {
+			if (this.cachedContent.gzippedContent != null && isGzipAccepted(request)) {
+				return new GzippedInMemoryResource(this.original, this.cachedContent);
+			}
+			return this;
+		}
+
+		private static boolean isGzipAccepted(HttpServletRequest request) {
+			String value = request.getHeader("Accept-Encoding");
+			return (value != null && value.toLowerCase().contains("gzip"));
+		}
+	}
+
+
+	private static final class GzippedInMemoryResource extends InMemoryResource implements EncodedResource {
+
+		public GzippedInMemoryResource(Resource original, CachedContent content) {
+			super(original, content, content.gzippedContent, content.gzippedEtag);
+		}
+
+		@Override
+		public String getContentEncoding() {
+			return "gzip";
+		}
+	}
+
+}
@@ -16,25 +16,36 @@
 
 package org.springframework.web.servlet.resource;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import javax.activation.FileTypeMap;
 import javax.activation.MimetypesFileTypeMap;
 import javax.servlet.ServletException;
 import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.PathResource;
 import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpRange;
@@ -43,6 +54,7 @@ import org.springframework.http.server.ServletServerHttpRequest;
 import org.springframework.util.Assert;
 import org.springframework.util.ClassUtils;
 import org.springframework.util.CollectionUtils;
+import org.springframework.util.ConcurrentReferenceHashMap;
 import org.springframework.util.MimeTypeUtils;
 import org.springframework.util.ObjectUtils;
 import org.springframework.util.ResourceUtils;
@@ -100,6 +112,14 @@ public class ResourceHttpRequestHandler extends WebContentGenerator
 	private static final boolean jafPresent = ClassUtils.isPresent(
 			"javax.activation.FileTypeMap", ResourceHttpRequestHandler.class.getClassLoader());
 
+	private static final String TOMCAT_SENDFILE_SUPPORT_ATTRIBUTE = "org.apache.tomcat.sendfile.support";
+
+	private static final String TOMCAT_SENDFILE_FILENAME_ATTRIBUTE = "org.apache.tomcat.sendfile.filename";
+
+	private static final String TOMCAT_SENDFILE_START_ATTRIBUTE = "org.apache.tomcat.sendfile.start";
+
+	private static final String TOMCAT_SENDFILE_END_ATTRIBUTE = "org.apache.tomcat.sendfile.end";
+
 
 	private final List<Resource> locations = new ArrayList<Resource>(4);
 
@@ -109,6 +129,11 @@ public class ResourceHttpRequestHandler extends WebContentGenerator
 
 	private CorsConfiguration corsConfiguration;
 
+	private boolean zeroCopy = false;
+
+	/** Jetty's sendContent(ReadableByteChannel) method per output stream class, or null if not available */
+	private final Map<Class<?>, Method> sendContentMethodCache = new ConcurrentReferenceHashMap<Class<?>, Method>(4);
+
 
 	public ResourceHttpRequestHandler() {
 		super(METHOD_GET, METHOD_HEAD);
@@ -176,6 +201,37 @@ public class ResourceHttpRequestHandler extends WebContentGenerator
 		return this.corsConfiguration;
 	}
 
+	/**
+	 * Whether to transfer file system resources without copying their content
+	 * through the JVM heap. Applies to {@link FileSystemResource} and
+	 * {@link PathResource} instances, for full content as well as for single
+	 * {@code Range} requests:
+	 * <ul>
+	 * <li>On Tomcat with a sendfile-capable connector, the file is handed over
+	 * to the container via its {@code org.apache.tomcat.sendfile.*} request
+	 * attributes, unless the response has been wrapped (e.g. by a
+	 * {@link org.springframework.web.filter.ShallowEtagHeaderFilter}).
+	 * <li>On Jetty, the file region is passed to the container's output as a
+	 * {@link FileChannel}, which the container reads into its pooled buffers.
+	 * <li>Otherwise the content is copied from a {@code FileInputStream}, as for
+	 * any other resource.
+	 * </ul>
+	 * <p>Note that {@link #writeContent} is not called for such resources then.
+	 * Default is "false".
+	 * @since 4.3
+	 */
+	public void setZeroCopy(boolean zeroCopy) {
+		this.zeroCopy = zeroCopy;
+	}
+
+	/**
+	 * Return whether file system resources are transferred without copying.
+	 * @since 4.3
+	 */
+	public boolean isZeroCopy() {
+		return this.zeroCopy;
+	}
+
 
 	@Override
 	public void afterPropertiesSet() throws Exception {
@@ -237,7 +293,7 @@ public class ResourceHttpRequestHandler extends WebContentGenerator
 		}
 
 		// Header phase
-		if (new ServletWebRequest(request, response).checkNotModified(resource.lastModified())) {
+		if (isNotModified(request, response, resource)) {
 			logger.trace("Resource not modified - returning 304");
 			return;
 		}
@@ -268,13 +324,38 @@ public class ResourceHttpRequestHandler extends WebContentGenerator
 		if (request.getHeader(HttpHeaders.RANGE) == null) {
 			setETagHeader(request, response);
 			setHeaders(response, resource, mediaType);
-			writeContent(response, resource);
+			File file = getTransferableFile(resource);
+			if (file != null) {
+				transferFile(request, response, file, 0, resource.contentLength());
+			}
+			else {
+				writeContent(response, resource);
+			}
 		}
 		else {
 			writePartialContent(request, response, resource, mediaType);
 		}
 	}
 
+	/**
+	 * Check the conditional request headers against the given resource: its
+	 * content-based ETag if it is an {@link HttpResource} exposing one and the
+	 * request carries an "If-None-Match" header, its last-modified timestamp
+	 * otherwise.
+	 */
+	private boolean isNotModified(HttpServletRequest request, HttpServletResponse response, Resource resource)
+			throws IOException {
+
+		ServletWebRequest webRequest = new ServletWebRequest(request, response);
+		if (resource instanceof HttpResource && request.getHeader(HttpHeaders.IF_NONE_MATCH) != null) {
+			String etag = ((HttpResource) resource).getResponseHeaders().getETag();
+			if (etag != null) {
+				return webRequest.checkNotModified(etag);
+			}
+		}
+		return webRequest.checkNotModified(resource.lastModified());
+	}
+
 	protected Resource getResource(HttpServletRequest request) throws IOException {
 		String path = (String) request.getAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE);
 		if (path == null) {
@@ -304,12 +385,15 @@ public class ResourceHttpRequestHandler extends WebContentGenerator
 		}
 		ResourceResolverChain resolveChain = new DefaultResourceResolverChain(getResourceResolvers());
 		Resource resource = resolveChain.resolveResource(request, path, getLocations());
-		if (resource == null || getResourceTransformers().isEmpty()) {
-			return resource;
+		if (resource != null && !getResourceTransformers().isEmpty()) {
+			ResourceTransformerChain transformChain =
+					new DefaultResourceTransformerChain(resolveChain, getResourceTransformers());
+			resource = transformChain.transform(request, resource);
+		}
+		if (resource instanceof InMemoryResourceResolver.InMemoryResource) {
+			// Select a precomputed encoding only now that transformers have seen the original content
+			resource = ((InMemoryResourceResolver.InMemoryResource) resource).getVariant(request);
 		}
-		ResourceTransformerChain transformChain =
-				new DefaultResourceTransformerChain(resolveChain, getResourceTransformers());
-		resource = transformChain.transform(request, resource);
 		return resource;
 	}
 
@@ -444,6 +528,23 @@ public class ResourceHttpRequestHandler extends WebContentGenerator
 			response.setHeader(HttpHeaders.CONTENT_ENCODING, ((EncodedResource) resource).getContentEncoding());
 		}
 
+		if (resource instanceof HttpResource) {
+			HttpHeaders resourceHeaders = ((HttpResource) resource).getResponseHeaders();
+			for (Map.Entry<String, List<String>> entry : resourceHeaders.entrySet()) {
+				// Keep Vary values set before, e.g. "Origin" by CORS processing
+				boolean first = !HttpHeaders.VARY.equalsIgnoreCase(entry.getKey());
+				for (String value : entry.getValue()) {
+					if (first) {
+						response.setHeader(entry.getKey(), value);
+						first = false;
+					}
+					else {
+						response.addHeader(entry.getKey(), value);
+					}
+				}
+			}
+		}
+
 		response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
 	}
 
@@ -511,6 +612,12 @@ public class ResourceHttpRequestHandler extends WebContentGenerator
 			response.addHeader("Content-Range", "bytes " + start + "-" + end + "/" + length);
             response.setContentLength((int) rangeLength);
 
+			File file = getTransferableFile(resource);
+			if (file != null) {
+				transferFile(request, response, file, start, rangeLength);
+				return;
+			}
+
 			InputStream in = resource.getInputStream();
 			try {
 				copyRange(in, response.getOutputStream(), start, end);
@@ -529,13 +636,12 @@ public class ResourceHttpRequestHandler extends WebContentGenerator
 			response.setContentType("multipart/byteranges; boundary=" + boundaryString);
 
 			ServletOutputStream out = response.getOutputStream();
+			File file = getTransferableFile(resource);
 
 			for (HttpRange range : ranges) {
 				long start = range.getRangeStart(length);
 				long end = range.getRangeEnd(length);
 
-				InputStream in = resource.getInputStream();
-
                 // Writing MIME header.
                 out.println();
                 out.println("--" + boundaryString);
@@ -546,7 +652,12 @@ public class ResourceHttpRequestHandler extends WebContentGenerator
                 out.println();
 
                 // Printing content
-                copyRange(in, out, start, end);
+				if (file != null) {
+					copyFileRange(file, out, start, end - start + 1);
+				}
+				else {
+					copyRange(resource.getInputStream(), out, start, end);
+				}
 			}
 			out.println();
             out.print("--" + boundaryString + "--");
@@ -578,12 +689,152 @@ public class ResourceHttpRequestHandler extends WebContentGenerator
 	}
 
 
+	/**
+	 * Return the file to transfer for the given resource if
+	 * {@link #setZeroCopy "zeroCopy"} applies to it, or {@code null}.
+	 */
+	private File getTransferableFile(Resource resource) {
+		if (!this.zeroCopy || !(resource instanceof FileSystemResource || resource instanceof PathResource)) {
+			return null;
+		}
+		try {
+			return resource.getFile();
+		}
+		catch (IOException ex) {
+			return null;
+		}
+	}
+
+	/**
+	 * Transfer the given region of the file to the response,
+	 * via the container's zero-copy facilities if available.
+	 */
+	private void transferFile(HttpServletRequest request, HttpServletResponse response,
+			File file, long start, long length) throws IOException {
+
+		if (Boolean.TRUE.equals(request.getAttribute(TOMCAT_SENDFILE_SUPPORT_ATTRIBUTE)) &&
+				!(response instanceof HttpServletResponseWrapper)) {
+			request.setAttribute(TOMCAT_SENDFILE_FILENAME_ATTRIBUTE, file.getAbsolutePath());
+			request.setAttribute(TOMCAT_SENDFILE_START_ATTRIBUTE, start);
+			request.setAttribute(TOMCAT_SENDFILE_END_ATTRIBUTE, start + length);
+			return;
+		}
+		ServletOutputStream out = response.getOutputStream();
+		Method sendContent = getSendContentMethod(out);
+		if (sendContent == null || length == 0) {
+			copyFileRange(file, out, start, length);
+			return;
+		}
+		FileInputStream in = new FileInputStream(file);
+		try {
+			FileChannel channel = in.getChannel();
+			channel.position(start);
+			sendContent.invoke(out, new FileRegionChannel(channel, length));
+		}
+		catch (InvocationTargetException ex) {
+			if (ex.getTargetException() instanceof IOException) {
+				throw (IOException) ex.getTargetException();
+			}
+			throw new IOException("Failed to send content of file [" + file + "]", ex.getTargetException());
+		}
+		catch (IllegalAccessException ex) {
+			copyFileRange(file, out, start, length);
+		}
+		finally {
+			try {
+				in.close();
+			}
+			catch (IOException ex) {
+				// ignore
+			}
+		}
+	}
+
+	private void copyFileRange(File file, OutputStream out, long start, long length) throws IOException {
+		FileInputStream in = new FileInputStream(file);
+		try {
+			copyRange(in, out, start, start + length - 1);
+		}
+		finally {
+			try {
+				in.close();
+			}
+			catch (IOException ex) {
+				// ignore
+			}
+		}
+	}
+
+	/**
+	 * Determine Jetty's {@code sendContent(ReadableByteChannel)} method on the given
+	 * output stream, caching the result per output stream class.
+	 */
+	private Method getSendContentMethod(ServletOutputStream out) {
+		Class<?> outClass = out.getClass();
+		if (this.sendContentMethodCache.containsKey(outClass)) {
+			return this.sendContentMethodCache.get(outClass);
+		}
+		Method sendContent = ClassUtils.getMethodIfAvailable(outClass, "sendContent", ReadableByteChannel.class);
+		this.sendContentMethodCache.put(outClass, sendContent);
+		return sendContent;
+	}
+
+
 	@Override
 	public String toString() {
 		return "ResourceHttpRequestHandler [locations=" + getLocations() + ", resolvers=" + getResourceResolvers() + "]";
 	}
 
 
+	/**
+	 * Channel over a region of a file, starting at the current position of the
+	 * given {@link FileChannel}, which reports the end of the stream once the
+	 * region has been read.
+	 */
+	private static class FileRegionChannel implements ReadableByteChannel {
+
+		private final FileChannel channel;
+
+		private long remaining;
+
+		public FileRegionChannel(FileChannel channel, long length) {
+			this.channel = channel;
+			this.remaining = length;
+		}
+
+		@Override
+		public int read(ByteBuffer dst) throws IOException {
+			if (this.remaining <= 0) {
+				return -1;
+			}
+			int limit = dst.limit();
+			if (dst.remaining() > this.remaining) {
+				dst.limit(dst.position() + (int) this.remaining);
+			}
+			try {
+				int count = this.channel.read(dst);
+				if (count > 0) {
+					this.remaining -= count;
+				}
+				return count;
+			}
+			finally {
+				dst.limit(limit);
+			}
+		}
+
+		@Override
+		public boolean isOpen() {
+			return this.channel.isOpen();
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.channel.close();
+		}
+	}
+
+
 	/**
 	 * Inner class to avoid a hard-coded JAF dependency.
 	 */